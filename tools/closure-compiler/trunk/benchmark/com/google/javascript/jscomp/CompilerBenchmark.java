@@ -0,0 +1,328 @@
+/*
+ * Copyright 2011 The Closure Compiler Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.javascript.jscomp;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+import com.google.javascript.jscomp.NodeTraversal.AbstractPostOrderCallback;
+import com.google.javascript.jscomp.mozilla.rhino.ErrorReporter;
+import com.google.javascript.jscomp.parsing.Config;
+import com.google.javascript.jscomp.parsing.ParserRunner;
+import com.google.javascript.rhino.Node;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+/**
+ * Times the phases of the compiler that most of a compilation is spent in,
+ * on the JavaScript files given on the command line, so that a slower
+ * compiler shows up as numbers rather than as a slower build.
+ *
+ * Every phase is run a few times to warm up the JVM, then timed over
+ * several iterations. The work a phase needs done first, like parsing the
+ * inputs for the passes, is redone before every iteration and is not
+ * timed. The inputs are compiled together, with the default externs, which
+ * must be on the classpath. Files that do not parse are skipped.
+ *
+ * Usage: CompilerBenchmark [--warmup=N] [--iterations=N] [--filter=REGEX]
+ *     file.js...
+ *
+ */
+public class CompilerBenchmark {
+
+  private static final Logger logger =
+      Logger.getLogger(CompilerBenchmark.class.getName());
+
+  private final List<JSSourceFile> externs;
+  private final List<JSSourceFile> inputs;
+
+  // Parse trees, handed out as copies to every compiler of the benchmark.
+  private final AstCache astCache = new AstCache(false);
+
+  // The compiler of the current iteration.
+  private Compiler compiler;
+
+  CompilerBenchmark(List<JSSourceFile> externs, List<JSSourceFile> inputs) {
+    this.externs = externs;
+    this.inputs = inputs;
+  }
+
+  public static void main(String[] args) throws Exception {
+    int warmup = 3;
+    int iterations = 5;
+    Pattern filter = Pattern.compile(".*");
+    List<JSSourceFile> files = Lists.newArrayList();
+    for (String arg : args) {
+      if (arg.startsWith("--warmup=")) {
+        warmup = Integer.parseInt(arg.substring("--warmup=".length()));
+      } else if (arg.startsWith("--iterations=")) {
+        iterations = Integer.parseInt(arg.substring("--iterations=".length()));
+      } else if (arg.startsWith("--filter=")) {
+        filter = Pattern.compile(arg.substring("--filter=".length()));
+      } else {
+        files.add(JSSourceFile.fromCode(
+            arg, Files.toString(new File(arg), Charsets.UTF_8)));
+      }
+    }
+    if (files.isEmpty() || iterations < 1) {
+      System.err.println("Usage: CompilerBenchmark [--warmup=N] "
+          + "[--iterations=N] [--filter=REGEX] file.js...");
+      System.exit(1);
+    }
+
+    CompilerBenchmark benchmark = new CompilerBenchmark(
+        CommandLineRunner.getDefaultExterns(), parseableFiles(files));
+    System.out.printf("%-40s %5s %12s %11s  %s%n",
+        "Benchmark", "Cnt", "Score", "Error", "Units");
+    for (Phase phase : benchmark.getPhases()) {
+      if (filter.matcher(phase.name).matches()) {
+        benchmark.measure(phase, warmup, iterations);
+      }
+    }
+  }
+
+  private static List<JSSourceFile> parseableFiles(List<JSSourceFile> files) {
+    List<JSSourceFile> result = Lists.newArrayList();
+    for (JSSourceFile file : files) {
+      Compiler compiler = new Compiler();
+      compiler.initOptions(createOptions());
+      compiler.parse(file);
+      if (compiler.getErrorCount() > 0) {
+        System.err.println("Skipping " + file.getName() + ": parse errors");
+      } else {
+        result.add(file);
+      }
+    }
+    return result;
+  }
+
+  private static CompilerOptions createOptions() {
+    CompilerOptions options = new CompilerOptions();
+    options.setLanguageIn(CompilerOptions.LanguageMode.ECMASCRIPT5);
+    return options;
+  }
+
+  /** A timed piece of work, and the untimed work it depends on. */
+  private abstract class Phase {
+    final String name;
+
+    Phase(String name) {
+      this.name = name;
+    }
+
+    /** Prepares the next iteration. */
+    void setUp() {
+      parse();
+    }
+
+    abstract void run() throws Exception;
+  }
+
+  /** A phase that runs a pass on normalized code. */
+  private abstract class PassPhase extends Phase {
+    PassPhase(String name) {
+      super(name);
+    }
+
+    @Override
+    void setUp() {
+      parse();
+      normalize();
+    }
+
+    @Override
+    void run() {
+      createPass().process(compiler.externsRoot, compiler.jsRoot);
+    }
+
+    abstract CompilerPass createPass();
+  }
+
+  List<Phase> getPhases() {
+    List<Phase> phases = Lists.newArrayList();
+    phases.add(new Phase("parse") {
+      @Override
+      void setUp() {
+        compiler = new Compiler();
+        compiler.initOptions(createOptions());
+      }
+
+      @Override
+      void run() throws Exception {
+        Config config = compiler.getParserConfig();
+        ErrorReporter errorReporter = compiler.getDefaultErrorReporter();
+        for (JSSourceFile file : inputs) {
+          ParserRunner.parse(
+              file, file.getCode(), config, errorReporter, logger);
+        }
+      }
+    });
+    phases.add(new Phase("traversal") {
+      @Override
+      void run() {
+        NodeTraversal.traverse(compiler, compiler.getRoot(),
+            new AbstractPostOrderCallback() {
+              @Override
+              public void visit(NodeTraversal t, Node n, Node parent) {}
+            });
+      }
+    });
+    phases.add(new Phase("normalize") {
+      @Override
+      void run() {
+        normalize();
+      }
+    });
+    phases.add(new PassPhase("typeInference") {
+      @Override
+      CompilerPass createPass() {
+        MemoizedScopeCreator scopeCreator =
+            new MemoizedScopeCreator(new TypedScopeCreator(compiler));
+        Scope topScope = scopeCreator.createScope(compiler.getRoot(), null);
+        return new TypeInferencePass(compiler,
+            compiler.getReverseAbstractInterpreter(), topScope, scopeCreator);
+      }
+    });
+    phases.add(new Phase("typeCheck") {
+      private MemoizedScopeCreator scopeCreator;
+      private Scope topScope;
+
+      @Override
+      void setUp() {
+        parse();
+        normalize();
+        scopeCreator =
+            new MemoizedScopeCreator(new TypedScopeCreator(compiler));
+        topScope = scopeCreator.createScope(compiler.getRoot(), null);
+        new TypeInferencePass(compiler,
+            compiler.getReverseAbstractInterpreter(), topScope, scopeCreator)
+            .process(compiler.externsRoot, compiler.jsRoot);
+      }
+
+      @Override
+      void run() {
+        new TypeCheck(compiler, compiler.getReverseAbstractInterpreter(),
+            compiler.getTypeRegistry(), topScope, scopeCreator,
+            CheckLevel.WARNING, CheckLevel.OFF)
+            .process(compiler.externsRoot, compiler.jsRoot);
+      }
+    });
+    for (final AbstractPeepholeOptimization optimization : ImmutableList.of(
+        new PeepholeSubstituteAlternateSyntax(false),
+        new PeepholeReplaceKnownMethods(),
+        new PeepholeRemoveDeadCode(),
+        new PeepholeFoldConstants(),
+        new PeepholeCollectPropertyAssignments(),
+        new PeepholeSimplifyRegExp())) {
+      phases.add(new PassPhase("peephole." +
+          optimization.getClass().getSimpleName().replace("Peephole", "")) {
+        @Override
+        CompilerPass createPass() {
+          return new PeepholeOptimizationsPass(compiler, optimization);
+        }
+      });
+    }
+    // The optimizations of ADVANCED mode, most of which run in the fixed
+    // point loops.
+    phases.add(new Phase("optimize.advanced") {
+      @Override
+      void setUp() {
+        CompilerOptions options = createOptions();
+        CompilationLevel.ADVANCED_OPTIMIZATIONS
+            .setOptionsForCompilationLevel(options);
+        compiler = new Compiler();
+        compiler.setAstCache(astCache);
+        compiler.init(externs, inputs, options);
+        compiler.parse();
+        compiler.check();
+      }
+
+      @Override
+      void run() {
+        compiler.optimize();
+      }
+    });
+    phases.add(new PassPhase("renameVars") {
+      @Override
+      CompilerPass createPass() {
+        return new RenameVars(compiler, "", false, false, false, false, null,
+            null, Collections.<String>emptySet());
+      }
+    });
+    phases.add(new Phase("codePrinter") {
+      @Override
+      void setUp() {
+        parse();
+        normalize();
+      }
+
+      @Override
+      void run() {
+        new CodePrinter.Builder(compiler.jsRoot).build();
+      }
+    });
+    return phases;
+  }
+
+  /** Creates the compiler of the next iteration, and parses the inputs. */
+  private void parse() {
+    compiler = new Compiler();
+    compiler.setAstCache(astCache);
+    compiler.init(externs, inputs, createOptions());
+    compiler.parse();
+  }
+
+  private void normalize() {
+    new Normalize(compiler, false).process(
+        compiler.externsRoot, compiler.jsRoot);
+  }
+
+  private void measure(Phase phase, int warmup, int iterations)
+      throws Exception {
+    for (int i = 0; i < warmup; i++) {
+      phase.setUp();
+      phase.run();
+    }
+    double[] times = new double[iterations];
+    for (int i = 0; i < iterations; i++) {
+      phase.setUp();
+      long start = System.nanoTime();
+      phase.run();
+      times[i] = (System.nanoTime() - start) / 1e6;
+    }
+    compiler = null;
+
+    double mean = 0;
+    for (double time : times) {
+      mean += time;
+    }
+    mean /= iterations;
+    double variance = 0;
+    for (double time : times) {
+      variance += (time - mean) * (time - mean);
+    }
+    double stdDev =
+        iterations > 1 ? Math.sqrt(variance / (iterations - 1)) : 0;
+    System.out.printf("%-40s %5d %12.3f +- %8.3f  ms/op%n",
+        phase.name, iterations, mean, stdDev);
+  }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2011 The Closure Compiler Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.javascript.jscomp;
+
+import com.google.common.collect.Lists;
+import com.google.javascript.rhino.Node;
+import com.google.javascript.rhino.Token;
+import com.google.javascript.rhino.jstype.JSType;
+import com.google.javascript.rhino.jstype.JSTypeNative;
+import com.google.javascript.rhino.jstype.JSTypeRegistry;
+
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Compares the flow scope implementations on the flow of a long generated
+ * function, with as many statements as the type inference sees in the
+ * largest functions of generated code, and an increasing number of local
+ * variables.
+ *
+ * Every statement infers the type of one variable and looks up another,
+ * and every few statements an if statement refines a variable in both
+ * branches, joins them and compares the join with the scope before it, as
+ * the data flow analysis does.
+ *
+ * Usage: FlowScopeBenchmark [--warmup=N] [--iterations=N] [--filter=REGEX]
+ *
+ */
+public class FlowScopeBenchmark {
+
+  private static final int STATEMENTS = 4000;
+
+  // The number of statements between two if statements.
+  private static final int STATEMENTS_PER_BRANCH = 8;
+
+  private static final int[] VARIABLES = {10, 100, 1000};
+
+  private final Compiler compiler = new Compiler();
+  private final JSType[] types;
+
+  FlowScopeBenchmark() {
+    compiler.initOptions(new CompilerOptions());
+    JSTypeRegistry registry = compiler.getTypeRegistry();
+    types = new JSType[] {
+        registry.getNativeType(JSTypeNative.NUMBER_TYPE),
+        registry.getNativeType(JSTypeNative.STRING_TYPE),
+        registry.getNativeType(JSTypeNative.BOOLEAN_TYPE),
+        registry.getNativeType(JSTypeNative.NULL_TYPE)};
+  }
+
+  public static void main(String[] args) throws Exception {
+    int warmup = 3;
+    int iterations = 5;
+    Pattern filter = Pattern.compile(".*");
+    boolean usage = false;
+    for (String arg : args) {
+      if (arg.startsWith("--warmup=")) {
+        warmup = Integer.parseInt(arg.substring("--warmup=".length()));
+      } else if (arg.startsWith("--iterations=")) {
+        iterations = Integer.parseInt(arg.substring("--iterations=".length()));
+      } else if (arg.startsWith("--filter=")) {
+        filter = Pattern.compile(arg.substring("--filter=".length()));
+      } else {
+        usage = true;
+      }
+    }
+    if (usage || iterations < 1) {
+      System.err.println("Usage: FlowScopeBenchmark [--warmup=N] "
+          + "[--iterations=N] [--filter=REGEX]");
+      System.exit(1);
+    }
+
+    FlowScopeBenchmark benchmark = new FlowScopeBenchmark();
+    System.out.printf("%-40s %5s %12s %11s  %s%n",
+        "Benchmark", "Cnt", "Score", "Error", "Units");
+    for (Flow flow : benchmark.getFlows()) {
+      if (filter.matcher(flow.name).matches()) {
+        benchmark.measure(flow, warmup, iterations);
+      }
+    }
+  }
+
+  /** The flow of a function, on one flow scope implementation. */
+  private abstract class Flow {
+    final String name;
+    final JoinOp.BinaryJoinOp<FlowScope> joinOp;
+    final String[] variables;
+
+    Flow(String implementation, JoinOp.BinaryJoinOp<FlowScope> joinOp,
+        int numVariables) {
+      this.name = implementation + "." + numVariables + "vars";
+      this.joinOp = joinOp;
+      this.variables = new String[numVariables];
+      for (int i = 0; i < numVariables; i++) {
+        variables[i] = "local" + i;
+      }
+    }
+
+    abstract FlowScope createEntryLattice(Scope scope);
+
+    void run() {
+      Scope globalScope = new Scope(new Node(Token.BLOCK), compiler);
+      Scope functionScope =
+          new Scope(globalScope, new Node(Token.FUNCTION));
+      FlowScope scope = createEntryLattice(functionScope);
+      for (String variable : variables) {
+        functionScope.declare(variable, null, null, null);
+        scope.inferSlotType(variable,
+            compiler.getTypeRegistry().getNativeType(JSTypeNative.VOID_TYPE));
+      }
+
+      for (int i = 0; i < STATEMENTS; i++) {
+        scope = scope.createChildFlowScope();
+        scope.inferSlotType(variable(i * 31), types[i % types.length]);
+        scope.getSlot(variable(i * 17));
+
+        if (i % STATEMENTS_PER_BRANCH == STATEMENTS_PER_BRANCH - 1) {
+          FlowScope thenScope = scope.createChildFlowScope();
+          thenScope.inferSlotType(variable(i * 13), types[0]);
+          FlowScope elseScope = scope.createChildFlowScope();
+          elseScope.inferSlotType(variable(i * 13), types[1]);
+          FlowScope joined = joinOp.apply(thenScope, elseScope);
+          joined.equals(scope);
+          scope = joined;
+        }
+      }
+    }
+
+    private String variable(int i) {
+      return variables[i % variables.length];
+    }
+  }
+
+  List<Flow> getFlows() {
+    List<Flow> flows = Lists.newArrayList();
+    for (int numVariables : VARIABLES) {
+      flows.add(new Flow("linkedFlowScope",
+          new LinkedFlowScope.FlowScopeJoinOp(), numVariables) {
+        @Override
+        FlowScope createEntryLattice(Scope scope) {
+          return LinkedFlowScope.createEntryLattice(scope);
+        }
+      });
+      flows.add(new Flow("persistentFlowScope",
+          new PersistentFlowScope.FlowScopeJoinOp(), numVariables) {
+        @Override
+        FlowScope createEntryLattice(Scope scope) {
+          return PersistentFlowScope.createEntryLattice(scope);
+        }
+      });
+    }
+    return flows;
+  }
+
+  private void measure(Flow flow, int warmup, int iterations) {
+    for (int i = 0; i < warmup; i++) {
+      flow.run();
+    }
+    double[] times = new double[iterations];
+    for (int i = 0; i < iterations; i++) {
+      long start = System.nanoTime();
+      flow.run();
+      times[i] = (System.nanoTime() - start) / 1e6;
+    }
+
+    double mean = 0;
+    for (double time : times) {
+      mean += time;
+    }
+    mean /= iterations;
+    double variance = 0;
+    for (double time : times) {
+      variance += (time - mean) * (time - mean);
+    }
+    double stdDev =
+        iterations > 1 ? Math.sqrt(variance / (iterations - 1)) : 0;
+    System.out.printf("%-40s %5d %12.3f +- %8.3f  ms/op%n",
+        flow.name, iterations, mean, stdDev);
+  }
+}
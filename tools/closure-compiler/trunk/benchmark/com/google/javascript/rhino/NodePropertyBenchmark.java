@@ -0,0 +1,188 @@
+/*
+ * Copyright 2011 The Closure Compiler Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.javascript.rhino;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+import com.google.javascript.jscomp.Compiler;
+import com.google.javascript.jscomp.CompilerOptions;
+import com.google.javascript.jscomp.JSSourceFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Measures the memory taken by the properties of parse trees, and the time
+ * it takes to read them, on the JavaScript files given on the command line.
+ *
+ * The heap is measured after a full garbage collection, with the trees
+ * alive and without them, and once more after the properties are removed
+ * from the trees, which tells how much of it the properties take. The
+ * source file is kept, as it is shared by the nodes of a file and holds
+ * its code. The
+ * traversal reads the properties that the
+ * passes read the most: the source file, the JSDoc and a few flags. With
+ * --normalize, the trees are normalized first, the way the optimizations
+ * see them, which sets more flags.
+ *
+ * Usage: NodePropertyBenchmark [--iterations=N] [--normalize] file.js...
+ *
+ */
+public class NodePropertyBenchmark {
+
+  private static final int WARMUP_ITERATIONS = 10;
+
+  // Keeps the traversal from being optimized away.
+  private static int sink;
+
+  public static void main(String[] args) throws IOException {
+    int iterations = 20;
+    boolean normalize = false;
+    List<JSSourceFile> files = Lists.newArrayList();
+    for (String arg : args) {
+      if (arg.startsWith("--iterations=")) {
+        iterations = Integer.parseInt(arg.substring("--iterations=".length()));
+      } else if (arg.equals("--normalize")) {
+        normalize = true;
+      } else {
+        files.add(JSSourceFile.fromCode(
+            arg, Files.toString(new File(arg), Charsets.UTF_8)));
+      }
+    }
+    if (files.isEmpty()) {
+      System.err.println("Usage: NodePropertyBenchmark [--iterations=N] "
+          + "[--normalize] file.js...");
+      System.exit(1);
+    }
+
+    long before = usedHeap();
+    List<Node> roots = parse(files, normalize);
+    long after = usedHeap();
+    int nodes = 0;
+    for (Node root : roots) {
+      nodes += countNodes(root);
+    }
+    System.out.printf("%d nodes, %.1f bytes per node%n",
+        nodes, (after - before) / (double) nodes);
+
+    for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+      readProps(roots);
+    }
+    long best = Long.MAX_VALUE;
+    for (int i = 0; i < iterations; i++) {
+      long start = System.nanoTime();
+      readProps(roots);
+      best = Math.min(best, System.nanoTime() - start);
+    }
+    System.out.printf("traversal: %.2f ns per node (best of %d)%n",
+        best / (double) nodes, iterations);
+
+    long withProps = usedHeap();
+    for (Node root : roots) {
+      removeProps(root);
+    }
+    long withoutProps = usedHeap();
+    // Keeps the trees alive until then.
+    sink += roots.size();
+    System.out.printf("properties: %.2f bytes per node%n",
+        (withProps - withoutProps) / (double) nodes);
+  }
+
+  private static List<Node> parse(
+      List<JSSourceFile> files, boolean normalize) {
+    List<Node> roots = Lists.newArrayList();
+    for (JSSourceFile file : files) {
+      // A compiler per file, so that a file with errors does not keep the
+      // others from being parsed.
+      Compiler compiler = new Compiler();
+      CompilerOptions options = new CompilerOptions();
+      options.setLanguageIn(CompilerOptions.LanguageMode.ECMASCRIPT5);
+      compiler.init(ImmutableList.<JSSourceFile>of(),
+          ImmutableList.of(file), options);
+      compiler.parse();
+      if (compiler.getErrorCount() > 0) {
+        System.err.println("Skipping " + file.getName() + ": parse errors");
+        continue;
+      }
+      if (normalize) {
+        compiler.normalize();
+      }
+      // Detached, so that the compiler can be collected.
+      Node root = compiler.getRoot().getLastChild().getFirstChild();
+      root.detachFromParent();
+      roots.add(root);
+    }
+    return roots;
+  }
+
+  private static int countNodes(Node n) {
+    int count = 1;
+    for (Node c = n.getFirstChild(); c != null; c = c.getNext()) {
+      count += countNodes(c);
+    }
+    return count;
+  }
+
+  private static void removeProps(Node n) {
+    for (int propType = 0; propType <= Node.LAST_PROP; propType++) {
+      if (propType != Node.STATIC_SOURCE_FILE) {
+        n.removeProp(propType);
+      }
+    }
+    for (Node c = n.getFirstChild(); c != null; c = c.getNext()) {
+      removeProps(c);
+    }
+  }
+
+  private static void readProps(List<Node> roots) {
+    for (Node root : roots) {
+      readProps(root);
+    }
+  }
+
+  private static void readProps(Node n) {
+    int hash = 0;
+    if (n.getSourceFileName() != null) {
+      hash++;
+    }
+    if (n.getJSDocInfo() != null) {
+      hash++;
+    }
+    if (n.getBooleanProp(Node.IS_CONSTANT_NAME)) {
+      hash++;
+    }
+    if (n.getBooleanProp(Node.QUOTED_PROP)) {
+      hash++;
+    }
+    hash += n.getIntProp(Node.SIDE_EFFECT_FLAGS);
+    sink += hash;
+    for (Node c = n.getFirstChild(); c != null; c = c.getNext()) {
+      readProps(c);
+    }
+  }
+
+  private static long usedHeap() {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+}
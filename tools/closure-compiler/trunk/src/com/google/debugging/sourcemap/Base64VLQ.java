@@ -84,6 +84,21 @@ final class Base64VLQ {
     } while (value > 0);
   }
 
+  /**
+   * Writes a VLQ encoded value to the provided buffer.
+   */
+  static void encode(StringBuilder out, int value) {
+    value = toVLQSigned(value);
+    do {
+      int digit = value & VLQ_BASE_MASK;
+      value >>>= VLQ_BASE_SHIFT;
+      if (value > 0) {
+        digit |= VLQ_CONTINUATION_BIT;
+      }
+      out.append(Base64.toBase64(digit));
+    } while (value > 0);
+  }
+
   /**
    * A simple interface for advancing through a sequence of characters, that
    * communicates that advance back to the source.
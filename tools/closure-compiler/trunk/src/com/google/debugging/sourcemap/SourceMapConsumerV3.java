@@ -17,7 +17,6 @@
 package com.google.debugging.sourcemap;
 
 import com.google.common.base.Preconditions;
-import com.google.common.collect.Lists;
 import com.google.debugging.sourcemap.Base64VLQ.CharIterator;
 import com.google.debugging.sourcemap.proto.Mapping.OriginalMapping;
 import com.google.debugging.sourcemap.proto.Mapping.OriginalMapping.Builder;
@@ -32,6 +31,7 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -44,14 +44,38 @@ public class SourceMapConsumerV3 implements SourceMapConsumer,
     SourceMappingReversable {
   static final int UNMAPPED = -1;
 
+  // The values of an entry, in the order they appear in the mappings:
+  //   0: the starting column in the current line of the generated file
+  //   1: the id of the original source file
+  //   2: the starting line in the original source
+  //   3: the starting column in the original source
+  //   4: the id of the original symbol name
+  private static final int COLUMN = 0;
+  private static final int SOURCE = 1;
+  private static final int SOURCE_LINE = 2;
+  private static final int SOURCE_COLUMN = 3;
+  private static final int NAME = 4;
+  private static final int ENTRY_SIZE = 5;
+
   private String[] sources;
   private String[] names;
   private int lineCount;
-  // Slots in the lines list will be null if the line does not have any entries.
-  private ArrayList<ArrayList<Entry>> lines = null;
-  /** originalFile path ==> original line ==> target mappings */
-  private Map<String, Map<Integer, Collection<OriginalMapping>>>
-      reverseSourceMapping;
+  // The values of the entries, ENTRY_SIZE of them for each entry, in the
+  // order of the lines. The values that an entry does not have are UNMAPPED.
+  private int[] entries = null;
+  // The index of the first entry of each line, followed by the number of
+  // entries. A line without entries starts where the next line starts.
+  private int[] lineStarts = null;
+
+  // The reverse mapping, built when it is first needed: the ids of the
+  // mapped entries, sorted by original file, then by original line.
+  private int[] reverseEntries = null;
+  // The index in reverseEntries of the first entry of each original file,
+  // by source id, followed by the number of entries.
+  private int[] reverseSourceStarts;
+  // The source id of each original file. Files listed more than once get
+  // the first of their ids.
+  private Map<String, Integer> sourceIds;
 
   public SourceMapConsumerV3() {
 
@@ -121,8 +145,7 @@ public class SourceMapConsumerV3 implements SourceMapConsumer,
       sources = getJavaStringArray(sourceMapRoot.getJSONArray("sources"));
       names = getJavaStringArray(sourceMapRoot.getJSONArray("names"));
 
-      lines = Lists.newArrayListWithCapacity(lineCount);
-
+      reverseEntries = null;
       new MappingBuilder(lineMap).build();
     } catch (JSONException ex) {
       throw new SourceMapParseException("JSON parse exception: " + ex);
@@ -208,29 +231,23 @@ public class SourceMapConsumerV3 implements SourceMapConsumer,
     lineNumber--;
     column--;
 
-    if (lineNumber < 0 || lineNumber >= lines.size()) {
+    if (lineNumber < 0 || lineNumber >= getLineCount()) {
       return null;
     }
 
     Preconditions.checkState(lineNumber >= 0);
     Preconditions.checkState(column >= 0);
 
-
+    int start = lineStarts[lineNumber];
+    int end = lineStarts[lineNumber + 1];
     // If the line is empty return the previous mapping.
-    if (lines.get(lineNumber) == null) {
-      return getPreviousMapping(lineNumber);
-    }
-
-    ArrayList<Entry> entries = lines.get(lineNumber);
-    // No empty lists.
-    Preconditions.checkState(entries.size() > 0);
-    if (entries.get(0).getGeneratedColumn() > column) {
+    if (start == end || getValue(start, COLUMN) > column) {
       return getPreviousMapping(lineNumber);
     }
 
-    int index = search(entries, column, 0, entries.size() - 1);
-    Preconditions.checkState(index >= 0, "unexpected:" + index);
-    return getOriginalMappingForEntry(entries.get(index));
+    int index = search(column, start, end - 1);
+    Preconditions.checkState(index >= start, "unexpected:" + index);
+    return getOriginalMappingForEntry(index);
   }
 
   @Override
@@ -245,25 +262,43 @@ public class SourceMapConsumerV3 implements SourceMapConsumer,
     // parameter.
 
     // Synchronization needs to be handled by callers.
-    if (reverseSourceMapping == null) {
+    if (reverseEntries == null) {
       createReverseMapping();
     }
 
-    Map<Integer, Collection<OriginalMapping>> sourceLineToCollectionMap =
-        reverseSourceMapping.get(originalFile);
-
-    if (sourceLineToCollectionMap == null) {
+    Integer sourceId = sourceIds.get(originalFile);
+    if (sourceId == null) {
       return Collections.emptyList();
-    } else {
-      Collection<OriginalMapping> mappings =
-          sourceLineToCollectionMap.get(line);
+    }
 
-      if (mappings == null) {
-        return Collections.emptyList();
+    // Find the first entry of the line.
+    int start = reverseSourceStarts[sourceId];
+    int end = reverseSourceStarts[sourceId + 1];
+    while (start < end) {
+      int mid = (start + end) >>> 1;
+      if (getValue(reverseEntries[mid], SOURCE_LINE) < line) {
+        start = mid + 1;
       } else {
-        return mappings;
+        end = mid;
+      }
+    }
+
+    List<OriginalMapping> mappings = null;
+    for (int i = start; i < reverseSourceStarts[sourceId + 1]
+             && getValue(reverseEntries[i], SOURCE_LINE) == line; i++) {
+      if (mappings == null) {
+        mappings = new ArrayList<OriginalMapping>(1);
       }
+      int entry = reverseEntries[i];
+      mappings.add(OriginalMapping.newBuilder()
+          .setLineNumber(getLineOfEntry(entry))
+          .setColumnPosition(getValue(entry, COLUMN))
+          .build());
     }
+    if (mappings == null) {
+      return Collections.emptyList();
+    }
+    return mappings;
   }
 
   private String[] getJavaStringArray(JSONArray array) throws JSONException {
@@ -275,6 +310,44 @@ public class SourceMapConsumerV3 implements SourceMapConsumer,
     return result;
   }
 
+  /**
+   * Returns the number of lines that have been read from the mappings.
+   */
+  private int getLineCount() {
+    return lineStarts.length - 1;
+  }
+
+  /**
+   * Returns a value of an entry.
+   *
+   * @param entry The id of the entry.
+   * @param value The value, one of COLUMN, SOURCE, SOURCE_LINE,
+   *     SOURCE_COLUMN and NAME.
+   */
+  private int getValue(int entry, int value) {
+    return entries[entry * ENTRY_SIZE + value];
+  }
+
+  /**
+   * Returns the line of the generated file that an entry is on.
+   */
+  private int getLineOfEntry(int entry) {
+    // Find the last line that starts at or before the entry, which is the
+    // only line that does not start after it among the lines that are not
+    // empty.
+    int low = 0;
+    int high = getLineCount() - 1;
+    while (low < high) {
+      int mid = (low + high + 1) >>> 1;
+      if (lineStarts[mid] <= entry) {
+        low = mid;
+      } else {
+        high = mid - 1;
+      }
+    }
+    return low;
+  }
+
   private class MappingBuilder {
     private static final int MAX_ENTRY_VALUES = 5;
     private final StringCharIterator content;
@@ -285,29 +358,27 @@ public class SourceMapConsumerV3 implements SourceMapConsumer,
     private int previousSrcColumn = 0;
     private int previousNameId = 0;
 
+    // The values of the entries read so far.
+    private int[] values = new int[ENTRY_SIZE * 16];
+    private int entryCount = 0;
+    private int[] starts = new int[16];
+
     MappingBuilder(String lineMap) {
       this.content = new StringCharIterator(lineMap);
     }
 
     void build() {
       int [] temp = new int[MAX_ENTRY_VALUES];
-      ArrayList<Entry> entries = new ArrayList<Entry>();
+      starts[0] = 0;
       while (content.hasNext()) {
         // ';' denotes a new line.
         if (tryConsumeToken(';')) {
-          // The line is complete, store the result for the line,
-          // null if the line is empty.
-          ArrayList<Entry> result;
-          if (entries.size() > 0) {
-            result = entries;
-            // A new array list for the next line.
-            entries = new ArrayList<Entry>();
-          } else {
-            result = null;
-          }
-          lines.add(result);
-          entries.clear();
+          // The line is complete, the next line starts after its entries.
           line++;
+          if (line == starts.length) {
+            starts = Arrays.copyOf(starts, starts.length * 2);
+          }
+          starts[line] = entryCount;
           previousCol = 0;
         } else {
           // grab the next entry for the current line.
@@ -316,88 +387,73 @@ public class SourceMapConsumerV3 implements SourceMapConsumer,
             temp[entryValues] = nextValue();
             entryValues++;
           }
-          Entry entry = decodeEntry(temp, entryValues);
+          decodeEntry(temp, entryValues);
 
-          validateEntry(entry);
-          entries.add(entry);
+          validateEntry(entryCount - 1);
 
           // Consume the separating token, if there is one.
           tryConsumeToken(',');
         }
       }
+
+      // The entries of a line that is not terminated are dropped.
+      entries = Arrays.copyOf(values, starts[line] * ENTRY_SIZE);
+      lineStarts = Arrays.copyOf(starts, line + 1);
     }
 
     /**
      * Sanity check the entry.
      */
-    private void validateEntry(Entry entry) {
+    private void validateEntry(int entry) {
+      int sourceId = values[entry * ENTRY_SIZE + SOURCE];
+      int nameId = values[entry * ENTRY_SIZE + NAME];
       Preconditions.checkState(line < lineCount);
-      Preconditions.checkState(entry.getSourceFileId() == UNMAPPED
-          || entry.getSourceFileId() < sources.length);
-      Preconditions.checkState(entry.getNameId() == UNMAPPED
-          || entry.getNameId() < names.length);
+      Preconditions.checkState(sourceId == UNMAPPED
+          || sourceId < sources.length);
+      Preconditions.checkState(nameId == UNMAPPED
+          || nameId < names.length);
     }
 
     /**
      * Decodes the next entry, using the previous encountered values to
-     * decode the relative values.
+     * decode the relative values, and adds it to the entries.
      *
      * @param vals An array of integers that represent values in the entry.
      * @param entryValues The number of entries in the array.
-     * @return The entry object.
      */
-    private Entry decodeEntry(int[] vals, int entryValues) {
-      Entry entry;
+    private void decodeEntry(int[] vals, int entryValues) {
+      // The values are relative to the last encountered value for that field.
+      // Note: the previously column value for the generated file is reset
+      // to '0' when a new line is encountered.  This is done in the 'build'
+      // method.
       switch (entryValues) {
-        // The first values, if present are in the following order:
-        //   0: the starting column in the current line of the generated file
-        //   1: the id of the original source file
-        //   2: the starting line in the original source
-        //   3: the starting column in the original source
-        //   4: the id of the original symbol name
-        // The values are relative to the last encountered value for that field.
-        // Note: the previously column value for the generated file is reset
-        // to '0' when a new line is encountered.  This is done in the 'build'
-        // method.
-
         case 1:
           // An unmapped section of the generated file.
-          entry = new UnmappedEntry(
-              vals[0] + previousCol);
-          // Set the values see for the next entry.
-          previousCol = entry.getGeneratedColumn();
-          return entry;
+          previousCol = vals[0] + previousCol;
+          addEntry(previousCol, UNMAPPED, UNMAPPED, UNMAPPED, UNMAPPED);
+          return;
 
         case 4:
           // A mapped section of the generated file.
-          entry = new UnnamedEntry(
-              vals[0] + previousCol,
-              vals[1] + previousSrcId,
-              vals[2] + previousSrcLine,
-              vals[3] + previousSrcColumn);
-          // Set the values see for the next entry.
-          previousCol = entry.getGeneratedColumn();
-          previousSrcId = entry.getSourceFileId();
-          previousSrcLine = entry.getSourceLine();
-          previousSrcColumn = entry.getSourceColumn();
-          return entry;
+          previousCol = vals[0] + previousCol;
+          previousSrcId = vals[1] + previousSrcId;
+          previousSrcLine = vals[2] + previousSrcLine;
+          previousSrcColumn = vals[3] + previousSrcColumn;
+          addEntry(previousCol, previousSrcId, previousSrcLine,
+              previousSrcColumn, UNMAPPED);
+          return;
 
         case 5:
           // A mapped section of the generated file, that has an associated
           // name.
-          entry = new NamedEntry(
-              vals[0] + previousCol,
-              vals[1] + previousSrcId,
-              vals[2] + previousSrcLine,
-              vals[3] + previousSrcColumn,
-              vals[4] + previousNameId);
-          // Set the values see for the next entry.
-          previousCol = entry.getGeneratedColumn();
-          previousSrcId = entry.getSourceFileId();
-          previousSrcLine = entry.getSourceLine();
-          previousSrcColumn = entry.getSourceColumn();
-          previousNameId = entry.getNameId();
-          return entry;
+          previousCol = vals[0] + previousCol;
+          previousSrcId = vals[1] + previousSrcId;
+          previousSrcLine = vals[2] + previousSrcLine;
+          previousSrcColumn = vals[3] + previousSrcColumn;
+          previousNameId = vals[4] + previousNameId;
+          addEntry(previousCol, previousSrcId, previousSrcLine,
+              previousSrcColumn, previousNameId);
+          return;
 
         default:
           throw new IllegalStateException(
@@ -405,6 +461,20 @@ public class SourceMapConsumerV3 implements SourceMapConsumer,
       }
     }
 
+    private void addEntry(
+        int column, int srcId, int srcLine, int srcColumn, int nameId) {
+      int offset = entryCount * ENTRY_SIZE;
+      if (offset == values.length) {
+        values = Arrays.copyOf(values, values.length * 2);
+      }
+      values[offset + COLUMN] = column;
+      values[offset + SOURCE] = srcId;
+      values[offset + SOURCE_LINE] = srcLine;
+      values[offset + SOURCE_COLUMN] = srcColumn;
+      values[offset + NAME] = nameId;
+      entryCount++;
+    }
+
     private boolean tryConsumeToken(char token) {
       if (content.hasNext() && content.peek() == token) {
         // consume the comma
@@ -429,13 +499,13 @@ public class SourceMapConsumerV3 implements SourceMapConsumer,
   }
 
   /**
-   * Perform a binary search on the array to find a section that covers
-   * the target column.
+   * Perform a binary search on the entries from start to end to find a
+   * section that covers the target column.
    */
-  private int search(ArrayList<Entry> entries, int target, int start, int end) {
+  private int search(int target, int start, int end) {
     while (true) {
       int mid = ((end - start) / 2) + start;
-      int compare = compareEntry(entries, mid, target);
+      int compare = getValue(mid, COLUMN) - target;
       if (compare == 0) {
         return mid;
       } else if (compare < 0) {
@@ -454,41 +524,32 @@ public class SourceMapConsumerV3 implements SourceMapConsumer,
     }
   }
 
-  /**
-   * Compare an array entry's column value to the taget column value.
-   */
-  private int compareEntry(ArrayList<Entry> entries, int entry, int target) {
-    return entries.get(entry).getGeneratedColumn() - target;
-  }
-
   /**
    * Returns the mapping entry that proceeds the supplied line or null if no
    * such entry exists.
    */
   private OriginalMapping getPreviousMapping(int lineNumber) {
-    do {
-      if (lineNumber == 0) {
-        return null;
-      }
-      lineNumber--;
-    } while (lines.get(lineNumber) == null);
-    ArrayList<Entry> entries = lines.get(lineNumber);
-    return getOriginalMappingForEntry(entries.get(entries.size() - 1));
+    // The entries of the lines before the line end where it starts.
+    int start = lineStarts[lineNumber];
+    if (start == 0) {
+      return null;
+    }
+    return getOriginalMappingForEntry(start - 1);
   }
 
   /**
-   * Creates an "OriginalMapping" object for the given entry object.
+   * Creates an "OriginalMapping" object for the given entry.
    */
-  private OriginalMapping getOriginalMappingForEntry(Entry entry) {
-    if (entry.getSourceFileId() == UNMAPPED) {
+  private OriginalMapping getOriginalMappingForEntry(int entry) {
+    if (getValue(entry, SOURCE) == UNMAPPED) {
       return null;
     } else {
       Builder x = OriginalMapping.newBuilder()
-        .setOriginalFile(sources[entry.getSourceFileId()])
-        .setLineNumber(entry.getSourceLine())
-        .setColumnPosition(entry.getSourceColumn());
-      if (entry.getNameId() != UNMAPPED) {
-        x.setIdentifier(names[entry.getNameId()]);
+        .setOriginalFile(sources[getValue(entry, SOURCE)])
+        .setLineNumber(getValue(entry, SOURCE_LINE))
+        .setColumnPosition(getValue(entry, SOURCE_COLUMN));
+      if (getValue(entry, NAME) != UNMAPPED) {
+        x.setIdentifier(names[getValue(entry, NAME)]);
       }
       return x.build();
     }
@@ -496,48 +557,80 @@ public class SourceMapConsumerV3 implements SourceMapConsumer,
 
   /**
    * Reverse the source map; the created mapping will allow us to quickly go
-   * from a source file and line number to a collection of target
-   * OriginalMappings.
+   * from a source file and line number to the entries that map to it.
+   *
+   * The entries are sorted with two counting sorts, first by original line,
+   * then by original file. Both keep the order of entries with the same key,
+   * so the entries for a line stay in the order of the generated file.
    */
   private void createReverseMapping() {
-    reverseSourceMapping =
-        new HashMap<String, Map<Integer, Collection<OriginalMapping>>>();
-
-    for (int targetLine = 0; targetLine < lines.size(); targetLine++) {
-      ArrayList<Entry> entries = lines.get(targetLine);
-
-      if (entries != null) {
-        for (Entry entry : entries) {
-          if (entry.getSourceFileId() != UNMAPPED
-              && entry.getSourceLine() != UNMAPPED) {
-            String originalFile = sources[entry.getSourceFileId()];
-
-            if (!reverseSourceMapping.containsKey(originalFile)) {
-              reverseSourceMapping.put(originalFile,
-                  new HashMap<Integer, Collection<OriginalMapping>>());
-            }
-
-            Map<Integer, Collection<OriginalMapping>> lineToCollectionMap =
-                reverseSourceMapping.get(originalFile);
-
-            int sourceLine = entry.getSourceLine();
+    sourceIds = new HashMap<String, Integer>();
+    int[] canonicalIds = new int[sources.length];
+    for (int i = 0; i < sources.length; i++) {
+      Integer id = sourceIds.get(sources[i]);
+      if (id == null) {
+        id = i;
+        sourceIds.put(sources[i], id);
+      }
+      canonicalIds[i] = id;
+    }
 
-            if (!lineToCollectionMap.containsKey(sourceLine)) {
-              lineToCollectionMap.put(sourceLine,
-                  new ArrayList<OriginalMapping>(1));
-            }
+    int entryCount = lineStarts[getLineCount()];
+    int mappedCount = 0;
+    int maxLine = 0;
+    for (int entry = 0; entry < entryCount; entry++) {
+      if (getValue(entry, SOURCE) != UNMAPPED
+          && getValue(entry, SOURCE_LINE) != UNMAPPED) {
+        mappedCount++;
+        maxLine = Math.max(maxLine, getValue(entry, SOURCE_LINE));
+      }
+    }
 
-            Collection<OriginalMapping> mappings =
-                lineToCollectionMap.get(sourceLine);
+    int[] mapped = new int[mappedCount];
+    int[] keys = new int[mappedCount];
+    mappedCount = 0;
+    for (int entry = 0; entry < entryCount; entry++) {
+      if (getValue(entry, SOURCE) != UNMAPPED
+          && getValue(entry, SOURCE_LINE) != UNMAPPED) {
+        mapped[mappedCount] = entry;
+        keys[mappedCount] = getValue(entry, SOURCE_LINE);
+        mappedCount++;
+      }
+    }
 
-            Builder builder = OriginalMapping.newBuilder().setLineNumber(
-                targetLine).setColumnPosition(entry.getGeneratedColumn());
+    int[] byLine = sortByKey(mapped, keys, maxLine + 1, null);
+    for (int i = 0; i < byLine.length; i++) {
+      keys[i] = canonicalIds[getValue(byLine[i], SOURCE)];
+    }
+    reverseSourceStarts = new int[sources.length + 1];
+    reverseEntries =
+        sortByKey(byLine, keys, sources.length, reverseSourceStarts);
+  }
 
-            mappings.add(builder.build());
-          }
-        }
-      }
+  /**
+   * Sorts items by key, keeping the order of the items with the same key.
+   *
+   * @param keys The key of each item, from 0 to numKeys - 1.
+   * @param starts If not null, receives the index in the result of the
+   *     first item with each key, followed by the number of items.
+   */
+  private static int[] sortByKey(
+      int[] items, int[] keys, int numKeys, int[] starts) {
+    if (starts == null) {
+      starts = new int[numKeys + 1];
+    }
+    for (int key : keys) {
+      starts[key + 1]++;
     }
+    for (int key = 0; key < numKeys; key++) {
+      starts[key + 1] += starts[key];
+    }
+    int[] next = Arrays.copyOf(starts, numKeys);
+    int[] sorted = new int[items.length];
+    for (int i = 0; i < items.length; i++) {
+      sorted[next[keys[i]]++] = items[i];
+    }
+    return sorted;
   }
 
   /**
@@ -569,109 +662,6 @@ public class SourceMapConsumerV3 implements SourceMapConsumer,
     }
   }
 
-  /**
-   * Represents a mapping entry in the source map.
-   */
-  private interface Entry {
-    int getGeneratedColumn();
-    int getSourceFileId();
-    int getSourceLine();
-    int getSourceColumn();
-    int getNameId();
-  }
-
-  /**
-   * This class represents a portion of the generated file, that is not mapped
-   * to a section in the original source.
-   */
-  private static class UnmappedEntry implements Entry {
-    private final int column;
-
-    UnmappedEntry(int column) {
-      this.column = column;
-    }
-
-    @Override
-    public int getGeneratedColumn() {
-      return column;
-    }
-
-    @Override
-    public int getSourceFileId() {
-      return UNMAPPED;
-    }
-
-    @Override
-    public int getSourceLine() {
-      return UNMAPPED;
-    }
-
-    @Override
-    public int getSourceColumn() {
-      return UNMAPPED;
-    }
-
-    @Override
-    public int getNameId() {
-      return UNMAPPED;
-    }
-  }
-
-  /**
-   * This class represents a portion of the generated file, that is mapped
-   * to a section in the original source.
-   */
-  private static class UnnamedEntry extends UnmappedEntry {
-    private final int srcFile;
-    private final int srcLine;
-    private final int srcColumn;
-
-    UnnamedEntry(int column, int srcFile, int srcLine, int srcColumn) {
-      super(column);
-      this.srcFile = srcFile;
-      this.srcLine = srcLine;
-      this.srcColumn = srcColumn;
-    }
-
-    @Override
-    public int getSourceFileId() {
-      return srcFile;
-    }
-
-    @Override
-    public int getSourceLine() {
-      return srcLine;
-    }
-
-    @Override
-    public int getSourceColumn() {
-      return srcColumn;
-    }
-
-    @Override
-    public int getNameId() {
-      return UNMAPPED;
-    }
-  }
-
-  /**
-   * This class represents a portion of the generated file, that is mapped
-   * to a section in the original source, and is associated with a name.
-   */
-  private static class NamedEntry extends UnnamedEntry {
-    private final int name;
-
-    NamedEntry(int column, int srcFile, int srcLine, int srcColumn, int name) {
-      super(column, srcFile, srcLine, srcColumn);
-      this.name = name;
-    }
-
-    @Override
-    public int getNameId() {
-      return name;
-    }
-  }
-
   static interface EntryVisitor {
     void visit(String sourceName,
                String symbolName,
@@ -687,35 +677,31 @@ public class SourceMapConsumerV3 implements SourceMapConsumer,
     FilePosition sourceStartPosition = null;
     FilePosition startPosition = null;
 
-    final int lineCount = lines.size();
+    final int lineCount = getLineCount();
     for (int i = 0; i < lineCount; i++) {
-      ArrayList<Entry> line = lines.get(i);
-      if (line != null) {
-        final int entryCount = line.size();
-        for (int j = 0; j < entryCount; j++) {
-          Entry entry = line.get(j);
-          if (pending) {
-            FilePosition endPosition = new FilePosition(
-                i, entry.getGeneratedColumn());
-            visitor.visit(
-                sourceName,
-                symbolName,
-                sourceStartPosition,
-                startPosition,
-                endPosition);
-            pending = false;
-          }
+      final int end = lineStarts[i + 1];
+      for (int entry = lineStarts[i]; entry < end; entry++) {
+        if (pending) {
+          FilePosition endPosition = new FilePosition(
+              i, getValue(entry, COLUMN));
+          visitor.visit(
+              sourceName,
+              symbolName,
+              sourceStartPosition,
+              startPosition,
+              endPosition);
+          pending = false;
+        }
 
-          if (entry.getSourceFileId() != UNMAPPED) {
-            pending = true;
-            sourceName = sources[entry.getSourceFileId()];
-            symbolName = (entry.getNameId() != UNMAPPED)
-                ? names[entry.getNameId()] : null;
-            sourceStartPosition = new FilePosition(
-                entry.getSourceLine(), entry.getSourceColumn());
-            startPosition = new FilePosition(
-                i, entry.getGeneratedColumn());
-          }
+        if (getValue(entry, SOURCE) != UNMAPPED) {
+          pending = true;
+          sourceName = sources[getValue(entry, SOURCE)];
+          symbolName = (getValue(entry, NAME) != UNMAPPED)
+              ? names[getValue(entry, NAME)] : null;
+          sourceStartPosition = new FilePosition(
+              getValue(entry, SOURCE_LINE), getValue(entry, SOURCE_COLUMN));
+          startPosition = new FilePosition(
+              i, getValue(entry, COLUMN));
         }
       }
     }
@@ -17,13 +17,11 @@
 package com.google.debugging.sourcemap;
 
 import com.google.common.base.Preconditions;
-import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.debugging.sourcemap.SourceMapConsumerV3.EntryVisitor;
 
 import java.io.IOException;
-import java.util.ArrayDeque;
-import java.util.Deque;
+import java.util.Arrays;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -35,17 +33,54 @@ import javax.annotation.Nullable;
  * Collects information mapping the generated (compiled) source back to
  * its original source for debugging purposes.
  *
+ * The mappings are encoded as they are added, rather than kept until the
+ * source map is written: the segments of the generated code that come
+ * before a mapping are known once the mapping is added, as the mappings are
+ * added in the order of a pre-order traversal. Only the mappings that
+ * contain the last one are kept, to encode the segments they end with.
+ *
  * @author johnlenz@google.com (John Lenz)
  */
 public class SourceMapGeneratorV3 implements SourceMapGenerator {
 
   private static final int UNMAPPED = -1;
 
+  // The positions of an open mapping, in the order they are stored in.
+  private static final int START_LINE = 0;
+  private static final int START_COLUMN = 1;
+  private static final int END_LINE = 2;
+  private static final int END_COLUMN = 3;
+  private static final int SOURCE_LINE = 4;
+  private static final int SOURCE_COLUMN = 5;
+  private static final int POSITION_COUNT = 6;
+
+  /**
+   * The mappings that contain the last mapping added, outermost first: their
+   * positions, POSITION_COUNT of them for each mapping, and their source and
+   * original names.
+   */
+  private int[] openPositions = new int[POSITION_COUNT * 16];
+  private String[] openSourceFiles = new String[16];
+  private String[] openOriginalNames = new String[16];
+  private int openCount = 0;
+
+  /**
+   * The encoded entries of the first line of the generated code, without the
+   * column of the first entry. The first line is kept on its own, as the
+   * wrapper prefix may move it after the mappings are added.
+   */
+  private final StringBuilder firstLineEntries = new StringBuilder();
+
+  /**
+   * The encoded entries of the lines after the first, starting with the end
+   * of the first line.
+   */
+  private final StringBuilder lineEntries = new StringBuilder();
 
   /**
-   * A pre-order traversal ordered list of mappings stored in this map.
+   * The state of the encoding of the mappings.
    */
-  private List<Mapping> mappings = Lists.newArrayList();
+  private MappingEncoder encoder = new MappingEncoder();
 
   /**
    * A map of source names to source name index
@@ -70,22 +105,26 @@ public class SourceMapGeneratorV3 implements SourceMapGenerator {
   private int lastSourceFileIndex = -1;
 
   /**
-   * For validation store the last mapping added.
+   * For validation store the start of the last mapping added.
    */
-  private Mapping lastMapping;
+  private boolean hasMappings = false;
+  private int lastStartLine;
+  private int lastStartColumn;
 
   /**
    * The position that the current source map is offset in the
    * buffer being used to generated the compiled source file.
    */
-  private FilePosition offsetPosition = new FilePosition(0, 0);
+  private int offsetLine = 0;
+  private int offsetColumn = 0;
 
   /**
    * The position that the current source map is offset in the
    * generated the compiled source file by the addition of a
    * an output wrapper prefix.
    */
-  private FilePosition prefixPosition = new FilePosition(0, 0);
+  private int prefixLine = 0;
+  private int prefixColumn = 0;
 
 
   /**
@@ -93,14 +132,19 @@ public class SourceMapGeneratorV3 implements SourceMapGenerator {
    */
   @Override
   public void reset() {
-    mappings.clear();
-    lastMapping = null;
+    openCount = 0;
+    firstLineEntries.setLength(0);
+    lineEntries.setLength(0);
+    encoder = new MappingEncoder();
+    hasMappings = false;
     sourceFileMap.clear();
     originalNameMap.clear();
     lastSourceFile = null;
     lastSourceFileIndex = -1;
-    offsetPosition = new FilePosition(0, 0);
-    prefixPosition = new FilePosition(0, 0);
+    offsetLine = 0;
+    offsetColumn = 0;
+    prefixLine = 0;
+    prefixColumn = 0;
   }
 
   /**
@@ -134,7 +178,8 @@ public class SourceMapGeneratorV3 implements SourceMapGenerator {
       }
     }
 
-    prefixPosition = new FilePosition(prefixLine, prefixIndex);
+    this.prefixLine = prefixLine;
+    this.prefixColumn = prefixIndex;
   }
 
   /**
@@ -151,7 +196,8 @@ public class SourceMapGeneratorV3 implements SourceMapGenerator {
   public void setStartingPosition(int offsetLine, int offsetIndex) {
     Preconditions.checkState(offsetLine >= 0);
     Preconditions.checkState(offsetIndex >= 0);
-    offsetPosition = new FilePosition(offsetLine, offsetIndex);
+    this.offsetLine = offsetLine;
+    this.offsetColumn = offsetIndex;
   }
 
   /**
@@ -170,59 +216,86 @@ public class SourceMapGeneratorV3 implements SourceMapGenerator {
       return;
     }
 
-    FilePosition adjustedStart = startPosition;
-    FilePosition adjustedEnd = endPosition;
-
-    if (offsetPosition.getLine() != 0
-        || offsetPosition.getColumn() != 0) {
-      // If the mapping is found on the first line, we need to offset
-      // its character position by the number of characters found on
-      // the *last* line of the source file to which the code is
-      // being generated.
-      int offsetLine = offsetPosition.getLine();
-      int startOffsetPosition = offsetPosition.getColumn();
-      int endOffsetPosition = offsetPosition.getColumn();
-
-      if (startPosition.getLine() > 0) {
-        startOffsetPosition = 0;
-      }
-
-      if (endPosition.getLine() > 0) {
-        endOffsetPosition = 0;
-      }
-
-      adjustedStart = new FilePosition(
-          startPosition.getLine() + offsetLine,
-          startPosition.getColumn() + startOffsetPosition);
-
-      adjustedEnd = new FilePosition(
-          endPosition.getLine() + offsetLine,
-          endPosition.getColumn() + endOffsetPosition);
+    int startLine = startPosition.getLine();
+    int startColumn = startPosition.getColumn();
+    int endLine = endPosition.getLine();
+    int endColumn = endPosition.getColumn();
+
+    // If the mapping is found on the first line, we need to offset
+    // its character position by the number of characters found on
+    // the *last* line of the source file to which the code is
+    // being generated.
+    if (startLine == 0) {
+      startColumn += offsetColumn;
     }
-
-    // Create the new mapping.
-    Mapping mapping = new Mapping();
-    mapping.sourceFile = sourceName;
-    mapping.originalPosition = sourceStartPosition;
-    mapping.originalName = symbolName;
-    mapping.startPosition = adjustedStart;
-    mapping.endPosition = adjustedEnd;
+    if (endLine == 0) {
+      endColumn += offsetColumn;
+    }
+    startLine += offsetLine;
+    endLine += offsetLine;
 
     // Validate the mappings are in a proper order.
-    if (lastMapping != null) {
-      int lastLine = lastMapping.startPosition.getLine();
-      int lastColumn = lastMapping.startPosition.getColumn();
-      int nextLine = mapping.startPosition.getLine();
-      int nextColumn = mapping.startPosition.getColumn();
-      Preconditions.checkState(nextLine > lastLine
-          || (nextLine == lastLine && nextColumn >= lastColumn),
+    if (hasMappings) {
+      Preconditions.checkState(startLine > lastStartLine
+          || (startLine == lastStartLine && startColumn >= lastStartColumn),
           "Incorrect source mappings order, previous : (%s,%s)\n"
           + "new : (%s,%s)\nnode : %s",
-          lastLine, lastColumn, nextLine, nextColumn);
+          lastStartLine, lastStartColumn, startLine, startColumn);
+    }
+    hasMappings = true;
+    lastStartLine = startLine;
+    lastStartColumn = startColumn;
+
+    // Find the closest ancestor of the new mapping:
+    // An overlapping mapping is an ancestor of the new mapping, any
+    // non-overlapping mappings are siblings (or cousins) and must be
+    // closed in the reverse order of when they encountered.
+    while (openCount > 0
+        && !isOverlapped(openCount - 1, startLine, startColumn)) {
+      openCount--;
+      encoder.maybeVisit(openCount);
+    }
+
+    // Any gaps between the current line position and the start of the
+    // new mapping belong to the parent.
+    encoder.maybeVisitParent(openCount - 1, startLine, startColumn);
+
+    openMapping(sourceName, symbolName, sourceStartPosition,
+        startLine, startColumn, endLine, endColumn);
+  }
+
+  /**
+   * @return Whether the open mapping does not end before the given start.
+   */
+  private boolean isOverlapped(int mapping, int startLine, int startColumn) {
+    int endLine = getPosition(mapping, END_LINE);
+    int endColumn = getPosition(mapping, END_COLUMN);
+    return (endLine == startLine && endColumn >= startColumn)
+        || endLine > startLine;
+  }
+
+  private void openMapping(String sourceName, String symbolName,
+      FilePosition sourceStartPosition,
+      int startLine, int startColumn, int endLine, int endColumn) {
+    if (openCount == openSourceFiles.length) {
+      openPositions = Arrays.copyOf(openPositions, openPositions.length * 2);
+      openSourceFiles = Arrays.copyOf(openSourceFiles, openCount * 2);
+      openOriginalNames = Arrays.copyOf(openOriginalNames, openCount * 2);
     }
+    int offset = openCount * POSITION_COUNT;
+    openPositions[offset + START_LINE] = startLine;
+    openPositions[offset + START_COLUMN] = startColumn;
+    openPositions[offset + END_LINE] = endLine;
+    openPositions[offset + END_COLUMN] = endColumn;
+    openPositions[offset + SOURCE_LINE] = sourceStartPosition.getLine();
+    openPositions[offset + SOURCE_COLUMN] = sourceStartPosition.getColumn();
+    openSourceFiles[openCount] = sourceName;
+    openOriginalNames[openCount] = symbolName;
+    openCount++;
+  }
 
-    lastMapping = mapping;
-    mappings.add(mapping);
+  private int getPosition(int mapping, int position) {
+    return openPositions[mapping * POSITION_COUNT + position];
   }
 
   class ConsumerEntryVisitor implements EntryVisitor {
@@ -273,7 +346,26 @@ public class SourceMapGeneratorV3 implements SourceMapGenerator {
    */
   @Override
   public void appendTo(Appendable out, String name) throws IOException {
-    int maxLine = prepMappings();
+    // Close the mappings that are still open. This is done on a copy of the
+    // state of the encoding, as more mappings may be added afterwards.
+    int firstLineLength = firstLineEntries.length();
+    int lineLength = lineEntries.length();
+    MappingEncoder finished = new MappingEncoder(encoder);
+    try {
+      for (int i = openCount - 1; i >= 0; i--) {
+        finished.maybeVisit(i);
+      }
+      appendTo(out, name, finished);
+    } finally {
+      firstLineEntries.setLength(firstLineLength);
+      lineEntries.setLength(lineLength);
+    }
+  }
+
+  private void appendTo(Appendable out, String name, MappingEncoder finished)
+      throws IOException {
+    // Adjust for the prefix.
+    int maxLine = finished.maxLine + prefixLine;
 
     // Add the header fields.
     out.append("{\n");
@@ -283,9 +375,7 @@ public class SourceMapGeneratorV3 implements SourceMapGenerator {
 
     // Add the mappings themselves.
     appendFieldStart(out, "mappings");
-    // out.append("[");
-    (new LineMapper(out)).appendLineMappings();
-    // out.append("]");
+    finished.appendLineMappings(out);
     appendFieldEnd(out);
 
     // Files names
@@ -372,232 +462,6 @@ public class SourceMapGeneratorV3 implements SourceMapGenerator {
      throws IOException {
   }
 
-  /**
-   * Assigns sequential ids to used mappings, and returns the last line mapped.
-   */
-  private int prepMappings() throws IOException {
-    // Mark any unused mappings.
-    (new MappingTraversal()).traverse(new UsedMappingCheck());
-
-    // Renumber used mappings and keep track of the last line.
-    int id = 0;
-    int maxLine = 0;
-    int sourceId = 0;
-    int nameId = 0;
-    for (Mapping m : mappings) {
-      if (m.used) {
-        m.id = id++;
-        int endPositionLine = m.endPosition.getLine();
-        maxLine = Math.max(maxLine, endPositionLine);
-      }
-    }
-
-    // Adjust for the prefix.
-    return maxLine + prefixPosition.getLine();
-  }
-
-  /**
-   * A mapping from a given position in an input source file to a given position
-   * in the generated code.
-   */
-  static class Mapping {
-    /**
-     * A unique ID for this mapping for record keeping purposes.
-     */
-    int id = UNMAPPED;
-
-    /**
-     * The source file index.
-     */
-    String sourceFile;
-
-    /**
-     * The position of the code in the input source file. Both
-     * the line number and the character index are indexed by
-     * 1 for legacy reasons via the Rhino Node class.
-     */
-    FilePosition originalPosition;
-
-    /**
-     * The starting position of the code in the generated source
-     * file which this mapping represents. Indexed by 0.
-     */
-    FilePosition startPosition;
-
-    /**
-     * The ending position of the code in the generated source
-     * file which this mapping represents. Indexed by 0.
-     */
-    FilePosition endPosition;
-
-    /**
-     * The original name of the token found at the position
-     * represented by this mapping (if any).
-     */
-    String originalName;
-
-    /**
-     * Whether the mapping is actually used by the source map.
-     */
-    boolean used = false;
-  }
-
-  /**
-   * Mark any visited mapping as "used".
-   */
-  private class UsedMappingCheck implements MappingVisitor {
-    /**
-     * @throws IOException
-     */
-    @Override
-    public void visit(Mapping m, int line, int col, int nextLine, int nextCol)
-        throws IOException {
-      if (m != null) {
-        m.used = true;
-      }
-    }
-  }
-
-  private interface MappingVisitor {
-    /**
-     * @param m The mapping for the current code segment. null if the segment
-     *     is unmapped.
-     * @param line The starting line for this code segment.
-     * @param col The starting column for this code segment.
-     * @param endLine The ending line
-     * @param endCol The ending column
-     * @throws IOException
-     */
-    void visit(Mapping m, int line, int col, int endLine, int endCol)
-        throws IOException;
-  }
-
-  /**
-   * Walk the mappings and visit each segment of the mappings, unmapped
-   * segments are visited with a null mapping, unused mapping are not visited.
-   */
-  private class MappingTraversal {
-    // The last line and column written
-    private int line;
-    private int col;
-
-    MappingTraversal() {
-    }
-
-    // Append the line mapping entries.
-    void traverse(MappingVisitor v) throws IOException {
-      // The mapping list is ordered as a pre-order traversal.  The mapping
-      // positions give us enough information to rebuild the stack and this
-      // allows the building of the source map in O(n) time.
-      Deque<Mapping> stack = new ArrayDeque<Mapping>();
-      for (Mapping m : mappings) {
-        // Find the closest ancestor of the current mapping:
-        // An overlapping mapping is an ancestor of the current mapping, any
-        // non-overlapping mappings are siblings (or cousins) and must be
-        // closed in the reverse order of when they encountered.
-        while (!stack.isEmpty() && !isOverlapped(stack.peek(), m)) {
-          Mapping previous = stack.pop();
-          maybeVisit(v, previous);
-        }
-
-        // Any gaps between the current line position and the start of the
-        // current mapping belong to the parent.
-        Mapping parent = stack.peek();
-        maybeVisitParent(v, parent, m);
-
-        stack.push(m);
-      }
-
-      // There are no more children to be had, simply close the remaining
-      // mappings in the reverse order of when they encountered.
-      while (!stack.isEmpty()) {
-        Mapping m = stack.pop();
-        maybeVisit(v, m);
-      }
-    }
-
-    /**
-     * @return The line adjusted for the prefix position.
-     */
-    private int getAdjustedLine(FilePosition p) {
-      return p.getLine() + prefixPosition.getLine();
-    }
-
-    /**
-     * @return The column adjusted for the prefix position.
-     */
-    private int getAdjustedCol(FilePosition p) {
-      int rawLine = p.getLine();
-      int rawCol = p.getColumn();
-      // Only the first line needs the character position adjusted.
-      return (rawLine != 0)
-          ? rawCol : rawCol + prefixPosition.getColumn();
-    }
-
-    /**
-     * @return Whether m1 ends before m2 starts.
-     */
-    private boolean isOverlapped(Mapping m1, Mapping m2) {
-      // No need to use adjusted values here, relative positions are sufficient.
-      int l1 = m1.endPosition.getLine();
-      int l2 = m2.startPosition.getLine();
-      int c1 = m1.endPosition.getColumn();
-      int c2 = m2.startPosition.getColumn();
-
-      return (l1 == l2 && c1 >= c2) || l1 > l2;
-    }
-
-    /**
-     * Write any needed entries from the current position to the end of the
-     * provided mapping.
-     */
-    private void maybeVisit(MappingVisitor v, Mapping m) throws IOException {
-      int nextLine = getAdjustedLine(m.endPosition);
-      int nextCol = getAdjustedCol(m.endPosition);
-      // If this anything remaining in this mapping beyond the
-      // current line and column position, write it out now.
-      if (line < nextLine || (line == nextLine && col < nextCol)) {
-        visit(v, m, nextLine, nextCol);
-      }
-    }
-
-    /**
-     * Write any needed entries to complete the provided mapping.
-     */
-    private void maybeVisitParent(MappingVisitor v, Mapping parent, Mapping m)
-        throws IOException {
-      int nextLine = getAdjustedLine(m.startPosition);
-      int nextCol = getAdjustedCol(m.startPosition);
-      // If the previous value is null, no mapping exists.
-      Preconditions.checkState(line < nextLine || col <= nextCol);
-      if (line < nextLine || (line == nextLine && col < nextCol)) {
-        visit(v, parent, nextLine, nextCol);
-      }
-    }
-
-    /**
-     * Write any entries needed between the current position the next position
-     * and update the current position.
-     */
-    private void visit(MappingVisitor v, Mapping m,
-        int nextLine, int nextCol)
-        throws IOException {
-      Preconditions.checkState(line <= nextLine);
-      Preconditions.checkState(line < nextLine || col < nextCol);
-
-      if (line == nextLine && col == nextCol) {
-        // Nothing to do.
-        Preconditions.checkState(false);
-        return;
-      }
-
-      v.visit(m, line, col, nextLine, nextCol);
-
-      line = nextLine;
-      col = nextCol;
-    }
-  }
-
   /**
    * Appends the index source map to the given buffer.
    *
@@ -681,9 +545,18 @@ public class SourceMapGeneratorV3 implements SourceMapGenerator {
     return originalNameIndex;
   }
 
-  private class LineMapper implements MappingVisitor {
-    // The destination.
-    private final Appendable out;
+  /**
+   * Encodes the segments of the generated code as the mappings that cover
+   * them are known, and writes out the line mappings.
+   */
+  private class MappingEncoder {
+    // The line and column up to which the segments have been encoded,
+    // without the prefix.
+    private int line = 0;
+    private int col = 0;
+
+    // The last line of the used mappings.
+    private int maxLine = 0;
 
     private int previousLine = -1;
     private int previousColumn = 0;
@@ -694,40 +567,98 @@ public class SourceMapGeneratorV3 implements SourceMapGenerator {
     private int previousSourceColumn;
     private int previousNameId;
 
-    LineMapper(Appendable out) {
-      this.out = out;
+    // Whether the first segment is unmapped, and the column of the first
+    // entry in the first line that maps to code, or UNMAPPED.
+    private boolean startsUnmapped = false;
+    private int firstColumn = UNMAPPED;
+
+    MappingEncoder() {
+    }
+
+    MappingEncoder(MappingEncoder other) {
+      line = other.line;
+      col = other.col;
+      maxLine = other.maxLine;
+      previousLine = other.previousLine;
+      previousColumn = other.previousColumn;
+      previousSourceFileId = other.previousSourceFileId;
+      previousSourceLine = other.previousSourceLine;
+      previousSourceColumn = other.previousSourceColumn;
+      previousNameId = other.previousNameId;
+      startsUnmapped = other.startsUnmapped;
+      firstColumn = other.firstColumn;
     }
 
     /**
-     * As each segment is visited write out the appropriate line mapping.
+     * Encodes any needed entries from the current position to the end of
+     * the open mapping.
      */
-    @Override
-    public void visit(Mapping m, int line, int col, int nextLine, int nextCol)
-      throws IOException {
+    void maybeVisit(int mapping) {
+      int nextLine = getPosition(mapping, END_LINE);
+      int nextCol = getPosition(mapping, END_COLUMN);
+      // If this anything remaining in this mapping beyond the
+      // current line and column position, write it out now.
+      if (line < nextLine || (line == nextLine && col < nextCol)) {
+        visit(mapping, nextLine, nextCol);
+      }
+    }
 
-      int id = (m != null) ? m.id : UNMAPPED;
+    /**
+     * Encodes any needed entries of the parent of a mapping, up to the start
+     * of the mapping.
+     *
+     * @param parent The open mapping, or UNMAPPED if there is none.
+     */
+    void maybeVisitParent(int parent, int nextLine, int nextCol) {
+      // If the previous value is null, no mapping exists.
+      Preconditions.checkState(line < nextLine || col <= nextCol);
+      if (line < nextLine || (line == nextLine && col < nextCol)) {
+        visit(parent, nextLine, nextCol);
+      }
+    }
+
+    /**
+     * Encodes the segment from the current position to the next position,
+     * and updates the current position.
+     *
+     * @param mapping The open mapping of the segment, or UNMAPPED if the
+     *     segment is unmapped.
+     */
+    private void visit(int mapping, int nextLine, int nextCol) {
+      Preconditions.checkState(line <= nextLine);
+      Preconditions.checkState(line < nextLine || col < nextCol);
+
+      if (mapping != UNMAPPED) {
+        maxLine = Math.max(maxLine, getPosition(mapping, END_LINE));
+      }
 
       if (previousLine != line) {
         previousColumn = 0;
       }
 
-      if (line != nextLine || col != nextCol) {
+      if (line == 0 && col == 0 && mapping == UNMAPPED) {
+        // The segment before the first mapping. The prefix decides how it
+        // is written out.
+        startsUnmapped = true;
+      } else if (line == 0 && firstColumn == UNMAPPED) {
+        firstColumn = col;
+        writeEntry(firstLineEntries, mapping, col, false);
+      } else {
+        StringBuilder out = (line == 0) ? firstLineEntries : lineEntries;
         if (previousLine == line) { // not the first entry for the line
           out.append(',');
         }
-        writeEntry(m, col);
-        previousLine = line;
-        previousColumn = col;
+        writeEntry(out, mapping, col, true);
       }
+      previousLine = line;
+      previousColumn = col;
 
-      for (int i = line; i <= nextLine; i++) {
-        if (i == nextLine) {
-          break;
-        }
-
-        closeLine(false);
-        openLine(false);
+      for (int i = line; i < nextLine; i++) {
+        lineEntries.append(';');
       }
+
+      line = nextLine;
+      col = nextCol;
     }
 
     /**
@@ -735,64 +666,70 @@ public class SourceMapGeneratorV3 implements SourceMapGenerator {
      * associated mapping.
      * The values are stored as relative to the last seen values for each
      * field and encoded as Base64VLQs.
+     *
+     * @param writeColumn Whether to write the column, which is left out for
+     *     the first entry of the first line.
      */
-    void writeEntry(Mapping m, int column) throws IOException {
-      // The relative generated column number
-      Base64VLQ.encode(out, column - previousColumn);
-      previousColumn = column;
-      if (m != null) {
+    private void writeEntry(
+        StringBuilder out, int mapping, int column, boolean writeColumn) {
+      if (writeColumn) {
+        // The relative generated column number
+        Base64VLQ.encode(out, column - previousColumn);
+      }
+      if (mapping != UNMAPPED) {
         // The relative source file id
-        int sourceId = getSourceId(m.sourceFile);
+        int sourceId = getSourceId(openSourceFiles[mapping]);
         Base64VLQ.encode(out, sourceId - previousSourceFileId);
         previousSourceFileId = sourceId;
 
         // The relative source file line and column
-        int srcline = m.originalPosition.getLine();
-        int srcColumn = m.originalPosition.getColumn();
+        int srcline = getPosition(mapping, SOURCE_LINE);
+        int srcColumn = getPosition(mapping, SOURCE_COLUMN);
         Base64VLQ.encode(out, srcline - previousSourceLine);
         previousSourceLine = srcline;
 
         Base64VLQ.encode(out, srcColumn - previousSourceColumn);
         previousSourceColumn = srcColumn;
 
-        if (m.originalName != null) {
+        String originalName = openOriginalNames[mapping];
+        if (originalName != null) {
           // The relative id for the associated symbol name
-          int nameId = getNameId(m.originalName);
+          int nameId = getNameId(originalName);
           Base64VLQ.encode(out, (nameId - previousNameId));
           previousNameId = nameId;
         }
       }
     }
 
-    // Append the line mapping entries.
-    void appendLineMappings() throws IOException {
-      // Start the first line.
-      openLine(true);
-
-      (new MappingTraversal()).traverse(this);
-
-      // And close the final line.
-      closeLine(true);
-    }
-
     /**
-     * Begin the entry for a new line.
+     * Appends the line mapping entries, moved by the prefix.
      */
-    private void openLine(boolean firstEntry) throws IOException {
-      if (firstEntry) {
-        out.append('\"');
+    void appendLineMappings(Appendable out) throws IOException {
+      out.append('\"');
+      if (hasMappings) {
+        // With a prefix, the code of the first line no longer starts the
+        // generated file, and the prefix is unmapped.
+        boolean writesUnmapped =
+            startsUnmapped || prefixLine != 0 || prefixColumn != 0;
+        if (writesUnmapped) {
+          Base64VLQ.encode(out, 0);
+        }
+        for (int i = 0; i < prefixLine; i++) {
+          out.append(';');
+        }
+        if (firstColumn != UNMAPPED) {
+          if (writesUnmapped && prefixLine == 0) {
+            out.append(',');
+          }
+          // Only the first line needs the character position adjusted.
+          Base64VLQ.encode(out, firstColumn + prefixColumn);
+          out.append(firstLineEntries);
+        }
+        out.append(lineEntries);
       }
-    }
-
-    /**
-     * End the entry for a line.
-     */
-    private void closeLine(boolean finalEntry) throws IOException {
+      // And close the final line.
       out.append(';');
-      if (finalEntry) {
-        out.append('\"');
-      }
+      out.append('\"');
     }
   }
-
 }
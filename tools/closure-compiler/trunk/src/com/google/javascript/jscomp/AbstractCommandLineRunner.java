@@ -45,7 +45,10 @@ import java.io.PrintStream;
 import java.io.StringWriter;
 import java.io.Writer;
 import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -112,6 +115,9 @@ abstract class AbstractCommandLineRunner<A extends Compiler,
 
   private static final String OUTPUT_WRAPPER_MARKER = "%output%";
 
+  // How often the inputs are looked at for changes with --watch.
+  private static final long WATCH_INTERVAL_MS = 250;
+
   private final RunTimeStats runTimeStats = new RunTimeStats();
 
   AbstractCommandLineRunner() {
@@ -294,17 +300,45 @@ abstract class AbstractCommandLineRunner<A extends Compiler,
     }
 
     options.acceptConstKeyword = config.acceptConstKeyword;
+
+    if (!config.perfReportFile.isEmpty()
+        && options.tracer == CompilerOptions.TracerMode.OFF) {
+      options.tracer = CompilerOptions.TracerMode.FAST;
+    }
   }
 
   final protected A getCompiler() {
     return compiler;
   }
 
+  /**
+   * Returns whether the compiled code is written to files rather than to
+   * the output stream of this runner.
+   */
+  boolean writesOutputToFiles() {
+    return !config.jsOutputFile.isEmpty() || !config.module.isEmpty();
+  }
+
   /**
    * Runs the Compiler and calls System.exit() with the exit status of the
    * compiler.
    */
   final public void run() {
+    int result = execute();
+
+    if (testMode) {
+      exitCodeReceiverForTesting.apply(result);
+    } else {
+      System.exit(result);
+    }
+  }
+
+  /**
+   * Runs the Compiler and returns its exit status. Unlike {@link #run()},
+   * this does not exit the VM, so that several compile jobs can run in the
+   * same process.
+   */
+  final int execute() {
     int result = 0;
     int runs = 1;
     if (config.computePhaseOrdering) {
@@ -317,11 +351,14 @@ abstract class AbstractCommandLineRunner<A extends Compiler,
         result = doRun();
         runTimeStats.recordEndRun();
       }
+      if (config.watch) {
+        watchInputs();
+      }
     } catch (AbstractCommandLineRunner.FlagUsageException e) {
-      System.err.println(e.getMessage());
+      err.println(e.getMessage());
       result = -1;
     } catch (Throwable t) {
-      t.printStackTrace();
+      t.printStackTrace(err);
       result = -2;
     }
 
@@ -337,11 +374,7 @@ abstract class AbstractCommandLineRunner<A extends Compiler,
       throw Throwables.propagate(e);
     }
 
-    if (testMode) {
-      exitCodeReceiverForTesting.apply(result);
-    } else {
-      System.exit(result);
-    }
+    return result;
   }
 
   /**
@@ -590,10 +623,12 @@ abstract class AbstractCommandLineRunner<A extends Compiler,
   }
 
   /**
-   * Writes code to an output stream, optionally wrapping it in an arbitrary
+   * Writes the code of a module, or of the whole program if the module is
+   * null, to an output stream, optionally wrapping it in an arbitrary
    * wrapper that contains a placeholder where the code should be inserted.
+   * The code is written as it is generated.
    */
-  static void writeOutput(Appendable out, Compiler compiler, String code,
+  static void writeOutput(Appendable out, Compiler compiler, JSModule module,
       String wrapper, String codePlaceholder) throws IOException {
     int pos = wrapper.indexOf(codePlaceholder);
     if (pos != -1) {
@@ -604,7 +639,7 @@ abstract class AbstractCommandLineRunner<A extends Compiler,
         out.append(prefix);
       }
 
-      out.append(code);
+      writeCode(out, compiler, module);
 
       int suffixStart = pos + codePlaceholder.length();
       if (suffixStart != wrapper.length()) {
@@ -616,16 +651,25 @@ abstract class AbstractCommandLineRunner<A extends Compiler,
 
       // If we have a source map, adjust its offsets to match
       // the code WITHIN the wrapper.
-      if (compiler != null && compiler.getSourceMap() != null) {
+      if (compiler.getSourceMap() != null) {
         compiler.getSourceMap().setWrapperPrefix(prefix);
       }
 
     } else {
-      out.append(code);
+      writeCode(out, compiler, module);
       out.append('\n');
     }
   }
 
+  private static void writeCode(Appendable out, Compiler compiler,
+      JSModule module) throws IOException {
+    if (module == null) {
+      compiler.toSource(out);
+    } else {
+      compiler.toSource(module, out);
+    }
+  }
+
   /**
    * Creates any directories necessary to write a file that will have a given
    * path prefix.
@@ -685,6 +729,10 @@ abstract class AbstractCommandLineRunner<A extends Compiler,
       }
     }
 
+    if (!config.perfReportFile.isEmpty()) {
+      outputPerfReport();
+    }
+
     int errCode = processResults(result, modules, options);
     // Flush the output if we are writing to a file.
     // We can't close yet, because we may need to write phase ordering
@@ -748,7 +796,7 @@ abstract class AbstractCommandLineRunner<A extends Compiler,
     } else if (result.success) {
       if (modules == null) {
         writeOutput(
-            jsOutput, compiler, compiler.toSource(), config.outputWrapper,
+            jsOutput, compiler, null, config.outputWrapper,
             OUTPUT_WRAPPER_MARKER);
 
         // Output the source map if requested.
@@ -780,7 +828,7 @@ abstract class AbstractCommandLineRunner<A extends Compiler,
             compiler.getSourceMap().reset();
           }
 
-          writeOutput(writer, compiler, compiler.toSource(m),
+          writeOutput(writer, compiler, m,
               moduleWrappers.get(m.getName()), "%s");
 
           if (options.sourceMapOutputPath != null) {
@@ -1032,6 +1080,119 @@ abstract class AbstractCommandLineRunner<A extends Compiler,
     return basePath;
   }
 
+  /**
+   * Checks the inputs again whenever one of them changes, until the thread
+   * is interrupted. Only the input that changed is parsed and checked again,
+   * with the hot-swap versions of the checks. The errors and warnings of
+   * each check are printed, but no output is written.
+   *
+   * An input that was written again with the same content is not checked
+   * again, so the types declared by the inputs that did not change are
+   * kept by the checker across edits.
+   */
+  private void watchInputs() throws FlagUsageException, IOException {
+    List<String> jsFiles = config.js;
+    if (jsFiles.isEmpty() || jsFiles.contains("-")) {
+      throw new FlagUsageException("--watch cannot be used with stdin.");
+    }
+    Map<String, Long> lastModified = Maps.newHashMap();
+    Map<String, byte[]> checkedDigests = Maps.newHashMap();
+    for (String filename : jsFiles) {
+      lastModified.put(filename, new File(filename).lastModified());
+      checkedDigests.put(filename, digestInput(filename));
+    }
+
+    // The checks need the code as it was before the optimizations, so they
+    // run on a compiler of their own that stops after them. The errors of
+    // its first run were already printed by the full compilation.
+    A checker = createCompiler();
+    B options = createOptions();
+    setRunOptions(options);
+    options.ideMode = true;
+    checker.setErrorManager(new BasicErrorManager() {
+      @Override
+      public void println(CheckLevel level, JSError error) {}
+
+      @Override
+      protected void printSummary() {}
+    });
+    List<JSSourceFile> externs = createExterns();
+    if (!config.module.isEmpty()) {
+      checker.compileModules(
+          externs, createJsModules(config.module, jsFiles), options);
+    } else {
+      checker.compile(externs, createSourceInputs(jsFiles), options);
+    }
+
+    while (true) {
+      try {
+        Thread.sleep(WATCH_INTERVAL_MS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+      for (String filename : jsFiles) {
+        long modified = new File(filename).lastModified();
+        if (modified != lastModified.get(filename)) {
+          lastModified.put(filename, modified);
+          byte[] digest = digestInput(filename);
+          if (digest == null
+              || !Arrays.equals(digest, checkedDigests.get(filename))) {
+            checkedDigests.put(filename, digest);
+            recheckInput(checker, options, filename);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns a digest of the content of an input, or null if it cannot be
+   * read, in which case checking it again reports the error.
+   */
+  private static byte[] digestInput(String filename) {
+    try {
+      return MessageDigest.getInstance("SHA-1").digest(
+          Files.toByteArray(new File(filename)));
+    } catch (IOException e) {
+      return null;
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /** Checks an input that changed again, and prints its errors. */
+  private void recheckInput(A checker, B options, String filename) {
+    PrintStream errStream = getErrorPrintStream();
+    PrintStreamErrorManager printer = new PrintStreamErrorManager(
+        options.errorFormat.toFormatter(
+            checker, options.shouldColorizeErrorOutput()),
+        errStream);
+    printer.setSummaryDetailLevel(options.summaryDetailLevel);
+    checker.setErrorManager(printer);
+    errStream.println("Checking " + filename);
+    checker.replaceScript(
+        new JsAst(JSSourceFile.fromFile(filename, inputCharset)));
+    printer.generateReport();
+    errStream.flush();
+  }
+
+  /**
+   * Outputs what the performance tracker of the compiler recorded about the
+   * passes, as JSON. Nothing is written if no inputs were parsed.
+   */
+  private void outputPerfReport() throws IOException {
+    if (compiler.tracker == null) {
+      return;
+    }
+    Writer out = fileNameToOutputWriter(config.perfReportFile);
+    try {
+      compiler.tracker.writeJsonReport(out);
+    } finally {
+      out.close();
+    }
+  }
+
   /**
    * Outputs the variable and property name maps for the specified compiler if
    * the proper FLAGS are set.
@@ -1507,6 +1668,28 @@ abstract class AbstractCommandLineRunner<A extends Compiler,
       return this;
     }
 
+    private String perfReportFile = "";
+
+    /**
+     * File where the time, memory and code changes of every pass should be
+     * reported, as JSON
+     */
+    CommandLineConfig setPerfReportFile(String perfReportFile) {
+      this.perfReportFile = perfReportFile;
+      return this;
+    }
+
+    private boolean watch = false;
+
+    /**
+     * Whether to keep running after the compilation, and check the inputs
+     * again whenever one of them changes
+     */
+    CommandLineConfig setWatch(boolean watch) {
+      this.watch = watch;
+      return this;
+    }
+
     private boolean createNameMapFiles = false;
 
     /**
@@ -1806,5 +1989,12 @@ abstract class AbstractCommandLineRunner<A extends Compiler,
     protected void clear() {
       entries.clear();
     }
+
+    /** Returns a copy that does not change when this spec is cleared. */
+    protected WarningGuardSpec copy() {
+      WarningGuardSpec copy = new WarningGuardSpec();
+      copy.entries.addAll(entries);
+      return copy;
+    }
   }
 }
@@ -29,6 +29,8 @@ import com.google.javascript.rhino.jstype.JSTypeRegistry;
 import java.util.List;
 import java.util.Map;
 
+import javax.annotation.Nullable;
+
 /**
  * An abstract compiler, to help remove the circular dependency of
  * passes on JSCompiler.
@@ -198,6 +200,18 @@ public abstract class AbstractCompiler implements SourceExcerptProvider {
    */
   abstract void removeChangeHandler(CodeChangeHandler handler);
 
+  /**
+   * Makes the errors and code changes that the current thread reports go to
+   * the given result, instead of to the error manager and the change
+   * handlers. Used by threads that work on a subtree that has been detached
+   * from the AST, as things like warnings guards need the whole AST.
+   *
+   * @param result Where to record the reports of the current thread, or
+   *     null to report them normally again.
+   */
+  abstract void setCurrentThreadResult(
+      @Nullable ParallelCompilerPass.Result result);
+
   /**
    * Returns true if compiling in IDE mode.
    */
@@ -235,6 +249,14 @@ public abstract class AbstractCompiler implements SourceExcerptProvider {
    */
   abstract public ErrorManager getErrorManager();
 
+  /**
+   * Returns the cache of parse trees shared with other compilations, or null
+   * if every input should be parsed from scratch.
+   */
+  AstCache getAstCache() {
+    return null;
+  }
+
   /**
    * Set the current life-cycle state.
    */
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2011 The Closure Compiler Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.javascript.jscomp;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Maps;
+import com.google.javascript.jscomp.parsing.Config;
+import com.google.javascript.rhino.Node;
+import com.google.javascript.rhino.jstype.StaticSourceFile;
+
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Keeps the parse trees of source files around between compilations, so that
+ * inputs that are compiled over and over again (like the default externs
+ * when the compiler runs as a server) only need to be parsed once.
+ *
+ * The cached trees are the raw parser output, before {@code PrepareAst}
+ * has run, so they do not depend on the coding convention of the
+ * compilation. Every lookup hands out a private copy of the cached tree,
+ * so compilations are free to mutate their ASTs.
+ *
+ * This class is thread-safe.
+ *
+ */
+class AstCache {
+
+  private final ConcurrentMap<Key, Node> trees = Maps.newConcurrentMap();
+
+  private final boolean externsOnly;
+
+  /**
+   * @param externsOnly Whether to only cache extern sources. Externs rarely
+   *     change between compilations, while caching every input would make
+   *     the memory use of a long-lived compiler grow without bound.
+   */
+  AstCache(boolean externsOnly) {
+    this.externsOnly = externsOnly;
+  }
+
+  /**
+   * Returns a copy of the parse tree stored for the given source, or null
+   * if the source has not been parsed with this config before.
+   */
+  Node get(SourceFile file, String code, Config config) {
+    if (!accepts(file)) {
+      return null;
+    }
+    Node cached = trees.get(new Key(file.getName(), code, config));
+    if (cached == null) {
+      return null;
+    }
+    Node root = cached.cloneTree();
+    if (root.getStaticSourceFile() != file) {
+      attachToSourceFile(root, file);
+    }
+    return root;
+  }
+
+  /**
+   * Remembers a copy of the parse tree of a source.
+   */
+  void put(SourceFile file, String code, Config config, Node root) {
+    Preconditions.checkState(root.getParent() == null);
+    if (!accepts(file)) {
+      return;
+    }
+    trees.put(new Key(file.getName(), code, config), root.cloneTree());
+  }
+
+  /** Removes all cached trees. */
+  void clear() {
+    trees.clear();
+  }
+
+  /** @return The number of cached trees. */
+  int size() {
+    return trees.size();
+  }
+
+  private boolean accepts(SourceFile file) {
+    return !externsOnly || file.isExtern();
+  }
+
+  /**
+   * Points all the nodes of a tree parsed from one copy of a source file at
+   * another copy of the same file.
+   */
+  private static void attachToSourceFile(Node n, StaticSourceFile file) {
+    n.setStaticSourceFile(file);
+    for (Node c = n.getFirstChild(); c != null; c = c.getNext()) {
+      attachToSourceFile(c, file);
+    }
+  }
+
+  private static final class Key {
+    private final String fileName;
+    private final String code;
+    private final Config config;
+
+    Key(String fileName, String code, Config config) {
+      this.fileName = fileName;
+      this.code = code;
+      this.config = config;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key that = (Key) o;
+      return fileName.equals(that.fileName)
+          && code.equals(that.code)
+          && config.equals(that.config);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(fileName, code, config);
+    }
+  }
+}
@@ -18,7 +18,10 @@ package com.google.javascript.jscomp;
 
 import com.google.common.base.Joiner;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import com.google.javascript.jscomp.ControlFlowGraph.AbstractCfgNodeTraversalCallback;
 import com.google.javascript.jscomp.ControlFlowGraph.Branch;
@@ -31,14 +34,17 @@ import com.google.javascript.jscomp.graph.DiGraph.DiGraphNode;
 import com.google.javascript.jscomp.graph.GraphColoring;
 import com.google.javascript.jscomp.graph.GraphColoring.GreedyGraphColoring;
 import com.google.javascript.jscomp.graph.GraphNode;
-import com.google.javascript.jscomp.graph.LinkedUndirectedGraph;
-import com.google.javascript.jscomp.graph.UndiGraph;
+import com.google.javascript.jscomp.graph.InterferenceGraph;
 import com.google.javascript.rhino.Node;
 import com.google.javascript.rhino.Token;
 
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Comparator;
 import java.util.Deque;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -58,7 +64,7 @@ import java.util.Set;
  *
  */
 class CoalesceVariableNames extends AbstractPostOrderCallback implements
-    CompilerPass, ScopedCallback {
+    ParallelFunctionPass.FunctionPass, ScopedCallback {
 
   private final AbstractCompiler compiler;
   private final Deque<GraphColoring<Var, Void>> colorings;
@@ -89,7 +95,26 @@ class CoalesceVariableNames extends AbstractPostOrderCallback implements
     NodeTraversal.traverse(compiler, root, this);
   }
 
-  private static boolean shouldOptimizeScope(Scope scope) {
+  @Override
+  public void processFunction(Node fn, Scope globalScope) {
+    new NodeTraversal(compiler, this).traverseFunctionWithScope(
+        fn, globalScope);
+  }
+
+  @Override
+  public void processGlobalCode(Node root, Scope globalScope) {
+    // Only function scopes are optimized.
+  }
+
+  @Override
+  public void processSingleFunction(Node fn, Scope globalScope) {
+    new NodeTraversal(compiler,
+        new ParallelFunctionPass.SingleFunctionCallback(fn, this))
+        .traverseFunctionWithScope(fn, globalScope);
+  }
+
+  private static boolean shouldOptimizeScope(NodeTraversal t) {
+    Scope scope = t.getScope();
     // TODO(user): We CAN do this in the global scope, just need to be
     // careful when something is exported. Liveness uses bit-vector for live
     // sets so I don't see compilation time will be a problem for running this
@@ -98,18 +123,16 @@ class CoalesceVariableNames extends AbstractPostOrderCallback implements
       return false;
     }
 
-    if (LiveVariablesAnalysis.MAX_VARIABLES_TO_ANALYZE <
-        scope.getVarCount()) {
-      return false;
-    }
-
-    return true;
+    // The interference graph is built from the changes of the live sets along
+    // the control flow graph, so it costs less than the liveness analysis.
+    return LiveVariablesAnalysis.shouldAnalyze(
+        scope, t.getControlFlowGraph());
   }
 
   @Override
   public void enterScope(NodeTraversal t) {
     Scope scope = t.getScope();
-    if (!shouldOptimizeScope(scope)) {
+    if (!shouldOptimizeScope(t)) {
       return;
     }
 
@@ -125,7 +148,7 @@ class CoalesceVariableNames extends AbstractPostOrderCallback implements
     }
     liveness.analyze();
 
-    UndiGraph<Var, Void> interferenceGraph =
+    InterferenceGraph<Var> interferenceGraph =
         computeVariableNamesInterferenceGraph(
             t, cfg, liveness.getEscapedLocals());
 
@@ -139,7 +162,7 @@ class CoalesceVariableNames extends AbstractPostOrderCallback implements
 
   @Override
   public void exitScope(NodeTraversal t) {
-    if (!shouldOptimizeScope(t.getScope())) {
+    if (!shouldOptimizeScope(t)) {
       return;
     }
     colorings.pop();
@@ -210,13 +233,15 @@ class CoalesceVariableNames extends AbstractPostOrderCallback implements
     }
   }
 
-  private UndiGraph<Var, Void> computeVariableNamesInterferenceGraph(
+  private InterferenceGraph<Var> computeVariableNamesInterferenceGraph(
       NodeTraversal t, ControlFlowGraph<Node> cfg, Set<Var> escaped) {
-    UndiGraph<Var, Void> interferenceGraph =
-        LinkedUndirectedGraph.create();
     Scope scope = t.getScope();
+    InterferenceGraph<Var> interferenceGraph =
+        new InterferenceGraph<Var>(scope.getVarCount());
 
     // First create a node for each non-escaped variable.
+    Map<String, Var> graphVars = Maps.newHashMap();
+    BitSet parameters = new BitSet();
     for (Iterator<Var> i = scope.getVars(); i.hasNext();) {
       Var v = i.next();
       if (!escaped.contains(v)) {
@@ -228,120 +253,149 @@ class CoalesceVariableNames extends AbstractPostOrderCallback implements
         // that is but, for now, we will respect the dead functions and not play
         // around with it.
         if (!NodeUtil.isFunction(v.getParentNode())) {
-          interferenceGraph.createNode(v);
+          interferenceGraph.createNode(v, v.index);
+          graphVars.put(v.name, v);
+          if (v.getParentNode().getType() == Token.LP) {
+            parameters.set(v.index);
+          }
         }
       }
     }
 
-    // Go through each variable and try to connect them.
-    for (Iterator<Var> i1 = scope.getVars(); i1.hasNext();) {
-      Var v1 = i1.next();
+    // The parameters all interfere with each other.
+    interferenceGraph.connectAll(parameters);
 
-      NEXT_VAR_PAIR:
-      for (Iterator<Var> i2 = scope.getVars(); i2.hasNext();) {
-        Var v2 = i2.next();
-
-        // Skip duplicate pairs.
-        if (v1.index >= v2.index) {
-          continue;
-        }
+    // Variables that are both live at the entry or at the exit of a CFG node
+    // interfere.
+    connectLiveVariables(interferenceGraph, cfg);
 
-        if (!interferenceGraph.hasNode(v1) ||
-            !interferenceGraph.hasNode(v2)) {
-          // Skip nodes that were not added. They are globals and escaped
-          // locals. Also avoid merging a variable with itself.
-          continue NEXT_VAR_PAIR;
-        }
-
-        if (v1.getParentNode().getType() == Token.LP &&
-            v2.getParentNode().getType() == Token.LP) {
-          interferenceGraph.connectIfNotFound(v1, null, v2);
-          continue NEXT_VAR_PAIR;
-        }
-
-        // Go through every CFG node in the program and look at
-        // this variable pair. If they are both live at the same
-        // time, add an edge between them and continue to the next pair.
-        NEXT_CROSS_CFG_NODE:
-        for (DiGraphNode<Node, Branch> cfgNode : cfg.getDirectedGraphNodes()) {
-          if (cfg.isImplicitReturn(cfgNode)) {
-            continue NEXT_CROSS_CFG_NODE;
-          }
-
-          FlowState<LiveVariableLattice> state = cfgNode.getAnnotation();
-          // Check the live states and add edge when possible.
-          if ((state.getIn().isLive(v1) && state.getIn().isLive(v2)) ||
-              (state.getOut().isLive(v1) && state.getOut().isLive(v2))) {
-            interferenceGraph.connectIfNotFound(v1, null, v2);
-            continue NEXT_VAR_PAIR;
-          }
-        }
-
-        // v1 and v2 might not have an edge between them! woohoo. there's
-        // one last sanity check that we have to do: we have to check
-        // if there's a collision *within* the cfg node.
-        NEXT_INTRA_CFG_NODE:
-        for (DiGraphNode<Node, Branch> cfgNode : cfg.getDirectedGraphNodes()) {
-          if (cfg.isImplicitReturn(cfgNode)) {
-            continue NEXT_INTRA_CFG_NODE;
-          }
-
-          FlowState<LiveVariableLattice> state = cfgNode.getAnnotation();
-          boolean v1OutLive = state.getOut().isLive(v1);
-          boolean v2OutLive = state.getOut().isLive(v2);
-          CombinedLiveRangeChecker checker = new CombinedLiveRangeChecker(
-              new LiveRangeChecker(v1, v2OutLive ? null : v2),
-              new LiveRangeChecker(v2, v1OutLive ? null : v1));
-          NodeTraversal.traverse(
-              compiler,
-              cfgNode.getValue(),
-              checker);
-          if (checker.connectIfCrossed(interferenceGraph)) {
-            continue NEXT_VAR_PAIR;
-          }
-        }
+    // So do variables whose live ranges cross *within* a CFG node.
+    LiveRangeChecker checker =
+        new LiveRangeChecker(graphVars, scope.getVarCount());
+    for (DiGraphNode<Node, Branch> cfgNode : cfg.getDirectedGraphNodes()) {
+      if (cfg.isImplicitReturn(cfgNode)) {
+        continue;
       }
+
+      FlowState<LiveVariableLattice> state = cfgNode.getAnnotation();
+      NodeTraversal.traverse(compiler, cfgNode.getValue(), checker);
+      checker.connectCrossedLiveRanges(
+          interferenceGraph, state.getOut().bits);
     }
     return interferenceGraph;
   }
 
   /**
-   * A simple wrapper calls to call two AbstractCfgNodeTraversalCallback
-   * callback during the same traversal.  Both traversals must have the same
-   * "shouldTraverse" conditions.
+   * Connects the variables that are both live at the entry or at the exit of
+   * a CFG node.
+   *
+   * <p>Connecting each of these sets as a clique takes time quadratic in the
+   * number of live variables, at every node. But the set live at the exit of
+   * a node is the union of the sets live at the entry of its successors, and
+   * the set live at the entry of a node adds the variables that the node
+   * reads to the set live at its exit. So the nodes are visited successors
+   * first, and each only connects the pairs that its successors do not. The
+   * nodes that loops go back to are visited after their predecessors, so
+   * the sets live at their entry are connected as a whole.
    */
-  private static class CombinedLiveRangeChecker
-      extends AbstractCfgNodeTraversalCallback {
-
-    private final LiveRangeChecker callback1;
-    private final LiveRangeChecker callback2;
-
-    CombinedLiveRangeChecker(
-        LiveRangeChecker callback1,
-        LiveRangeChecker callback2) {
-      this.callback1 = callback1;
-      this.callback2 = callback2;
+  private static void connectLiveVariables(
+      InterferenceGraph<Var> interferenceGraph, ControlFlowGraph<Node> cfg) {
+    DiGraphNode<Node, Branch> implicitReturn = cfg.getImplicitReturn();
+    List<DiGraphNode<Node, Branch>> postOrder = Lists.newArrayList();
+    Set<DiGraphNode<Node, Branch>> loopTargets = Sets.newHashSet();
+    computePostOrder(cfg, postOrder, loopTargets);
+    for (DiGraphNode<Node, Branch> loopTarget : loopTargets) {
+      interferenceGraph.connectAll(getLiveIn(loopTarget));
     }
 
-    @Override
-    public void visit(NodeTraversal t, Node n, Node parent) {
-      if (LiveRangeChecker.shouldVisit(n)) {
-        callback1.visit(t, n, parent);
-        callback2.visit(t, n, parent);
+    boolean implicitReturnJoined = false;
+    for (DiGraphNode<Node, Branch> cfgNode : postOrder) {
+      BitSet liveIn = getLiveIn(cfgNode);
+      BitSet liveOut = getLiveOut(cfgNode);
+      List<DiGraphNode<Node, Branch>> successors =
+          cfg.getDirectedSuccNodes(cfgNode);
+      if (successors.isEmpty() || (successors.size() == 1
+          && successors.get(0) == implicitReturn)) {
+        // The set live at the exit does not come from successors.
+        interferenceGraph.connectAll(liveOut);
+      } else {
+        BitSet joined = new BitSet();
+        for (DiGraphNode<Node, Branch> successor : successors) {
+          if (successor == implicitReturn) {
+            implicitReturnJoined = true;
+          }
+          BitSet added = (BitSet) getLiveIn(successor).clone();
+          added.andNot(joined);
+          interferenceGraph.connectAcross(added, joined);
+          joined.or(added);
+        }
       }
+
+      BitSet read = (BitSet) liveIn.clone();
+      read.andNot(liveOut);
+      interferenceGraph.connectAcross(read, liveIn);
+    }
+    if (implicitReturnJoined) {
+      interferenceGraph.connectAll(getLiveIn(implicitReturn));
     }
+  }
 
-    boolean connectIfCrossed(UndiGraph<Var, Void> interferenceGraph) {
-      if (callback1.crossed || callback2.crossed) {
-        Var v1 = callback1.getDef();
-        Var v2 = callback2.getDef();
-        interferenceGraph.connectIfNotFound(v1, null, v2);
-        return true;
+  /**
+   * Lists the nodes of a CFG other than the implicit return, each after its
+   * successors, except for the successors that loops go back to, which are
+   * added to loopTargets.
+   */
+  private static void computePostOrder(ControlFlowGraph<Node> cfg,
+      List<DiGraphNode<Node, Branch>> postOrder,
+      Set<DiGraphNode<Node, Branch>> loopTargets) {
+    DiGraphNode<Node, Branch> implicitReturn = cfg.getImplicitReturn();
+    Set<DiGraphNode<Node, Branch>> visited = Sets.newHashSet();
+    Set<DiGraphNode<Node, Branch>> onStack = Sets.newHashSet();
+    Deque<DiGraphNode<Node, Branch>> stack = Lists.newLinkedList();
+    Deque<Iterator<DiGraphNode<Node, Branch>>> successors =
+        Lists.newLinkedList();
+    // The unreachable nodes are visited after the entry and its successors.
+    for (DiGraphNode<Node, Branch> root : Iterables.concat(
+             ImmutableList.of(cfg.getEntry()), cfg.getDirectedGraphNodes())) {
+      if (root == implicitReturn || !visited.add(root)) {
+        continue;
+      }
+      stack.push(root);
+      onStack.add(root);
+      successors.push(cfg.getDirectedSuccNodes(root).iterator());
+      while (!stack.isEmpty()) {
+        Iterator<DiGraphNode<Node, Branch>> i = successors.peek();
+        if (!i.hasNext()) {
+          DiGraphNode<Node, Branch> cfgNode = stack.pop();
+          successors.pop();
+          onStack.remove(cfgNode);
+          postOrder.add(cfgNode);
+          continue;
+        }
+        DiGraphNode<Node, Branch> successor = i.next();
+        if (successor == implicitReturn) {
+          continue;
+        } else if (onStack.contains(successor)) {
+          loopTargets.add(successor);
+        } else if (visited.add(successor)) {
+          stack.push(successor);
+          onStack.add(successor);
+          successors.push(cfg.getDirectedSuccNodes(successor).iterator());
+        }
       }
-      return false;
     }
   }
 
+  private static BitSet getLiveIn(DiGraphNode<Node, Branch> cfgNode) {
+    FlowState<LiveVariableLattice> state = cfgNode.getAnnotation();
+    return state.getIn().bits;
+  }
+
+  private static BitSet getLiveOut(DiGraphNode<Node, Branch> cfgNode) {
+    FlowState<LiveVariableLattice> state = cfgNode.getAnnotation();
+    return state.getOut().bits;
+  }
+
   /**
    * Tries to remove variable declaration if the variable has been coalesced
    * with another variable that has already been declared.
@@ -381,65 +435,127 @@ class CoalesceVariableNames extends AbstractPostOrderCallback implements
     }
   }
 
+  /**
+   * Finds the variables whose live ranges cross within a CFG node: the live
+   * range of a variable that the node assigns to crosses the live ranges of
+   * the variables that are live at the exit of the node, and of those that
+   * are read at or after the first assignment.
+   *
+   * <p>The checker checks one CFG node at a time, and is reused for the next
+   * node once the live ranges are connected.
+   */
   private static class LiveRangeChecker
       extends AbstractCfgNodeTraversalCallback {
-    boolean defFound = false;
-    boolean crossed = false;
-    private final Var def;
-    private final Var use;
-
-    public LiveRangeChecker(Var def, Var use) {
-      this.def = def;
-      this.use = use;
-    }
+    private final Map<String, Var> vars;
 
-    Var getDef() {
-      return def;
-    }
+    // The number of nodes visited so far.
+    private int position = 0;
+
+    // Maps the variables assigned to the position of their first assignment.
+    private final Map<Var, Integer> firstAssignments = Maps.newHashMap();
+
+    // Maps the index of a variable to the position of its last read, or -1.
+    private final int[] lastReads;
+
+    // The indices of the variables read so far.
+    private final BitSet reads = new BitSet();
 
     /**
-     * @return Whether any LiveRangeChecker would be interested in the node.
+     * @param vars Maps the names of the variables to check to the variables.
+     * @param varCount The number of variables of their scope.
      */
-    public static boolean shouldVisit(Node n) {
-      return (NodeUtil.isName(n)
-        || (n.hasChildren() && NodeUtil.isName(n.getFirstChild())));
+    LiveRangeChecker(Map<String, Var> vars, int varCount) {
+      this.vars = vars;
+      lastReads = new int[varCount];
+      Arrays.fill(lastReads, -1);
     }
 
     @Override
     public void visit(NodeTraversal t, Node n, Node parent) {
-      if (!defFound && isAssignTo(def, n, parent)) {
-        defFound = true;
+      if (!shouldVisit(n)) {
+        return;
       }
 
-      if (defFound && (use == null || isReadFrom(use, n))) {
-        crossed = true;
+      String assignedName = getAssignedName(n, parent);
+      if (assignedName != null) {
+        Var assigned = vars.get(assignedName);
+        if (assigned != null && !firstAssignments.containsKey(assigned)) {
+          firstAssignments.put(assigned, position);
+        }
       }
+      if (isRead(n)) {
+        Var read = vars.get(n.getString());
+        if (read != null) {
+          lastReads[read.index] = position;
+          reads.set(read.index);
+        }
+      }
+      position++;
     }
 
-    private static boolean isAssignTo(Var var, Node n, Node parent) {
-      if (NodeUtil.isName(n) && var.getName().equals(n.getString()) &&
-          parent != null) {
-        if (parent.getType() == Token.LP) {
-          // In a function declaration, the formal parameters are assigned.
-          return true;
-        } else if (NodeUtil.isVar(parent)) {
-          // If this is a VAR declaration, if the name node has a child, we are
-          // assigning to that name.
-          return n.hasChildren();
+    /**
+     * Connects the variables whose live ranges cross, and forgets the node.
+     *
+     * @param liveOut The variables that are live at the exit of the node.
+     */
+    void connectCrossedLiveRanges(
+        InterferenceGraph<Var> interferenceGraph, BitSet liveOut) {
+      for (Map.Entry<Var, Integer> entry : firstAssignments.entrySet()) {
+        int firstAssignment = entry.getValue();
+        BitSet crossed = (BitSet) liveOut.clone();
+        for (int i = reads.nextSetBit(0); i >= 0; i = reads.nextSetBit(i + 1)) {
+          if (lastReads[i] >= firstAssignment) {
+            crossed.set(i);
+          }
         }
-        return false; // Definitely a read.
+        interferenceGraph.connectToAll(entry.getKey().index, crossed);
+      }
+
+      for (int i = reads.nextSetBit(0); i >= 0; i = reads.nextSetBit(i + 1)) {
+        lastReads[i] = -1;
+      }
+      reads.clear();
+      firstAssignments.clear();
+      position = 0;
+    }
+
+    /**
+     * @return Whether the node may assign to or read from a variable.
+     */
+    private static boolean shouldVisit(Node n) {
+      return (NodeUtil.isName(n)
+        || (n.hasChildren() && NodeUtil.isName(n.getFirstChild())));
+    }
+
+    /**
+     * @return The name of the variable that the node assigns to, or null.
+     */
+    private static String getAssignedName(Node n, Node parent) {
+      if (NodeUtil.isName(n)) {
+        if (parent != null) {
+          if (parent.getType() == Token.LP) {
+            // In a function declaration, the formal parameters are assigned.
+            return n.getString();
+          } else if (NodeUtil.isVar(parent) && n.hasChildren()) {
+            // If this is a VAR declaration, if the name node has a child, we
+            // are assigning to that name.
+            return n.getString();
+          }
+        }
+        return null; // Definitely a read.
       } else {
         // Lastly, any assignmentOP is also an assign.
         Node name = n.getFirstChild();
-        return name != null && NodeUtil.isName(name) &&
-          var.getName().equals(name.getString()) &&
-          NodeUtil.isAssignmentOp(n);
+        if (name != null && NodeUtil.isName(name) &&
+            NodeUtil.isAssignmentOp(n)) {
+          return name.getString();
+        }
+        return null;
       }
     }
 
-    private static boolean isReadFrom(Var var, Node name) {
-      return name != null && NodeUtil.isName(name) &&
-          var.getName().equals(name.getString()) &&
+    private static boolean isRead(Node name) {
+      return NodeUtil.isName(name) &&
           !NodeUtil.isVarOrSimpleAssignLhs(name, name.getParent());
     }
   }
@@ -27,6 +27,8 @@ import com.google.javascript.rhino.TokenStream;
 import java.io.IOException;
 import java.nio.charset.Charset;
 import java.nio.charset.CharsetEncoder;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.Map;
 
 /**
@@ -96,29 +98,21 @@ class CodeGenerator {
 
     // Handle all binary operators
     if (opstr != null && first != last) {
-      Preconditions.checkState(
-          childCount == 2,
-          "Bad binary operator \"%s\": expected 2 arguments but got %s",
-          opstr, childCount);
-      int p = NodeUtil.precedence(type);
-      addLeftExpr(first, p, context);
-      cc.addOp(opstr, true);
-
-      // For right-hand-side of operations, only pass context if it's
-      // the IN_FOR_INIT_CLAUSE one.
-      Context rhsContext = getContextForNoInOperator(context);
-
-      // Handle associativity.
-      // e.g. if the parse tree is a * (b * c),
-      // we can simply generate a * b * c.
-      if (last.getType() == type &&
-          NodeUtil.isAssociative(type)) {
-        addExpr(last, p, rhsContext);
-      } else if (NodeUtil.isAssignmentOp(n) && NodeUtil.isAssignmentOp(last)) {
-        // Assignments are the only right-associative binary operators
-        addExpr(last, p, rhsContext);
-      } else {
-        addExpr(last, p + 1, rhsContext);
+      // Chains like a + b + c nest to the left as deep as they are long, so
+      // the operators down the left operands that need no parentheses are
+      // kept on a stack rather than added by recursion.
+      Deque<Node> chain = new ArrayDeque<Node>();
+      chain.push(n);
+      while (isBinaryOperator(chain.peek().getFirstChild()) &&
+             !needsParentheses(chain.peek().getFirstChild(),
+                 NodeUtil.precedence(chain.peek().getType()), context)) {
+        chain.push(chain.peek().getFirstChild());
+      }
+
+      addLeftExpr(chain.peek().getFirstChild(),
+          NodeUtil.precedence(chain.peek().getType()), context);
+      while (!chain.isEmpty()) {
+        addBinaryOperatorAndRight(chain.pop(), context);
       }
       return;
     }
@@ -858,6 +852,45 @@ class CodeGenerator {
     }
   }
 
+  private static boolean isBinaryOperator(Node n) {
+    return NodeUtil.opToStr(n.getType()) != null &&
+        n.getFirstChild() != n.getLastChild();
+  }
+
+  /**
+   * Adds the operator of a binary operator node and its right-hand side,
+   * once its left-hand side is added.
+   */
+  private void addBinaryOperatorAndRight(Node n, Context context) {
+    int type = n.getType();
+    String opstr = NodeUtil.opToStr(type);
+    int childCount = n.getChildCount();
+    Node last = n.getLastChild();
+    Preconditions.checkState(
+        childCount == 2,
+        "Bad binary operator \"%s\": expected 2 arguments but got %s",
+        opstr, childCount);
+    int p = NodeUtil.precedence(type);
+    cc.addOp(opstr, true);
+
+    // For right-hand-side of operations, only pass context if it's
+    // the IN_FOR_INIT_CLAUSE one.
+    Context rhsContext = getContextForNoInOperator(context);
+
+    // Handle associativity.
+    // e.g. if the parse tree is a * (b * c),
+    // we can simply generate a * b * c.
+    if (last.getType() == type &&
+        NodeUtil.isAssociative(type)) {
+      addExpr(last, p, rhsContext);
+    } else if (NodeUtil.isAssignmentOp(n) && NodeUtil.isAssignmentOp(last)) {
+      // Assignments are the only right-associative binary operators
+      addExpr(last, p, rhsContext);
+    } else {
+      addExpr(last, p + 1, rhsContext);
+    }
+  }
+
   /**
    * Adds a node at the left-hand side of an expression. Unlike
    * {@link #addExpr(Node,int)}, this preserves information about the context.
@@ -876,9 +909,7 @@ class CodeGenerator {
   }
 
   private void addExpr(Node n, int minPrecedence, Context context) {
-    if ((NodeUtil.precedence(n.getType()) < minPrecedence) ||
-        ((context == Context.IN_FOR_INIT_CLAUSE) &&
-        (n.getType() == Token.IN))){
+    if (needsParentheses(n, minPrecedence, context)) {
       add("(");
       add(n, clearContextForNoInOperator(context));
       add(")");
@@ -887,6 +918,13 @@ class CodeGenerator {
     }
   }
 
+  private static boolean needsParentheses(
+      Node n, int minPrecedence, Context context) {
+    return (NodeUtil.precedence(n.getType()) < minPrecedence) ||
+        ((context == Context.IN_FOR_INIT_CLAUSE) &&
+        (n.getType() == Token.IN));
+  }
+
   void addList(Node firstInList) {
     addList(firstInList, true, Context.OTHER);
   }
@@ -17,15 +17,15 @@
 package com.google.javascript.jscomp;
 
 import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
 import com.google.debugging.sourcemap.FilePosition;
 import com.google.javascript.rhino.Node;
 import com.google.javascript.rhino.Token;
 
+import java.io.IOException;
 import java.nio.charset.Charset;
 import java.util.ArrayDeque;
-import java.util.ArrayList;
 import java.util.Deque;
-import java.util.List;
 
 /**
  * CodePrinter prints out js code in either pretty format or compact format.
@@ -46,25 +46,37 @@ class CodePrinter {
 
   private abstract static class MappedCodePrinter extends CodeConsumer {
     final private Deque<Mapping> mappings;
-    final private List<Mapping> allMappings;
-    final private boolean createSrcMap;
+    // The mappings that are not in the source map yet, in the order they
+    // started. Mappings are added to the source map in that order once they
+    // ended on a complete line, as their positions cannot change anymore.
+    final private Deque<Mapping> pendingMappings;
+    final private SourceMap sourceMap;
     final private SourceMap.DetailLevel sourceMapDetailLevel;
+    // Where the complete lines are written to, or null to keep all the code.
+    final private Appendable out;
+    // The code that was not written out yet.
     protected final StringBuilder code = new StringBuilder(1024);
+    // The length of the code that was written out.
+    private int writtenLength = 0;
+    private char lastWrittenChar = '\0';
     protected final int lineLengthThreshold;
     protected int lineLength = 0;
     protected int lineIndex = 0;
 
     MappedCodePrinter(
+        Appendable out,
         int lineLengthThreshold,
-        boolean createSrcMap,
+        SourceMap sourceMap,
         SourceMap.DetailLevel sourceMapDetailLevel) {
       Preconditions.checkState(sourceMapDetailLevel != null);
+      this.out = out;
       this.lineLengthThreshold = lineLengthThreshold <= 0 ? Integer.MAX_VALUE :
         lineLengthThreshold;
-      this.createSrcMap = createSrcMap;
+      this.sourceMap = sourceMap;
       this.sourceMapDetailLevel = sourceMapDetailLevel;
-      this.mappings = createSrcMap ? new ArrayDeque<Mapping>() : null;
-      this.allMappings = createSrcMap ? new ArrayList<Mapping>() : null;
+      this.mappings = sourceMap != null ? new ArrayDeque<Mapping>() : null;
+      this.pendingMappings =
+          sourceMap != null ? new ArrayDeque<Mapping>() : null;
     }
 
     /**
@@ -90,7 +102,7 @@ class CodePrinter {
     void startSourceMapping(Node node) {
       Preconditions.checkState(sourceMapDetailLevel != null);
       Preconditions.checkState(node != null);
-      if (createSrcMap
+      if (sourceMap != null
           && node.getSourceFileName() != null
           && node.getLineno() > 0
           && sourceMapDetailLevel.apply(node)) {
@@ -101,7 +113,7 @@ class CodePrinter {
         mapping.node = node;
         mapping.start = new FilePosition(line, index);
         mappings.push(mapping);
-        allMappings.add(mapping);
+        pendingMappings.add(mapping);
       }
     }
 
@@ -111,7 +123,8 @@ class CodePrinter {
      */
     @Override
     void endSourceMapping(Node node) {
-      if (createSrcMap && !mappings.isEmpty() && mappings.peek().node == node) {
+      if (sourceMap != null
+          && !mappings.isEmpty() && mappings.peek().node == node) {
         Mapping mapping = mappings.pop();
         int line = getCurrentLineIndex();
         int index = getCurrentCharIndex();
@@ -121,15 +134,45 @@ class CodePrinter {
     }
 
     /**
-     * Generates the source map from the given code consumer,
-     * appending the information it saved to the SourceMap
-     * object given.
+     * Reports that the lines before the given position of the code are
+     * complete. Writes them out if there is an output, and adds the mappings
+     * that ended on them to the source map.
+     */
+    protected final void completeLines(int position) {
+      if (out != null && position > writtenLength) {
+        int length = position - writtenLength;
+        try {
+          out.append(code, 0, length);
+        } catch (IOException e) {
+          throw Throwables.propagate(e);
+        }
+        lastWrittenChar = code.charAt(length - 1);
+        code.delete(0, length);
+        writtenLength = position;
+      }
+      if (sourceMap != null) {
+        while (!pendingMappings.isEmpty()) {
+          Mapping mapping = pendingMappings.peek();
+          if (mapping.end == null || mapping.end.getLine() >= lineIndex) {
+            break;
+          }
+          sourceMap.addMapping(mapping.node, mapping.start, mapping.end);
+          pendingMappings.remove();
+        }
+      }
+    }
+
+    /**
+     * Writes out the rest of the code, and adds the rest of the mappings to
+     * the source map.
      */
-    void generateSourceMap(SourceMap map){
-      if (createSrcMap) {
-        for (Mapping mapping : allMappings) {
-          map.addMapping(mapping.node, mapping.start, mapping.end);
+    void endOutput() {
+      completeLines(getLength());
+      if (sourceMap != null) {
+        for (Mapping mapping : pendingMappings) {
+          sourceMap.addMapping(mapping.node, mapping.start, mapping.end);
         }
+        pendingMappings.clear();
       }
     }
 
@@ -139,8 +182,8 @@ class CodePrinter {
      * the source maps after that position will be renormalized as needed.
      */
     void reportLineCut(int lineIndex, int charIndex) {
-      if (createSrcMap) {
-        for (Mapping mapping : allMappings) {
+      if (sourceMap != null) {
+        for (Mapping mapping : pendingMappings) {
           mapping.start = convertPosition(mapping.start, lineIndex, charIndex);
 
           if (mapping.end != null) {
@@ -175,13 +218,25 @@ class CodePrinter {
       }
     }
 
+    /** Returns the code that was not written out. */
     public String getCode() {
       return code.toString();
     }
 
+    /** Returns the length of the code, including what was written out. */
+    protected final int getLength() {
+      return writtenLength + code.length();
+    }
+
+    /** Inserts a newline at the given position of the current line. */
+    protected final void insertNewline(int position) {
+      code.insert(position - writtenLength, '\n');
+    }
+
     @Override
     char getLastChar() {
-      return (code.length() > 0) ? code.charAt(code.length() - 1) : '\0';
+      return (code.length() > 0)
+          ? code.charAt(code.length() - 1) : lastWrittenChar;
     }
 
     protected final int getCurrentCharIndex() {
@@ -201,17 +256,20 @@ class CodePrinter {
     private int indent = 0;
 
     /**
+     * @param out Where to write the complete lines, or null to keep the code.
      * @param lineLengthThreshold The length of a line after which we force
      *                            a newline when possible.
-     * @param createSourceMap Whether to generate source map data.
+     * @param sourceMap The source map to add the mappings of the code to, or
+     *     null if there is none.
      * @param sourceMapDetailLevel A filter to control which nodes get mapped
      *     into the source map.
      */
     private PrettyCodePrinter(
+        Appendable out,
         int lineLengthThreshold,
-        boolean createSourceMap,
+        SourceMap sourceMap,
         SourceMap.DetailLevel sourceMapDetailLevel) {
-      super(lineLengthThreshold, createSourceMap, sourceMapDetailLevel);
+      super(out, lineLengthThreshold, sourceMap, sourceMapDetailLevel);
     }
 
     /**
@@ -240,6 +298,7 @@ class CodePrinter {
         code.append('\n');
         lineIndex++;
         lineLength = 0;
+        completeLines(getLength());
       }
     }
 
@@ -394,17 +453,19 @@ class CodePrinter {
     private int preferredBreakPosition = 0;
 
   /**
+   * @param out Where to write the complete lines, or null to keep the code.
    * @param lineBreak break the lines a bit more aggressively
    * @param lineLengthThreshold The length of a line after which we force
    *                            a newline when possible.
-   * @param createSrcMap Whether to gather source position
-   *                            mapping information when printing.
+   * @param sourceMap The source map to add the mappings of the code to, or
+   *     null if there is none.
    * @param sourceMapDetailLevel A filter to control which nodes get mapped into
    *     the source map.
    */
-    private CompactCodePrinter(boolean lineBreak, int lineLengthThreshold,
-        boolean createSrcMap, SourceMap.DetailLevel sourceMapDetailLevel) {
-      super(lineLengthThreshold, createSrcMap, sourceMapDetailLevel);
+    private CompactCodePrinter(Appendable out, boolean lineBreak,
+        int lineLengthThreshold, SourceMap sourceMap,
+        SourceMap.DetailLevel sourceMapDetailLevel) {
+      super(out, lineLengthThreshold, sourceMap, sourceMapDetailLevel);
       this.lineBreak = lineBreak;
     }
 
@@ -426,7 +487,8 @@ class CodePrinter {
         code.append('\n');
         lineLength = 0;
         lineIndex++;
-        lineStartPosition = code.length();
+        lineStartPosition = getLength();
+        completeLines(lineStartPosition);
       }
     }
 
@@ -442,9 +504,9 @@ class CodePrinter {
       // Since we are at a legal line break, can we upgrade the
       // preferred break position?  We prefer to break after a
       // semicolon rather than before it.
-      int len = code.length();
+      int len = getLength();
       if (preferredBreakPosition == len - 1) {
-        char ch = code.charAt(len - 1);
+        char ch = getLastChar();
         if (ch == ';') {
           preferredBreakPosition = len;
         }
@@ -463,11 +525,12 @@ class CodePrinter {
         if (preferredBreakPosition > lineStartPosition &&
             preferredBreakPosition < lineStartPosition + lineLength) {
           int position = preferredBreakPosition;
-          code.insert(position, '\n');
+          insertNewline(position);
           reportLineCut(lineIndex, position - lineStartPosition);
           lineIndex++;
           lineLength -= (position - lineStartPosition);
           lineStartPosition = position + 1;
+          completeLines(lineStartPosition);
         } else {
           startNewLine();
         }
@@ -476,7 +539,7 @@ class CodePrinter {
 
     @Override
     void notePreferredLineBreak() {
-      preferredBreakPosition = code.length();
+      preferredBreakPosition = getLength();
     }
   }
 
@@ -581,6 +644,21 @@ class CodePrinter {
      * Generates the source code and returns it.
      */
     String build() {
+      return toSource(null);
+    }
+
+    /**
+     * Generates the source code and appends it to the given output a line
+     * at a time, so that the code is never held in memory as a whole.
+     * Exceptions thrown by the output are rethrown wrapped in
+     * RuntimeExceptions.
+     */
+    void build(Appendable out) {
+      Preconditions.checkNotNull(out);
+      toSource(out);
+    }
+
+    private String toSource(Appendable out) {
       if (root == null) {
         throw new IllegalStateException(
             "Cannot build without root node being specified");
@@ -592,8 +670,9 @@ class CodePrinter {
               ? Format.PRETTY
               : Format.COMPACT;
 
-      return toSource(root, outputFormat, lineBreak, lineLengthThreshold,
-          sourceMap, sourceMapDetailLevel, outputCharset, tagAsStrict);
+      return CodePrinter.toSource(root, out, outputFormat, lineBreak,
+          lineLengthThreshold, sourceMap, sourceMapDetailLevel, outputCharset,
+          tagAsStrict);
     }
   }
 
@@ -604,9 +683,11 @@ class CodePrinter {
   }
 
   /**
-   * Converts a tree to js code
+   * Converts a tree to js code. The code is written to the given output if
+   * there is one, and returned otherwise.
    */
-  private static String toSource(Node root, Format outputFormat,
+  private static String toSource(Node root, Appendable out,
+                                 Format outputFormat,
                                  boolean lineBreak,  int lineLengthThreshold,
                                  SourceMap sourceMap,
                                  SourceMap.DetailLevel sourceMapDetailLevel,
@@ -614,14 +695,13 @@ class CodePrinter {
                                  boolean tagAsStrict) {
     Preconditions.checkState(sourceMapDetailLevel != null);
 
-    boolean createSourceMap = (sourceMap != null);
     MappedCodePrinter mcp =
         outputFormat == Format.COMPACT
-        ? new CompactCodePrinter(
+        ? new CompactCodePrinter(out,
             lineBreak, lineLengthThreshold,
-            createSourceMap, sourceMapDetailLevel)
-        : new PrettyCodePrinter(
-            lineLengthThreshold, createSourceMap, sourceMapDetailLevel);
+            sourceMap, sourceMapDetailLevel)
+        : new PrettyCodePrinter(out,
+            lineLengthThreshold, sourceMap, sourceMapDetailLevel);
     CodeGenerator cg =
         outputFormat == Format.TYPED
         ? new TypedCodeGenerator(mcp, outputCharset)
@@ -633,13 +713,8 @@ class CodePrinter {
 
     cg.add(root);
     mcp.endFile();
+    mcp.endOutput();
 
-    String code = mcp.getCode();
-
-    if (createSourceMap) {
-      mcp.generateSourceMap(sourceMap);
-    }
-
-    return code;
+    return out == null ? mcp.getCode() : null;
   }
 }
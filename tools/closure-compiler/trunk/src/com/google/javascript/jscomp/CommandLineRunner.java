@@ -16,6 +16,7 @@
 
 package com.google.javascript.jscomp;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
@@ -33,10 +34,15 @@ import org.kohsuke.args4j.spi.Parameters;
 import org.kohsuke.args4j.spi.Setter;
 import org.kohsuke.args4j.spi.StringOptionHandler;
 
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.PrintStream;
 import java.nio.charset.Charset;
 import java.util.List;
@@ -83,7 +89,8 @@ import java.util.zip.ZipInputStream;
  * }
  * </pre>
  *
- * This class is totally not thread-safe.
+ * This class is totally not thread-safe, though {@link #runJobs} can run
+ * many compile jobs at the same time, each on a runner of its own.
  *
  * @author bolinfest@google.com (Michael Bolin)
  */
@@ -361,6 +368,73 @@ public class CommandLineRunner extends
         usage = "A file containing additional command-line options.")
     private String flag_file = "";
 
+    @Option(name = "--server",
+        handler = BooleanOptionHandler.class,
+        usage = "Runs the compiler as a long-lived server. Each line read "
+        + "from stdin holds the flags of one compile job, in the same "
+        + "format as a --flagfile. Jobs must write their output with "
+        + "--js_output_file or --module. After each job, its exit status "
+        + "is printed to stdout on a line of its own. The default externs "
+        + "are only read and parsed once for all jobs")
+    private boolean server = false;
+
+    @Option(name = "--watch",
+        handler = BooleanOptionHandler.class,
+        usage = "Keeps running after the compilation, and checks an input "
+        + "again whenever it changes. Only the input that changed is parsed "
+        + "and checked again. The output is not written again")
+    private boolean watch = false;
+
+    @Option(name = "--job_manifest",
+        usage = "A file that lists compile jobs to run concurrently, one per "
+        + "line, each with its own flags in the same format as a --flagfile. "
+        + "Jobs must write their output with --js_output_file or --module. "
+        + "The errors of each job are reported together once it is done, "
+        + "and its exit status is printed to stdout on a line of its own, "
+        + "in the order of the manifest. The default externs are only read "
+        + "and parsed once for all jobs")
+    private String job_manifest = "";
+
+    @Option(name = "--job_threads",
+        usage = "The number of jobs of --job_manifest to run at the same "
+        + "time. Defaults to the number of processors")
+    private int job_threads = Runtime.getRuntime().availableProcessors();
+
+    @Option(name = "--function_pass_threads",
+        usage = "The number of threads to run the function-local "
+        + "optimizations on. The output does not depend on it. "
+        + "Defaults to 1")
+    private int function_pass_threads = 1;
+
+    @Option(name = "--parse_threads",
+        usage = "The number of threads to read and parse the inputs on. "
+        + "The output does not depend on it. Defaults to 1")
+    private int parse_threads = 1;
+
+    @Option(name = "--code_generation_threads",
+        usage = "The number of threads to print the code of the inputs on. "
+        + "The output does not depend on it. Defaults to 1")
+    private int code_generation_threads = 1;
+
+    @Option(name = "--ast_cache_dir",
+        usage = "A directory to keep the parse trees of the inputs in, so "
+        + "that inputs that did not change since an earlier compilation do "
+        + "not need to be parsed again. The directory can be shared by "
+        + "several compilers. When running as a server, the directory of "
+        + "the server is used for all the jobs")
+    private String ast_cache_dir = "";
+
+    @Option(name = "--ast_cache_max_mb",
+        usage = "How many megabytes the files in --ast_cache_dir may take. "
+        + "The least recently used files are deleted when they take more. "
+        + "Defaults to 256")
+    private int ast_cache_max_mb = 256;
+
+    @Option(name = "--perf_report",
+        usage = "File where the time taken, the memory allocated and the "
+        + "nodes added or removed by every pass should be saved, as JSON")
+    private String perf_report = "";
+
     // Our own option parser to be backwards-compatible.
     // It needs to be public because of the crazy reflection that args4j does.
     public static class BooleanOptionHandler extends OptionHandler<Boolean> {
@@ -489,6 +563,12 @@ public class CommandLineRunner extends
 
   private boolean isConfigValid = false;
 
+  // When running as a server, the server owns the state that outlives a
+  // single compile job. Null if this runner is not a server job.
+  private CommandLineRunner server = null;
+  private List<JSSourceFile> serverDefaultExterns = null;
+  private AstCache serverAstCache = null;
+
   /**
    * Create a new command-line runner. You should only need to call
    * the constructor if you're extending this class. Otherwise, the main
@@ -563,19 +643,62 @@ public class CommandLineRunner extends
     List<String> processedArgs = processArgs(args);
 
     CmdLineParser parser = new CmdLineParser(flags);
-    Flags.warningGuardSpec.clear();
-    isConfigValid = true;
-    try {
-      parser.parseArgument(processedArgs.toArray(new String[] {}));
-      // For contains --flagfile flag
-      if (!flags.flag_file.equals("")) {
-        processFlagFile(err);
+    WarningGuardSpec warningGuardSpec;
+    // The option handlers add the warning guards to a static spec, so the
+    // runners of concurrent compile jobs take turns parsing their flags.
+    synchronized (Flags.warningGuardSpec) {
+      Flags.warningGuardSpec.clear();
+      isConfigValid = true;
+      try {
+        parser.parseArgument(processedArgs.toArray(new String[] {}));
+        // For contains --flagfile flag
+        if (!flags.flag_file.equals("")) {
+          processFlagFile(err);
+        }
+      } catch (CmdLineException e) {
+        err.println(e.getMessage());
+        isConfigValid = false;
+      } catch (IOException ioErr) {
+        err.println("ERROR - " + flags.flag_file + " read error.");
+        isConfigValid = false;
       }
-    } catch (CmdLineException e) {
-      err.println(e.getMessage());
+      warningGuardSpec = Flags.warningGuardSpec.copy();
+    }
+
+    if (isConfigValid && flags.function_pass_threads < 1) {
+      err.println("ERROR - --function_pass_threads must be at least 1.");
+      isConfigValid = false;
+    }
+
+    if (isConfigValid && flags.parse_threads < 1) {
+      err.println("ERROR - --parse_threads must be at least 1.");
       isConfigValid = false;
-    } catch (IOException ioErr) {
-      err.println("ERROR - " + flags.flag_file + " read error.");
+    }
+
+    if (isConfigValid && flags.code_generation_threads < 1) {
+      err.println("ERROR - --code_generation_threads must be at least 1.");
+      isConfigValid = false;
+    }
+
+    if (isConfigValid && flags.watch && flags.server) {
+      err.println("ERROR - --watch cannot be used with --server.");
+      isConfigValid = false;
+    }
+
+    if (isConfigValid && !flags.job_manifest.isEmpty()
+        && (flags.watch || flags.server)) {
+      err.println(
+          "ERROR - --job_manifest cannot be used with --watch or --server.");
+      isConfigValid = false;
+    }
+
+    if (isConfigValid && flags.job_threads < 1) {
+      err.println("ERROR - --job_threads must be at least 1.");
+      isConfigValid = false;
+    }
+
+    if (isConfigValid && flags.ast_cache_max_mb < 1) {
+      err.println("ERROR - --ast_cache_max_mb must be at least 1.");
       isConfigValid = false;
     }
 
@@ -607,6 +730,8 @@ public class CommandLineRunner extends
           .setVariableMapOutputFile(flags.variable_map_output_file)
           .setCreateNameMapFiles(flags.create_name_map_files)
           .setPropertyMapOutputFile(flags.property_map_output_file)
+          .setPerfReportFile(flags.perf_report)
+          .setWatch(flags.watch)
           .setCodingConvention(flags.third_party ?
                new DefaultCodingConvention() :
                new ClosureCodingConvention())
@@ -616,7 +741,7 @@ public class CommandLineRunner extends
           .setModuleOutputPathPrefix(flags.module_output_path_prefix)
           .setCreateSourceMap(flags.create_source_map)
           .setSourceMapFormat(flags.source_map_format)
-          .setWarningGuardSpec(Flags.warningGuardSpec)
+          .setWarningGuardSpec(warningGuardSpec)
           .setDefine(flags.define)
           .setCharset(flags.charset)
           .setManageClosureDependencies(flags.manage_closure_dependencies)
@@ -648,6 +773,9 @@ public class CommandLineRunner extends
     }
 
     options.closurePass = flags.process_closure_primitives;
+    options.setFunctionPassThreads(flags.function_pass_threads);
+    options.setParseThreads(flags.parse_threads);
+    options.setCodeGenerationThreads(flags.code_generation_threads);
 
     if (!flags.translationsFile.isEmpty()) {
       try {
@@ -673,7 +801,30 @@ public class CommandLineRunner extends
 
   @Override
   protected Compiler createCompiler() {
-    return new Compiler(getErrorPrintStream());
+    Compiler compiler = new Compiler(getErrorPrintStream());
+    if (server != null) {
+      compiler.setAstCache(server.getServerAstCache());
+    } else if (!flags.ast_cache_dir.isEmpty()) {
+      compiler.setAstCache(createDiskAstCache(false));
+    }
+    return compiler;
+  }
+
+  /**
+   * Creates the cache of parse trees in --ast_cache_dir. A cache that cannot
+   * be used does not fail the compilation, which just parses all the inputs.
+   *
+   * @return The cache, or null if the directory cannot be used.
+   */
+  private AstCache createDiskAstCache(boolean keepExternsInMemory) {
+    try {
+      return new DiskAstCache(new File(flags.ast_cache_dir),
+          flags.ast_cache_max_mb * 1024L * 1024L, keepExternsInMemory);
+    } catch (IOException e) {
+      getErrorPrintStream().println(
+          "WARNING - Not caching parse trees: " + e.getMessage());
+      return null;
+    }
   }
 
   @Override
@@ -683,7 +834,8 @@ public class CommandLineRunner extends
     if (flags.use_only_custom_externs || isInTestMode()) {
       return externs;
     } else {
-      List<JSSourceFile> defaultExterns = getDefaultExterns();
+      List<JSSourceFile> defaultExterns = server != null
+          ? server.getServerDefaultExterns() : getDefaultExterns();
       defaultExterns.addAll(externs);
       return defaultExterns;
     }
@@ -780,12 +932,293 @@ public class CommandLineRunner extends
     return this.isConfigValid;
   }
 
+  /**
+   * @return Whether the compiler should run as a server.
+   */
+  public boolean shouldRunServer() {
+    return this.isConfigValid && flags.server;
+  }
+
+  /**
+   * @return Whether the compiler should run the jobs of a manifest.
+   */
+  public boolean shouldRunJobManifest() {
+    return this.isConfigValid && !flags.job_manifest.isEmpty();
+  }
+
+  /**
+   * Reads compile jobs from the input, one set of flags per line, and runs
+   * them one after the other until the input is exhausted. The exit status
+   * of each job is written to the output on a line of its own. All jobs
+   * share the default externs and their parse trees.
+   */
+  void serve(BufferedReader in, PrintStream out) throws IOException {
+    PrintStream err = getErrorPrintStream();
+    PrintStream jobOut = new PrintStream(new UnclosableOutputStream(err));
+
+    for (String line = in.readLine(); line != null; line = in.readLine()) {
+      if (line.trim().isEmpty()) {
+        continue;
+      }
+
+      int result = runJob(parseJobFlags(line), jobOut, err);
+      err.flush();
+      out.println(result);
+      out.flush();
+    }
+  }
+
+  /**
+   * Runs the jobs of --job_manifest, and writes the exit status of each job
+   * to the output on a line of its own, in the order of the manifest.
+   *
+   * @return 0 if all the jobs succeeded, or the first status that is not.
+   */
+  int runJobManifest(PrintStream out) throws IOException {
+    List<String[]> jobs = Lists.newArrayList();
+    for (String line : Files.readLines(
+             new File(flags.job_manifest), Charset.defaultCharset())) {
+      if (!line.trim().isEmpty()) {
+        jobs.add(parseJobFlags(line));
+      }
+    }
+
+    int status = 0;
+    for (int result : runJobs(jobs, flags.job_threads)) {
+      out.println(result);
+      if (status == 0) {
+        status = result;
+      }
+    }
+    out.flush();
+    return status;
+  }
+
+  /**
+   * Runs compile jobs concurrently, each on a compiler of its own. All jobs
+   * share the default externs and their parse trees. The errors of each job
+   * are kept apart while it runs, and written to the error stream of this
+   * runner in the order of the jobs, so that the reports of jobs that run
+   * at the same time do not interleave.
+   *
+   * Jobs must write their output to files, with --js_output_file or
+   * --module.
+   *
+   * @param jobs The flags of each job.
+   * @param threadCount How many jobs may run at the same time.
+   * @return The exit status of each job, in the order of the jobs.
+   */
+  public List<Integer> runJobs(List<String[]> jobs, int threadCount) {
+    Preconditions.checkArgument(threadCount > 0);
+    JobRunner runner = new JobRunner(jobs);
+
+    int numChildThread = Math.min(threadCount, jobs.size()) - 1;
+    Thread[] workers = new Thread[Math.max(numChildThread, 0)];
+    for (int i = 0; i < numChildThread; i++) {
+      // The jobs need as much stack as the compiler thread does, as some of
+      // their setup recurses into the AST before the compiler thread takes
+      // over.
+      Thread worker = new Thread(
+          null, runner, "jscompiler-job", Compiler.COMPILER_STACK_SIZE);
+      workers[i] = worker;
+      worker.start();
+    }
+
+    runner.run();
+
+    for (int i = 0; i < numChildThread; i++) {
+      try {
+        workers[i].join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted running compile jobs", e);
+      }
+    }
+
+    return ImmutableList.copyOf(runner.results);
+  }
+
+  /**
+   * Runs the jobs of a {@link #runJobs} call. Every thread takes the next
+   * job that did not start yet until there are none left.
+   */
+  private class JobRunner implements Runnable {
+    private final List<String[]> jobs;
+    private final Integer[] results;
+    private final ByteArrayOutputStream[] reports;
+    private int nextJob = 0;
+    private int nextReport = 0;
+
+    JobRunner(List<String[]> jobs) {
+      this.jobs = jobs;
+      this.results = new Integer[jobs.size()];
+      this.reports = new ByteArrayOutputStream[jobs.size()];
+    }
+
+    @Override
+    public void run() {
+      for (int index = getJob(); index >= 0; index = getJob()) {
+        ByteArrayOutputStream report = new ByteArrayOutputStream();
+        PrintStream jobOut = new PrintStream(new UnclosableOutputStream(report));
+        PrintStream jobErr = new PrintStream(report);
+        int result;
+        try {
+          result = runJob(jobs.get(index), jobOut, jobErr);
+        } catch (Throwable e) {
+          e.printStackTrace(jobErr);
+          result = -2;
+        }
+        jobOut.flush();
+        jobErr.flush();
+        finishJob(index, result, report);
+      }
+    }
+
+    private synchronized int getJob() {
+      return nextJob < jobs.size() ? nextJob++ : -1;
+    }
+
+    /**
+     * Records the result of a job, and writes the reports of all the jobs
+     * that are done and that no earlier job is still holding back.
+     */
+    private synchronized void finishJob(
+        int index, int result, ByteArrayOutputStream report) {
+      results[index] = result;
+      reports[index] = report;
+      PrintStream err = getErrorPrintStream();
+      for (; nextReport < jobs.size() && results[nextReport] != null;
+           nextReport++) {
+        ByteArrayOutputStream done = reports[nextReport];
+        reports[nextReport] = null;
+        if (done.size() > 0) {
+          err.println("Job " + (nextReport + 1) + ":");
+          err.print(done.toString());
+        }
+      }
+      err.flush();
+    }
+  }
+
+  /** Splits a line of a server's input or of a manifest into flags. */
+  private static String[] parseJobFlags(String line) {
+    List<String> args = Lists.newArrayList();
+    StringTokenizer tokenizer = new StringTokenizer(line);
+    while (tokenizer.hasMoreTokens()) {
+      args.add(tokenizer.nextToken());
+    }
+    return args.toArray(new String[] {});
+  }
+
+  /**
+   * Runs a compile job on a runner of its own that shares the state of this
+   * one that outlives a job.
+   *
+   * @return The exit status of the job.
+   */
+  private int runJob(String[] args, PrintStream jobOut, PrintStream jobErr) {
+    CommandLineRunner job = new CommandLineRunner(args, jobOut, jobErr);
+    job.server = this;
+
+    if (!job.shouldRunCompiler()) {
+      return -1;
+    } else if (job.flags.server || job.flags.watch
+        || !job.flags.job_manifest.isEmpty()) {
+      jobErr.println("ERROR - --server, --watch and --job_manifest cannot "
+          + "be used in a compile job.");
+      return -1;
+    } else if (!job.writesOutputToFiles()) {
+      jobErr.println("ERROR - Compile jobs must set --js_output_file "
+          + "or --module.");
+      return -1;
+    } else {
+      return job.execute();
+    }
+  }
+
+  /**
+   * Returns a mutable copy of the default externs, which are only read once
+   * for all the jobs of a server. Every call returns new source files, as
+   * source files remember where their last lookup was and the jobs may run
+   * at the same time.
+   */
+  private synchronized List<JSSourceFile> getServerDefaultExterns()
+      throws IOException {
+    if (serverDefaultExterns == null) {
+      serverDefaultExterns = ImmutableList.copyOf(getDefaultExterns());
+    }
+    List<JSSourceFile> externs = Lists.newArrayList();
+    for (JSSourceFile extern : serverDefaultExterns) {
+      externs.add(JSSourceFile.fromCode(extern.getName(), extern.getCode()));
+    }
+    return externs;
+  }
+
+  /**
+   * Returns the cache of parse trees shared by all the jobs of a server.
+   */
+  private synchronized AstCache getServerAstCache() {
+    if (serverAstCache == null) {
+      if (!flags.ast_cache_dir.isEmpty()) {
+        serverAstCache = createDiskAstCache(true);
+      }
+      if (serverAstCache == null) {
+        serverAstCache = new AstCache(true);
+      }
+    }
+    return serverAstCache;
+  }
+
+  @VisibleForTesting
+  AstCache getServerAstCacheForTesting() {
+    return getServerAstCache();
+  }
+
+  /**
+   * An output stream that is flushed rather than closed when a compile job
+   * is done with it, so that the server or the job's report can keep using
+   * it.
+   */
+  private static class UnclosableOutputStream extends FilterOutputStream {
+    UnclosableOutputStream(OutputStream out) {
+      super(out);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      out.write(b, off, len);
+    }
+
+    @Override
+    public void close() throws IOException {
+      flush();
+    }
+  }
+
   /**
    * Runs the Compiler. Exits cleanly in the event of an error.
    */
   public static void main(String[] args) {
     CommandLineRunner runner = new CommandLineRunner(args);
-    if (runner.shouldRunCompiler()) {
+    if (runner.shouldRunServer()) {
+      try {
+        runner.serve(
+            new BufferedReader(new InputStreamReader(System.in)), System.out);
+      } catch (IOException e) {
+        e.printStackTrace();
+        System.exit(-2);
+      }
+      System.exit(0);
+    } else if (runner.shouldRunJobManifest()) {
+      int result;
+      try {
+        result = runner.runJobManifest(System.out);
+      } catch (IOException e) {
+        e.printStackTrace();
+        result = -2;
+      }
+      System.exit(result);
+    } else if (runner.shouldRunCompiler()) {
       runner.run();
     } else {
       System.exit(-1);
@@ -19,6 +19,8 @@ package com.google.javascript.jscomp;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Supplier;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.javascript.jscomp.CompilerOptions.DevMode;
@@ -38,7 +40,10 @@ import com.google.javascript.rhino.Node;
 import com.google.javascript.rhino.Token;
 import com.google.javascript.rhino.jstype.JSTypeRegistry;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.PrintStream;
 import java.io.Serializable;
 import java.nio.charset.Charset;
@@ -48,6 +53,11 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
@@ -140,6 +150,7 @@ public class Compiler extends AbstractCompiler {
 
   private JSTypeRegistry typeRegistry;
   private Config parserConfig = null;
+  private AstCache astCache = null;
 
   private ReverseAbstractInterpreter abstractInterpreter;
   private TypeValidator typeValidator;
@@ -162,7 +173,24 @@ public class Compiler extends AbstractCompiler {
       DiagnosticType.error("JSC_OPTIMIZE_LOOP_ERROR",
           "Exceeded max number of code motion iterations: {0}");
 
-  private static final long COMPILER_STACK_SIZE = 1048576L;
+  static final long COMPILER_STACK_SIZE = 1048576L;
+
+  /**
+   * The threads with a large stack that compilations run on. Idle threads are
+   * kept for a while, so that clients that compile a lot do not start a thread
+   * per compilation.
+   */
+  private static final ExecutorService compilerExecutor =
+      Executors.newCachedThreadPool(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+          Thread thread =
+              new Thread(null, r, "jscompiler", COMPILER_STACK_SIZE);
+          // Idle threads must not keep the VM running.
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
 
 
   /**
@@ -583,10 +611,11 @@ public class Compiler extends AbstractCompiler {
       final Callable<T> callable, boolean useLargeStackThread, boolean trace) {
 
     // Under JRE 1.6, the jscompiler overflows the stack when running on some
-    // large or complex js code. Here we start a new thread with a larger
+    // large or complex js code. Here we run on a thread with a larger
     // stack in order to let the compiler do its thing, without having to
     // increase the stack size for *every* thread (which is what -Xss does).
-    // Might want to add thread pool support for clients that compile a lot.
+    // NodeTraversal does not recurse, and neither do the parser and the code
+    // printer down chains of binary operators, but some passes still do.
 
     final boolean dumpTraceReport = trace;
     final Object[] result = new Object[1];
@@ -610,14 +639,16 @@ public class Compiler extends AbstractCompiler {
     };
 
     if (useLargeStackThread) {
-      Thread th = new Thread(null, runnable, "jscompiler", COMPILER_STACK_SIZE);
-      th.start();
+      Future<?> future = compilerExecutor.submit(runnable);
       while (true) {
         try {
-          th.join();
+          future.get();
           break;
         } catch (InterruptedException ignore) {
           // ignore
+        } catch (ExecutionException e) {
+          // The runnable catches everything it throws.
+          throw new IllegalStateException(e);
         }
       }
     } else {
@@ -1052,6 +1083,52 @@ public class Compiler extends AbstractCompiler {
     return true;
   }
 
+  /**
+   * Replaces an input with a new version of it, and checks the new version
+   * again with the checks that can run on a single script. This is much
+   * faster than compiling again, but only makes sense if the compiler ran the
+   * checks and stopped, as in IDE mode. Checks that cannot run on a single
+   * script are skipped.
+   *
+   * The errors and warnings are reported to the error manager of the
+   * compiler, which may be replaced first to only get the new ones.
+   *
+   * @return The result of the checks.
+   */
+  public Result replaceScript(final JsAst ast) {
+    return runInCompilerThread(new Callable<Result>() {
+      @Override
+      public Result call() throws Exception {
+        CompilerInput oldInput = getInput(ast.getInputId());
+        if (replaceIncrementalSourceAst(ast)) {
+          hotSwapChecks(ast.getAstRoot(Compiler.this),
+              oldInput.getAstRoot(Compiler.this));
+        }
+        return getResult();
+      }
+    });
+  }
+
+  /**
+   * Runs the hot-swap versions of the checks on a script that replaced
+   * another one.
+   */
+  private void hotSwapChecks(Node scriptRoot, Node originalRoot) {
+    for (PassFactory factory : getPassConfig().getChecks()) {
+      HotSwapCompilerPass pass = factory.getHotSwapPass(this);
+      if (pass == null) {
+        continue;
+      }
+      logger.info("Hot-swapping " + factory.getName());
+      startPass(factory.getName());
+      pass.hotSwapScript(scriptRoot, originalRoot);
+      endPass();
+      if (hasHaltingErrors()) {
+        return;
+      }
+    }
+  }
+
   @Override
   JSModuleGraph getModuleGraph() {
     return moduleGraph;
@@ -1184,7 +1261,12 @@ public class Compiler extends AbstractCompiler {
 
     try {
       // Parse externs sources.
-      for (CompilerInput input : externs) {
+      List<ParallelCompilerPass.Result> parseResults = parseInParallel(externs);
+      for (int i = 0; i < externs.size(); i++) {
+        CompilerInput input = externs.get(i);
+        if (parseResults != null) {
+          parseResults.get(i).notifyCompiler(this);
+        }
         Node n = input.getAstRoot(this);
         if (hasErrors()) {
           return null;
@@ -1222,7 +1304,12 @@ public class Compiler extends AbstractCompiler {
 
       // Check if inputs need to be rebuilt from modules.
       boolean staleInputs = false;
-      for (CompilerInput input : inputs) {
+      parseResults = parseInParallel(inputs);
+      for (int i = 0; i < inputs.size(); i++) {
+        CompilerInput input = inputs.get(i);
+        if (parseResults != null) {
+          parseResults.get(i).notifyCompiler(this);
+        }
         Node n = input.getAstRoot(this);
 
         // Inputs can have a null AST during initial parse.
@@ -1292,6 +1379,25 @@ public class Compiler extends AbstractCompiler {
     }
   }
 
+  /**
+   * Parses the inputs up front on several threads, if the options ask for
+   * it. The performance tracker is not thread-safe, so the inputs are left
+   * to be parsed one by one when passes are being traced.
+   *
+   * @return What each input reported while it was parsed, in input order, or
+   *     null if the inputs have not been parsed.
+   */
+  private List<ParallelCompilerPass.Result> parseInParallel(
+      List<CompilerInput> toParse) {
+    if (options.parseThreads <= 1 || options.tracer.isOn()
+        || toParse.size() <= 1) {
+      return null;
+    }
+    // Created lazily, so do it before the workers need it.
+    getParserConfig();
+    return new ParallelParser(this, options.parseThreads).parse(toParse);
+  }
+
   public Node parse(JSSourceFile file) {
     initCompilerOptionsIfTesting();
     addToDebugLog("Parsing: " + file.getName());
@@ -1353,14 +1459,7 @@ public class Compiler extends AbstractCompiler {
         Tracer tracer = newTracer("toSource");
         try {
           CodeBuilder cb = new CodeBuilder();
-          if (jsRoot != null) {
-            int i = 0;
-            for (Node scriptNode = jsRoot.getFirstChild();
-                 scriptNode != null;
-                 scriptNode = scriptNode.getNext()) {
-              toSource(cb, i++, scriptNode);
-            }
-          }
+          appendScripts(cb, getScripts(), null);
           return cb.toString();
         } finally {
           stopTracer(tracer, "toSource");
@@ -1369,6 +1468,27 @@ public class Compiler extends AbstractCompiler {
     });
   }
 
+  /**
+   * Converts the parse tree back to js code, and writes it to the given
+   * output as it is generated, so that the code is never held in memory as
+   * a whole.
+   */
+  public void toSource(Appendable out) throws IOException {
+    writeSource(getScripts(), out);
+  }
+
+  private List<Node> getScripts() {
+    List<Node> scripts = Lists.newArrayList();
+    if (jsRoot != null) {
+      for (Node scriptNode = jsRoot.getFirstChild();
+           scriptNode != null;
+           scriptNode = scriptNode.getNext()) {
+        scripts.add(scriptNode);
+      }
+    }
+    return scripts;
+  }
+
   /**
    * Converts the parse tree for each input back to js code.
    */
@@ -1378,15 +1498,12 @@ public class Compiler extends AbstractCompiler {
       public String[] call() throws Exception {
         Tracer tracer = newTracer("toSourceArray");
         try {
-          int numInputs = inputs.size();
-          String[] sources = new String[numInputs];
-          CodeBuilder cb = new CodeBuilder();
-          for (int i = 0; i < numInputs; i++) {
-            Node scriptNode = inputs.get(i).getAstRoot(Compiler.this);
-            cb.reset();
-            toSource(cb, i, scriptNode);
-            sources[i] = cb.toString();
+          List<Node> scripts = Lists.newArrayList();
+          for (CompilerInput input : inputs) {
+            scripts.add(input.getAstRoot(Compiler.this));
           }
+          String[] sources = new String[scripts.size()];
+          appendScripts(new CodeBuilder(), scripts, sources);
           return sources;
         } finally {
           stopTracer(tracer, "toSourceArray");
@@ -1399,58 +1516,116 @@ public class Compiler extends AbstractCompiler {
    * Converts the parse tree for a module back to js code.
    */
   public String toSource(final JSModule module) {
+    final List<Node> scripts = getScripts(module);
     return runInCompilerThread(new Callable<String>() {
       @Override
       public String call() throws Exception {
-        List<CompilerInput> inputs = module.getInputs();
-        int numInputs = inputs.size();
-        if (numInputs == 0) {
-          return "";
-        }
         CodeBuilder cb = new CodeBuilder();
-        for (int i = 0; i < numInputs; i++) {
-          Node scriptNode = inputs.get(i).getAstRoot(Compiler.this);
-          if (scriptNode == null) {
-            throw new IllegalArgumentException(
-                "Bad module: " + module.getName());
-          }
-          toSource(cb, i, scriptNode);
-        }
+        appendScripts(cb, scripts, null);
         return cb.toString();
       }
     });
   }
 
+  /**
+   * Converts the parse tree for a module back to js code, and writes it to
+   * the given output as it is generated.
+   */
+  public void toSource(JSModule module, Appendable out) throws IOException {
+    writeSource(getScripts(module), out);
+  }
+
+  private void writeSource(final List<Node> scripts, Appendable out)
+      throws IOException {
+    final CodeBuilder cb = new CodeBuilder(out);
+    try {
+      runInCompilerThread(new Callable<Void>() {
+        @Override
+        public Void call() throws Exception {
+          Tracer tracer = newTracer("toSource");
+          try {
+            appendScripts(cb, scripts, null);
+          } finally {
+            stopTracer(tracer, "toSource");
+          }
+          return null;
+        }
+      });
+    } catch (RuntimeException e) {
+      Throwables.propagateIfInstanceOf(
+          Throwables.getRootCause(e), IOException.class);
+      throw e;
+    }
+  }
 
   /**
    * Converts the parse tree for each input in a module back to js code.
    */
   public String[] toSourceArray(final JSModule module) {
+    final List<Node> scripts = Lists.newArrayList();
+    for (CompilerInput input : module.getInputs()) {
+      Node scriptNode = input.getAstRoot(this);
+      if (scriptNode == null) {
+        throw new IllegalArgumentException(
+            "Bad module input: " + input.getName());
+      }
+      scripts.add(scriptNode);
+    }
     return runInCompilerThread(new Callable<String[]>() {
       @Override
       public String[] call() throws Exception {
-        List<CompilerInput> inputs = module.getInputs();
-        int numInputs = inputs.size();
-        if (numInputs == 0) {
-          return new String[0];
-        }
+        String[] sources = new String[scripts.size()];
+        appendScripts(new CodeBuilder(), scripts, sources);
+        return sources;
+      }
+    });
+  }
 
-        String[] sources = new String[numInputs];
-        CodeBuilder cb = new CodeBuilder();
-        for (int i = 0; i < numInputs; i++) {
-          Node scriptNode = inputs.get(i).getAstRoot(Compiler.this);
-          if (scriptNode == null) {
-            throw new IllegalArgumentException(
-                "Bad module input: " + inputs.get(i).getName());
-          }
+  private List<Node> getScripts(JSModule module) {
+    List<Node> scripts = Lists.newArrayList();
+    for (CompilerInput input : module.getInputs()) {
+      Node scriptNode = input.getAstRoot(this);
+      if (scriptNode == null) {
+        throw new IllegalArgumentException(
+            "Bad module: " + module.getName());
+      }
+      scripts.add(scriptNode);
+    }
+    return scripts;
+  }
 
-          cb.reset();
-          toSource(cb, i, scriptNode);
+  /**
+   * Writes out the js code of scripts, in order, the way
+   * {@link #toSource(CodeBuilder, int, Node)} does. When more than one
+   * thread is set for code generation, the scripts are printed on those
+   * threads, while this thread puts their code together.
+   *
+   * @param sources If not null, the code of each script is stored in it
+   *     instead of kept in the code builder, which is reset after each
+   *     script.
+   */
+  private void appendScripts(
+      CodeBuilder cb, List<Node> scripts, String[] sources) {
+    ParallelCodePrinter printer = null;
+    if (options.codeGenerationThreads > 1 && scripts.size() > 1) {
+      printer = new ParallelCodePrinter(
+          this, options.codeGenerationThreads, sourceMap != null);
+      printer.start(scripts);
+    }
+    try {
+      for (int i = 0; i < scripts.size(); i++) {
+        appendSource(cb, i, scripts.get(i),
+            printer != null ? printer.take() : null);
+        if (sources != null) {
           sources[i] = cb.toString();
+          cb.reset();
         }
-        return sources;
       }
-    });
+    } finally {
+      if (printer != null) {
+        printer.stop();
+      }
+    }
   }
 
   /**
@@ -1466,62 +1641,79 @@ public class Compiler extends AbstractCompiler {
     runInCompilerThread(new Callable<Void>() {
       @Override
       public Void call() throws Exception {
-        if (options.printInputDelimiter) {
-          if ((cb.getLength() > 0) && !cb.endsWith("\n")) {
-            cb.append("\n");  // Make sure that the label starts on a new line
-          }
-          Preconditions.checkState(root.getType() == Token.SCRIPT);
+        appendSource(cb, inputSeqNum, root, null);
+        return null;
+      }
+    });
+  }
+
+  /**
+   * Writes out js code from a root node, as
+   * {@link #toSource(CodeBuilder, int, Node)} does.
+   *
+   * @param printed The code of the root node, if it was printed already.
+   */
+  private void appendSource(CodeBuilder cb, int inputSeqNum, Node root,
+      ParallelCodePrinter.PrintedScript printed) {
+    if (options.printInputDelimiter) {
+      if ((cb.getLength() > 0) && cb.getLastChar() != '\n') {
+        cb.append("\n");  // Make sure that the label starts on a new line
+      }
+      Preconditions.checkState(root.getType() == Token.SCRIPT);
 
-          String delimiter = options.inputDelimiter;
+      String delimiter = options.inputDelimiter;
 
-          String inputName = root.getInputId().getIdName();
-          String sourceName = root.getSourceFileName();
-          Preconditions.checkState(sourceName != null);
-          Preconditions.checkState(!sourceName.isEmpty());
+      String inputName = root.getInputId().getIdName();
+      String sourceName = root.getSourceFileName();
+      Preconditions.checkState(sourceName != null);
+      Preconditions.checkState(!sourceName.isEmpty());
 
-          delimiter = delimiter
-              .replaceAll("%name%", Matcher.quoteReplacement(inputName))
-              .replaceAll("%num%", String.valueOf(inputSeqNum));
+      delimiter = delimiter
+          .replaceAll("%name%", Matcher.quoteReplacement(inputName))
+          .replaceAll("%num%", String.valueOf(inputSeqNum));
 
-          cb.append(delimiter)
-            .append("\n");
-        }
-        if (root.getJSDocInfo() != null &&
-            root.getJSDocInfo().getLicense() != null) {
-          cb.append("/*\n")
-            .append(root.getJSDocInfo().getLicense())
-            .append("*/\n");
-        }
+      cb.append(delimiter)
+        .append("\n");
+    }
+    if (root.getJSDocInfo() != null &&
+        root.getJSDocInfo().getLicense() != null) {
+      cb.append("/*\n")
+        .append(root.getJSDocInfo().getLicense())
+        .append("*/\n");
+    }
 
-        // If there is a valid source map, then indicate to it that the current
-        // root node's mappings are offset by the given string builder buffer.
-        if (options.sourceMapOutputPath != null) {
-          sourceMap.setStartingPosition(
-              cb.getLineIndex(), cb.getColumnIndex());
-        }
+    // If there is a valid source map, then indicate to it that the current
+    // root node's mappings are offset by the given string builder buffer.
+    if (options.sourceMapOutputPath != null) {
+      sourceMap.setStartingPosition(
+          cb.getLineIndex(), cb.getColumnIndex());
+    }
 
-        // if LanguageMode is ECMASCRIPT5_STRICT, only print 'use strict'
-        // for the first input file
-        String code = toSource(root, sourceMap, inputSeqNum == 0);
-        if (!code.isEmpty()) {
-          cb.append(code);
-
-          // In order to avoid parse ambiguity when files are concatenated
-          // together, all files should end in a semi-colon. Do a quick
-          // heuristic check if there's an obvious semi-colon already there.
-          int length = code.length();
-          char lastChar = code.charAt(length - 1);
-          char secondLastChar = length >= 2 ?
-              code.charAt(length - 2) : '\0';
-          boolean hasSemiColon = lastChar == ';' ||
-              (lastChar == '\n' && secondLastChar == ';');
-          if (!hasSemiColon) {
-            cb.append(";");
-          }
-        }
-        return null;
+    // if LanguageMode is ECMASCRIPT5_STRICT, only print 'use strict'
+    // for the first input file
+    int start = cb.getLength();
+    if (printed == null) {
+      createCodePrinter(root, sourceMap, inputSeqNum == 0).build(cb);
+    } else {
+      if (sourceMap != null) {
+        printed.addMappingsTo(sourceMap);
       }
-    });
+      cb.append(printed.code);
+    }
+    int length = cb.getLength() - start;
+    if (length > 0) {
+      // In order to avoid parse ambiguity when files are concatenated
+      // together, all files should end in a semi-colon. Do a quick
+      // heuristic check if there's an obvious semi-colon already there.
+      char lastChar = cb.getLastChar();
+      char secondLastChar = length >= 2 ?
+          cb.getSecondLastChar() : '\0';
+      boolean hasSemiColon = lastChar == ';' ||
+          (lastChar == '\n' && secondLastChar == ';');
+      if (!hasSemiColon) {
+        cb.append(";");
+      }
+    }
   }
 
   /**
@@ -1538,6 +1730,11 @@ public class Compiler extends AbstractCompiler {
    * Generates JavaScript source code for an AST.
    */
   private String toSource(Node n, SourceMap sourceMap, boolean firstOutput) {
+    return createCodePrinter(n, sourceMap, firstOutput).build();
+  }
+
+  CodePrinter.Builder createCodePrinter(
+      Node n, SourceMap sourceMap, boolean firstOutput) {
     CodePrinter.Builder builder = new CodePrinter.Builder(n);
     builder.setPrettyPrint(options.prettyPrint);
     builder.setLineBreak(options.lineBreak);
@@ -1551,54 +1748,106 @@ public class Compiler extends AbstractCompiler {
         Charset.forName(options.outputCharset) : null;
     builder.setOutputCharset(charset);
 
-    return builder.build();
+    return builder;
   }
 
   /**
    * Stores a buffer of text to which more can be appended.  This is just like a
-   * StringBuilder except that we also track the number of lines.
+   * StringBuilder except that we also track the number of lines. The text may
+   * also be written through to an output instead, as it is appended.
    */
-  public static class CodeBuilder {
+  public static class CodeBuilder implements Appendable {
     private final StringBuilder sb = new StringBuilder();
+    // Where the text is written to instead of the buffer, if not null.
+    private final Appendable out;
+    private int length = 0;
+    private char lastChar = '\0';
+    private char secondLastChar = '\0';
     private int lineCount = 0;
     private int colCount = 0;
 
+    public CodeBuilder() {
+      this(null);
+    }
+
+    /**
+     * Creates a builder that writes the text to the given output as it is
+     * appended, rather than keeping it. Exceptions thrown by the output are
+     * rethrown wrapped in RuntimeExceptions.
+     */
+    CodeBuilder(Appendable out) {
+      this.out = out;
+    }
+
     /** Removes all text, but leaves the line count unchanged. */
     void reset() {
       sb.setLength(0);
+      length = 0;
+      lastChar = '\0';
+      secondLastChar = '\0';
     }
 
     /** Appends the given string to the text buffer. */
     CodeBuilder append(String str) {
-      sb.append(str);
+      return append((CharSequence) str);
+    }
+
+    @Override
+    public CodeBuilder append(CharSequence str) {
+      return append(str, 0, str.length());
+    }
+
+    @Override
+    public CodeBuilder append(CharSequence str, int start, int end) {
+      if (start == end) {
+        return this;
+      }
+      if (out == null) {
+        sb.append(str, start, end);
+      } else {
+        try {
+          out.append(str, start, end);
+        } catch (IOException e) {
+          throw Throwables.propagate(e);
+        }
+      }
 
       // Adjust the line and column information for the new text.
-      int index = -1;
-      int lastIndex = index;
-      while ((index = str.indexOf('\n', index + 1)) >= 0) {
-        ++lineCount;
-        lastIndex = index;
+      int lastIndex = -1;
+      for (int i = start; i < end; i++) {
+        if (str.charAt(i) == '\n') {
+          ++lineCount;
+          lastIndex = i;
+        }
       }
 
       if (lastIndex == -1) {
         // No new lines, append the new characters added.
-        colCount += str.length();
+        colCount += end - start;
       } else {
-        colCount = str.length() - (lastIndex + 1);
+        colCount = end - (lastIndex + 1);
       }
 
+      length += end - start;
+      secondLastChar = end - start >= 2 ? str.charAt(end - 2) : lastChar;
+      lastChar = str.charAt(end - 1);
       return this;
     }
 
+    @Override
+    public CodeBuilder append(char c) {
+      return append(String.valueOf(c));
+    }
+
     /** Returns all text in the text buffer. */
     @Override
     public String toString() {
       return sb.toString();
     }
 
-    /** Returns the length of the text buffer. */
+    /** Returns the length of the text appended since the last reset. */
     public int getLength() {
-      return sb.length();
+      return length;
     }
 
     /** Returns the (zero-based) index of the last line in the text buffer. */
@@ -1611,10 +1860,20 @@ public class Compiler extends AbstractCompiler {
       return colCount;
     }
 
-    /** Determines whether the text ends with the given suffix. */
-    boolean endsWith(String suffix) {
-      return (sb.length() > suffix.length())
-          && suffix.equals(sb.substring(sb.length() - suffix.length()));
+    /**
+     * Returns the last character appended since the last reset, or '\0' if
+     * there is none.
+     */
+    char getLastChar() {
+      return lastChar;
+    }
+
+    /**
+     * Returns the next to last character appended since the last reset, or
+     * '\0' if there is none.
+     */
+    char getSecondLastChar() {
+      return secondLastChar;
     }
   }
 
@@ -1720,6 +1979,19 @@ public class Compiler extends AbstractCompiler {
     codeChangeHandlers.remove(handler);
   }
 
+  // The results that worker threads of a ParallelCompilerPass report to.
+  private final ThreadLocal<ParallelCompilerPass.Result> threadResults =
+      new ThreadLocal<ParallelCompilerPass.Result>();
+
+  @Override
+  void setCurrentThreadResult(ParallelCompilerPass.Result result) {
+    if (result == null) {
+      threadResults.remove();
+    } else {
+      threadResults.set(result);
+    }
+  }
+
   /**
    * All passes should call reportCodeChange() when they alter
    * the JS tree structure. This is verified by CompilerTestCase.
@@ -1727,6 +1999,11 @@ public class Compiler extends AbstractCompiler {
    */
   @Override
   public void reportCodeChange() {
+    ParallelCompilerPass.Result threadResult = threadResults.get();
+    if (threadResult != null) {
+      threadResult.changed = true;
+      return;
+    }
     for (CodeChangeHandler handler : codeChangeHandlers) {
       handler.reportChange();
     }
@@ -1790,6 +2067,20 @@ public class Compiler extends AbstractCompiler {
     return parserConfig;
   }
 
+  /**
+   * Shares parse trees with other compilations through the given cache.
+   * Inputs whose code and parser configuration match a cached tree are not
+   * reparsed.
+   */
+  void setAstCache(AstCache astCache) {
+    this.astCache = astCache;
+  }
+
+  @Override
+  AstCache getAstCache() {
+    return astCache;
+  }
+
   @Override
   public boolean isTypeCheckingEnabled() {
     return options.checkTypes;
@@ -1810,6 +2101,23 @@ public class Compiler extends AbstractCompiler {
 
   @Override
   public void report(JSError error) {
+    ParallelCompilerPass.Result threadResult = threadResults.get();
+    if (threadResult != null) {
+      threadResult.errors.add(error);
+      return;
+    }
+
+    CheckLevel level = getLevel(error);
+    if (level.isOn()) {
+      errorManager.report(level, error);
+    }
+  }
+
+  /**
+   * Returns the level an error is reported at, after the warnings guards
+   * had their say.
+   */
+  private CheckLevel getLevel(JSError error) {
     CheckLevel level = error.level;
     if (warningsGuard != null) {
       CheckLevel newLevel = warningsGuard.level(error);
@@ -1817,10 +2125,7 @@ public class Compiler extends AbstractCompiler {
         level = newLevel;
       }
     }
-
-    if (level.isOn()) {
-      errorManager.report(level, error);
-    }
+    return level;
   }
 
   @Override
@@ -1862,7 +2167,25 @@ public class Compiler extends AbstractCompiler {
 
   @Override
   boolean hasHaltingErrors() {
-    return !isIdeMode() && getErrorCount() > 0;
+    return !isIdeMode() && (getErrorCount() > 0 || hasThreadErrors());
+  }
+
+  /**
+   * Whether the current thread has recorded an error that is not reported
+   * yet. While an input is parsed on a worker thread, this is what tells
+   * whether the parse failed.
+   */
+  private boolean hasThreadErrors() {
+    ParallelCompilerPass.Result threadResult = threadResults.get();
+    if (threadResult == null) {
+      return false;
+    }
+    for (JSError error : threadResult.errors) {
+      if (getLevel(error) == CheckLevel.ERROR) {
+        return true;
+      }
+    }
+    return false;
   }
 
   /**
@@ -2011,20 +2334,47 @@ public class Compiler extends AbstractCompiler {
    * order to recreate a Compiler instance from scratch, you would need to
    * call {@code init} with the same arguments as in the initial creation before
    * restoring intermediate state.
+   *
+   * Besides Java serialization, the state can be written in a compact
+   * binary format with {@link #writeTo}, which is several times smaller and
+   * faster to read back.
    */
   public static class IntermediateState implements Serializable {
     private static final long serialVersionUID = 1L;
 
     Node externsRoot;
-    private Node jsRoot;
-    private List<CompilerInput> externs;
-    private List<CompilerInput> inputs;
-    private List<JSModule> modules;
-    private PassConfig.State passConfigState;
-    private JSTypeRegistry typeRegistry;
-    private AbstractCompiler.LifeCycleStage lifeCycleStage;
+    Node jsRoot;
+    List<CompilerInput> externs;
+    List<CompilerInput> inputs;
+    List<JSModule> modules;
+    PassConfig.State passConfigState;
+    JSTypeRegistry typeRegistry;
+    AbstractCompiler.LifeCycleStage lifeCycleStage;
+
+    IntermediateState() {}
+
+    /**
+     * Writes the state in the compact binary format. The stream is not
+     * closed.
+     */
+    public void writeTo(OutputStream out) throws IOException {
+      IntermediateStateSerializer.write(this, out);
+    }
 
-    private IntermediateState() {}
+    /** Reads a state written by {@link #writeTo}. */
+    public static IntermediateState readFrom(InputStream in)
+        throws IOException {
+      return IntermediateStateSerializer.read(in);
+    }
+
+    /**
+     * Reads a state written by {@link #writeTo} from a file, which is mapped
+     * into memory, so that several compilers can start from the same
+     * snapshot without copying it through buffers.
+     */
+    public static IntermediateState readFrom(File file) throws IOException {
+      return IntermediateStateSerializer.read(file);
+    }
   }
 
   /**
@@ -2054,6 +2404,16 @@ public class Compiler extends AbstractCompiler {
     externs = state.externs;
     inputs = state.inputs;
     modules = state.modules;
+    if (jsRoot != null && jsRoot.getParent() != null) {
+      externAndJsRoot = jsRoot.getParent();
+    }
+    // The state may have been read back from a stream, in which case the
+    // inputs are not the ones this compiler was initialized with.
+    inputsById = Maps.newHashMap();
+    for (CompilerInput input : Iterables.concat(externs, inputs)) {
+      input.setCompiler(this);
+      inputsById.put(input.getInputId(), input);
+    }
     passes = createPassConfigInternal();
     getPassConfig().setIntermediateState(state.passConfigState);
     typeRegistry = state.typeRegistry;
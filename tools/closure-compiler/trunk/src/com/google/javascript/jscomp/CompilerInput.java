@@ -57,10 +57,10 @@ public class CompilerInput
 
   // An error manager for handling problems when dealing with
   // provides/requires.
-  private ErrorManager errorManager;
+  private transient ErrorManager errorManager;
 
   // An AbstractCompiler for doing parsing.
-  private AbstractCompiler compiler;
+  private transient AbstractCompiler compiler;
 
   public CompilerInput(SourceAst ast) {
     this(ast, ast.getSourceFile().getName(), false);
@@ -650,6 +650,18 @@ public class CompilerOptions implements Serializable, Cloneable {
   /** List of properties that we report invalidation errors for. */
   Map<String, CheckLevel> propertyInvalidationErrors;
 
+  /**
+   * The number of threads that the function-local optimizations, like the
+   * peephole optimizations, are run on.
+   */
+  int functionPassThreads = 1;
+
+  /** The number of threads that the inputs are read and parsed on. */
+  int parseThreads = 1;
+
+  /** The number of threads that the code of the inputs is printed on. */
+  int codeGenerationThreads = 1;
+
 
   //--------------------------------
   // Output options
@@ -1394,6 +1406,33 @@ public class CompilerOptions implements Serializable, Cloneable {
     this.assumeClosuresOnlyCaptureReferences = enable;
   }
 
+  /**
+   * Sets the number of threads that the function-local optimizations are
+   * run on. The output does not depend on it.
+   */
+  public void setFunctionPassThreads(int threads) {
+    Preconditions.checkArgument(threads > 0);
+    this.functionPassThreads = threads;
+  }
+
+  /**
+   * Sets the number of threads that the inputs are read and parsed on. The
+   * output does not depend on it.
+   */
+  public void setParseThreads(int threads) {
+    Preconditions.checkArgument(threads > 0);
+    this.parseThreads = threads;
+  }
+
+  /**
+   * Sets the number of threads that the code of the inputs is printed on.
+   * The output does not depend on it.
+   */
+  public void setCodeGenerationThreads(int threads) {
+    Preconditions.checkArgument(threads > 0);
+    this.codeGenerationThreads = threads;
+  }
+
   /**
    * Sets the list of properties that we report property invalidation errors
    * for.
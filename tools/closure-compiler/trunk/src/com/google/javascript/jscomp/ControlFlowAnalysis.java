@@ -18,7 +18,7 @@ package com.google.javascript.jscomp;
 
 import com.google.common.base.Preconditions;
 import com.google.common.collect.HashMultimap;
-import com.google.common.collect.Maps;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Multimap;
 import com.google.javascript.jscomp.ControlFlowGraph.Branch;
 import com.google.javascript.jscomp.NodeTraversal.Callback;
@@ -27,11 +27,11 @@ import com.google.javascript.rhino.Node;
 import com.google.javascript.rhino.Token;
 
 import java.util.ArrayDeque;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.Deque;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 import java.util.PriorityQueue;
 
 /**
@@ -57,12 +57,19 @@ final class ControlFlowAnalysis implements Callback, CompilerPass {
 
   private final AbstractCompiler compiler;
 
-  private ControlFlowGraph<Node> cfg;
+  private AstControlFlowGraph cfg;
 
-  private Map<Node, Integer> astPosition;
+  // The AST nodes in the order in which they were traversed, while the graph
+  // is built. Most of them are not CFG nodes, so their positions are only
+  // looked up once the graph is built.
+  private final List<Node> traversedNodes = Lists.newArrayList();
 
-  // TODO(nicksantos): should these be node annotations?
-  private Map<DiGraphNode<Node, Branch>, Integer> nodePriorities;
+  // Maps the index of a CFG node to the position of its value in the
+  // traversal of the AST.
+  private int[] astPositions;
+
+  // Maps the index of a CFG node to its priority, or 0 if it has none yet.
+  private int[] nodePriorities;
 
   // We order CFG nodes by by looking at the AST positions.
   // CFG nodes that come first lexically should be visited first, because
@@ -72,11 +79,11 @@ final class ControlFlowAnalysis implements Callback, CompilerPass {
     @Override
     public int compare(
         DiGraphNode<Node, Branch> a, DiGraphNode<Node, Branch> b) {
-      return astPosition.get(a.getValue()) - astPosition.get(b.getValue());
+      return astPositions[cfg.getNodeIndex(a)]
+          - astPositions[cfg.getNodeIndex(b)];
     }
   };
 
-  private int astPositionCounter;
   private int priorityCounter;
 
   private final boolean shouldTraverseFunctions;
@@ -148,16 +155,13 @@ final class ControlFlowAnalysis implements Callback, CompilerPass {
   @Override
   public void process(Node externs, Node root) {
     this.root = root;
-    astPositionCounter = 0;
-    astPosition = Maps.newHashMap();
-    nodePriorities = Maps.newHashMap();
-    cfg = new AstControlFlowGraph(computeFallThrough(root), nodePriorities,
-                                  edgeAnnotations);
+    cfg = new AstControlFlowGraph(computeFallThrough(root), edgeAnnotations);
     NodeTraversal.traverse(compiler, root, this);
-    astPosition.put(null, ++astPositionCounter); // the implicit return is last.
+    computeAstPositions();
 
     // Now, generate the priority of nodes by doing a depth-first
     // search on the CFG.
+    nodePriorities = new int[cfg.getNodeCount()];
     priorityCounter = 0;
     DiGraphNode<Node, Branch> entry = cfg.getEntry();
     prioritizeFromEntryNode(entry);
@@ -169,7 +173,7 @@ final class ControlFlowAnalysis implements Callback, CompilerPass {
         Node value = candidate.getValue();
         if (value != null && value.getType() == Token.FUNCTION) {
           Preconditions.checkState(
-              !nodePriorities.containsKey(candidate) || candidate == entry);
+              !hasPriority(candidate) || candidate == entry);
           prioritizeFromEntryNode(candidate);
         }
       }
@@ -180,13 +184,37 @@ final class ControlFlowAnalysis implements Callback, CompilerPass {
     // Presumably, it doesn't really matter what priority they get, since
     // this shouldn't happen in real code.
     for (DiGraphNode<Node, Branch> candidate : cfg.getDirectedGraphNodes()) {
-      if (!nodePriorities.containsKey(candidate)) {
-        nodePriorities.put(candidate, ++priorityCounter);
+      if (!hasPriority(candidate)) {
+        nodePriorities[cfg.getNodeIndex(candidate)] = ++priorityCounter;
       }
     }
 
     // Again, the implicit return node is always last.
-    nodePriorities.put(cfg.getImplicitReturn(), ++priorityCounter);
+    nodePriorities[cfg.getNodeIndex(cfg.getImplicitReturn())] =
+        ++priorityCounter;
+    cfg.priorities = nodePriorities;
+  }
+
+  private boolean hasPriority(DiGraphNode<Node, Branch> node) {
+    return nodePriorities[cfg.getNodeIndex(node)] != 0;
+  }
+
+  /**
+   * Numbers the CFG nodes by the positions of their values in the traversal
+   * of the AST, the implicit return last.
+   */
+  private void computeAstPositions() {
+    astPositions = new int[cfg.getNodeCount()];
+    for (int i = 0; i < traversedNodes.size(); i++) {
+      DiGraphNode<Node, Branch> cfgNode =
+          cfg.getDirectedGraphNode(traversedNodes.get(i));
+      if (cfgNode != null) {
+        astPositions[cfg.getNodeIndex(cfgNode)] = i;
+      }
+    }
+    astPositions[cfg.getNodeIndex(cfg.getImplicitReturn())] =
+        traversedNodes.size();
+    traversedNodes.clear();
   }
 
   /**
@@ -200,11 +228,11 @@ final class ControlFlowAnalysis implements Callback, CompilerPass {
 
     while (!worklist.isEmpty()) {
       DiGraphNode<Node, Branch> current = worklist.remove();
-      if (nodePriorities.containsKey(current)) {
+      if (hasPriority(current)) {
         continue;
       }
 
-      nodePriorities.put(current, ++priorityCounter);
+      nodePriorities[cfg.getNodeIndex(current)] = ++priorityCounter;
 
       List<DiGraphNode<Node, Branch>> successors =
           cfg.getDirectedSuccNodes(current);
@@ -217,7 +245,7 @@ final class ControlFlowAnalysis implements Callback, CompilerPass {
   @Override
   public boolean shouldTraverse(
       NodeTraversal nodeTraversal, Node n, Node parent) {
-    astPosition.put(n, astPositionCounter++);
+    traversedNodes.add(n);
 
     switch (n.getType()) {
       case Token.FUNCTION:
@@ -992,20 +1020,16 @@ final class ControlFlowAnalysis implements Callback, CompilerPass {
    * pre-order traversal of the AST.
    */
   private static class AstControlFlowGraph extends ControlFlowGraph<Node> {
-    private final Map<DiGraphNode<Node, Branch>, Integer> priorities;
+    // Maps the index of a node to its priority, set once the graph is built.
+    private int[] priorities;
 
     /**
      * Constructor.
      * @param entry The entry node.
-     * @param priorities The map from nodes to position in the AST (to be
-     *    filled by the {@link ControlFlowAnalysis#shouldTraverse}).
      */
-    private AstControlFlowGraph(Node entry,
-        Map<DiGraphNode<Node, Branch>, Integer> priorities,
-        boolean edgeAnnotations) {
+    private AstControlFlowGraph(Node entry, boolean edgeAnnotations) {
       super(entry,
           true /* node annotations */, edgeAnnotations);
-      this.priorities = priorities;
     }
 
     @Override
@@ -1035,14 +1059,39 @@ final class ControlFlowAnalysis implements Callback, CompilerPass {
       }
     }
 
+    @Override
+    public List<DiGraphNode<Node, Branch>> getOptionalOrderedNodes(
+        boolean isForward) {
+      // The priorities number the nodes, so the nodes are put in place rather
+      // than sorted. The implicit return has the highest priority.
+      Preconditions.checkNotNull(priorities);
+      int implicitReturn = getNodeIndex(getImplicitReturn());
+      int[] byPosition = new int[priorities[implicitReturn]];
+      Arrays.fill(byPosition, -1);
+      for (int i = 0; i < priorities.length; i++) {
+        if (i != implicitReturn) {
+          byPosition[priorities[i]] = i;
+        }
+      }
+
+      List<DiGraphNode<Node, Branch>> nodes =
+          Lists.newArrayListWithCapacity(priorities.length - 1);
+      for (int i = 0; i < byPosition.length; i++) {
+        int index = byPosition[isForward ? i : byPosition.length - 1 - i];
+        if (index != -1) {
+          nodes.add(getNodeByIndex(index));
+        }
+      }
+      return nodes;
+    }
+
     /**
      * Gets the pre-order traversal position of the given node.
      * @return An arbitrary counter used for comparing positions.
      */
     private int getPosition(DiGraphNode<Node, Branch> n) {
-      Integer priority = priorities.get(n);
-      Preconditions.checkNotNull(priority);
-      return priority;
+      Preconditions.checkNotNull(priorities);
+      return priorities[getNodeIndex(n)];
     }
   }
 }
@@ -16,21 +16,28 @@
 
 package com.google.javascript.jscomp;
 
+import com.google.common.collect.Lists;
 import com.google.javascript.jscomp.NodeTraversal.Callback;
-import com.google.javascript.jscomp.graph.LinkedDirectedGraph;
+import com.google.javascript.jscomp.graph.IndexedDirectedGraph;
 import com.google.javascript.rhino.Node;
 import com.google.javascript.rhino.Token;
 
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.List;
 
 /**
  * Control flow graph.
  *
+ * The nodes are numbered in the order in which they were created, so that
+ * analyses can keep their state about the nodes in arrays. See
+ * {@link IndexedDirectedGraph#getNodeIndex}.
+ *
  *
  * @param <N> The instruction type of the control flow graph.
  */
 class ControlFlowGraph<N> extends
-    LinkedDirectedGraph<N, ControlFlowGraph.Branch> {
+    IndexedDirectedGraph<N, ControlFlowGraph.Branch> {
 
   /**
    * A special node marked by the node value key null to a singleton
@@ -103,6 +110,44 @@ class ControlFlowGraph<N> extends
     return null;
   }
 
+  /**
+   * Gets the nodes of the graph, other than the implicit return, sorted by
+   * the comparator of {@link #getOptionalNodeComparator}. Graphs that number
+   * their nodes should override this to list the nodes without sorting them.
+   *
+   * @param isForward Whether the nodes are sorted in the direction of the
+   *    flow.
+   * @return the sorted nodes, or null if the graph has no comparator
+   */
+  public List<DiGraphNode<N, Branch>> getOptionalOrderedNodes(
+      boolean isForward) {
+    Comparator<DiGraphNode<N, Branch>> nodeComparator =
+        getOptionalNodeComparator(isForward);
+    if (nodeComparator == null) {
+      return null;
+    }
+    List<DiGraphNode<N, Branch>> nodes = Lists.newArrayList();
+    for (DiGraphNode<N, Branch> node : getDirectedGraphNodes()) {
+      if (node != implicitReturn) {
+        nodes.add(node);
+      }
+    }
+    Collections.sort(nodes, nodeComparator);
+    return nodes;
+  }
+
+  /**
+   * Gets the nodes of the graph in reverse postorder in the direction of the
+   * flow, starting from the entry for a forward flow and from the implicit
+   * return for a backward flow. Nodes that the flow does not reach from there
+   * come last.
+   *
+   * @param isForward Whether the order follows the direction of the flow.
+   */
+  public List<DiGraphNode<N, Branch>> getReversePostorder(boolean isForward) {
+    return getReversePostorder(isForward ? entry : implicitReturn, isForward);
+  }
+
   /**
    * The edge object for the control flow graph.
    */
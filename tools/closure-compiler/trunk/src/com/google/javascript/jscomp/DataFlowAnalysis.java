@@ -19,7 +19,6 @@ package com.google.javascript.jscomp;
 import com.google.common.base.Objects;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Lists;
-import com.google.common.collect.Sets;
 import com.google.javascript.jscomp.ControlFlowGraph.Branch;
 import com.google.javascript.jscomp.NodeTraversal.AbstractPostOrderCallback;
 import com.google.javascript.jscomp.Scope.Var;
@@ -29,7 +28,7 @@ import com.google.javascript.rhino.Node;
 import com.google.javascript.rhino.Token;
 
 import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.BitSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
@@ -86,7 +85,22 @@ abstract class DataFlowAnalysis<N, L extends LatticeElement> {
 
   private final ControlFlowGraph<N> cfg;
   final JoinOp<L> joinOp;
-  protected final Set<DiGraphNode<N, Branch>> orderedWorkSet;
+
+  // The nodes of the graph, numbered in the order in which the work list
+  // takes them.
+  private final List<DiGraphNode<N, Branch>> orderedNodes =
+      Lists.newArrayList();
+
+  // Maps the index of a node in the graph to its number.
+  private int[] nodeOrder;
+
+  // The work list, as the set of the numbers of the nodes on it. It is taken
+  // in sweeps: the next node to take is the one with the lowest number after
+  // the last node taken, or the lowest number if there is none. A node that
+  // goes back on the list behind the last node taken waits for the next
+  // sweep, so the head of a loop with many back edges is joined once per
+  // sweep rather than after every change in the loop.
+  private final BitSet workSet = new BitSet();
 
   /*
    * Feel free to increase this to a reasonable number if you are finding that
@@ -120,13 +134,6 @@ abstract class DataFlowAnalysis<N, L extends LatticeElement> {
   DataFlowAnalysis(ControlFlowGraph<N> targetCfg, JoinOp<L> joinOp) {
     this.cfg = targetCfg;
     this.joinOp = joinOp;
-    Comparator<DiGraphNode<N, Branch>> nodeComparator =
-      cfg.getOptionalNodeComparator(isForward());
-    if (nodeComparator != null) {
-      this.orderedWorkSet = Sets.newTreeSet(nodeComparator);
-    } else {
-      this.orderedWorkSet = Sets.newLinkedHashSet();
-    }
   }
 
   /**
@@ -199,15 +206,21 @@ abstract class DataFlowAnalysis<N, L extends LatticeElement> {
    *        analysis from going into a infinite loop.
    */
   final void analyze(int maxSteps) {
+    orderNodes();
     initialize();
     int step = 0;
-    while (!orderedWorkSet.isEmpty()) {
+    int next = 0;
+    while (!workSet.isEmpty()) {
       if (step > maxSteps) {
         throw new MaxIterationsExceededException(
           "Analysis did not terminate after " + maxSteps + " iterations");
       }
-      DiGraphNode<N, Branch> curNode = orderedWorkSet.iterator().next();
-      orderedWorkSet.remove(curNode);
+      next = workSet.nextSetBit(next);
+      if (next < 0) {
+        next = workSet.nextSetBit(0);
+      }
+      workSet.clear(next);
+      DiGraphNode<N, Branch> curNode = orderedNodes.get(next);
       joinInputs(curNode);
       if (flow(curNode)) {
         // If there is a change in the current node, we want to grab the list
@@ -217,7 +230,7 @@ abstract class DataFlowAnalysis<N, L extends LatticeElement> {
             cfg.getDirectedPredNodes(curNode);
         for (DiGraphNode<N, Branch> nextNode : nextNodes) {
           if (nextNode != cfg.getImplicitReturn()) {
-            orderedWorkSet.add(nextNode);
+            addToWorkSet(nextNode);
           }
         }
       }
@@ -228,6 +241,38 @@ abstract class DataFlowAnalysis<N, L extends LatticeElement> {
     }
   }
 
+  /**
+   * Numbers the nodes of the graph in the order in which the work list takes
+   * them. That is the order of the graph's nodes if it has one, and
+   * reverse postorder in the direction of the flow otherwise, so that a node
+   * is taken after the nodes that flow into it except along back edges.
+   */
+  private void orderNodes() {
+    orderedNodes.clear();
+    List<DiGraphNode<N, Branch>> nodes =
+        cfg.getOptionalOrderedNodes(isForward());
+    if (nodes != null) {
+      // The implicit return never goes on the work list.
+      orderedNodes.addAll(nodes);
+      orderedNodes.add(cfg.getImplicitReturn());
+    } else {
+      orderedNodes.addAll(cfg.getReversePostorder(isForward()));
+    }
+
+    nodeOrder = new int[cfg.getNodeCount()];
+    for (int i = 0; i < orderedNodes.size(); i++) {
+      nodeOrder[cfg.getNodeIndex(orderedNodes.get(i))] = i;
+    }
+    workSet.clear();
+  }
+
+  /**
+   * Adds a node to the work list, unless it is on it already.
+   */
+  protected final void addToWorkSet(DiGraphNode<N, Branch> node) {
+    workSet.set(nodeOrder[cfg.getNodeIndex(node)]);
+  }
+
   /**
    * Gets the state of the initial estimation at each node.
    *
@@ -246,15 +291,11 @@ abstract class DataFlowAnalysis<N, L extends LatticeElement> {
    * Initializes the work list and the control flow graph.
    */
   protected void initialize() {
-    // TODO(user): Calling clear doesn't deallocate the memory in a
-    // LinkedHashSet. Consider creating a new work set if we plan to repeatedly
-    // call analyze.
-    orderedWorkSet.clear();
     for (DiGraphNode<N, Branch> node : cfg.getDirectedGraphNodes()) {
       node.setAnnotation(new FlowState<L>(createInitialEstimateLattice(),
           createInitialEstimateLattice()));
       if (node != cfg.getImplicitReturn()) {
-        orderedWorkSet.add(node);
+        addToWorkSet(node);
       }
     }
   }
@@ -391,7 +432,6 @@ abstract class DataFlowAnalysis<N, L extends LatticeElement> {
 
     @Override
     protected void initialize() {
-      orderedWorkSet.clear();
       for (DiGraphNode<N, Branch> node : getCfg().getDirectedGraphNodes()) {
         int outEdgeCount = getCfg().getOutEdges(node.getValue()).size();
         List<L> outLattices = Lists.newArrayList();
@@ -401,7 +441,7 @@ abstract class DataFlowAnalysis<N, L extends LatticeElement> {
         node.setAnnotation(new BranchedFlowState<L>(
             createInitialEstimateLattice(), outLattices));
         if (node != getCfg().getImplicitReturn()) {
-          orderedWorkSet.add(node);
+          addToWorkSet(node);
         }
       }
     }
@@ -532,6 +572,172 @@ abstract class DataFlowAnalysis<N, L extends LatticeElement> {
     }
   }
 
+  /**
+   * An analysis that updates the states of the nodes in place, rather than
+   * creating new lattice elements at every step. The states of the nodes
+   * never share their lattice elements.
+   */
+  abstract static class InPlaceDataFlowAnalysis
+      <N, L extends LatticeElement> extends DataFlowAnalysis<N, L> {
+
+    // The element that a node's flow function is computed on. When the state
+    // of the node changes, the two trade places.
+    private L flowLattice = null;
+
+    // The state of the entry, created once per analysis.
+    private L entryLattice = null;
+
+    InPlaceDataFlowAnalysis(ControlFlowGraph<N> targetCfg,
+                            JoinOp<L> joinOp) {
+      super(targetCfg, joinOp);
+    }
+
+    /**
+     * Makes a lattice element equal to another.
+     *
+     * @param from The element to copy.
+     * @param to The element that is changed.
+     */
+    abstract void copy(L from, L to);
+
+    /**
+     * Joins a lattice element into another.
+     *
+     * @param joined The element that is changed into the join of both.
+     * @param other The element to join, which should be read-only.
+     */
+    abstract void joinInPlace(L joined, L other);
+
+    /**
+     * Computes the output state for a given node in place.
+     *
+     * @param node The node.
+     * @param lattice The input state, which is turned into the output state.
+     */
+    abstract void flowThroughInPlace(N node, L lattice);
+
+    @Override
+    final L flowThrough(N node, L input) {
+      L output = createInitialEstimateLattice();
+      copy(input, output);
+      flowThroughInPlace(node, output);
+      return output;
+    }
+
+    @Override
+    protected void initialize() {
+      flowLattice = createInitialEstimateLattice();
+      entryLattice = createEntryLattice();
+      super.initialize();
+    }
+
+    @Override
+    protected final boolean flow(DiGraphNode<N, Branch> node) {
+      FlowState<L> state = node.getAnnotation();
+      L output = isForward() ? state.out : state.in;
+      copy(isForward() ? state.in : state.out, flowLattice);
+      flowThroughInPlace(node.getValue(), flowLattice);
+      if (flowLattice.equals(output)) {
+        return false;
+      }
+      if (isForward()) {
+        state.out = flowLattice;
+      } else {
+        state.in = flowLattice;
+      }
+      flowLattice = output;
+      return true;
+    }
+
+    @Override
+    protected final void joinInputs(DiGraphNode<N, Branch> node) {
+      FlowState<L> state = node.getAnnotation();
+      L joined = isForward() ? state.in : state.out;
+      List<DiGraphNode<N, Branch>> inNodes = isForward() ?
+          getCfg().getDirectedPredNodes(node) :
+          getCfg().getDirectedSuccNodes(node);
+      boolean isEntry = isForward() ?
+          getCfg().getEntry() == node :
+          inNodes.size() == 1 && inNodes.get(0) == getCfg().getImplicitReturn();
+      if (isEntry) {
+        copy(entryLattice, joined);
+      } else if (!inNodes.isEmpty()) {
+        for (int i = 0; i < inNodes.size(); i++) {
+          FlowState<L> inNodeState = inNodes.get(i).getAnnotation();
+          L in = isForward() ? inNodeState.out : inNodeState.in;
+          if (i == 0) {
+            copy(in, joined);
+          } else {
+            joinInPlace(joined, in);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * A lattice element that is a set, kept as a dense bit set. For a set of
+   * variables, the bits are indexed by the {@link Var#index} of the
+   * variables.
+   */
+  static class BitSetLattice implements LatticeElement {
+    final BitSet bits;
+
+    /**
+     * @param numBits Number of all the elements of the set.
+     */
+    BitSetLattice(int numBits) {
+      this.bits = new BitSet(numBits);
+    }
+
+    BitSetLattice(BitSetLattice other) {
+      Preconditions.checkNotNull(other);
+      this.bits = (BitSet) other.bits.clone();
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      Preconditions.checkNotNull(other);
+      return (other instanceof BitSetLattice) &&
+          this.bits.equals(((BitSetLattice) other).bits);
+    }
+
+    @Override
+    public String toString() {
+      return bits.toString();
+    }
+
+    @Override
+    public int hashCode() {
+      return bits.hashCode();
+    }
+  }
+
+  /**
+   * A bit-vector analysis: one whose lattice elements are sets, joined by
+   * union. The states of the nodes are updated a word of the bit sets at a
+   * time.
+   */
+  abstract static class BitVectorDataFlowAnalysis
+      <N, L extends BitSetLattice> extends InPlaceDataFlowAnalysis<N, L> {
+
+    BitVectorDataFlowAnalysis(ControlFlowGraph<N> targetCfg,
+                              JoinOp<L> joinOp) {
+      super(targetCfg, joinOp);
+    }
+
+    @Override
+    final void copy(L from, L to) {
+      to.bits.clear();
+      to.bits.or(from.bits);
+    }
+
+    @Override
+    final void joinInPlace(L joined, L other) {
+      joined.bits.or(other.bits);
+    }
+  }
+
   /**
    * Compute set of escaped variables. When a variable is escaped in a
    * dataflow analysis, it can be reference outside of the code that we are
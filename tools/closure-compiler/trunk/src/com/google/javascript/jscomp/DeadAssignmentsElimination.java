@@ -37,7 +37,7 @@ import com.google.javascript.rhino.Token;
  *
  */
 class DeadAssignmentsElimination extends AbstractPostOrderCallback implements
-    CompilerPass, ScopedCallback {
+    ParallelFunctionPass.FunctionPass, ScopedCallback {
 
   private final AbstractCompiler compiler;
   private LiveVariablesAnalysis liveness;
@@ -66,6 +66,24 @@ class DeadAssignmentsElimination extends AbstractPostOrderCallback implements
     NodeTraversal.traverse(compiler, root, this);
   }
 
+  @Override
+  public void processFunction(Node fn, Scope globalScope) {
+    new NodeTraversal(compiler, this).traverseFunctionWithScope(
+        fn, globalScope);
+  }
+
+  @Override
+  public void processGlobalCode(Node root, Scope globalScope) {
+    // Only function scopes are optimized.
+  }
+
+  @Override
+  public void processSingleFunction(Node fn, Scope globalScope) {
+    new NodeTraversal(compiler,
+        new ParallelFunctionPass.SingleFunctionCallback(fn, this))
+        .traverseFunctionWithScope(fn, globalScope);
+  }
+
   @Override
   public void enterScope(NodeTraversal t) {
     Scope scope = t.getScope();
@@ -76,11 +94,6 @@ class DeadAssignmentsElimination extends AbstractPostOrderCallback implements
       return;
     }
 
-    if (LiveVariablesAnalysis.MAX_VARIABLES_TO_ANALYZE <
-        t.getScope().getVarCount()) {
-      return;
-    }
-
     // We are not going to do any dead assignment elimination in when there is
     // at least one inner function because in most browsers, when there is a
     // closure, ALL the variables are saved (escaped).
@@ -98,6 +111,9 @@ class DeadAssignmentsElimination extends AbstractPostOrderCallback implements
 
     // Computes liveness information first.
     ControlFlowGraph<Node> cfg = t.getControlFlowGraph();
+    if (!LiveVariablesAnalysis.shouldAnalyze(scope, cfg)) {
+      return;
+    }
     liveness = new LiveVariablesAnalysis(cfg, scope, compiler);
     liveness.analyze();
     tryRemoveDeadAssignments(t, cfg);
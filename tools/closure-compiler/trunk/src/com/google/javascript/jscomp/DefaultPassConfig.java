@@ -19,6 +19,7 @@ package com.google.javascript.jscomp;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Charsets;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Supplier;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
@@ -27,6 +28,7 @@ import com.google.javascript.jscomp.AbstractCompiler.LifeCycleStage;
 import com.google.javascript.jscomp.CompilerOptions.LanguageMode;
 import com.google.javascript.jscomp.ExtractPrototypeMemberDeclarations.Pattern;
 import com.google.javascript.jscomp.NodeTraversal.Callback;
+import com.google.javascript.jscomp.ParallelFunctionPass.FunctionPass;
 import com.google.javascript.rhino.Node;
 import com.google.javascript.rhino.Token;
 
@@ -954,13 +956,18 @@ public class DefaultPassConfig extends PassConfig {
   final PassFactory peepholeOptimizations =
       new PassFactory("peepholeOptimizations", false) {
     @Override
-    protected CompilerPass createInternal(AbstractCompiler compiler) {
-      return new PeepholeOptimizationsPass(compiler,
-            new PeepholeSubstituteAlternateSyntax(false),
-            new PeepholeReplaceKnownMethods(),
-            new PeepholeRemoveDeadCode(),
-            new PeepholeFoldConstants(),
-            new PeepholeCollectPropertyAssignments());
+    protected CompilerPass createInternal(final AbstractCompiler compiler) {
+      return createFunctionPass(compiler, new Supplier<FunctionPass>() {
+        @Override
+        public FunctionPass get() {
+          return new PeepholeOptimizationsPass(compiler,
+                new PeepholeSubstituteAlternateSyntax(false),
+                new PeepholeReplaceKnownMethods(),
+                new PeepholeRemoveDeadCode(),
+                new PeepholeFoldConstants(),
+                new PeepholeCollectPropertyAssignments());
+        }
+      });
     }
   };
 
@@ -968,16 +975,21 @@ public class DefaultPassConfig extends PassConfig {
   final PassFactory latePeepholeOptimizations =
       new PassFactory("latePeepholeOptimizations", true) {
     @Override
-    protected CompilerPass createInternal(AbstractCompiler compiler) {
-      return new PeepholeOptimizationsPass(compiler,
-            new StatementFusion(),
-            new PeepholeRemoveDeadCode(),
-            new PeepholeSubstituteAlternateSyntax(true),
-            new PeepholeReplaceKnownMethods(),
-            new PeepholeFoldConstants()
-            // TODO(johnlenz): reenable this once Chrome 15 is stable
-            // new ReorderConstantExpression()
-            );
+    protected CompilerPass createInternal(final AbstractCompiler compiler) {
+      return createFunctionPass(compiler, new Supplier<FunctionPass>() {
+        @Override
+        public FunctionPass get() {
+          return new PeepholeOptimizationsPass(compiler,
+                new StatementFusion(),
+                new PeepholeRemoveDeadCode(),
+                new PeepholeSubstituteAlternateSyntax(true),
+                new PeepholeReplaceKnownMethods(),
+                new PeepholeFoldConstants()
+                // TODO(johnlenz): reenable this once Chrome 15 is stable
+                // new ReorderConstantExpression()
+                );
+        }
+      });
     }
   };
 
@@ -1526,8 +1538,13 @@ public class DefaultPassConfig extends PassConfig {
   final PassFactory minimizeExitPoints =
       new PassFactory("minimizeExitPoints", false) {
     @Override
-    protected CompilerPass createInternal(AbstractCompiler compiler) {
-      return new MinimizeExitPoints(compiler);
+    protected CompilerPass createInternal(final AbstractCompiler compiler) {
+      return createFunctionPass(compiler, new Supplier<FunctionPass>() {
+        @Override
+        public FunctionPass get() {
+          return new MinimizeExitPoints(compiler);
+        }
+      });
     }
   };
 
@@ -1619,8 +1636,13 @@ public class DefaultPassConfig extends PassConfig {
   final PassFactory deadAssignmentsElimination =
       new PassFactory("deadAssignmentsElimination", false) {
     @Override
-    protected CompilerPass createInternal(AbstractCompiler compiler) {
-      return new DeadAssignmentsElimination(compiler);
+    protected CompilerPass createInternal(final AbstractCompiler compiler) {
+      return createFunctionPass(compiler, new Supplier<FunctionPass>() {
+        @Override
+        public FunctionPass get() {
+          return new DeadAssignmentsElimination(compiler);
+        }
+      });
     }
   };
 
@@ -1701,8 +1723,13 @@ public class DefaultPassConfig extends PassConfig {
   final PassFactory flowSensitiveInlineVariables =
       new PassFactory("flowSensitiveInlineVariables", true) {
     @Override
-    protected CompilerPass createInternal(AbstractCompiler compiler) {
-      return new FlowSensitiveInlineVariables(compiler);
+    protected CompilerPass createInternal(final AbstractCompiler compiler) {
+      return createFunctionPass(compiler, new Supplier<FunctionPass>() {
+        @Override
+        public FunctionPass get() {
+          return new FlowSensitiveInlineVariables(compiler);
+        }
+      });
     }
   };
 
@@ -1710,8 +1737,14 @@ public class DefaultPassConfig extends PassConfig {
   final PassFactory coalesceVariableNames =
       new PassFactory("coalesceVariableNames", true) {
     @Override
-    protected CompilerPass createInternal(AbstractCompiler compiler) {
-      return new CoalesceVariableNames(compiler, options.generatePseudoNames);
+    protected CompilerPass createInternal(final AbstractCompiler compiler) {
+      return createFunctionPass(compiler, new Supplier<FunctionPass>() {
+        @Override
+        public FunctionPass get() {
+          return new CoalesceVariableNames(
+              compiler, options.generatePseudoNames);
+        }
+      });
     }
   };
 
@@ -2129,6 +2162,19 @@ public class DefaultPassConfig extends PassConfig {
     };
   }
 
+  /**
+   * Create a compiler pass that runs a function-local pass, on as many
+   * threads as the options ask for.
+   */
+  private CompilerPass createFunctionPass(AbstractCompiler compiler,
+      Supplier<FunctionPass> passes) {
+    if (options.functionPassThreads > 1) {
+      return new ParallelFunctionPass(
+          compiler, passes, options.functionPassThreads);
+    }
+    return passes.get();
+  }
+
   @VisibleForTesting
   static Map<String, Node> getAdditionalReplacements(
       CompilerOptions options) {
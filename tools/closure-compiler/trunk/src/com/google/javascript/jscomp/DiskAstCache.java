@@ -0,0 +1,276 @@
+/*
+ * Copyright 2011 The Closure Compiler Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.javascript.jscomp;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Maps;
+import com.google.common.io.Closeables;
+import com.google.javascript.jscomp.parsing.Config;
+import com.google.javascript.rhino.AstReader;
+import com.google.javascript.rhino.AstWriter;
+import com.google.javascript.rhino.Node;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.StreamCorruptedException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * An {@link AstCache} that keeps the parse trees in a directory, so that
+ * they outlive the compiler process. Each tree is stored in a file of its
+ * own, named after a hash of the source name, the code and the parser
+ * config, in the format of an {@link AstWriter}.
+ *
+ * When the files take more room than allowed, the least recently used ones
+ * are deleted. Several compiler processes may share a directory: files are
+ * written under a temporary name and renamed once complete, and files that
+ * cannot be read are treated as a miss.
+ *
+ * This class is thread-safe.
+ *
+ */
+class DiskAstCache extends AstCache {
+
+  private static final Logger logger =
+      Logger.getLogger(DiskAstCache.class.getName());
+
+  private static final int MAGIC = 0x4A534153;  // "JSAS"
+
+  private static final String SUFFIX = ".ast";
+
+  private final File dir;
+  private final long maxBytes;
+  private final boolean keepExternsInMemory;
+
+  // An estimate of the room taken by the files, updated as files are
+  // written and recomputed on eviction.
+  private long bytes;
+
+  /**
+   * @param dir The directory the trees are stored in. It is created if it
+   *     does not exist.
+   * @param maxBytes How much room the files may take.
+   * @param keepExternsInMemory Whether to also keep the trees of externs in
+   *     memory, which only pays off when the cache is used by more than one
+   *     compilation.
+   */
+  DiskAstCache(File dir, long maxBytes, boolean keepExternsInMemory)
+      throws IOException {
+    super(true);
+    Preconditions.checkArgument(maxBytes > 0);
+    if (!dir.isDirectory() && !dir.mkdirs()) {
+      throw new IOException("Cannot create directory " + dir);
+    }
+    this.dir = dir;
+    this.maxBytes = maxBytes;
+    this.keepExternsInMemory = keepExternsInMemory;
+    this.bytes = getBytes(listFiles());
+  }
+
+  @Override
+  Node get(SourceFile file, String code, Config config) {
+    if (keepExternsInMemory) {
+      Node root = super.get(file, code, config);
+      if (root != null) {
+        return root;
+      }
+    }
+
+    File treeFile = getFile(file, code, config);
+    if (!treeFile.isFile()) {
+      return null;
+    }
+    Node root;
+    try {
+      root = read(treeFile, file);
+    } catch (IOException e) {
+      logger.log(Level.WARNING, "Ignoring unreadable tree " + treeFile, e);
+      treeFile.delete();
+      return null;
+    }
+
+    // Keep the file from being evicted.
+    treeFile.setLastModified(System.currentTimeMillis());
+    if (keepExternsInMemory) {
+      super.put(file, code, config, root);
+    }
+    return root;
+  }
+
+  @Override
+  void put(SourceFile file, String code, Config config, Node root) {
+    if (keepExternsInMemory) {
+      super.put(file, code, config, root);
+    }
+
+    File treeFile = getFile(file, code, config);
+    if (treeFile.isFile()) {
+      return;
+    }
+    File tempFile = null;
+    try {
+      tempFile = File.createTempFile("tree", ".tmp", dir);
+      write(tempFile, file, root);
+      if (!tempFile.renameTo(treeFile)) {
+        // Another process stored the same tree in the meantime.
+        return;
+      }
+      tempFile = null;
+    } catch (NotSerializableException e) {
+      logger.fine("Not caching " + file.getName() + ": " + e.getMessage());
+      return;
+    } catch (IOException e) {
+      logger.log(Level.WARNING, "Cannot cache " + file.getName(), e);
+      return;
+    } finally {
+      if (tempFile != null) {
+        tempFile.delete();
+      }
+    }
+    added(treeFile.length());
+  }
+
+  private static Node read(File treeFile, SourceFile file) throws IOException {
+    DataInputStream in = new DataInputStream(
+        new BufferedInputStream(new FileInputStream(treeFile)));
+    try {
+      if (in.readInt() != MAGIC || in.readInt() != AstWriter.VERSION) {
+        throw new StreamCorruptedException("Not a tree of this version");
+      }
+      return new AstReader(in, file).readTree();
+    } finally {
+      Closeables.closeQuietly(in);
+    }
+  }
+
+  private static void write(File treeFile, SourceFile file, Node root)
+      throws IOException {
+    DataOutputStream out = new DataOutputStream(
+        new BufferedOutputStream(new FileOutputStream(treeFile)));
+    boolean threw = true;
+    try {
+      out.writeInt(MAGIC);
+      out.writeInt(AstWriter.VERSION);
+      AstWriter writer = new AstWriter(out, file);
+      writer.writeTree(root);
+      writer.flush();
+      threw = false;
+    } finally {
+      Closeables.close(out, threw);
+    }
+  }
+
+  private File getFile(SourceFile file, String code, Config config) {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-1");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+    update(digest, String.valueOf(AstWriter.VERSION));
+    update(digest, config.getFingerprint());
+    update(digest, file.getName());
+    update(digest, code);
+
+    StringBuilder name = new StringBuilder();
+    for (byte b : digest.digest()) {
+      name.append(Character.forDigit((b >> 4) & 0xF, 16));
+      name.append(Character.forDigit(b & 0xF, 16));
+    }
+    return new File(dir, name.append(SUFFIX).toString());
+  }
+
+  /** Adds a string to a digest, so that it cannot run into the next one. */
+  private static void update(MessageDigest digest, String s) {
+    byte[] bytes = s.getBytes(Charsets.UTF_8);
+    int length = bytes.length;
+    digest.update(new byte[] {
+        (byte) (length >>> 24), (byte) (length >>> 16),
+        (byte) (length >>> 8), (byte) length});
+    digest.update(bytes);
+  }
+
+  /**
+   * Accounts for a new file, and deletes the least recently used files if
+   * the files take too much room. Files are deleted until they take 90% of
+   * the room allowed, so that not every new file causes an eviction.
+   */
+  private synchronized void added(long fileBytes) {
+    bytes += fileBytes;
+    if (bytes <= maxBytes) {
+      return;
+    }
+
+    File[] files = listFiles();
+    // Other processes may use the files while they are sorted, so sort
+    // them by the times they had when they were listed.
+    final Map<File, Long> lastUsed = Maps.newHashMap();
+    for (File f : files) {
+      lastUsed.put(f, f.lastModified());
+    }
+    Arrays.sort(files, new Comparator<File>() {
+      @Override
+      public int compare(File a, File b) {
+        return lastUsed.get(a).compareTo(lastUsed.get(b));
+      }
+    });
+    bytes = getBytes(files);
+    long target = maxBytes / 10 * 9;
+    for (int i = 0; i < files.length && bytes > target; i++) {
+      long length = files[i].length();
+      if (files[i].delete()) {
+        bytes -= length;
+      }
+    }
+  }
+
+  private File[] listFiles() {
+    File[] files = dir.listFiles();
+    if (files == null) {
+      return new File[0];
+    }
+    int count = 0;
+    for (File f : files) {
+      if (f.getName().endsWith(SUFFIX)) {
+        files[count++] = f;
+      }
+    }
+    return Arrays.copyOf(files, count);
+  }
+
+  private static long getBytes(File[] files) {
+    long total = 0;
+    for (File f : files) {
+      total += f.length();
+    }
+    return total;
+  }
+}
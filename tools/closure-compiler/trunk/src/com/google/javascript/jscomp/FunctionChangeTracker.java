@@ -0,0 +1,285 @@
+/*
+ * Copyright 2011 The Closure Compiler Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.javascript.jscomp;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.javascript.jscomp.ParallelFunctionPass.FunctionPass;
+import com.google.javascript.rhino.Node;
+import com.google.javascript.rhino.Token;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps track of the functions that change while a fixed point loop runs,
+ * so that the function-local passes of the loop only run again on the
+ * functions that changed since they last ran.
+ *
+ * Code changes are reported without the nodes that changed, so once a
+ * change has been reported, the functions that changed are told apart by
+ * fingerprints of their trees, which also cover the properties and JSDoc
+ * of the nodes. Computing them takes a walk of the AST, which is much
+ * cheaper than running the passes again. A function changed if
+ * anything in it changed, including the functions nested in it, as passes
+ * may look into those. Only the code of the function itself is processed
+ * again, though. The global code changed if anything outside the functions
+ * changed, as processing it does not look into the functions. As
+ * function-local passes also depend on the global scope, all the code
+ * counts as changed when the global variables change.
+ *
+ */
+final class FunctionChangeTracker implements CodeChangeHandler {
+
+  private final AbstractCompiler compiler;
+  private final Node root;
+
+  // Whether a change has been reported since the fingerprints were computed.
+  private boolean hasChanged = true;
+
+  // Counts the times the fingerprints were computed and found changes. A
+  // unit changed after a pass ran if it changed at a later time.
+  private int time = 0;
+
+  // The functions, outer functions first, in the order of the code.
+  private List<Node> functions = Lists.newArrayList();
+  private Map<Node, Unit> functionUnits = Maps.newIdentityHashMap();
+
+  private final Unit globalCode = new Unit();
+  private final Unit globalNames = new Unit();
+
+  // Maps pass name to the time at which the pass last ran.
+  private final Map<String, Integer> lastRuns = Maps.newHashMap();
+
+  FunctionChangeTracker(AbstractCompiler compiler, Node root) {
+    this.compiler = compiler;
+    this.root = root;
+  }
+
+  @Override
+  public void reportChange() {
+    hasChanged = true;
+  }
+
+  /**
+   * Runs a pass of the loop. A function-local pass runs on the code that
+   * changed since it last ran, other passes on all the code.
+   *
+   * @param passName The name of the pass, that tells its runs apart from the
+   *     runs of the other passes.
+   */
+  void process(String passName, CompilerPass pass, Node externs) {
+    FunctionPass functionPass = getFunctionPass(pass);
+    if (functionPass == null) {
+      pass.process(externs, root);
+      return;
+    }
+
+    updateFingerprints();
+    Integer lastRun = lastRuns.put(passName, time);
+    if (lastRun == null || globalNames.changedAt > lastRun) {
+      pass.process(externs, root);
+      return;
+    }
+
+    List<Node> changedFunctions = Lists.newArrayList();
+    for (Node fn : functions) {
+      if (functionUnits.get(fn).changedAt > lastRun) {
+        changedFunctions.add(fn);
+      }
+    }
+    boolean globalCodeChanged = globalCode.changedAt > lastRun;
+    if (changedFunctions.isEmpty() && !globalCodeChanged) {
+      return;
+    }
+
+    Scope globalScope =
+        new SyntacticScopeCreator(compiler).createScope(root, null);
+    for (Node fn : changedFunctions) {
+      // The function may have been removed with an outer function's code.
+      if (isInAst(fn)) {
+        functionPass.processSingleFunction(fn, globalScope);
+      }
+    }
+    if (globalCodeChanged) {
+      functionPass.processGlobalCode(root, globalScope);
+    }
+  }
+
+  private boolean isInAst(Node n) {
+    while (n.getParent() != null) {
+      n = n.getParent();
+    }
+    return n == root || n == root.getParent();
+  }
+
+  /**
+   * Returns the function-local pass that a pass runs, or null if it is not
+   * function-local.
+   */
+  private static FunctionPass getFunctionPass(CompilerPass pass) {
+    if (pass instanceof FunctionPass) {
+      return (FunctionPass) pass;
+    } else if (pass instanceof ParallelFunctionPass) {
+      return ((ParallelFunctionPass) pass).createSerialPass();
+    }
+    return null;
+  }
+
+  /**
+   * Computes the fingerprints again if a change was reported, and records
+   * the time of the units whose fingerprint changed.
+   */
+  private void updateFingerprints() {
+    if (!hasChanged) {
+      return;
+    }
+    hasChanged = false;
+    time++;
+
+    Fingerprints fingerprints = new Fingerprints();
+    fingerprint(root, null, fingerprints);
+    long globalCodeFingerprint = fingerprintGlobalCode(root, fingerprints);
+
+    Map<Node, Unit> newFunctionUnits = Maps.newIdentityHashMap();
+    for (Node fn : fingerprints.functions) {
+      Unit unit = functionUnits.get(fn);
+      if (unit == null) {
+        unit = new Unit();
+      }
+      unit.update(fingerprints.functionCode.get(fn), time);
+      newFunctionUnits.put(fn, unit);
+    }
+    functions = fingerprints.functions;
+    functionUnits = newFunctionUnits;
+    globalCode.update(globalCodeFingerprint, time);
+    globalNames.update(fingerprints.globalNames, time);
+  }
+
+  /**
+   * Returns a hash of a tree: of its nodes, see {@link #fingerprintNode},
+   * and of its shape. Records the hashes of the functions in it, and adds
+   * the global variables declared in it to the fingerprint of the global
+   * names.
+   *
+   * @param fn The innermost function that the tree is in, or null.
+   */
+  private static long fingerprint(Node n, Node fn, Fingerprints fingerprints) {
+    int type = n.getType();
+    if (type == Token.FUNCTION) {
+      if (fn == null && NodeUtil.isFunctionDeclaration(n)) {
+        fingerprints.addGlobalName(n.getFirstChild().getString());
+      }
+      fingerprints.functions.add(n);
+      fn = n;
+    } else if (type == Token.VAR && fn == null) {
+      for (Node name = n.getFirstChild(); name != null;
+           name = name.getNext()) {
+        fingerprints.addGlobalName(name.getString());
+      }
+    } else if (type == Token.THIS && fn != null) {
+      fingerprints.functionsReferencingThis.add(fn);
+    }
+
+    long hash = fingerprintNode(n);
+    int childCount = 0;
+    for (Node c = n.getFirstChild(); c != null; c = c.getNext()) {
+      hash = hash * 1000003 + fingerprint(c, fn, fingerprints);
+      childCount++;
+    }
+    hash = hash * 31 + childCount;
+    if (type == Token.FUNCTION) {
+      fingerprints.functionCode.put(n, hash);
+    }
+    return hash;
+  }
+
+  /**
+   * Returns a hash of the global code of a tree, which leaves out the code
+   * of the functions in it. Of a function, the global code only depends on
+   * its name and on whether it references "this", which keeps
+   * PeepholeFoldConstants from folding an object literal property that
+   * holds it.
+   */
+  private static long fingerprintGlobalCode(
+      Node n, Fingerprints fingerprints) {
+    long hash = fingerprintNode(n);
+    if (n.getType() == Token.FUNCTION) {
+      hash = hash * 31 + n.getFirstChild().getString().hashCode();
+      return hash * 2
+          + (fingerprints.functionsReferencingThis.contains(n) ? 1 : 0);
+    }
+    int childCount = 0;
+    for (Node c = n.getFirstChild(); c != null; c = c.getNext()) {
+      hash = hash * 1000003 + fingerprintGlobalCode(c, fingerprints);
+      childCount++;
+    }
+    return hash * 31 + childCount;
+  }
+
+  /**
+   * Returns a hash of a node: of its type, of its name, string or number,
+   * and of its properties, which include the JSDoc and flags like
+   * FREE_CALL that the passes read.
+   */
+  private static long fingerprintNode(Node n) {
+    int type = n.getType();
+    long hash = type;
+    switch (type) {
+      case Token.NAME:
+      case Token.LABEL_NAME:
+      case Token.STRING:
+        hash = hash * 31 + n.getString().hashCode();
+        break;
+      case Token.NUMBER:
+        hash = hash * 31 + Double.doubleToLongBits(n.getDouble());
+        break;
+    }
+    return hash * 31 + n.getPropsHashCode();
+  }
+
+  /** The fingerprints of the code, while they are computed. */
+  private static final class Fingerprints {
+    // The functions, outer functions first, in the order of the code.
+    private final List<Node> functions = Lists.newArrayList();
+    private final Map<Node, Long> functionCode = Maps.newIdentityHashMap();
+    private final Set<Node> functionsReferencingThis =
+        Sets.newSetFromMap(Maps.<Node, Boolean>newIdentityHashMap());
+    private long globalNames = 0;
+
+    private void addGlobalName(String name) {
+      globalNames = globalNames * 31 + name.hashCode();
+    }
+  }
+
+  /** A unit of change. */
+  private static final class Unit {
+    private long fingerprint;
+
+    // The time at which the fingerprint last changed.
+    private int changedAt = -1;
+
+    private void update(long newFingerprint, int time) {
+      if (changedAt == -1 || fingerprint != newFingerprint) {
+        fingerprint = newFingerprint;
+        changedAt = time;
+      }
+    }
+  }
+}
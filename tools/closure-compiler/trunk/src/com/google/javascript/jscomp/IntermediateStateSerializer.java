@@ -0,0 +1,311 @@
+/*
+ * Copyright 2011 The Closure Compiler Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.javascript.jscomp;
+
+import com.google.common.collect.Lists;
+import com.google.common.io.Closeables;
+import com.google.javascript.jscomp.Compiler.IntermediateState;
+import com.google.javascript.rhino.AstReader;
+import com.google.javascript.rhino.AstWriter;
+import com.google.javascript.rhino.JSDocInfo;
+import com.google.javascript.rhino.Node;
+import com.google.javascript.rhino.jstype.JSTypeRegistry;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes and reads {@link IntermediateState} in a compact binary format, so
+ * that a compilation can be checked once and optimized several times, for
+ * different outputs, from a snapshot on disk.
+ *
+ * The trees, which are most of the state, are written by an
+ * {@link AstWriter}. What the trees refer to and the format does not cover,
+ * like the types of the nodes and the source files, is collected in a table
+ * that follows the trees. The table and the rest of the state are written
+ * with Java serialization, as a single object stream, so that the types in
+ * the table are shared with the type registry, and the nodes and JSDoc of
+ * the trees are only referred to by index.
+ *
+ */
+final class IntermediateStateSerializer {
+
+  private static final int MAGIC = 0x4A535354;  // "JSST"
+
+  // How the roots are written.
+  private static final int SEPARATE_ROOTS = 0;
+  private static final int COMMON_PARENT = 1;
+
+  private IntermediateStateSerializer() {}
+
+  static void write(IntermediateState state, OutputStream out)
+      throws IOException {
+    DataOutputStream data = new DataOutputStream(out);
+    data.writeInt(MAGIC);
+    data.writeInt(AstWriter.VERSION);
+
+    StateWriter writer = new StateWriter(data);
+    Node parent = state.externsRoot == null
+        ? null : state.externsRoot.getParent();
+    if (parent != null && state.jsRoot != null
+        && state.jsRoot.getParent() == parent) {
+      data.writeByte(COMMON_PARENT);
+      writer.writeTree(parent);
+    } else {
+      data.writeByte(SEPARATE_ROOTS);
+      writeRoot(writer, data, state.externsRoot);
+      writeRoot(writer, data, state.jsRoot);
+    }
+
+    ObjectOutputStream objects = new StateOutputStream(data, writer);
+    objects.writeObject(writer.objects);
+    objects.writeObject(state.externs);
+    objects.writeObject(state.inputs);
+    objects.writeObject(state.modules);
+    objects.writeObject(state.passConfigState);
+    objects.writeObject(state.typeRegistry);
+    objects.writeObject(state.lifeCycleStage);
+    objects.flush();
+  }
+
+  private static void writeRoot(AstWriter writer, DataOutputStream data,
+      Node root) throws IOException {
+    data.writeBoolean(root != null);
+    if (root != null) {
+      writer.writeTree(root);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  static IntermediateState read(InputStream in) throws IOException {
+    DataInputStream data = new DataInputStream(in);
+    if (data.readInt() != MAGIC || data.readInt() != AstWriter.VERSION) {
+      throw new StreamCorruptedException("Not a state of this version");
+    }
+
+    IntermediateState state = new IntermediateState();
+    StateReader reader = new StateReader(data);
+    int roots = data.readByte();
+    if (roots == COMMON_PARENT) {
+      Node parent = reader.readTree();
+      if (parent.getChildCount() != 2) {
+        throw new StreamCorruptedException("Bad roots");
+      }
+      state.externsRoot = parent.getFirstChild();
+      state.jsRoot = parent.getLastChild();
+    } else if (roots == SEPARATE_ROOTS) {
+      state.externsRoot = readRoot(reader, data);
+      state.jsRoot = readRoot(reader, data);
+    } else {
+      throw new StreamCorruptedException("Bad roots: " + roots);
+    }
+
+    ObjectInputStream objects = new StateInputStream(data, reader);
+    try {
+      reader.resolveObjects((List<?>) objects.readObject());
+      state.externs = (List<CompilerInput>) objects.readObject();
+      state.inputs = (List<CompilerInput>) objects.readObject();
+      state.modules = (List<JSModule>) objects.readObject();
+      state.passConfigState = (PassConfig.State) objects.readObject();
+      state.typeRegistry = (JSTypeRegistry) objects.readObject();
+      state.lifeCycleStage =
+          (AbstractCompiler.LifeCycleStage) objects.readObject();
+    } catch (ClassNotFoundException e) {
+      throw new StreamCorruptedException(e.getMessage());
+    } catch (ClassCastException e) {
+      throw new StreamCorruptedException(e.getMessage());
+    }
+    return state;
+  }
+
+  private static Node readRoot(AstReader reader, DataInputStream data)
+      throws IOException {
+    return data.readBoolean() ? reader.readTree() : null;
+  }
+
+  /**
+   * Reads a state from a file, which is mapped into memory rather than
+   * copied through a buffer.
+   */
+  static IntermediateState read(File file) throws IOException {
+    RandomAccessFile raf = new RandomAccessFile(file, "r");
+    try {
+      FileChannel channel = raf.getChannel();
+      return read(new ByteBufferInputStream(
+          channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())));
+    } finally {
+      Closeables.closeQuietly(raf);
+    }
+  }
+
+  /** Hands out the indices of the objects that the trees refer to. */
+  private static class StateWriter extends AstWriter {
+    final List<Object> objects = Lists.newArrayList();
+    private final Map<Object, Integer> indices =
+        new IdentityHashMap<Object, Integer>();
+
+    StateWriter(OutputStream out) {
+      super(out, null);
+    }
+
+    @Override
+    protected int getObjectIndex(Object value) {
+      Integer index = indices.get(value);
+      if (index == null) {
+        index = objects.size();
+        objects.add(value);
+        indices.put(value, index);
+      }
+      return index;
+    }
+
+    // Overridden to make them visible to the object stream.
+
+    @Override
+    protected int getNodeIndex(Node n) {
+      return super.getNodeIndex(n);
+    }
+
+    @Override
+    protected int getJSDocIndex(JSDocInfo info) {
+      return super.getJSDocIndex(info);
+    }
+  }
+
+  private static class StateReader extends AstReader {
+    StateReader(InputStream in) {
+      super(in, null);
+    }
+
+    @Override
+    protected Node getNode(int index) throws StreamCorruptedException {
+      return super.getNode(index);
+    }
+
+    @Override
+    protected JSDocInfo getJSDocInfo(int index)
+        throws StreamCorruptedException {
+      return super.getJSDocInfo(index);
+    }
+  }
+
+  /** A node or JSDoc of the trees, in the object stream. */
+  private static class TreeRef implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    final boolean isNode;
+    final int index;
+
+    TreeRef(boolean isNode, int index) {
+      this.isNode = isNode;
+      this.index = index;
+    }
+  }
+
+  /** Replaces the nodes and JSDoc of the trees with references. */
+  private static class StateOutputStream extends ObjectOutputStream {
+    private final StateWriter writer;
+
+    StateOutputStream(OutputStream out, StateWriter writer)
+        throws IOException {
+      super(out);
+      this.writer = writer;
+      enableReplaceObject(true);
+    }
+
+    @Override
+    protected Object replaceObject(Object obj) {
+      if (obj instanceof Node) {
+        int index = writer.getNodeIndex((Node) obj);
+        if (index >= 0) {
+          return new TreeRef(true, index);
+        }
+      } else if (obj instanceof JSDocInfo) {
+        int index = writer.getJSDocIndex((JSDocInfo) obj);
+        if (index >= 0) {
+          return new TreeRef(false, index);
+        }
+      }
+      return obj;
+    }
+  }
+
+  private static class StateInputStream extends ObjectInputStream {
+    private final StateReader reader;
+
+    StateInputStream(InputStream in, StateReader reader) throws IOException {
+      super(in);
+      this.reader = reader;
+      enableResolveObject(true);
+    }
+
+    @Override
+    protected Object resolveObject(Object obj) throws IOException {
+      if (obj instanceof TreeRef) {
+        TreeRef ref = (TreeRef) obj;
+        return ref.isNode
+            ? reader.getNode(ref.index) : reader.getJSDocInfo(ref.index);
+      }
+      return obj;
+    }
+  }
+
+  private static class ByteBufferInputStream extends InputStream {
+    private final ByteBuffer buffer;
+
+    ByteBufferInputStream(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    @Override
+    public int read() {
+      return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+      if (len == 0) {
+        return 0;
+      }
+      if (!buffer.hasRemaining()) {
+        return -1;
+      }
+      len = Math.min(len, buffer.remaining());
+      buffer.get(b, off, len);
+      return len;
+    }
+
+    @Override
+    public int available() {
+      return buffer.remaining();
+    }
+  }
+}
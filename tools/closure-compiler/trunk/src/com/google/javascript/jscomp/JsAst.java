@@ -18,6 +18,9 @@ package com.google.javascript.jscomp;
 
 import com.google.common.base.Preconditions;
 
+import com.google.javascript.jscomp.mozilla.rhino.ErrorReporter;
+import com.google.javascript.jscomp.mozilla.rhino.EvaluatorException;
+import com.google.javascript.jscomp.parsing.Config;
 import com.google.javascript.jscomp.parsing.ParserRunner;
 
 import com.google.javascript.rhino.InputId;
@@ -36,8 +39,8 @@ public class JsAst implements SourceAst {
   private static final Logger logger_ = Logger.getLogger(JsAst.class.getName());
   private static final long serialVersionUID = 1L;
 
-  private transient InputId inputId;
-  private transient SourceFile sourceFile;
+  private InputId inputId;
+  private SourceFile sourceFile;
   private String fileName;
   private Node root;
 
@@ -83,11 +86,16 @@ public class JsAst implements SourceAst {
 
   private void parse(AbstractCompiler compiler) {
     try {
-      logger_.fine("Parsing: " + sourceFile.getName());
-      root = ParserRunner.parse(sourceFile, sourceFile.getCode(),
-          compiler.getParserConfig(),
-          compiler.getDefaultErrorReporter(),
-          logger_);
+      AstCache cache = compiler.getAstCache();
+      if (cache == null) {
+        logger_.fine("Parsing: " + sourceFile.getName());
+        root = ParserRunner.parse(sourceFile, sourceFile.getCode(),
+            compiler.getParserConfig(),
+            compiler.getDefaultErrorReporter(),
+            logger_);
+      } else {
+        root = parseWithCache(compiler, cache);
+      }
     } catch (IOException e) {
       compiler.report(
           JSError.make(AbstractCompiler.READ_ERROR, sourceFile.getName()));
@@ -104,4 +112,62 @@ public class JsAst implements SourceAst {
     // the source file and module.
     root.setStaticSourceFile(sourceFile);
   }
+
+  /**
+   * Looks the parse tree up in the cache, and parses the source on a miss.
+   * Only trees that parsed without any diagnostics are cached, so that a
+   * cache hit never swallows a warning.
+   */
+  private Node parseWithCache(AbstractCompiler compiler, AstCache cache)
+      throws IOException {
+    String code = sourceFile.getCode();
+    Config config = compiler.getParserConfig();
+    Node cached = cache.get(sourceFile, code, config);
+    if (cached != null) {
+      logger_.fine("Reusing parse tree: " + sourceFile.getName());
+      return cached;
+    }
+
+    logger_.fine("Parsing: " + sourceFile.getName());
+    CountingErrorReporter reporter =
+        new CountingErrorReporter(compiler.getDefaultErrorReporter());
+    Node parsed =
+        ParserRunner.parse(sourceFile, code, config, reporter, logger_);
+    if (parsed != null && reporter.count == 0) {
+      cache.put(sourceFile, code, config, parsed);
+    }
+    return parsed;
+  }
+
+  /** Forwards all diagnostics, keeping track of how many there were. */
+  private static class CountingErrorReporter implements ErrorReporter {
+    private final ErrorReporter delegate;
+    private int count = 0;
+
+    CountingErrorReporter(ErrorReporter delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public void warning(String message, String sourceName, int line,
+        String lineSource, int lineOffset) {
+      count++;
+      delegate.warning(message, sourceName, line, lineSource, lineOffset);
+    }
+
+    @Override
+    public void error(String message, String sourceName, int line,
+        String lineSource, int lineOffset) {
+      count++;
+      delegate.error(message, sourceName, line, lineSource, lineOffset);
+    }
+
+    @Override
+    public EvaluatorException runtimeError(String message, String sourceName,
+        int line, String lineSource, int lineOffset) {
+      count++;
+      return delegate.runtimeError(
+          message, sourceName, line, lineSource, lineOffset);
+    }
+  }
 }
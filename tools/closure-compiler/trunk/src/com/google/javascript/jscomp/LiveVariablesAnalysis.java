@@ -19,6 +19,8 @@ package com.google.javascript.jscomp;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Sets;
 import com.google.javascript.jscomp.ControlFlowGraph.Branch;
+import com.google.javascript.jscomp.DataFlowAnalysis.BitSetLattice;
+import com.google.javascript.jscomp.DataFlowAnalysis.BitVectorDataFlowAnalysis;
 import com.google.javascript.jscomp.Scope.Var;
 import com.google.javascript.jscomp.graph.DiGraph.DiGraphEdge;
 import com.google.javascript.rhino.Node;
@@ -45,12 +47,14 @@ import java.util.Set;
  *
  */
 class LiveVariablesAnalysis extends
-    DataFlowAnalysis<Node, LiveVariablesAnalysis.LiveVariableLattice> {
+    BitVectorDataFlowAnalysis<Node, LiveVariablesAnalysis.LiveVariableLattice> {
 
-  // 100 = ((# of original Power Rangers) ^
-  //        (# years of Warren Harding in office)) *
-  //       (# of Ninja Turtles)
-  static final int MAX_VARIABLES_TO_ANALYZE = 100;
+  // The live sets take a bit for each variable at each node of the control
+  // flow graph, and the analysis takes time in proportion to that. Passes do
+  // not analyze functions that need more than this many bits, 32 MB for the
+  // live-in sets. A function with 5000 variables and 26600 nodes needs
+  // 133 million and is analyzed in about 0.3 seconds.
+  static final long MAX_VARIABLE_NODES_TO_ANALYZE = 1L << 28;
 
   public static final String ARGUMENT_ARRAY_ALIAS = "arguments";
 
@@ -60,7 +64,7 @@ class LiveVariablesAnalysis extends
     public LiveVariableLattice apply(List<LiveVariableLattice> in) {
       LiveVariableLattice result = new LiveVariableLattice(in.get(0));
       for (int i = 1; i < in.size(); i++) {
-        result.liveSet.or(in.get(i).liveSet);
+        result.bits.or(in.get(i).bits);
       }
       return result;
     }
@@ -71,45 +75,25 @@ class LiveVariablesAnalysis extends
    * point in the program. The whole lattice is the power set of all local
    * variables and a variable is live if it is in the set.
    */
-  static class LiveVariableLattice implements LatticeElement {
-    private final BitSet liveSet;
-
+  static class LiveVariableLattice extends BitSetLattice {
     /**
      * @param numVars Number of all local variables.
      */
     private LiveVariableLattice(int numVars) {
-      this.liveSet = new BitSet(numVars);
+      super(numVars);
     }
 
     private LiveVariableLattice(LiveVariableLattice other) {
-      Preconditions.checkNotNull(other);
-      this.liveSet = (BitSet) other.liveSet.clone();
-    }
-
-    @Override
-    public boolean equals(Object other) {
-      Preconditions.checkNotNull(other);
-      return (other instanceof LiveVariableLattice) &&
-          this.liveSet.equals(((LiveVariableLattice) other).liveSet);
+      super(other);
     }
 
     public boolean isLive(Var v) {
       Preconditions.checkNotNull(v);
-      return liveSet.get(v.index);
+      return bits.get(v.index);
     }
 
     public boolean isLive(int index) {
-      return liveSet.get(index);
-    }
-
-    @Override
-    public String toString() {
-      return liveSet.toString();
-    }
-
-    @Override
-    public int hashCode() {
-      return liveSet.hashCode();
+      return bits.get(index);
     }
   }
 
@@ -117,6 +101,10 @@ class LiveVariablesAnalysis extends
   private final Scope jsScope;
   private final Set<Var> escaped;
 
+  // The GEN and KILL sets of the node that flows, reused from node to node.
+  private final BitSet gen = new BitSet();
+  private final BitSet kill = new BitSet();
+
   LiveVariablesAnalysis(ControlFlowGraph<Node> cfg, Scope jsScope,
       AbstractCompiler compiler) {
     super(cfg, new LiveVariableJoinOp());
@@ -125,6 +113,15 @@ class LiveVariablesAnalysis extends
     computeEscaped(jsScope, escaped, compiler);
   }
 
+  /**
+   * Whether the liveness of the variables of a function is cheap enough to
+   * analyze, see {@link #MAX_VARIABLE_NODES_TO_ANALYZE}.
+   */
+  static boolean shouldAnalyze(Scope scope, ControlFlowGraph<Node> cfg) {
+    return (long) scope.getVarCount() * cfg.getNodeCount()
+        <= MAX_VARIABLE_NODES_TO_ANALYZE;
+  }
+
   public Set<Var> getEscapedLocals() {
     return escaped;
   }
@@ -149,9 +146,9 @@ class LiveVariablesAnalysis extends
   }
 
   @Override
-  LiveVariableLattice flowThrough(Node node, LiveVariableLattice input) {
-    final BitSet gen = new BitSet(input.liveSet.size());
-    final BitSet kill = new BitSet(input.liveSet.size());
+  void flowThroughInPlace(Node node, LiveVariableLattice lattice) {
+    gen.clear();
+    kill.clear();
 
     // Make kills conditional if the node can end abruptly by an exception.
     boolean conditional = false;
@@ -162,11 +159,9 @@ class LiveVariablesAnalysis extends
       }
     }
     computeGenKill(node, gen, kill, conditional);
-    LiveVariableLattice result = new LiveVariableLattice(input);
     // L_in = L_out - Kill + Gen
-    result.liveSet.andNot(kill);
-    result.liveSet.or(gen);
-    return result;
+    lattice.bits.andNot(kill);
+    lattice.bits.or(gen);
   }
 
   /**
@@ -17,17 +17,21 @@
 package com.google.javascript.jscomp;
 
 import com.google.common.base.Preconditions;
-import com.google.common.collect.HashMultimap;
-import com.google.common.collect.Multimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import com.google.javascript.jscomp.ControlFlowGraph.Branch;
+import com.google.javascript.jscomp.DataFlowAnalysis.BitSetLattice;
+import com.google.javascript.jscomp.DataFlowAnalysis.BitVectorDataFlowAnalysis;
 import com.google.javascript.jscomp.Scope.Var;
 import com.google.javascript.jscomp.graph.GraphNode;
 import com.google.javascript.rhino.Node;
 import com.google.javascript.rhino.Token;
 
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -40,12 +44,17 @@ import java.util.Set;
  *
  */
 class MaybeReachingVariableUse extends
-    DataFlowAnalysis<Node, MaybeReachingVariableUse.ReachingUses> {
+    BitVectorDataFlowAnalysis<Node, MaybeReachingVariableUse.ReachingUses> {
 
   // The scope of the function that we are analyzing.
   private final Scope jsScope;
   private final Set<Var> escaped;
 
+  // The uses of the local variables, numbered in the order in which they are
+  // found: the CFG node of each use, and the uses of each variable.
+  private final List<Node> useNodes = Lists.newArrayList();
+  private final Map<Var, VarUses> varUses = Maps.newHashMap();
+
   MaybeReachingVariableUse(
       ControlFlowGraph<Node> cfg, Scope jsScope, AbstractCompiler compiler) {
     super(cfg, new ReachingUsesJoinOp());
@@ -79,12 +88,16 @@ class MaybeReachingVariableUse extends
    * N_7: print(A);
    *
    * At N_3, reads of A in {N_4, N_5} are said to be upward exposed.
+   *
+   * <p>The product lattice is kept as a set of uses, each a variable and a
+   * node that reads it, in a bit set indexed by the numbers of the uses.
    */
-  static final class ReachingUses implements LatticeElement {
-    final Multimap<Var, Node> mayUseMap;
-
-    public ReachingUses() {
-      mayUseMap = HashMultimap.create();
+  static final class ReachingUses extends BitSetLattice {
+    /**
+     * @param numUses Number of the uses known so far.
+     */
+    public ReachingUses(int numUses) {
+      super(numUses);
     }
 
     /**
@@ -93,19 +106,17 @@ class MaybeReachingVariableUse extends
      * @param other The constructed object is a replicated copy of this element.
      */
     public ReachingUses(ReachingUses other) {
-      mayUseMap = HashMultimap.create(other.mayUseMap);
+      super(other);
     }
+  }
 
-    @Override
-    public boolean equals(Object other) {
-      return (other instanceof ReachingUses) &&
-          ((ReachingUses) other).mayUseMap.equals(this.mayUseMap);
-    }
+  /** The uses of a variable. */
+  private static final class VarUses {
+    // Maps the CFG node of each use to the number of the use.
+    final Map<Node, Integer> numbers = Maps.newHashMap();
 
-    @Override
-    public int hashCode() {
-      return mayUseMap.hashCode();
-    }
+    // The numbers of the uses.
+    final BitSet bits = new BitSet();
   }
 
   /**
@@ -118,9 +129,9 @@ class MaybeReachingVariableUse extends
   private static class ReachingUsesJoinOp implements JoinOp<ReachingUses> {
     @Override
     public ReachingUses apply(List<ReachingUses> from) {
-      ReachingUses result = new ReachingUses();
-      for (ReachingUses uses : from) {
-        result.mayUseMap.putAll(uses.mayUseMap);
+      ReachingUses result = new ReachingUses(from.get(0));
+      for (int i = 1; i < from.size(); i++) {
+        result.bits.or(from.get(i).bits);
       }
       return result;
     }
@@ -133,23 +144,21 @@ class MaybeReachingVariableUse extends
 
   @Override
   ReachingUses createEntryLattice() {
-    return new ReachingUses();
+    return new ReachingUses(useNodes.size());
   }
 
   @Override
   ReachingUses createInitialEstimateLattice() {
-    return new ReachingUses();
+    return new ReachingUses(useNodes.size());
   }
 
   @Override
-  ReachingUses flowThrough(Node n, ReachingUses input) {
-    ReachingUses output = new ReachingUses(input);
-    computeMayUse(n, n, output, false);
-    return output;
+  void flowThroughInPlace(Node n, ReachingUses lattice) {
+    computeMayUse(n, n, lattice.bits, false);
   }
 
   private void computeMayUse(
-      Node n, Node cfgNode, ReachingUses output, boolean conditional) {
+      Node n, Node cfgNode, BitSet output, boolean conditional) {
     switch (n.getType()) {
 
       case Token.BLOCK:
@@ -240,13 +249,21 @@ class MaybeReachingVariableUse extends
    * exposed lattice. Do nothing if the variable name is one of the escaped
    * variable.
    */
-  private void addToUseIfLocal(String name, Node node, ReachingUses use) {
+  private void addToUseIfLocal(String name, Node node, BitSet use) {
     Var var = jsScope.getVar(name);
     if (var == null || var.scope != jsScope) {
       return;
     }
     if (!escaped.contains(var)) {
-      use.mayUseMap.put(var, node);
+      VarUses uses = getVarUses(var);
+      Integer number = uses.numbers.get(node);
+      if (number == null) {
+        number = useNodes.size();
+        useNodes.add(node);
+        uses.numbers.put(node, number);
+        uses.bits.set(number);
+      }
+      use.set(number);
     }
   }
 
@@ -255,14 +272,23 @@ class MaybeReachingVariableUse extends
    * exposed lattice. Do nothing if the variable name is one of the escaped
    * variable.
    */
-  private void removeFromUseIfLocal(String name, ReachingUses use) {
+  private void removeFromUseIfLocal(String name, BitSet use) {
     Var var = jsScope.getVar(name);
     if (var == null || var.scope != jsScope) {
       return;
     }
     if (!escaped.contains(var)) {
-      use.mayUseMap.removeAll(var);
+      use.andNot(getVarUses(var).bits);
+    }
+  }
+
+  private VarUses getVarUses(Var var) {
+    VarUses uses = varUses.get(var);
+    if (uses == null) {
+      uses = new VarUses();
+      varUses.put(var, uses);
     }
+    return uses;
   }
 
   /**
@@ -279,6 +305,17 @@ class MaybeReachingVariableUse extends
     GraphNode<Node, Branch> n = getCfg().getNode(defNode);
     Preconditions.checkNotNull(n);
     FlowState<ReachingUses> state = n.getAnnotation();
-    return state.getOut().mayUseMap.get(jsScope.getVar(name));
+    BitSet bits = state.getOut().bits;
+    List<Node> result = Lists.newArrayList();
+    VarUses uses = varUses.get(jsScope.getVar(name));
+    if (uses != null) {
+      for (int i = uses.bits.nextSetBit(0); i >= 0;
+           i = uses.bits.nextSetBit(i + 1)) {
+        if (bits.get(i)) {
+          result.add(useNodes.get(i));
+        }
+      }
+    }
+    return result;
   }
 }
@@ -34,7 +34,7 @@ import com.google.javascript.rhino.jstype.TernaryValue;
  */
 class MinimizeExitPoints
     extends AbstractPostOrderCallback
-    implements CompilerPass {
+    implements ParallelFunctionPass.FunctionPass {
 
   AbstractCompiler compiler;
 
@@ -47,6 +47,26 @@ class MinimizeExitPoints
     NodeTraversal.traverse(compiler, root, this);
   }
 
+  @Override
+  public void processFunction(Node fn, Scope globalScope) {
+    new NodeTraversal(compiler, this).traverseFunctionWithScope(
+        fn, globalScope);
+  }
+
+  @Override
+  public void processGlobalCode(Node root, Scope globalScope) {
+    new NodeTraversal(compiler,
+        new ParallelFunctionPass.GlobalCodeCallback(this)).traverseWithScope(
+            root, globalScope);
+  }
+
+  @Override
+  public void processSingleFunction(Node fn, Scope globalScope) {
+    new NodeTraversal(compiler,
+        new ParallelFunctionPass.SingleFunctionCallback(fn, this))
+        .traverseFunctionWithScope(fn, globalScope);
+  }
+
   @Override
   public void visit(NodeTraversal t, Node n, Node parent) {
     switch (n.getType()) {
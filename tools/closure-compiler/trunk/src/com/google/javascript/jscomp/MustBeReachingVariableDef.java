@@ -17,18 +17,18 @@
 package com.google.javascript.jscomp;
 
 import com.google.common.base.Preconditions;
-import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import com.google.javascript.jscomp.ControlFlowGraph.AbstractCfgNodeTraversalCallback;
 import com.google.javascript.jscomp.ControlFlowGraph.Branch;
+import com.google.javascript.jscomp.DataFlowAnalysis.InPlaceDataFlowAnalysis;
 import com.google.javascript.jscomp.Scope.Var;
 import com.google.javascript.jscomp.graph.GraphNode;
 import com.google.javascript.rhino.Node;
 import com.google.javascript.rhino.Token;
 
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Iterator;
-import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Set;
 
 import javax.annotation.Nullable;
@@ -42,7 +42,7 @@ import javax.annotation.Nullable;
  *
  */
 final class MustBeReachingVariableDef extends
-    DataFlowAnalysis<Node, MustBeReachingVariableDef.MustDef> {
+    InPlaceDataFlowAnalysis<Node, MustBeReachingVariableDef.MustDef> {
 
   // The scope of the function that we are analyzing.
   private final Scope jsScope;
@@ -66,7 +66,15 @@ final class MustBeReachingVariableDef extends
    */
   private static class Definition {
     final Node node;
-    final Set<Var> depends = Sets.newHashSet();
+
+    // The variables of the function in the depending set, by Var.index.
+    final BitSet depends = new BitSet();
+
+    // Whether the depending set has variables of outer scopes, and whether
+    // it has parameters, of this function or of outer ones.
+    boolean dependsOnOuterScopeVars = false;
+    boolean dependsOnParameters = false;
+
     Definition(Node node) {
       this.node = node;
     }
@@ -83,6 +91,9 @@ final class MustBeReachingVariableDef extends
     }
   }
 
+  // The definition that stands for BOTTOM: more than one definition.
+  private static final Definition BOTTOM = new Definition(null);
+
   /**
    * Must reaching definition lattice representation. It captures a product
    * lattice for each local (non-escaped) variable. The sub-lattice is
@@ -102,26 +113,27 @@ final class MustBeReachingVariableDef extends
    */
   static final class MustDef implements LatticeElement {
 
-    // TODO(user): Use bit vector instead of maps might get better
-    // performance. Change it after this is tested to be fully functional.
-
-    // When a Var "A" = "TOP", "A" does not exist in reachingDef's keySet.
-    // When a Var "A" = Node N, "A" maps to that node.
-    // When a Var "A" = "BOTTOM", "A" maps to null.
-    final Map<Var, Definition> reachingDef;
+    // The definitions of the variables, indexed by their Var.index.
+    // When a Var "A" = "TOP", its definition is null.
+    // When a Var "A" = Node N, its definition is the one at that node.
+    // When a Var "A" = "BOTTOM", its definition is BOTTOM.
+    final Definition[] reachingDef;
 
-    public MustDef() {
-      reachingDef = Maps.newHashMap();
+    /**
+     * @param numVars Number of all local variables.
+     */
+    public MustDef(int numVars) {
+      reachingDef = new Definition[numVars];
     }
 
-    public MustDef(Iterator<Var> vars) {
-      this();
+    public MustDef(Iterator<Var> vars, int numVars) {
+      this(numVars);
       while(vars.hasNext()) {
         Var var = vars.next();
         // Every variable in the scope is defined once in the beginning of the
         // function: all the declared variables are undefined, all functions
         // have been assigned and all arguments has its value from the caller.
-        reachingDef.put(var, new Definition(var.scope.getRootNode()));
+        reachingDef[var.index] = new Definition(var.scope.getRootNode());
       }
     }
 
@@ -131,58 +143,39 @@ final class MustBeReachingVariableDef extends
      * @param other The constructed object is a replicated copy of this element.
      */
     public MustDef(MustDef other) {
-      reachingDef = Maps.newHashMap(other.reachingDef);
+      reachingDef = other.reachingDef.clone();
+    }
+
+    /**
+     * Joins another element into this one.
+     */
+    void join(MustDef other) {
+      for (int i = 0; i < reachingDef.length; i++) {
+        Definition def = reachingDef[i];
+        Definition otherDef = other.reachingDef[i];
+        if (def == null) {
+          // TOP in this takes the definition of the other.
+          reachingDef[i] = otherDef;
+        } else if (otherDef != null && !def.equals(otherDef)) {
+          // Either is BOTTOM, or the two definitions differ. That implies
+          // that the variable has more than one possible definition.
+          reachingDef[i] = BOTTOM;
+        }
+      }
     }
 
     @Override
     public boolean equals(Object other) {
       return (other instanceof MustDef) &&
-          ((MustDef) other).reachingDef.equals(this.reachingDef);
+          Arrays.equals(((MustDef) other).reachingDef, this.reachingDef);
     }
   }
 
   private static class MustDefJoin extends JoinOp.BinaryJoinOp<MustDef> {
     @Override
     public MustDef apply(MustDef a, MustDef b) {
-      MustDef result = new MustDef();
-      Map<Var, Definition> resultMap = result.reachingDef;
-
-      // Take the join of all variables that are not TOP in this.
-      for (Map.Entry<Var, Definition> varEntry : a.reachingDef.entrySet()) {
-        Var var = varEntry.getKey();
-        Definition aDef = varEntry.getValue();
-
-        if (aDef == null) {
-          // "a" is BOTTOM implies that the variable has more than one possible
-          // definition. We set the join of this to be BOTTOM regardless of what
-          // "b" might be.
-          resultMap.put(var, null);
-          continue;
-        }
-
-        Node aNode = aDef.node;
-
-        if (b.reachingDef.containsKey(var)) {
-          Definition bDef = b.reachingDef.get(var);
-
-          if (aDef.equals(bDef)) {
-            resultMap.put(var, aDef);
-          } else {
-            resultMap.put(var, null);
-          }
-        } else {
-          resultMap.put(var, aDef);
-        }
-      }
-
-      // Take the join of all variables that are not TOP in other but it is TOP
-      // in this.
-      for (Map.Entry<Var, Definition> entry : b.reachingDef.entrySet()) {
-        Var var = entry.getKey();
-        if (!a.reachingDef.containsKey(var)) {
-          resultMap.put(var, entry.getValue());
-        }
-      }
+      MustDef result = new MustDef(a);
+      result.join(b);
       return result;
     }
   }
@@ -194,24 +187,31 @@ final class MustBeReachingVariableDef extends
 
   @Override
   MustDef createEntryLattice() {
-    return new MustDef(jsScope.getVars());
+    return new MustDef(jsScope.getVars(), jsScope.getVarCount());
   }
 
   @Override
   MustDef createInitialEstimateLattice() {
-    return new MustDef();
+    return new MustDef(jsScope.getVarCount());
+  }
+
+  @Override
+  void copy(MustDef from, MustDef to) {
+    System.arraycopy(
+        from.reachingDef, 0, to.reachingDef, 0, from.reachingDef.length);
+  }
+
+  @Override
+  void joinInPlace(MustDef joined, MustDef other) {
+    joined.join(other);
   }
 
   @Override
-  MustDef flowThrough(Node n, MustDef input) {
-    // TODO(user): We are doing a straight copy from input to output. There
-    // might be some opportunities to cut down overhead.
-    MustDef output = new MustDef(input);
+  void flowThroughInPlace(Node n, MustDef output) {
     // TODO(user): This must know about ON_EX edges but it should handle
     // it better than what we did in liveness. Because we are in a forward mode,
     // we can used the branched forward analysis.
     computeMustDef(n, n, output, false);
-    return output;
   }
 
   /**
@@ -331,25 +331,23 @@ final class MustBeReachingVariableDef extends
       return;
     }
 
-    for (Var other : def.reachingDef.keySet()) {
-      Definition otherDef = def.reachingDef.get(other);
-      if (otherDef == null) {
-        continue;
-      }
-      if (otherDef.depends.contains(var)) {
-        def.reachingDef.put(other, null);
+    Definition[] defs = def.reachingDef;
+    for (int i = 0; i < defs.length; i++) {
+      Definition otherDef = defs[i];
+      if (otherDef != null && otherDef.depends.get(var.index)) {
+        defs[i] = BOTTOM;
       }
     }
 
     if (!escaped.contains(var)) {
       if (node == null) {
-        def.reachingDef.put(var, null);
+        defs[var.index] = BOTTOM;
       } else {
         Definition definition = new Definition(node);
         if (rValue != null) {
           computeDependence(definition, rValue);
         }
-        def.reachingDef.put(var, definition);
+        defs[var.index] = definition;
       }
     }
   }
@@ -360,20 +358,16 @@ final class MustBeReachingVariableDef extends
       if (isParameter(v)) {
         // Assume we no longer know where the parameter comes from
         // anymore.
-        output.reachingDef.put(v, null);
+        output.reachingDef[v.index] = BOTTOM;
       }
     }
 
     // Also, assume we no longer know anything that depends on a parameter.
-    for (Entry<Var, Definition> pair: output.reachingDef.entrySet()) {
-      Definition value = pair.getValue();
-      if (value == null) {
-        continue;
-      }
-      for (Var dep : value.depends) {
-        if (isParameter(dep)) {
-          output.reachingDef.put(pair.getKey(), null);
-        }
+    Definition[] defs = output.reachingDef;
+    for (int i = 0; i < defs.length; i++) {
+      Definition value = defs[i];
+      if (value != null && value.dependsOnParameters) {
+        defs[i] = BOTTOM;
       }
     }
   }
@@ -392,7 +386,15 @@ final class MustBeReachingVariableDef extends
       @Override
       public void visit(NodeTraversal t, Node n, Node parent) {
         if (NodeUtil.isName(n) && jsScope.isDeclared(n.getString(), true)) {
-          def.depends.add(jsScope.getVar(n.getString()));
+          Var dep = jsScope.getVar(n.getString());
+          if (dep.scope == jsScope) {
+            def.depends.set(dep.index);
+          } else {
+            def.dependsOnOuterScopeVars = true;
+          }
+          if (isParameter(dep)) {
+            def.dependsOnParameters = true;
+          }
         }
       }
     });
@@ -408,27 +410,31 @@ final class MustBeReachingVariableDef extends
    * @param useNode the location of the use where the definition reaches.
    */
   Node getDef(String name, Node useNode) {
-    Preconditions.checkArgument(getCfg().hasNode(useNode));
-    GraphNode<Node, Branch> n = getCfg().getNode(useNode);
-    FlowState<MustDef> state = n.getAnnotation();
-    Definition def = state.getIn().reachingDef.get(jsScope.getVar(name));
+    Definition def = getDefinition(name, useNode);
     if (def == null) {
       return null;
     } else {
+      // That is null for BOTTOM.
       return def.node;
     }
   }
 
   boolean dependsOnOuterScopeVars(String name, Node useNode) {
+    return getDefinition(name, useNode).dependsOnOuterScopeVars;
+  }
+
+  /**
+   * Gets the definition of a variable that reaches a node, or null if the
+   * variable is TOP there or is not local.
+   */
+  private Definition getDefinition(String name, Node useNode) {
     Preconditions.checkArgument(getCfg().hasNode(useNode));
     GraphNode<Node, Branch> n = getCfg().getNode(useNode);
     FlowState<MustDef> state = n.getAnnotation();
-    Definition def = state.getIn().reachingDef.get(jsScope.getVar(name));
-    for (Var s : def.depends) {
-      if (s.scope != jsScope) {
-        return true;
-      }
+    Var var = jsScope.getVar(name);
+    if (var == null || var.scope != jsScope) {
+      return null;
     }
-    return false;
+    return state.getIn().reachingDef[var.index];
   }
 }
@@ -23,6 +23,7 @@ import com.google.javascript.rhino.Node;
 import com.google.javascript.rhino.Token;
 
 import java.util.ArrayDeque;
+import java.util.Arrays;
 import java.util.Deque;
 import java.util.Iterator;
 import java.util.LinkedList;
@@ -80,6 +81,33 @@ public class NodeTraversal {
   /** Possible callback for scope entry and exist **/
   private ScopedCallback scopeCallback;
 
+  // The steps of the traversal of a node whose children are traversed.
+  private static final int STEP_CHILDREN = 0;
+  private static final int STEP_FUNCTION_START = 1;
+  private static final int STEP_FUNCTION_DECLARATION_SCOPE = 2;
+  private static final int STEP_FUNCTION_EXPRESSION_SCOPE = 3;
+  private static final int STEP_FUNCTION_ARGS = 4;
+  private static final int STEP_FUNCTION_BODY = 5;
+  private static final int STEP_FUNCTION_END = 6;
+
+  private static final int INITIAL_STACK_CAPACITY = 32;
+
+  /**
+   * The stack of the nodes the traversal is in, from the root down: the
+   * node, its next child to traverse (or for a function, the child the next
+   * step starts from) and the next step of its traversal. The parent of a
+   * node is the node below it, except for the root of the branch.
+   */
+  private Node[] stackNodes = new Node[INITIAL_STACK_CAPACITY];
+  private Node[] stackNext = new Node[INITIAL_STACK_CAPACITY];
+  private int[] stackSteps = new int[INITIAL_STACK_CAPACITY];
+  private int depth = 0;
+
+  // The position of the root of the branch being traversed on the stack,
+  // and the parent it was traversed with.
+  private int branchBase = 0;
+  private Node branchParent = null;
+
   /**
    * Callback
    */
@@ -248,7 +276,7 @@ public class NodeTraversal {
   }
 
   /**
-   * Traverses a parse tree recursively.
+   * Traverses a parse tree.
    */
   public void traverse(Node root) {
     try {
@@ -325,6 +353,30 @@ public class NodeTraversal {
     popScope();
   }
 
+  /**
+   * Traverses a function recursively, with the given global scope as the
+   * scope that the function is declared in. The function does not need to be
+   * part of the tree that the scope was created for, but it needs a parent,
+   * which tells whether it is a function declaration or expression. Only the
+   * function itself is traversed, not its parent.
+   */
+  void traverseFunctionWithScope(Node fn, Scope s) {
+    Preconditions.checkState(s.isGlobal());
+    Preconditions.checkState(fn.getType() == Token.FUNCTION);
+    Preconditions.checkState(fn.getParent() != null);
+
+    try {
+      inputId = NodeUtil.getInputId(fn);
+      sourceName = getSourceName(fn);
+      curNode = fn;
+      pushScope(s);
+      traverseBranch(fn, fn.getParent());
+      popScope();
+    } catch (Exception unexpectedException) {
+      throwUnexpectedException(unexpectedException);
+    }
+  }
+
   /**
    * Traverses a parse tree recursively with a scope, starting at that scope's
    * root.
@@ -448,9 +500,108 @@ public class NodeTraversal {
 
   /**
    * Traverses a branch.
+   *
+   * The traversal keeps its own stack of the nodes it is in, rather than
+   * recursing, so that deeply nested trees, such as long chains of binary
+   * operators, do not overflow the stack of the thread. Callbacks may start
+   * another traversal with this object: it uses the stack above the nodes of
+   * the outer one.
    */
-  @SuppressWarnings("fallthrough")
   private void traverseBranch(Node n, Node parent) {
+    int base = depth;
+    int outerBranchBase = branchBase;
+    Node outerBranchParent = branchParent;
+    branchBase = base;
+    branchParent = parent;
+    try {
+      enterNode(n, parent);
+      while (depth > base) {
+        int top = depth - 1;
+        if (stackSteps[top] != STEP_CHILDREN) {
+          traverseFunctionStep(top);
+          continue;
+        }
+        Node child = stackNext[top];
+        if (child != null) {
+          // child could be replaced, in which case our child node
+          // would no longer point to the true next
+          stackNext[top] = child.getNext();
+          enterNode(child, stackNodes[top]);
+        } else {
+          exitNode();
+        }
+      }
+    } finally {
+      // Only an exception leaves nodes of this traversal on the stack.
+      depth = base;
+      branchBase = outerBranchBase;
+      branchParent = outerBranchParent;
+      if (base == 0) {
+        // Let go of the nodes of the tree.
+        Arrays.fill(stackNodes, null);
+        Arrays.fill(stackNext, null);
+      }
+    }
+  }
+
+  /**
+   * Takes the next step of the traversal of the function on top of the
+   * stack.
+   */
+  private void traverseFunctionStep(int top) {
+    Node n = stackNodes[top];
+    switch (stackSteps[top]) {
+      case STEP_FUNCTION_START:
+        traverseFunctionStart(top);
+        break;
+
+      case STEP_FUNCTION_DECLARATION_SCOPE:
+        curNode = n;
+        pushScope(n);
+        stackSteps[top] = STEP_FUNCTION_ARGS;
+        break;
+
+      case STEP_FUNCTION_EXPRESSION_SCOPE:
+        curNode = n;
+        pushScope(n);
+        // Function expression names are only accessible within the
+        // function scope.
+        stackSteps[top] = STEP_FUNCTION_ARGS;
+        enterNode(stackNext[top], n);
+        break;
+
+      case STEP_FUNCTION_ARGS:
+        Node args = stackNext[top].getNext();
+        Node body = args.getNext();
+        stackNext[top] = body;
+        stackSteps[top] = STEP_FUNCTION_BODY;
+        enterNode(args, n);
+        break;
+
+      case STEP_FUNCTION_BODY:
+        body = stackNext[top];
+        Preconditions.checkState(body.getNext() == null &&
+                body.getType() == Token.BLOCK);
+        stackSteps[top] = STEP_FUNCTION_END;
+        enterNode(body, n);
+        break;
+
+      case STEP_FUNCTION_END:
+        popScope();
+        exitNode();
+        break;
+
+      default:
+        throw new IllegalStateException(
+            "Unexpected step " + stackSteps[top]);
+    }
+  }
+
+  /**
+   * Visits a node in pre order and, if its children should be traversed,
+   * puts it on the stack of the nodes the traversal is in.
+   */
+  private void enterNode(Node n, Node parent) {
     int type = n.getType();
     if (type == Token.SCRIPT) {
       inputId = n.getInputId();
@@ -460,30 +611,56 @@ public class NodeTraversal {
     curNode = n;
     if (!callback.shouldTraverse(this, n, parent)) return;
 
-    switch (type) {
-      case Token.FUNCTION:
-        traverseFunction(n, parent);
-        break;
+    Node first = n.getFirstChild();
+    if (first == null && type != Token.FUNCTION) {
+      // A leaf is visited right away.
+      curNode = n;
+      callback.visit(this, n, parent);
+      return;
+    }
 
-      default:
-        for (Node child = n.getFirstChild(); child != null; ) {
-          // child could be replaced, in which case our child node
-          // would no longer point to the true next
-          Node next = child.getNext();
-          traverseBranch(child, n);
-          child = next;
-        }
-        break;
+    if (depth == stackNodes.length) {
+      int capacity = 2 * depth;
+      stackNodes = Arrays.copyOf(stackNodes, capacity);
+      stackNext = Arrays.copyOf(stackNext, capacity);
+      stackSteps = Arrays.copyOf(stackSteps, capacity);
     }
+    stackNodes[depth] = n;
+    if (type == Token.FUNCTION) {
+      stackNext[depth] = null;
+      stackSteps[depth] = STEP_FUNCTION_START;
+    } else {
+      stackNext[depth] = first;
+      stackSteps[depth] = STEP_CHILDREN;
+    }
+    depth++;
+  }
 
+  /**
+   * Takes the node on top of the stack off it and visits it in post order.
+   */
+  private void exitNode() {
+    int top = depth - 1;
+    Node n = stackNodes[top];
+    Node parent = getParentOnStack(top);
+    // The slot keeps its nodes until it is used again or the traversal ends.
+    depth--;
     curNode = n;
     callback.visit(this, n, parent);
   }
 
+  private Node getParentOnStack(int position) {
+    return position == branchBase ? branchParent : stackNodes[position - 1];
+  }
+
   /**
-   * Traverses a function.
+   * Starts traversing the function on top of the stack. The name of a
+   * function declaration is traversed in the scope containing the
+   * declaration, before the scope of the function is entered.
    */
-  private void traverseFunction(Node n, Node parent) {
+  private void traverseFunctionStart(int top) {
+    Node n = stackNodes[top];
+    Node parent = getParentOnStack(top);
     Preconditions.checkState(n.getChildCount() == 3);
     Preconditions.checkState(n.getType() == Token.FUNCTION);
 
@@ -492,32 +669,15 @@ public class NodeTraversal {
     boolean isFunctionExpression = (parent != null)
         && NodeUtil.isFunctionExpression(n);
 
-    if (!isFunctionExpression) {
-      // Functions declarations are in the scope containing the declaration.
-      traverseBranch(fnName, n);
-    }
-
-    curNode = n;
-    pushScope(n);
-
+    // The name is kept to find the arguments and body once it is traversed.
+    stackNext[top] = fnName;
     if (isFunctionExpression) {
-      // Function expression names are only accessible within the function
-      // scope.
-      traverseBranch(fnName, n);
+      stackSteps[top] = STEP_FUNCTION_EXPRESSION_SCOPE;
+    } else {
+      // Functions declarations are in the scope containing the declaration.
+      stackSteps[top] = STEP_FUNCTION_DECLARATION_SCOPE;
+      enterNode(fnName, n);
     }
-
-    final Node args = fnName.getNext();
-    final Node body = args.getNext();
-
-    // Args
-    traverseBranch(args, n);
-
-    // Body
-    Preconditions.checkState(body.getNext() == null &&
-            body.getType() == Token.BLOCK);
-    traverseBranch(body, n);
-
-    popScope();
   }
 
   /** Examines the functions stack for the last instance of a function node. */
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2011 The Closure Compiler Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.javascript.jscomp;
+
+import com.google.common.collect.Lists;
+import com.google.debugging.sourcemap.FilePosition;
+import com.google.javascript.rhino.Node;
+
+import java.util.List;
+
+/**
+ * Prints the code of scripts on several threads, while the caller takes the
+ * printed scripts in order.
+ *
+ * A script is printed on its own, as if its code started the output, and
+ * the source map mappings of its code are recorded rather than added to the
+ * source map. Once the caller knows where the code of the script starts in
+ * the output, it adds the mappings to the source map with the position of
+ * the code as the starting position, which gives the same mappings as
+ * printing the script in place.
+ *
+ */
+final class ParallelCodePrinter
+    extends ParallelProducer<ParallelCodePrinter.PrintedScript> {
+
+  // The number of scripts each worker may print ahead of the caller.
+  private static final int SCRIPTS_AHEAD_PER_WORKER = 2;
+
+  private final Compiler compiler;
+  private final boolean recordMappings;
+
+  private List<Node> scripts;
+
+  /**
+   * @param numWorkers The number of threads to print on. The calling thread
+   *     does not print.
+   * @param recordMappings Whether to record the source map mappings.
+   */
+  ParallelCodePrinter(
+      Compiler compiler, int numWorkers, boolean recordMappings) {
+    super(numWorkers, SCRIPTS_AHEAD_PER_WORKER, "jscompiler-printer");
+    this.compiler = compiler;
+    this.recordMappings = recordMappings;
+  }
+
+  /**
+   * Starts printing the scripts. The first script is printed as the first
+   * output. Every call must be followed by a call to {@link #stop}, and the
+   * scripts are taken in order with {@link #take}.
+   */
+  synchronized void start(List<Node> scripts) {
+    this.scripts = scripts;
+    start(scripts.size());
+  }
+
+  @Override
+  PrintedScript produce(int index) {
+    return print(scripts.get(index), index == 0);
+  }
+
+  private PrintedScript print(Node script, boolean firstOutput) {
+    MappingRecorder recorder = recordMappings ? new MappingRecorder() : null;
+    String code = compiler.createCodePrinter(script, recorder, firstOutput)
+        .build();
+    return new PrintedScript(code, recorder);
+  }
+
+  /** The code of a script, and the mappings of its code. */
+  static final class PrintedScript {
+    final String code;
+    private final MappingRecorder mappings;
+
+    private PrintedScript(String code, MappingRecorder mappings) {
+      this.code = code;
+      this.mappings = mappings;
+    }
+
+    /**
+     * Adds the mappings of the code to a source map, whose starting position
+     * must be the position of the code in the output.
+     */
+    void addMappingsTo(SourceMap sourceMap) {
+      if (mappings != null) {
+        mappings.addMappingsTo(sourceMap);
+      }
+    }
+  }
+
+  /**
+   * Records the mappings the code printer adds, to add them to the source
+   * map later. Only takes mappings: the rest of the source map is not there.
+   */
+  private static final class MappingRecorder extends SourceMap {
+    private final List<Node> nodes = Lists.newArrayList();
+    private final List<FilePosition> positions = Lists.newArrayList();
+
+    private MappingRecorder() {
+      super(null);
+    }
+
+    @Override
+    public void addMapping(
+        Node node,
+        FilePosition outputStartPosition,
+        FilePosition outputEndPosition) {
+      nodes.add(node);
+      positions.add(outputStartPosition);
+      positions.add(outputEndPosition);
+    }
+
+    private void addMappingsTo(SourceMap sourceMap) {
+      for (int i = 0; i < nodes.size(); i++) {
+        sourceMap.addMapping(
+            nodes.get(i), positions.get(2 * i), positions.get(2 * i + 1));
+      }
+    }
+  }
+}
@@ -39,6 +39,15 @@ final class ParallelCompilerPass implements CompilerPass {
 
   private List<Node> worklist;
 
+  // The results of the tasks, in the order of the work list.
+  private Result[] results;
+
+  // The index of the next subtree of the work list to work on.
+  private int nextTask;
+
+  // An error that stopped one of the worker threads.
+  private volatile Error workerError;
+
   /**
    * Similar to {@link CompilerPass} except tasks are not given reference to
    * externs because of possible race conditions since node mutation is usually
@@ -122,7 +131,7 @@ final class ParallelCompilerPass implements CompilerPass {
   @Override
   public void process(Node externs, Node root) {
     // List of subtree to work with.
-    worklist = splitter.split();
+    worklist = Lists.newArrayList(splitter.split());
     Result r = execute();
     splitter.join();
     r.notifyCompiler(compiler);
@@ -131,26 +140,37 @@ final class ParallelCompilerPass implements CompilerPass {
   /**
    * Main loop that creates the worker threads and do work.
    *
-   * @return the combined result of all task execution on the work list.
+   * @return the combined result of all task execution on the work list. The
+   *     results are combined in the order of the work list, so the errors are
+   *     reported in the same order no matter which thread did what.
    */
   private Result execute() {
-    int numChildThread = numWorkers - 1;
-    Thread[] workers = new Thread[numChildThread];
-    final Result[] results = new Result[numChildThread];
-
+    results = new Result[worklist.size()];
+    nextTask = 0;
+    workerError = null;
+
+    int numChildThread = Math.min(numWorkers, worklist.size()) - 1;
+    Thread[] workers = new Thread[Math.max(numChildThread, 0)];
+
+    Runnable work = new Runnable() {
+      @Override
+      public void run() {
+        try {
+          processAllTasks();
+        } catch (Error e) {
+          workerError = e;
+        }
+      }
+    };
     for (int i = 0; i < numChildThread; i++) {
-      final int index = i;
-      Thread worker = new Thread() {
-        @Override
-          public void run() {
-            results[index] = processAllTasks();
-          }
-       };
-       workers[i] = worker;
-       worker.start();
+      Thread worker = new Thread(work, "jscompiler-worker");
+      workers[i] = worker;
+      worker.start();
     }
 
-    Result result = processAllTasks();
+    processAllTasks();
+
+    Result result = new Result();
 
     // Wait for the child to finish.
     for (int i = 0; i < numChildThread; i++) {
@@ -168,44 +188,41 @@ final class ParallelCompilerPass implements CompilerPass {
       }
     }
 
+    if (workerError != null) {
+      throw workerError;
+    }
+
     // Combine the result.
-    for (int i = 0; i < numChildThread; i++) {
-      result.combine(results[i]);
+    for (Result taskResult : results) {
+      if (taskResult != null) {
+        result.combine(taskResult);
+      }
     }
+    results = null;
 
     return result;
   }
 
-  private Result processAllTasks() {
-    Result result = new Result();
-    while(true) {
-      Result passResult = processTask();
-      if (passResult == null) {
+  private void processAllTasks() {
+    while (true) {
+      int index = getTask();
+      if (index < 0) {
         break;
-      } else {
-        result.combine(passResult);
       }
+      results[index] = processTask(worklist.get(index));
     }
-    return result;
   }
 
   /**
-   * Get a subtree from the work list and work on it. This method makes a call
-   * to the supplier which is also assumed thread-safe. It also calls
-   * getTask() which is synchronized.
+   * Works on a subtree from the work list. This method makes a call
+   * to the supplier which is also assumed thread-safe.
    *
    * @return The result of performing the task specified by the task supplier
-   * on the next subtree from the work list. {@code null} if there are no more
-   * work load from the work list.
+   * on the subtree.
    */
-  private Result processTask() {
-    Node subtree = getTask();
+  private Result processTask(Node subtree) {
     try {
-      if (subtree == null) {
-        return null;
-      } else {
-        return taskSupply.get().processSubtree(subtree);
-      }
+      return taskSupply.get().processSubtree(subtree);
     } catch (Exception e) {
       Result r = new Result(true);
       r.exceptions.add(e);
@@ -213,14 +230,18 @@ final class ParallelCompilerPass implements CompilerPass {
     }
   }
 
-  /** Retrieves a subtree to work on from the work list. This must be atomic. */
-  private synchronized Node getTask() {
-    // Since the method is protected by a lock, there is no need for a thread-
-    // safe list.
-    if (worklist.isEmpty()) {
-      return null;
+  /**
+   * Retrieves the index of a subtree to work on from the work list. This must
+   * be atomic.
+   *
+   * @return The index of the subtree in the work list, or -1 if there is no
+   *     more work load in the work list.
+   */
+  private synchronized int getTask() {
+    if (nextTask < worklist.size()) {
+      return nextTask++;
     } else {
-      return worklist.remove(0);
+      return -1;
     }
   }
 }
@@ -0,0 +1,241 @@
+/*
+ * Copyright 2011 The Closure Compiler Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.javascript.jscomp;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Supplier;
+import com.google.common.collect.Maps;
+import com.google.javascript.jscomp.NodeTraversal.Callback;
+import com.google.javascript.jscomp.NodeTraversal.ScopedCallback;
+import com.google.javascript.jscomp.ParallelCompilerPass.Result;
+import com.google.javascript.jscomp.ParallelCompilerPass.Task;
+import com.google.javascript.rhino.Node;
+import com.google.javascript.rhino.Token;
+
+import java.util.Map;
+
+/**
+ * Runs a function-local pass on several threads. The functions that are not
+ * nested in other functions are detached from the AST with an
+ * {@link AstParallelizer} and handed out to the workers of a
+ * {@link ParallelCompilerPass}, each of which uses its own instance of the
+ * pass. Once all the functions are done, the code outside of functions is
+ * processed on the calling thread.
+ *
+ * As every function is processed on its own, with the same global scope as
+ * when the pass runs on a single thread, the resulting AST does not depend
+ * on the number of threads. Errors are reported once the functions are back
+ * in the AST, in the order of the functions.
+ *
+ */
+final class ParallelFunctionPass implements CompilerPass {
+
+  /**
+   * A pass whose changes to a function only depend on the function itself
+   * and on the global scope.
+   */
+  interface FunctionPass extends CompilerPass {
+    /**
+     * Processes a function and all the functions nested in it.
+     *
+     * @param fn A function that is not nested in another function. It has
+     *     been detached from the AST, and given a parent of its own that
+     *     tells whether it is a function declaration or expression.
+     * @param globalScope The scope of the AST the function belongs to.
+     */
+    void processFunction(Node fn, Scope globalScope);
+
+    /**
+     * Processes the code outside of functions. The functions are back in
+     * the AST, but must not be traversed again.
+     */
+    void processGlobalCode(Node root, Scope globalScope);
+
+    /**
+     * Processes a function, which may be nested in other functions, but not
+     * the functions nested in it. The scope of the function gets the global
+     * scope as its parent.
+     */
+    void processSingleFunction(Node fn, Scope globalScope);
+  }
+
+  private final AbstractCompiler compiler;
+  private final Supplier<? extends FunctionPass> passes;
+  private final int numWorkers;
+
+  /**
+   * @param passes Creates the instances of the pass. Each worker thread uses
+   *     instances of its own.
+   * @param numWorkers The number of threads to use, including the calling
+   *     thread.
+   */
+  ParallelFunctionPass(AbstractCompiler compiler,
+      Supplier<? extends FunctionPass> passes, int numWorkers) {
+    Preconditions.checkArgument(numWorkers > 0);
+    this.compiler = compiler;
+    this.passes = passes;
+    this.numWorkers = numWorkers;
+  }
+
+  @Override
+  public void process(Node externs, Node root) {
+    final Scope globalScope =
+        new SyntacticScopeCreator(compiler).createScope(root, null);
+
+    // The parents that the functions get while they are detached. They need
+    // to be created up front, while it is still known where the functions
+    // were.
+    final Map<Node, Node> parents = Maps.newHashMap();
+    createDetachedParents(root, parents);
+
+    Supplier<Task> tasks = new Supplier<Task>() {
+      @Override
+      public Task get() {
+        return new FunctionTask(passes.get(), parents, globalScope);
+      }
+    };
+    new ParallelCompilerPass(compiler,
+        AstParallelizer.createNewFunctionLevelAstParallelizer(root, false),
+        tasks, numWorkers).process(externs, root);
+
+    passes.get().processGlobalCode(root, globalScope);
+  }
+
+  /**
+   * Returns an instance of the pass to run on the calling thread, for when
+   * there is too little to do to start threads for.
+   */
+  FunctionPass createSerialPass() {
+    return passes.get();
+  }
+
+  /**
+   * Creates a parent for each function that the function level
+   * {@link AstParallelizer} detaches from the AST.
+   */
+  private static void createDetachedParents(Node n, Map<Node, Node> parents) {
+    for (Node c = n.getFirstChild(); c != null; c = c.getNext()) {
+      if (NodeUtil.isFunction(c)) {
+        Node script = new Node(Token.SCRIPT);
+        script.setInputId(NodeUtil.getInputId(c));
+        if (NodeUtil.isFunctionExpression(c)) {
+          Node expr = new Node(Token.EXPR_RESULT);
+          script.addChildToFront(expr);
+          parents.put(c, expr);
+        } else {
+          parents.put(c, script);
+        }
+      } else {
+        createDetachedParents(c, parents);
+      }
+    }
+  }
+
+  /**
+   * Runs the pass on one detached function, recording the errors it reports
+   * and whether it changed the function.
+   */
+  private class FunctionTask implements Task {
+    private final FunctionPass pass;
+    private final Map<Node, Node> parents;
+    private final Scope globalScope;
+
+    FunctionTask(
+        FunctionPass pass, Map<Node, Node> parents, Scope globalScope) {
+      this.pass = pass;
+      this.parents = parents;
+      this.globalScope = globalScope;
+    }
+
+    @Override
+    public Result processSubtree(Node fn) {
+      Result result = new Result();
+      Node parent = parents.get(fn);
+      parent.addChildToFront(fn);
+      compiler.setCurrentThreadResult(result);
+      try {
+        pass.processFunction(fn, globalScope);
+      } finally {
+        compiler.setCurrentThreadResult(null);
+        parent.removeChild(fn);
+      }
+      return result;
+    }
+  }
+
+  /**
+   * Wraps the callback of a pass so that it does not traverse functions, for
+   * use in {@link FunctionPass#processGlobalCode}.
+   */
+  static class GlobalCodeCallback implements Callback {
+    private final Callback callback;
+
+    GlobalCodeCallback(Callback callback) {
+      this.callback = callback;
+    }
+
+    @Override
+    public boolean shouldTraverse(NodeTraversal t, Node n, Node parent) {
+      return !NodeUtil.isFunction(n) && callback.shouldTraverse(t, n, parent);
+    }
+
+    @Override
+    public void visit(NodeTraversal t, Node n, Node parent) {
+      callback.visit(t, n, parent);
+    }
+  }
+
+  /**
+   * Wraps the callback of a pass so that it does not traverse the functions
+   * nested in a function, for use in
+   * {@link FunctionPass#processSingleFunction}.
+   */
+  static class SingleFunctionCallback implements ScopedCallback {
+    private final Node fn;
+    private final Callback callback;
+
+    SingleFunctionCallback(Node fn, Callback callback) {
+      this.fn = fn;
+      this.callback = callback;
+    }
+
+    @Override
+    public boolean shouldTraverse(NodeTraversal t, Node n, Node parent) {
+      return (n == fn || !NodeUtil.isFunction(n))
+          && callback.shouldTraverse(t, n, parent);
+    }
+
+    @Override
+    public void visit(NodeTraversal t, Node n, Node parent) {
+      callback.visit(t, n, parent);
+    }
+
+    @Override
+    public void enterScope(NodeTraversal t) {
+      if (callback instanceof ScopedCallback) {
+        ((ScopedCallback) callback).enterScope(t);
+      }
+    }
+
+    @Override
+    public void exitScope(NodeTraversal t) {
+      if (callback instanceof ScopedCallback) {
+        ((ScopedCallback) callback).exitScope(t);
+      }
+    }
+  }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2011 The Closure Compiler Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.javascript.jscomp;
+
+import com.google.common.base.Preconditions;
+import com.google.javascript.jscomp.ParallelCompilerPass.Result;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reads and parses compiler inputs on several threads.
+ *
+ * The errors that an input reports while it is parsed are not reported to
+ * the compiler right away, but recorded in a {@link Result} of its own. The
+ * caller replays the results in input order, so the errors come out in the
+ * same order as when the inputs are parsed one after the other.
+ *
+ */
+final class ParallelParser {
+
+  private final AbstractCompiler compiler;
+  private final int numWorkers;
+
+  private List<CompilerInput> worklist;
+  private Result[] results;
+  private int nextInput;
+  private volatile Error workerError;
+
+  /**
+   * @param numWorkers The number of threads to use, including the calling
+   *     thread.
+   */
+  ParallelParser(AbstractCompiler compiler, int numWorkers) {
+    Preconditions.checkArgument(numWorkers > 0);
+    this.compiler = compiler;
+    this.numWorkers = numWorkers;
+  }
+
+  /**
+   * Parses the inputs. Once this returns, {@link CompilerInput#getAstRoot}
+   * hands out the parsed trees without parsing again.
+   *
+   * @return What each input reported while it was parsed, in input order.
+   */
+  List<Result> parse(List<CompilerInput> inputs) {
+    worklist = inputs;
+    results = new Result[inputs.size()];
+    nextInput = 0;
+    workerError = null;
+
+    int numChildThread = Math.min(numWorkers, inputs.size()) - 1;
+    Thread[] workers = new Thread[Math.max(numChildThread, 0)];
+
+    Runnable work = new Runnable() {
+      @Override
+      public void run() {
+        try {
+          parseAllInputs();
+        } catch (Error e) {
+          workerError = e;
+        }
+      }
+    };
+    for (int i = 0; i < numChildThread; i++) {
+      Thread worker = new Thread(work, "jscompiler-parser");
+      workers[i] = worker;
+      worker.start();
+    }
+
+    parseAllInputs();
+
+    boolean interrupted = false;
+    for (int i = 0; i < numChildThread; i++) {
+      while (true) {
+        try {
+          workers[i].join();
+          break;
+        } catch (InterruptedException e) {
+          // The workers finish on their own, so keep waiting for them and
+          // restore the interrupt once they are done.
+          interrupted = true;
+        }
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+
+    if (workerError != null) {
+      throw workerError;
+    }
+
+    List<Result> parsed = Arrays.asList(results);
+    worklist = null;
+    results = null;
+    return parsed;
+  }
+
+  private void parseAllInputs() {
+    while (true) {
+      int index = getInput();
+      if (index < 0) {
+        break;
+      }
+      results[index] = parseInput(worklist.get(index));
+    }
+  }
+
+  private Result parseInput(CompilerInput input) {
+    Result result = new Result();
+    compiler.setCurrentThreadResult(result);
+    try {
+      input.getAstRoot(compiler);
+    } catch (Exception e) {
+      result.exceptions.add(e);
+    } finally {
+      compiler.setCurrentThreadResult(null);
+    }
+    return result;
+  }
+
+  /**
+   * @return The index of the next input to parse, or -1 if all the inputs
+   *     have been handed out.
+   */
+  private synchronized int getInput() {
+    if (nextInput < worklist.size()) {
+      return nextInput++;
+    } else {
+      return -1;
+    }
+  }
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright 2011 The Closure Compiler Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.javascript.jscomp;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+
+/**
+ * Produces a list of values on several threads, while the caller takes the
+ * values in order.
+ *
+ * The workers only produce a few values ahead of the caller, so that the
+ * values that are not taken yet do not pile up.
+ *
+ * @param <T> The type of the values.
+ */
+abstract class ParallelProducer<T> {
+
+  private final int numWorkers;
+  private final int aheadPerWorker;
+  private final String threadName;
+
+  private Object[] produced;
+  private Thread[] workers;
+  private int nextToProduce;
+  private int nextToTake;
+  private boolean stopped;
+  private Throwable workerError;
+
+  /**
+   * @param numWorkers The number of threads to produce the values on. The
+   *     calling thread does not produce any.
+   * @param aheadPerWorker The number of values each worker may produce ahead
+   *     of the caller.
+   * @param threadName The name of the worker threads.
+   */
+  ParallelProducer(int numWorkers, int aheadPerWorker, String threadName) {
+    Preconditions.checkArgument(numWorkers > 0);
+    Preconditions.checkArgument(aheadPerWorker > 0);
+    this.numWorkers = numWorkers;
+    this.aheadPerWorker = aheadPerWorker;
+    this.threadName = threadName;
+  }
+
+  /**
+   * Produces a value. Called on the worker threads, for each index once.
+   *
+   * @param index The index of the value, from 0 to the number of values.
+   */
+  abstract T produce(int index);
+
+  /**
+   * Starts producing the values. Every call must be followed by a call to
+   * {@link #stop}.
+   *
+   * @param count The number of values to produce.
+   */
+  synchronized void start(int count) {
+    Preconditions.checkState(workers == null);
+    produced = new Object[count];
+    nextToProduce = 0;
+    nextToTake = 0;
+    stopped = false;
+    workerError = null;
+
+    Runnable work = new Runnable() {
+      @Override
+      public void run() {
+        try {
+          produceAll();
+        } catch (Throwable e) {
+          reportError(e);
+        }
+      }
+    };
+    workers = new Thread[Math.min(numWorkers, count)];
+    for (int i = 0; i < workers.length; i++) {
+      workers[i] = new Thread(work, threadName);
+      workers[i].start();
+    }
+  }
+
+  /**
+   * Returns the next value, in index order, waiting for it to be produced
+   * if need be. Rethrows the error of a worker that failed.
+   */
+  @SuppressWarnings("unchecked")
+  synchronized T take() {
+    Preconditions.checkState(nextToTake < produced.length);
+    boolean interrupted = false;
+    while (produced[nextToTake] == null && workerError == null) {
+      try {
+        wait();
+      } catch (InterruptedException e) {
+        // The workers finish the value on their own, so keep waiting for
+        // it and restore the interrupt once it is there.
+        interrupted = true;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+    if (workerError != null) {
+      Throwables.propagateIfPossible(workerError);
+      throw new RuntimeException(workerError);
+    }
+
+    T value = (T) produced[nextToTake];
+    produced[nextToTake++] = null;
+    notifyAll();
+    return value;
+  }
+
+  /**
+   * Stops the workers, whether or not all the values were taken, and waits
+   * for them to finish.
+   */
+  void stop() {
+    Thread[] toJoin;
+    synchronized (this) {
+      stopped = true;
+      notifyAll();
+      toJoin = workers;
+      workers = null;
+    }
+    if (toJoin == null) {
+      return;
+    }
+
+    boolean interrupted = false;
+    for (Thread worker : toJoin) {
+      while (true) {
+        try {
+          worker.join();
+          break;
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+    produced = null;
+  }
+
+  private void produceAll() {
+    while (true) {
+      int index = getIndex();
+      if (index < 0) {
+        break;
+      }
+      T value = produce(index);
+      Preconditions.checkNotNull(value);
+      synchronized (this) {
+        produced[index] = value;
+        notifyAll();
+      }
+    }
+  }
+
+  /**
+   * @return The index of the next value to produce, or -1 if all the
+   *     indices have been handed out or the producer was stopped.
+   */
+  private synchronized int getIndex() {
+    int maxAhead = numWorkers * aheadPerWorker;
+    while (!stopped && nextToProduce < produced.length
+        && nextToProduce >= nextToTake + maxAhead) {
+      try {
+        wait();
+      } catch (InterruptedException e) {
+        return -1;
+      }
+    }
+    if (stopped || nextToProduce >= produced.length) {
+      return -1;
+    }
+    return nextToProduce++;
+  }
+
+  private synchronized void reportError(Throwable e) {
+    if (workerError == null) {
+      workerError = e;
+    }
+    stopped = true;
+    notifyAll();
+  }
+}
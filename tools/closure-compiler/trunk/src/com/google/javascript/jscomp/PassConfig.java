@@ -70,13 +70,16 @@ public abstract class PassConfig {
 
   /**
    * Regenerates the top scope potentially only for a sub-tree of AST and then
-   * copies information for the old global scope.
+   * copies information for the old global scope. The types declared in the
+   * other scripts are kept, while the memoized local scopes of the previous
+   * version of the script are dropped.
    *
    * @param compiler The compiler for which the global scope is generated.
    * @param scriptRoot The root of the AST used to generate global scope.
    */
   void patchGlobalTypedScope(AbstractCompiler compiler, Node scriptRoot) {
     Preconditions.checkNotNull(internalScopeCreator);
+    typedScopeCreator.removeScopesForScript(scriptRoot.getSourceFileName());
     internalScopeCreator.patchGlobalScope(topScope, scriptRoot);
   }
 
@@ -27,7 +27,7 @@ import com.google.javascript.rhino.Node;
  * @author acleung@google.com (Alan Leung)(
  */
 class PeepholeOptimizationsPass extends AbstractPostOrderCallback
-    implements CompilerPass {
+    implements ParallelFunctionPass.FunctionPass {
   private AbstractCompiler compiler;
 
   // Use an array here for faster iteration compared to ImmutableSet
@@ -58,6 +58,35 @@ class PeepholeOptimizationsPass extends AbstractPostOrderCallback
     endTraversal(t);
   }
 
+  @Override
+  public void processFunction(Node fn, Scope globalScope) {
+    NodeTraversal t = new NodeTraversal(compiler, this);
+
+    beginTraversal(t);
+    t.traverseFunctionWithScope(fn, globalScope);
+    endTraversal(t);
+  }
+
+  @Override
+  public void processGlobalCode(Node root, Scope globalScope) {
+    NodeTraversal t = new NodeTraversal(compiler,
+        new ParallelFunctionPass.GlobalCodeCallback(this));
+
+    beginTraversal(t);
+    t.traverseWithScope(root, globalScope);
+    endTraversal(t);
+  }
+
+  @Override
+  public void processSingleFunction(Node fn, Scope globalScope) {
+    NodeTraversal t = new NodeTraversal(compiler,
+        new ParallelFunctionPass.SingleFunctionCallback(fn, this));
+
+    beginTraversal(t);
+    t.traverseFunctionWithScope(fn, globalScope);
+    endTraversal(t);
+  }
+
   @Override
   public void visit(NodeTraversal t, Node n, Node parent) {
     Node currentVersionOfNode = n;
@@ -16,19 +16,32 @@
 
 package com.google.javascript.jscomp;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.io.CountingOutputStream;
+import com.google.common.io.NullOutputStream;
 import com.google.javascript.jscomp.CodeChangeHandler.RecentChange;
 import com.google.javascript.rhino.Node;
+import com.google.javascript.rhino.Token;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.util.ArrayDeque;
 import java.util.Deque;
+import java.util.List;
 import java.util.Map;
 import java.util.zip.GZIPOutputStream;
 
 /**
+ * Records how long each pass takes, what it allocates and how it changes
+ * the code. The records can be read in-process, or written as a JSON
+ * report with {@link #writeJsonReport}.
+ *
  */
 public class PerformanceTracker {
 
@@ -42,10 +55,27 @@ public class PerformanceTracker {
   private int curCodeSizeEstimate = -1;
   private int curZippedCodeSizeEstimate = -1;
 
-  private Deque<String> currentRunningPass = new ArrayDeque<String>();
+  // The size estimates of the top-level statements, in the order of the
+  // code, so that only the statements that changed are printed again.
+  private List<StatementSize> statementSizes = Lists.newArrayList();
+
+  // How many nodes the last fingerprints were computed over.
+  private int fingerprintedNodes = 0;
+
+  private int curNodeCount;
+
+  private Deque<PassStart> currentRunningPass = new ArrayDeque<PassStart>();
 
-  /** Maps pass name to total time spend. */
-  private final Map<String, Long> runtimeRecord = Maps.newHashMap();
+  /** Maps pass name to what was recorded for it, in the order of the passes. */
+  private final Map<String, PassStats> passStats = Maps.newLinkedHashMap();
+
+  /** The fixed-point loops that have run, in order. */
+  private final List<LoopStats> loopStats = Lists.newArrayList();
+
+  // Totals of the passes that did not run within other passes.
+  private long totalTime = 0;
+  private long totalAllocatedBytes = 0;
+  private long totalGcTime = 0;
 
   /** Maps pass name to total size reduction. */
   private final Map<String, Integer> codeSizeRecord = Maps.newHashMap();
@@ -56,6 +86,7 @@ public class PerformanceTracker {
   PerformanceTracker(Node jsRoot, boolean trackGzippedSize) {
     this.jsRoot = jsRoot;
     this.trackGzippedSize = trackGzippedSize;
+    this.curNodeCount = countNodes(jsRoot);
   }
 
   CodeChangeHandler getCodeChangeHandler() {
@@ -63,7 +94,8 @@ public class PerformanceTracker {
   }
 
   void recordPassStart(String passName) {
-    currentRunningPass.push(passName);
+    currentRunningPass.push(
+        new PassStart(passName, getAllocatedBytes(), getGcTime()));
     codeChange.reset();
   }
 
@@ -74,24 +106,52 @@ public class PerformanceTracker {
    * @param result Execution time.
    */
   void recordPassStop(String passName, long result) {
-    String currentPassName = currentRunningPass.pop();
-    if (!passName.equals(currentPassName)) {
+    long allocatedBytes = getAllocatedBytes();
+    long gcTime = getGcTime();
+    PassStart start = currentRunningPass.pop();
+    if (!passName.equals(start.passName)) {
       throw new RuntimeException(passName + " is not running.");
     }
-    Long total = runtimeRecord.get(passName);
-    if (total == null) {
-      total = 0L;
+    PassStats stats = passStats.get(passName);
+    if (stats == null) {
+      stats = new PassStats();
+      passStats.put(passName, stats);
+    }
+    stats.runs++;
+    stats.time += result;
+    stats.allocatedBytes += allocatedBytes - start.allocatedBytes;
+    stats.gcTime += gcTime - start.gcTime;
+    if (currentRunningPass.isEmpty()) {
+      totalTime += result;
+      totalAllocatedBytes += allocatedBytes - start.allocatedBytes;
+      totalGcTime += gcTime - start.gcTime;
     }
-    total = total.longValue() + result;
-    runtimeRecord.put(passName, total);
 
+    int nodeCount;
     if (codeChange.hasCodeChanged()) {
-      CodeSizeEstimatePrinter printer = estimateCodeSize(jsRoot);
+      stats.changes++;
+      nodeCount = estimateStatementSizes();
       curCodeSizeEstimate = recordSizeChange(curCodeSizeEstimate,
-          printer.calcSize(), passName, codeSizeRecord);
+          calcSize(), passName, codeSizeRecord);
       curZippedCodeSizeEstimate = recordSizeChange(curZippedCodeSizeEstimate,
-          printer.calcZippedSize(), passName, zippedCodeSizeRecord);
+          calcZippedSize(), passName, zippedCodeSizeRecord);
+    } else {
+      // Parsing does not report code changes, so the nodes are counted
+      // anyway.
+      nodeCount = countNodes(jsRoot);
     }
+    stats.nodeDelta += nodeCount - curNodeCount;
+    curNodeCount = nodeCount;
+  }
+
+  /**
+   * Record that a loop of passes has reached a fixed point.
+   *
+   * @param passNames The passes of the loop, in the order they ran.
+   * @param iterations How many times the passes ran.
+   */
+  void recordLoop(List<String> passNames, int iterations) {
+    loopStats.add(new LoopStats(passNames, iterations));
   }
 
   /**
@@ -118,7 +178,41 @@ public class PerformanceTracker {
 
 
   public ImmutableMap<String, Long> getRuntimeRecord() {
-    return ImmutableMap.copyOf(runtimeRecord);
+    ImmutableMap.Builder<String, Long> builder = ImmutableMap.builder();
+    for (Map.Entry<String, PassStats> entry : passStats.entrySet()) {
+      builder.put(entry.getKey(), entry.getValue().time);
+    }
+    return builder.build();
+  }
+
+  /** Maps pass name to the bytes allocated while it ran. */
+  public ImmutableMap<String, Long> getAllocationRecord() {
+    ImmutableMap.Builder<String, Long> builder = ImmutableMap.builder();
+    for (Map.Entry<String, PassStats> entry : passStats.entrySet()) {
+      builder.put(entry.getKey(), entry.getValue().allocatedBytes);
+    }
+    return builder.build();
+  }
+
+  /** Maps pass name to how many nodes it added, or removed if negative. */
+  public ImmutableMap<String, Integer> getNodeCountRecord() {
+    ImmutableMap.Builder<String, Integer> builder = ImmutableMap.builder();
+    for (Map.Entry<String, PassStats> entry : passStats.entrySet()) {
+      builder.put(entry.getKey(), entry.getValue().nodeDelta);
+    }
+    return builder.build();
+  }
+
+  /**
+   * Returns how many times the passes of each loop ran, in the order the
+   * loops ran.
+   */
+  public ImmutableList<Integer> getLoopIterationRecord() {
+    ImmutableList.Builder<Integer> builder = ImmutableList.builder();
+    for (LoopStats loop : loopStats) {
+      builder.add(loop.iterations);
+    }
+    return builder.build();
   }
 
   public ImmutableMap<String, Integer> getCodeSizeRecord() {
@@ -129,31 +223,286 @@ public class PerformanceTracker {
     return ImmutableMap.copyOf(zippedCodeSizeRecord);
   }
 
-  private final CodeSizeEstimatePrinter estimateCodeSize(Node root) {
+  /**
+   * Writes everything that has been recorded as a JSON object, with the
+   * passes in the order they first ran. Times are in milliseconds. Bytes
+   * are the ones allocated on the thread that ran the compiler, and are
+   * -1 if the JVM cannot tell.
+   */
+  void writeJsonReport(Appendable out) throws IOException {
+    out.append("{\n");
+    out.append("  \"totalTimeMs\": ").append(String.valueOf(totalTime))
+        .append(",\n");
+    out.append("  \"totalAllocatedBytes\": ")
+        .append(String.valueOf(isAllocationTracked() ? totalAllocatedBytes : -1))
+        .append(",\n");
+    out.append("  \"totalGcTimeMs\": ").append(String.valueOf(totalGcTime))
+        .append(",\n");
+    out.append("  \"nodeCount\": ").append(String.valueOf(curNodeCount))
+        .append(",\n");
+
+    out.append("  \"passes\": [");
+    String separator = "\n";
+    for (Map.Entry<String, PassStats> entry : passStats.entrySet()) {
+      String name = entry.getKey();
+      PassStats stats = entry.getValue();
+      out.append(separator);
+      separator = ",\n";
+      out.append("    {\"name\": ")
+          .append(CodeGenerator.escapeToDoubleQuotedJsString(name))
+          .append(", \"runs\": ").append(String.valueOf(stats.runs))
+          .append(", \"changes\": ").append(String.valueOf(stats.changes))
+          .append(", \"timeMs\": ").append(String.valueOf(stats.time))
+          .append(", \"allocatedBytes\": ")
+          .append(String.valueOf(
+              isAllocationTracked() ? stats.allocatedBytes : -1))
+          .append(", \"gcTimeMs\": ").append(String.valueOf(stats.gcTime))
+          .append(", \"nodeDelta\": ")
+          .append(String.valueOf(stats.nodeDelta))
+          .append(", \"sizeReduction\": ")
+          .append(String.valueOf(getOrZero(codeSizeRecord, name)))
+          .append(", \"zippedSizeReduction\": ")
+          .append(String.valueOf(getOrZero(zippedCodeSizeRecord, name)))
+          .append("}");
+    }
+    out.append("\n  ],\n");
+
+    out.append("  \"loops\": [");
+    separator = "\n";
+    for (LoopStats loop : loopStats) {
+      out.append(separator);
+      separator = ",\n";
+      out.append("    {\"passes\": [");
+      for (int i = 0; i < loop.passNames.size(); i++) {
+        if (i > 0) {
+          out.append(", ");
+        }
+        out.append(
+            CodeGenerator.escapeToDoubleQuotedJsString(loop.passNames.get(i)));
+      }
+      out.append("], \"iterations\": ")
+          .append(String.valueOf(loop.iterations)).append("}");
+    }
+    out.append("\n  ]\n");
+    out.append("}\n");
+  }
+
+  private static int getOrZero(Map<String, Integer> record, String passName) {
+    Integer value = record.get(passName);
+    return value == null ? 0 : value;
+  }
+
+  private static int countNodes(Node n) {
+    int count = 1;
+    for (Node c = n.getFirstChild(); c != null; c = c.getNext()) {
+      count += countNodes(c);
+    }
+    return count;
+  }
+
+  private static boolean isAllocationTracked() {
+    ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    return bean instanceof com.sun.management.ThreadMXBean
+        && ((com.sun.management.ThreadMXBean) bean)
+            .isThreadAllocatedMemoryEnabled();
+  }
+
+  /**
+   * Returns the bytes allocated so far by the current thread, or 0 if the
+   * JVM does not keep track of them.
+   */
+  private static long getAllocatedBytes() {
+    if (!isAllocationTracked()) {
+      return 0;
+    }
+    com.sun.management.ThreadMXBean bean =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+
+  /** Returns the time spent collecting garbage so far. */
+  private static long getGcTime() {
+    long time = 0;
+    for (GarbageCollectorMXBean bean :
+             ManagementFactory.getGarbageCollectorMXBeans()) {
+      time += Math.max(bean.getCollectionTime(), 0);
+    }
+    return time;
+  }
+
+  /** A pass that is running, and where its measures started. */
+  private static final class PassStart {
+    private final String passName;
+    private final long allocatedBytes;
+    private final long gcTime;
+
+    private PassStart(String passName, long allocatedBytes, long gcTime) {
+      this.passName = passName;
+      this.allocatedBytes = allocatedBytes;
+      this.gcTime = gcTime;
+    }
+  }
+
+  /** The totals of all the runs of a pass. */
+  private static final class PassStats {
+    private int runs = 0;
+    private int changes = 0;
+    private long time = 0;
+    private long allocatedBytes = 0;
+    private long gcTime = 0;
+    private int nodeDelta = 0;
+  }
+
+  private static final class LoopStats {
+    private final ImmutableList<String> passNames;
+    private final int iterations;
+
+    private LoopStats(List<String> passNames, int iterations) {
+      this.passNames = ImmutableList.copyOf(passNames);
+      this.iterations = iterations;
+    }
+  }
+
+  /**
+   * Updates the size estimates of the top-level statements. The changes to
+   * the code are not reported with the nodes that changed, so a statement
+   * is printed again only if its fingerprint changed.
+   *
+   * @return The number of nodes in the code.
+   */
+  private int estimateStatementSizes() {
+    Map<Node, StatementSize> oldSizes = Maps.newIdentityHashMap();
+    for (StatementSize statementSize : statementSizes) {
+      oldSizes.put(statementSize.statement, statementSize);
+    }
+
+    List<StatementSize> newSizes = Lists.newArrayList();
+    fingerprintedNodes = 0;
+    int nodeCount = 1;
+    for (Node script = jsRoot.getFirstChild(); script != null;
+         script = script.getNext()) {
+      nodeCount++;
+      for (Node statement = script.getFirstChild(); statement != null;
+           statement = statement.getNext()) {
+        long fingerprint = fingerprint(statement);
+        StatementSize statementSize = oldSizes.get(statement);
+        if (statementSize == null
+            || statementSize.fingerprint != fingerprint) {
+          statementSize = estimateCodeSize(statement, fingerprint);
+        }
+        newSizes.add(statementSize);
+      }
+    }
+    statementSizes = newSizes;
+    return nodeCount + fingerprintedNodes;
+  }
+
+  private int calcSize() {
+    int size = 0;
+    for (StatementSize statementSize : statementSizes) {
+      size += statementSize.size;
+    }
+    return size;
+  }
+
+  /**
+   * Returns the gzipped size of the code, from the code of the statements
+   * as it was printed, or -1 if the gzipped size is not tracked.
+   */
+  private int calcZippedSize() {
+    if (!trackGzippedSize) {
+      return -1;
+    }
+    CountingOutputStream output =
+        new CountingOutputStream(new NullOutputStream());
+    try {
+      GZIPOutputStream stream = new GZIPOutputStream(output);
+      for (StatementSize statementSize : statementSizes) {
+        stream.write(statementSize.code);
+      }
+      stream.close();
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+    return (int) output.getCount();
+  }
+
+  /**
+   * Returns a hash of the parts of a tree that change how it is printed.
+   */
+  private long fingerprint(Node n) {
+    fingerprintedNodes++;
+    int type = n.getType();
+    long hash = type;
+    switch (type) {
+      case Token.NAME:
+      case Token.LABEL_NAME:
+        hash = hash * 31 + n.getString().hashCode();
+        break;
+      case Token.STRING:
+        hash = hash * 31 + n.getString().hashCode();
+        hash = hash * 31 + (n.isQuotedString() ? 1 : 0);
+        break;
+      case Token.NUMBER:
+        hash = hash * 31 + Double.doubleToLongBits(n.getDouble());
+        break;
+      case Token.CALL:
+        hash = hash * 31 + (n.getBooleanProp(Node.FREE_CALL) ? 1 : 0);
+        break;
+    }
+    int childCount = 0;
+    for (Node c = n.getFirstChild(); c != null; c = c.getNext()) {
+      hash = hash * 1000003 + fingerprint(c);
+      childCount++;
+    }
+    return hash * 31 + childCount;
+  }
+
+  /**
+   * Prints a top-level statement, with the semicolon that ends it, to
+   * estimate its size.
+   */
+  private StatementSize estimateCodeSize(Node statement, long fingerprint) {
     CodeSizeEstimatePrinter cp = new CodeSizeEstimatePrinter(trackGzippedSize);
     CodeGenerator cg = new CodeGenerator(cp);
-    cg.add(root);
-    return cp;
+    cg.add(statement, CodeGenerator.Context.STATEMENT);
+    if (statement.getType() == Token.VAR) {
+      cp.endStatement();
+    }
+    cp.maybeEndStatement();
+    return new StatementSize(statement, fingerprint, cp.size,
+        trackGzippedSize ? cp.output.toByteArray() : null);
+  }
+
+  /** The size estimate of a statement, and the fingerprint it is for. */
+  private static final class StatementSize {
+    private final Node statement;
+    private final long fingerprint;
+    private final int size;
+
+    // The printed code, if the gzipped size is tracked.
+    private final byte[] code;
+
+    private StatementSize(
+        Node statement, long fingerprint, int size, byte[] code) {
+      this.statement = statement;
+      this.fingerprint = fingerprint;
+      this.size = size;
+      this.code = code;
+    }
   }
 
   /**
    * Purely use to get a code size estimate and not generate any code at all.
    */
   private static final class CodeSizeEstimatePrinter extends CodeConsumer {
-    private final boolean trackGzippedSize;
+    private final boolean keepCode;
     private int size = 0;
     private char lastChar = '\0';
     private final ByteArrayOutputStream output = new ByteArrayOutputStream();
-    private final GZIPOutputStream stream;
-
-    private CodeSizeEstimatePrinter(boolean trackGzippedSize) {
-      this.trackGzippedSize = trackGzippedSize;
 
-      try {
-        stream = new GZIPOutputStream(output);
-      } catch (IOException e) {
-        throw new RuntimeException(e);
-      }
+    private CodeSizeEstimatePrinter(boolean keepCode) {
+      this.keepCode = keepCode;
     }
 
     @Override
@@ -162,9 +511,9 @@ public class PerformanceTracker {
       if (len > 0) {
         size += len;
         lastChar = str.charAt(len - 1);
-        if (trackGzippedSize) {
+        if (keepCode) {
           try {
-            stream.write(str.getBytes());
+            output.write(str.getBytes());
           } catch (IOException e) {
             throw new RuntimeException(e);
           }
@@ -176,24 +525,5 @@ public class PerformanceTracker {
     char getLastChar() {
       return lastChar;
     }
-
-    private int calcSize() {
-      return size;
-    }
-
-    private int calcZippedSize() {
-      if (trackGzippedSize) {
-        try {
-          stream.finish();
-          stream.flush();
-          stream.close();
-          return output.size();
-        } catch (IOException e) {
-          throw new RuntimeException(e);
-        }
-      } else {
-        return -1;
-      }
-    }
   }
 }
@@ -0,0 +1,510 @@
+/*
+ * Copyright 2011 The Closure Compiler Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.javascript.jscomp;
+
+import com.google.common.base.Preconditions;
+import com.google.javascript.jscomp.Scope.Var;
+import com.google.javascript.rhino.Node;
+import com.google.javascript.rhino.jstype.JSType;
+import com.google.javascript.rhino.jstype.SimpleSlot;
+import com.google.javascript.rhino.jstype.StaticScope;
+import com.google.javascript.rhino.jstype.StaticSlot;
+
+import java.util.Iterator;
+
+/**
+ * A flow scope that keeps the slots inferred in the flow in a persistent
+ * hash array mapped trie, keyed by the hash of the slot names.
+ *
+ * A child scope shares the trie of its parent, inferring a slot copies only
+ * the path to it, and the join and the comparison of two scopes only walk
+ * the parts of their tries that are not shared. Unlike
+ * {@link LinkedFlowScope}, lookups do not slow down as the flow gets longer
+ * and joins do not copy all the slots of both scopes, which matters in long
+ * functions with many variables.
+ *
+ */
+class PersistentFlowScope implements FlowScope {
+
+  // The number of bits of the hash that each level of the trie is keyed by.
+  private static final int BITS = 5;
+  private static final int MASK = (1 << BITS) - 1;
+
+  private static final TrieNode EMPTY_NODE =
+      new TrieNode(0, new Object[0]);
+  private static final FlowSlot[] NO_SLOTS = new FlowSlot[0];
+
+  // The Scope for the entire function or for the global scope.
+  private final Scope functionScope;
+
+  // The flow scope this one was created from, or null if it is an entry
+  // lattice or a join.
+  private final PersistentFlowScope parent;
+
+  // The slots inferred before this point in the flow: a TrieNode, a
+  // FlowSlot, an array of FlowSlots whose names have the same hash, or null
+  // if no slot was inferred.
+  private Object root;
+
+  // Flow scopes assume that all their ancestors are immutable.
+  // So once a child scope is created, this flow scope may not be modified.
+  private boolean frozen = false;
+
+  private PersistentFlowScope(Scope functionScope, PersistentFlowScope parent,
+      Object root) {
+    this.functionScope = functionScope;
+    this.parent = parent;
+    this.root = root;
+  }
+
+  /**
+   * Creates an entry lattice for the flow.
+   */
+  public static PersistentFlowScope createEntryLattice(Scope scope) {
+    return new PersistentFlowScope(scope, null, null);
+  }
+
+  @Override
+  public void inferSlotType(String symbol, JSType type) {
+    Preconditions.checkState(!frozen);
+    root = put(root, new FlowSlot(symbol, type), 0);
+  }
+
+  @Override
+  public void inferQualifiedSlot(String symbol, JSType bottomType,
+      JSType inferredType) {
+    if (functionScope.isLocal()) {
+      if (functionScope.getVar(symbol) == null && !functionScope.isBottom()) {
+        // When we enter a local scope, many qualified names are
+        // already defined even if they haven't been declared in the Scope
+        // object. If the name has not yet been defined in this scope, we
+        // need to define it now before we refine it.
+        functionScope.declare(symbol, null, bottomType, null);
+      }
+
+      inferSlotType(symbol, inferredType);
+    }
+  }
+
+  @Override
+  public JSType getTypeOfThis() {
+    return functionScope.getTypeOfThis();
+  }
+
+  @Override
+  public Node getRootNode() {
+    return functionScope.getRootNode();
+  }
+
+  @Override
+  public StaticScope<JSType> getParentScope() {
+    return functionScope.getParentScope();
+  }
+
+  /**
+   * Get the slot for the given symbol.
+   */
+  @Override
+  public StaticSlot<JSType> getSlot(String name) {
+    // The type inference looks up the qualified names of expressions
+    // that have none.
+    FlowSlot slot = name == null ? null : get(root, name);
+    return slot != null ? slot : functionScope.getSlot(name);
+  }
+
+  @Override
+  public StaticSlot<JSType> getOwnSlot(String name) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public FlowScope createChildFlowScope() {
+    frozen = true;
+    return new PersistentFlowScope(functionScope, this, root);
+  }
+
+  /**
+   * Compares the trie of this scope with the trie of the blind scope, which
+   * it was created from. If there's one and only one slot inferred since the
+   * blind scope, return it.
+   */
+  @Override
+  public StaticSlot<JSType> findUniqueRefinedSlot(FlowScope blindScope) {
+    final FlowSlot[] result = new FlowSlot[1];
+    boolean unique = diff(((PersistentFlowScope) blindScope).root, root, 0,
+        new SlotVisitor() {
+          @Override
+          boolean visit(FlowSlot blindSlot, FlowSlot refinedSlot) {
+            if (result[0] != null) {
+              return false;
+            }
+            result[0] = refinedSlot;
+            return true;
+          }
+        });
+    return unique ? result[0] : null;
+  }
+
+  /**
+   * Look through the given scope, and try to find slots where it doesn't
+   * have enough type information. Then fill in that type information
+   * with stuff that we've inferred in the local flow.
+   */
+  @Override
+  public void completeScope(Scope scope) {
+    for (Iterator<Var> it = scope.getVars(); it.hasNext();) {
+      Var var = it.next();
+      if (var.isTypeInferred()) {
+        JSType type = var.getType();
+        if (type == null || type.isUnknownType()) {
+          JSType flowType = getSlot(var.getName()).getType();
+          var.setType(flowType);
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the first ancestor of this scope that has the same slots.
+   */
+  @Override
+  public PersistentFlowScope optimize() {
+    PersistentFlowScope current;
+    for (current = this;
+         current.parent != null && current.parent.root == current.root;
+         current = current.parent) {}
+    return current;
+  }
+
+  /** Join the two FlowScopes. */
+  static class FlowScopeJoinOp extends JoinOp.BinaryJoinOp<FlowScope> {
+    @Override
+    public FlowScope apply(FlowScope a, FlowScope b) {
+      final PersistentFlowScope scopeA = (PersistentFlowScope) a;
+      final PersistentFlowScope scopeB = (PersistentFlowScope) b;
+      scopeA.frozen = true;
+      scopeB.frozen = true;
+      if (scopeA.root == scopeB.root &&
+          scopeA.functionScope == scopeB.functionScope) {
+        return scopeA.createChildFlowScope();
+      }
+
+      // Always prefer the "real" function scope to the faked-out
+      // bottom scope.
+      final PersistentFlowScope joined = new PersistentFlowScope(
+          scopeA.functionScope.isBottom() ?
+              scopeB.functionScope : scopeA.functionScope,
+          null, scopeA.root);
+
+      // The slots that both scopes share keep their type. For the others,
+      // there are 5 different join cases:
+      // 1) The type is declared in scopeA, not in scopeB,
+      //    and not in functionScope. Just use the one in A.
+      // 2) The type is declared in scopeB, not in scopeA,
+      //    and not in functionScope. Just use the one in B.
+      // 3) The type is declared in functionScope and scopeA, but
+      //    not in scopeB. Join the two types.
+      // 4) The type is declared in functionScope and scopeB, but
+      //    not in scopeA. Join the two types.
+      // 5) The type is declared in scopeA and scopeB. Join
+      //    the two types.
+      diff(scopeA.root, scopeB.root, 0, new SlotVisitor() {
+        @Override
+        boolean visit(FlowSlot slotA, FlowSlot slotB) {
+          String name = slotA != null ? slotA.getName() : slotB.getName();
+          JSType joinedType = null;
+          if (slotB == null || slotB.getType() == null) {
+            StaticSlot<JSType> fnSlot = scopeB.functionScope.getSlot(name);
+            JSType fnSlotType = fnSlot == null ? null : fnSlot.getType();
+            if (fnSlotType == null) {
+              // Case #1 -- already inserted.
+            } else {
+              // Case #3
+              joinedType = slotA.getType().getLeastSupertype(fnSlotType);
+            }
+          } else if (slotA == null || slotA.getType() == null) {
+            StaticSlot<JSType> fnSlot = scopeA.functionScope.getSlot(name);
+            JSType fnSlotType = fnSlot == null ? null : fnSlot.getType();
+            if (fnSlotType == null) {
+              // Case #2
+              joined.root = put(joined.root, slotB, 0);
+            } else {
+              // Case #4
+              joinedType = slotB.getType().getLeastSupertype(fnSlotType);
+            }
+          } else {
+            // Case #5
+            joinedType = slotA.getType().getLeastSupertype(slotB.getType());
+          }
+
+          if (joinedType != null) {
+            joined.root = put(joined.root, new FlowSlot(name, joinedType), 0);
+          }
+          return true;
+        }
+      });
+      return joined;
+    }
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    if (other instanceof PersistentFlowScope) {
+      PersistentFlowScope that = (PersistentFlowScope) other;
+
+      // If two flow scopes are in the same function, then they could have
+      // two possible function scopes: the real one and the BOTTOM scope.
+      // If they have different function scopes, we *should* iterate thru all
+      // the variables in each scope and compare. However, 99.9% of the time,
+      // they're not equal. And the other .1% of the time, we can pretend
+      // they're equal--this just means that data flow analysis will have
+      // to propagate the entry lattice a little bit further than it
+      // really needs to. Everything will still come out ok.
+      if (this.functionScope != that.functionScope) {
+        return false;
+      }
+
+      return diff(root, that.root, 0, new SlotVisitor() {
+        @Override
+        boolean visit(FlowSlot slotA, FlowSlot slotB) {
+          return !diffSlots(slotA, slotB);
+        }
+      });
+    }
+    return false;
+  }
+
+  /**
+   * Determines whether two slots are meaningfully different for the
+   * purposes of data flow analysis.
+   */
+  private static boolean diffSlots(StaticSlot<JSType> slotA,
+                                   StaticSlot<JSType> slotB) {
+    boolean aIsNull = slotA == null || slotA.getType() == null;
+    boolean bIsNull = slotB == null || slotB.getType() == null;
+    if (aIsNull && bIsNull) {
+      return false;
+    } else if (aIsNull ^ bIsNull) {
+      return true;
+    }
+
+    // Both slots and types must be non-null.
+    return slotA.getType().differsFrom(slotB.getType());
+  }
+
+  /**
+   * Gets the slot with the given name from the given trie, or null if there
+   * is none.
+   */
+  private static FlowSlot get(Object node, String name) {
+    int hash = name.hashCode();
+    for (int shift = 0; node instanceof TrieNode; shift += BITS) {
+      node = ((TrieNode) node).getChild(bit(hash, shift));
+    }
+    return find(node, name);
+  }
+
+  /**
+   * Finds the slot with the given name among the slots of a leaf of a trie.
+   */
+  private static FlowSlot find(Object leaf, String name) {
+    if (leaf instanceof FlowSlot) {
+      FlowSlot slot = (FlowSlot) leaf;
+      return slot.getName().equals(name) ? slot : null;
+    }
+    for (FlowSlot slot : slotsOf(leaf)) {
+      if (slot.getName().equals(name)) {
+        return slot;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns a trie with the slots of the given trie and the given slot,
+   * which replaces the slot with the same name, if any. The given trie is
+   * not modified.
+   *
+   * @param shift The number of bits of the hash that the levels above the
+   *     given node are keyed by.
+   */
+  private static Object put(Object node, FlowSlot slot, int shift) {
+    if (node == null) {
+      return slot;
+    }
+
+    if (node instanceof TrieNode) {
+      TrieNode trie = (TrieNode) node;
+      int bit = bit(slot.hash, shift);
+      int index = trie.getIndex(bit);
+      Object[] children;
+      if ((trie.bitmap & bit) == 0) {
+        children = new Object[trie.children.length + 1];
+        System.arraycopy(trie.children, 0, children, 0, index);
+        children[index] = slot;
+        System.arraycopy(trie.children, index,
+            children, index + 1, trie.children.length - index);
+        return new TrieNode(trie.bitmap | bit, children);
+      }
+      children = trie.children.clone();
+      children[index] = put(children[index], slot, shift + BITS);
+      return new TrieNode(trie.bitmap, children);
+    }
+
+    int hash = hashOf(node);
+    if (hash != slot.hash) {
+      // The hashes differ in the bits of a level below, so move the leaf
+      // down to make room for the slot next to it.
+      return put(toTrieNode(node, shift), slot, shift);
+    }
+
+    FlowSlot[] slots = slotsOf(node);
+    for (int i = 0; i < slots.length; i++) {
+      if (slots[i].getName().equals(slot.getName())) {
+        if (slots.length == 1) {
+          return slot;
+        }
+        FlowSlot[] newSlots = slots.clone();
+        newSlots[i] = slot;
+        return newSlots;
+      }
+    }
+    FlowSlot[] newSlots = new FlowSlot[slots.length + 1];
+    System.arraycopy(slots, 0, newSlots, 0, slots.length);
+    newSlots[slots.length] = slot;
+    return newSlots;
+  }
+
+  /**
+   * Visits the slots that are not the same in two tries, skipping the
+   * parts that the tries share.
+   *
+   * @return Whether all the slots were visited, that is, false if the
+   *     visitor stopped the walk.
+   */
+  private static boolean diff(Object a, Object b, int shift,
+      SlotVisitor visitor) {
+    if (a == b) {
+      return true;
+    }
+
+    if (a instanceof TrieNode || b instanceof TrieNode) {
+      TrieNode trieA = toTrieNode(a, shift);
+      TrieNode trieB = toTrieNode(b, shift);
+      for (int bits = trieA.bitmap | trieB.bitmap; bits != 0;) {
+        int bit = Integer.lowestOneBit(bits);
+        bits ^= bit;
+        if (!diff(trieA.getChild(bit), trieB.getChild(bit),
+                shift + BITS, visitor)) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    for (FlowSlot slotA : slotsOf(a)) {
+      FlowSlot slotB = find(b, slotA.getName());
+      if (slotA != slotB && !visitor.visit(slotA, slotB)) {
+        return false;
+      }
+    }
+    for (FlowSlot slotB : slotsOf(b)) {
+      if (find(a, slotB.getName()) == null && !visitor.visit(null, slotB)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the given trie as a trie node at the given level.
+   */
+  private static TrieNode toTrieNode(Object node, int shift) {
+    if (node instanceof TrieNode) {
+      return (TrieNode) node;
+    } else if (node == null) {
+      return EMPTY_NODE;
+    } else {
+      return new TrieNode(bit(hashOf(node), shift), new Object[] {node});
+    }
+  }
+
+  /** Gets the slots of a leaf of a trie. */
+  private static FlowSlot[] slotsOf(Object leaf) {
+    if (leaf == null) {
+      return NO_SLOTS;
+    } else if (leaf instanceof FlowSlot) {
+      return new FlowSlot[] {(FlowSlot) leaf};
+    } else {
+      return (FlowSlot[]) leaf;
+    }
+  }
+
+  /** Gets the hash that the slots of a leaf of a trie are keyed by. */
+  private static int hashOf(Object leaf) {
+    return leaf instanceof FlowSlot ?
+        ((FlowSlot) leaf).hash : ((FlowSlot[]) leaf)[0].hash;
+  }
+
+  private static int bit(int hash, int shift) {
+    return 1 << ((hash >>> shift) & MASK);
+  }
+
+  /**
+   * A level of a trie, with a child for each set bit of its bitmap.
+   */
+  private static class TrieNode {
+    final int bitmap;
+    final Object[] children;
+
+    TrieNode(int bitmap, Object[] children) {
+      this.bitmap = bitmap;
+      this.children = children;
+    }
+
+    /** Gets the index of the child for the given bit. */
+    int getIndex(int bit) {
+      return Integer.bitCount(bitmap & (bit - 1));
+    }
+
+    /** Gets the child for the given bit, or null if there is none. */
+    Object getChild(int bit) {
+      return (bitmap & bit) == 0 ? null : children[getIndex(bit)];
+    }
+  }
+
+  /**
+   * A static slot that can be stored in a trie.
+   */
+  private static class FlowSlot extends SimpleSlot {
+    final int hash;
+
+    FlowSlot(String name, JSType type) {
+      super(name, type, true);
+      this.hash = name.hashCode();
+    }
+  }
+
+  /**
+   * Visits the pairs of slots with the same name that two tries do not
+   * share. Either slot may be null.
+   */
+  private abstract static class SlotVisitor {
+    /** @return Whether to keep visiting the slots. */
+    abstract boolean visit(FlowSlot slotA, FlowSlot slotB);
+  }
+}
@@ -64,6 +64,9 @@ class PhaseOptimizer implements CompilerPass {
   private String currentPassName = null;
   private PassFactory sanityCheck = null;
 
+  // Keeps track of the functions that changed while a loop runs.
+  private FunctionChangeTracker functionChanges = null;
+
   // The following static properties are only used for computing optimal
   // phase orderings. They should not be touched by normal compiler runs.
   private static boolean randomizeLoops = false;
@@ -270,7 +273,12 @@ class PhaseOptimizer implements CompilerPass {
 
     @Override
     void processInternal(Node externs, Node root) {
-      factory.create(myCompiler).process(externs, root);
+      CompilerPass pass = factory.create(myCompiler);
+      if (functionChanges != null) {
+        functionChanges.process(factory.getName(), pass, externs);
+      } else {
+        pass.process(externs, root);
+      }
     }
   }
 
@@ -322,6 +330,10 @@ class PhaseOptimizer implements CompilerPass {
         optimizePasses();
       }
 
+      // Function-local passes only run again on the functions that changed
+      // since they last ran.
+      functionChanges = new FunctionChangeTracker(compiler, root);
+      compiler.addChangeHandler(functionChanges);
       try {
         // TODO(nicksantos): Use a smarter algorithm that dynamically adjusts
         // the order that passes are run in.
@@ -345,7 +357,12 @@ class PhaseOptimizer implements CompilerPass {
         if (randomizeLoops) {
           loopsRun.add(getPassOrder());
         }
+        if (tracker != null) {
+          tracker.recordLoop(getPassOrder(), count);
+        }
       } finally {
+        compiler.removeChangeHandler(functionChanges);
+        functionChanges = null;
         loopMutex = false;
       }
     }
@@ -108,7 +108,7 @@ public class SourceMap {
   private final Map<String, String> sourceLocationFixupCache =
       Maps.newHashMap();
 
-  private SourceMap(SourceMapGenerator generator) {
+  SourceMap(SourceMapGenerator generator) {
     this.generator = generator;
   }
 
@@ -115,12 +115,12 @@ class TypeInference
                 Scope functionScope,
                 Map<String, AssertionFunctionSpec> assertionFunctionsMap,
                 Collection<Var> unflowableVars) {
-    super(cfg, new LinkedFlowScope.FlowScopeJoinOp());
+    super(cfg, new PersistentFlowScope.FlowScopeJoinOp());
     this.compiler = compiler;
     this.registry = compiler.getTypeRegistry();
     this.reverseInterpreter = reverseInterpreter;
     this.syntacticScope = functionScope;
-    this.functionScope = LinkedFlowScope.createEntryLattice(functionScope);
+    this.functionScope = PersistentFlowScope.createEntryLattice(functionScope);
     this.assertionFunctionsMap = assertionFunctionsMap;
 
     for (Var unflowableVar : unflowableVars) {
@@ -144,7 +144,7 @@ class TypeInference
           var.getName(), getNativeType(VOID_TYPE));
     }
 
-    this.bottomScope = LinkedFlowScope.createEntryLattice(
+    this.bottomScope = PersistentFlowScope.createEntryLattice(
         new Scope(functionScope.getRootNode(), functionScope.getTypeOfThis()));
   }
 
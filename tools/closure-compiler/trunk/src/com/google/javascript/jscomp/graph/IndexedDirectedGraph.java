@@ -0,0 +1,777 @@
+/*
+ * Copyright 2011 The Closure Compiler Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.javascript.jscomp.graph;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A directed graph whose nodes are numbered densely, in the order in which
+ * they were created, and whose edges are kept in int arrays rather than in
+ * edge objects.
+ * <p>
+ * While the graph grows, the out edges of each node are kept as a linked
+ * list of edge numbers, so that checking for an edge before adding it does
+ * not look at the other nodes. The first time the edges of the nodes are
+ * asked for, the edges are laid out in compressed sparse row form: the out
+ * edges of node {@code i}, in the order in which they were added, are the
+ * entries {@code outStart[i]} to {@code outStart[i + 1] - 1} of one array,
+ * and likewise for the in edges. Adding or removing an edge throws that
+ * layout away.
+ * <p>
+ * The lists of edges and nodes that the graph returns are views of that
+ * layout, which keep showing the graph as it was when they were returned.
+ * Edge objects are only created for the edges that are asked for, so a
+ * graph that is only walked through its nodes allocates a few arrays
+ * whatever its number of edges.
+ *
+ *
+ * @param <N> Value type that the graph node stores.
+ * @param <E> Value type that the graph edge stores.
+ */
+public class IndexedDirectedGraph<N, E>
+    extends DiGraph<N, E> implements GraphvizGraph {
+
+  private static final int INITIAL_CAPACITY = 16;
+
+  private final boolean useNodeAnnotations;
+  private final boolean useEdgeAnnotations;
+
+  private final List<IndexedNode> nodes = Lists.newArrayList();
+  private final Map<N, IndexedNode> nodesByValue = Maps.newHashMap();
+
+  // The edges, numbered in the order in which they were added.
+  private int edgeCount = 0;
+  private int[] edgeSources = new int[INITIAL_CAPACITY];
+  private int[] edgeDestinations = new int[INITIAL_CAPACITY];
+  private Object[] edgeValues = new Object[INITIAL_CAPACITY];
+  private final BitSet removedEdges = new BitSet();
+
+  // The edge objects that were asked for, by edge number.
+  private Object[] edgeObjects = new Object[INITIAL_CAPACITY];
+
+  // The out edges of each node, as linked lists of edge numbers, most
+  // recently added first. -1 ends a list.
+  private int[] firstOutEdge = new int[INITIAL_CAPACITY];
+  private int[] nextOutEdge = new int[INITIAL_CAPACITY];
+
+  // The edges in compressed sparse row form, or null if the graph changed
+  // since they were laid out.
+  private int[] outStart;
+  private int[] outEdges;
+  private int[] inStart;
+  private int[] inEdges;
+
+  // The last reverse postorders that were asked for, in each direction, or
+  // null if the graph changed since.
+  private int[] forwardOrder;
+  private int forwardOrderRoot;
+  private int[] backwardOrder;
+  private int backwardOrderRoot;
+
+  public static <N, E> IndexedDirectedGraph<N, E> createWithoutAnnotations() {
+    return new IndexedDirectedGraph<N, E>(false, false);
+  }
+
+  public static <N, E> IndexedDirectedGraph<N, E> createWithNodeAnnotations() {
+    return new IndexedDirectedGraph<N, E>(true, false);
+  }
+
+  public static <N, E> IndexedDirectedGraph<N, E> createWithEdgeAnnotations() {
+    return new IndexedDirectedGraph<N, E>(false, true);
+  }
+
+  public static <N, E> IndexedDirectedGraph<N, E> create() {
+    return new IndexedDirectedGraph<N, E>(true, true);
+  }
+
+  protected IndexedDirectedGraph(
+      boolean useNodeAnnotations, boolean useEdgeAnnotations) {
+    this.useNodeAnnotations = useNodeAnnotations;
+    this.useEdgeAnnotations = useEdgeAnnotations;
+  }
+
+  @Override
+  public SubGraph<N, E> newSubGraph() {
+    return new SimpleSubGraph<N, E>(this);
+  }
+
+  /** Returns the number of nodes in the graph. */
+  public int getNodeCount() {
+    return nodes.size();
+  }
+
+  /**
+   * Returns the number of a node of the graph: the nodes are numbered from 0
+   * to {@code getNodeCount() - 1}, in the order in which they were created.
+   */
+  public int getNodeIndex(DiGraphNode<N, E> node) {
+    int index = ((IndexedNode) node).index;
+    if (nodes.get(index) != node) {
+      throw new IllegalArgumentException(node + " does not exist in graph");
+    }
+    return index;
+  }
+
+  /** Returns the node with the given number. */
+  public DiGraphNode<N, E> getNodeByIndex(int index) {
+    return nodes.get(index);
+  }
+
+  @Override
+  public DiGraphNode<N, E> createDirectedGraphNode(N nodeValue) {
+    IndexedNode node = nodesByValue.get(nodeValue);
+    if (node == null) {
+      int index = nodes.size();
+      node = new IndexedNode(nodeValue, index);
+      nodes.add(node);
+      nodesByValue.put(nodeValue, node);
+      if (index == firstOutEdge.length) {
+        firstOutEdge = Arrays.copyOf(firstOutEdge, 2 * index);
+      }
+      firstOutEdge[index] = -1;
+      invalidateLayout();
+    }
+    return node;
+  }
+
+  @Override
+  public GraphNode<N, E> createNode(N value) {
+    return createDirectedGraphNode(value);
+  }
+
+  @Override
+  public void connect(N srcValue, E edgeValue, N destValue) {
+    int src = getIndexOrFail(srcValue);
+    int dest = getIndexOrFail(destValue);
+    int edge = edgeCount++;
+    if (edge == edgeSources.length) {
+      int capacity = 2 * edge;
+      edgeSources = Arrays.copyOf(edgeSources, capacity);
+      edgeDestinations = Arrays.copyOf(edgeDestinations, capacity);
+      edgeValues = Arrays.copyOf(edgeValues, capacity);
+      edgeObjects = Arrays.copyOf(edgeObjects, capacity);
+      nextOutEdge = Arrays.copyOf(nextOutEdge, capacity);
+    }
+    edgeSources[edge] = src;
+    edgeDestinations[edge] = dest;
+    edgeValues[edge] = edgeValue;
+    nextOutEdge[edge] = firstOutEdge[src];
+    firstOutEdge[src] = edge;
+    invalidateLayout();
+  }
+
+  @Override
+  public void disconnect(N n1, N n2) {
+    disconnectInDirection(n1, n2);
+    disconnectInDirection(n2, n1);
+  }
+
+  @Override
+  public void disconnectInDirection(N srcValue, N destValue) {
+    int src = getIndexOrFail(srcValue);
+    int dest = getIndexOrFail(destValue);
+    int previous = -1;
+    for (int edge = firstOutEdge[src]; edge != -1;
+         edge = nextOutEdge[edge]) {
+      if (edgeDestinations[edge] != dest) {
+        previous = edge;
+        continue;
+      }
+      if (previous == -1) {
+        firstOutEdge[src] = nextOutEdge[edge];
+      } else {
+        nextOutEdge[previous] = nextOutEdge[edge];
+      }
+      removedEdges.set(edge);
+      invalidateLayout();
+    }
+  }
+
+  @Override
+  public boolean isConnectedInDirection(N n1, N n2) {
+    int src = getIndexOrFail(n1);
+    int dest = getIndexOrFail(n2);
+    for (int edge = firstOutEdge[src]; edge != -1;
+         edge = nextOutEdge[edge]) {
+      if (edgeDestinations[edge] == dest) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public boolean isConnectedInDirection(N n1, E edgeValue, N n2) {
+    int src = getIndexOrFail(n1);
+    int dest = getIndexOrFail(n2);
+    for (int edge = firstOutEdge[src]; edge != -1;
+         edge = nextOutEdge[edge]) {
+      if (edgeDestinations[edge] == dest
+          && Objects.equal(edgeValues[edge], edgeValue)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public Iterable<DiGraphNode<N, E>> getDirectedGraphNodes() {
+    return Collections.<DiGraphNode<N, E>>unmodifiableList(nodes);
+  }
+
+  @Override
+  public Collection<GraphNode<N, E>> getNodes() {
+    return Collections.<GraphNode<N, E>>unmodifiableList(nodes);
+  }
+
+  @Override
+  public DiGraphNode<N, E> getDirectedGraphNode(N nodeValue) {
+    return nodesByValue.get(nodeValue);
+  }
+
+  @Override
+  public GraphNode<N, E> getNode(N nodeValue) {
+    return nodesByValue.get(nodeValue);
+  }
+
+  @Override
+  public List<DiGraphEdge<N, E>> getOutEdges(N nodeValue) {
+    return getOutEdges(getIndexOrFail(nodeValue));
+  }
+
+  @Override
+  public List<DiGraphEdge<N, E>> getInEdges(N nodeValue) {
+    return getInEdges(getIndexOrFail(nodeValue));
+  }
+
+  private List<DiGraphEdge<N, E>> getOutEdges(int index) {
+    layOutEdges();
+    return new EdgeList(outEdges, outStart[index], outStart[index + 1]);
+  }
+
+  private List<DiGraphEdge<N, E>> getInEdges(int index) {
+    layOutEdges();
+    return new EdgeList(inEdges, inStart[index], inStart[index + 1]);
+  }
+
+  @Override
+  public List<DiGraphNode<N, E>> getDirectedSuccNodes(N nodeValue) {
+    return getDirectedSuccNodes(nodesByValue.get(nodeValue));
+  }
+
+  @Override
+  public List<DiGraphNode<N, E>> getDirectedPredNodes(N nodeValue) {
+    return getDirectedPredNodes(nodesByValue.get(nodeValue));
+  }
+
+  @Override
+  public List<DiGraphNode<N, E>> getDirectedSuccNodes(
+      DiGraphNode<N, E> dNode) {
+    if (dNode == null) {
+      throw new IllegalArgumentException(dNode + " is null");
+    }
+    int index = getNodeIndex(dNode);
+    layOutEdges();
+    return new NodeList(outEdges, outStart[index], outStart[index + 1],
+        edgeDestinations);
+  }
+
+  @Override
+  public List<DiGraphNode<N, E>> getDirectedPredNodes(
+      DiGraphNode<N, E> dNode) {
+    if (dNode == null) {
+      throw new IllegalArgumentException(dNode + " is null");
+    }
+    int index = getNodeIndex(dNode);
+    layOutEdges();
+    return new NodeList(inEdges, inStart[index], inStart[index + 1],
+        edgeSources);
+  }
+
+  @Override
+  public List<DiGraphEdge<N, E>> getDirectedGraphEdges(N n1, N n2) {
+    int src = getIndexOrFail(n1);
+    int dest = getIndexOrFail(n2);
+    layOutEdges();
+    List<DiGraphEdge<N, E>> edges = Lists.newArrayList();
+    for (int i = outStart[src]; i < outStart[src + 1]; i++) {
+      if (edgeDestinations[outEdges[i]] == dest) {
+        edges.add(getEdgeObject(outEdges[i]));
+      }
+    }
+    return edges;
+  }
+
+  @Override
+  public List<GraphEdge<N, E>> getEdges(N n1, N n2) {
+    // Since this is a method from a generic graph, edges from both
+    // directions must be added to the returning list.
+    List<DiGraphEdge<N, E>> forwardEdges = getDirectedGraphEdges(n1, n2);
+    List<DiGraphEdge<N, E>> backwardEdges = getDirectedGraphEdges(n2, n1);
+    int totalSize = forwardEdges.size() + backwardEdges.size();
+    List<GraphEdge<N, E>> edges = Lists.newArrayListWithCapacity(totalSize);
+    edges.addAll(forwardEdges);
+    edges.addAll(backwardEdges);
+    return edges;
+  }
+
+  @Override
+  public GraphEdge<N, E> getFirstEdge(N n1, N n2) {
+    List<DiGraphEdge<N, E>> edges = getDirectedGraphEdges(n1, n2);
+    if (edges.isEmpty()) {
+      edges = getDirectedGraphEdges(n2, n1);
+    }
+    return edges.isEmpty() ? null : edges.get(0);
+  }
+
+  @Override
+  public List<GraphEdge<N, E>> getEdges() {
+    layOutEdges();
+    List<GraphEdge<N, E>> result = Lists.newArrayList();
+    for (int i = 0; i < outEdges.length; i++) {
+      result.add(getEdgeObject(outEdges[i]));
+    }
+    return Collections.unmodifiableList(result);
+  }
+
+  @Override
+  public int getNodeDegree(N value) {
+    int index = getIndexOrFail(value);
+    layOutEdges();
+    return inStart[index + 1] - inStart[index]
+        + outStart[index + 1] - outStart[index];
+  }
+
+  @Override
+  public List<GraphNode<N, E>> getNeighborNodes(N value) {
+    DiGraphNode<N, E> node = getNodeOrFail(value);
+    List<GraphNode<N, E>> result = Lists.newArrayList();
+    result.addAll(getDirectedPredNodes(node));
+    result.addAll(getDirectedSuccNodes(node));
+    return result;
+  }
+
+  @Override
+  public Iterator<GraphNode<N, E>> getNeighborNodesIterator(N value) {
+    return Collections.unmodifiableList(getNeighborNodes(value)).iterator();
+  }
+
+  /**
+   * Returns the nodes of the graph in reverse postorder of a depth-first
+   * search, so that a node comes after the nodes that lead to it except
+   * along back edges. The search starts at the given node, then at each node
+   * that it did not reach yet, in the order of their numbers.
+   *
+   * @param isForward Whether the search follows the edges or goes against
+   *     them.
+   */
+  public List<DiGraphNode<N, E>> getReversePostorder(
+      DiGraphNode<N, E> root, boolean isForward) {
+    int rootIndex = getNodeIndex(root);
+    int[] order;
+    if (isForward) {
+      if (forwardOrder == null || forwardOrderRoot != rootIndex) {
+        forwardOrder = computeReversePostorder(rootIndex, true);
+        forwardOrderRoot = rootIndex;
+      }
+      order = forwardOrder;
+    } else {
+      if (backwardOrder == null || backwardOrderRoot != rootIndex) {
+        backwardOrder = computeReversePostorder(rootIndex, false);
+        backwardOrderRoot = rootIndex;
+      }
+      order = backwardOrder;
+    }
+    return new NodeList(order, 0, order.length, null);
+  }
+
+  private int[] computeReversePostorder(int root, boolean isForward) {
+    layOutEdges();
+    int[] start = isForward ? outStart : inStart;
+    int[] edges = isForward ? outEdges : inEdges;
+    int[] ends = isForward ? edgeDestinations : edgeSources;
+
+    int nodeCount = nodes.size();
+    int[] order = new int[nodeCount];
+    int orderPosition = nodeCount;
+    boolean[] visited = new boolean[nodeCount];
+    // The nodes on the search path, and the position of the next edge to
+    // follow from each of them.
+    int[] stack = new int[nodeCount];
+    int[] nextEdge = new int[nodeCount];
+
+    for (int i = -1; i < nodeCount; i++) {
+      int first = i == -1 ? root : i;
+      if (visited[first]) {
+        continue;
+      }
+      visited[first] = true;
+      stack[0] = first;
+      nextEdge[0] = start[first];
+      int top = 0;
+      while (top >= 0) {
+        int node = stack[top];
+        if (nextEdge[top] < start[node + 1]) {
+          int next = ends[edges[nextEdge[top]++]];
+          if (!visited[next]) {
+            visited[next] = true;
+            top++;
+            stack[top] = next;
+            nextEdge[top] = start[next];
+          }
+        } else {
+          order[--orderPosition] = node;
+          top--;
+        }
+      }
+    }
+    return order;
+  }
+
+  @Override
+  public List<GraphvizEdge> getGraphvizEdges() {
+    List<GraphvizEdge> edgeList = Lists.newArrayList();
+    for (GraphEdge<N, E> edge : getEdges()) {
+      edgeList.add((IndexedEdge) edge);
+    }
+    return edgeList;
+  }
+
+  @Override
+  public List<GraphvizNode> getGraphvizNodes() {
+    return Lists.<GraphvizNode>newArrayList(nodes);
+  }
+
+  @Override
+  public String getName() {
+    return "IndexedGraph";
+  }
+
+  @Override
+  public boolean isDirected() {
+    return true;
+  }
+
+  private int getIndexOrFail(N value) {
+    IndexedNode node = getNodeOrFail(value);
+    return node.index;
+  }
+
+  private void invalidateLayout() {
+    outStart = null;
+    outEdges = null;
+    inStart = null;
+    inEdges = null;
+    forwardOrder = null;
+    backwardOrder = null;
+  }
+
+  /**
+   * Lays out the edges in compressed sparse row form, unless they are laid
+   * out already. The edges of each node stay in the order in which they were
+   * added.
+   */
+  private void layOutEdges() {
+    if (outStart != null) {
+      return;
+    }
+    int nodeCount = nodes.size();
+    int[] newOutStart = new int[nodeCount + 1];
+    int[] newInStart = new int[nodeCount + 1];
+    int liveEdgeCount = 0;
+    for (int edge = 0; edge < edgeCount; edge++) {
+      if (!removedEdges.get(edge)) {
+        newOutStart[edgeSources[edge] + 1]++;
+        newInStart[edgeDestinations[edge] + 1]++;
+        liveEdgeCount++;
+      }
+    }
+    for (int i = 0; i < nodeCount; i++) {
+      newOutStart[i + 1] += newOutStart[i];
+      newInStart[i + 1] += newInStart[i];
+    }
+
+    // Fills in each row from its start, using the starts of the next rows as
+    // the positions to fill, then moves them back.
+    int[] newOutEdges = new int[liveEdgeCount];
+    int[] newInEdges = new int[liveEdgeCount];
+    for (int edge = 0; edge < edgeCount; edge++) {
+      if (!removedEdges.get(edge)) {
+        newOutEdges[newOutStart[edgeSources[edge]]++] = edge;
+        newInEdges[newInStart[edgeDestinations[edge]]++] = edge;
+      }
+    }
+    for (int i = nodeCount; i > 0; i--) {
+      newOutStart[i] = newOutStart[i - 1];
+      newInStart[i] = newInStart[i - 1];
+    }
+    newOutStart[0] = 0;
+    newInStart[0] = 0;
+
+    outStart = newOutStart;
+    outEdges = newOutEdges;
+    inStart = newInStart;
+    inEdges = newInEdges;
+  }
+
+  @SuppressWarnings("unchecked")
+  private IndexedEdge getEdgeObject(int edge) {
+    IndexedEdge edgeObject = (IndexedEdge) edgeObjects[edge];
+    if (edgeObject == null) {
+      edgeObject = new IndexedEdge(edge);
+      edgeObjects[edge] = edgeObject;
+    }
+    return edgeObject;
+  }
+
+  /** The edges in a range of an array of edge numbers. */
+  private class EdgeList extends AbstractList<DiGraphEdge<N, E>> {
+    private final int[] edges;
+    private final int from;
+    private final int to;
+
+    private EdgeList(int[] edges, int from, int to) {
+      this.edges = edges;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    public DiGraphEdge<N, E> get(int i) {
+      Preconditions.checkElementIndex(i, to - from);
+      return getEdgeObject(edges[from + i]);
+    }
+
+    @Override
+    public int size() {
+      return to - from;
+    }
+  }
+
+  /**
+   * The nodes at one end of the edges in a range of an array of edge
+   * numbers, or the nodes in a range of an array of node numbers.
+   */
+  private class NodeList extends AbstractList<DiGraphNode<N, E>> {
+    private final int[] indices;
+    private final int from;
+    private final int to;
+
+    // Maps edge numbers to the numbers of the nodes at one of their ends, or
+    // null if the indices are node numbers.
+    private final int[] ends;
+
+    private NodeList(int[] indices, int from, int to, int[] ends) {
+      this.indices = indices;
+      this.from = from;
+      this.to = to;
+      this.ends = ends;
+    }
+
+    @Override
+    public DiGraphNode<N, E> get(int i) {
+      Preconditions.checkElementIndex(i, to - from);
+      int index = indices[from + i];
+      return nodes.get(ends == null ? index : ends[index]);
+    }
+
+    @Override
+    public int size() {
+      return to - from;
+    }
+  }
+
+  /** A node that knows its number. */
+  private class IndexedNode implements DiGraphNode<N, E>, GraphvizNode {
+    private final N value;
+    private final int index;
+    private Annotation annotation;
+
+    private IndexedNode(N value, int index) {
+      this.value = value;
+      this.index = index;
+    }
+
+    @Override
+    public N getValue() {
+      return value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <A extends Annotation> A getAnnotation() {
+      if (!useNodeAnnotations) {
+        throw new UnsupportedOperationException(
+            "Graph initialized with node annotations turned off");
+      }
+      return (A) annotation;
+    }
+
+    @Override
+    public void setAnnotation(Annotation data) {
+      if (!useNodeAnnotations) {
+        throw new UnsupportedOperationException(
+            "Graph initialized with node annotations turned off");
+      }
+      annotation = data;
+    }
+
+    @Override
+    public List<DiGraphEdge<N, E>> getOutEdges() {
+      return IndexedDirectedGraph.this.getOutEdges(index);
+    }
+
+    @Override
+    public List<DiGraphEdge<N, E>> getInEdges() {
+      return IndexedDirectedGraph.this.getInEdges(index);
+    }
+
+    @Override
+    public String getColor() {
+      return "white";
+    }
+
+    @Override
+    public String getId() {
+      return "IDN" + index;
+    }
+
+    @Override
+    public String getLabel() {
+      return value != null ? value.toString() : "null";
+    }
+
+    @Override
+    public String toString() {
+      return getLabel();
+    }
+  }
+
+  /**
+   * An edge, whose source, destination and value are kept by the graph under
+   * its number.
+   */
+  private class IndexedEdge implements DiGraphEdge<N, E>, GraphvizEdge {
+    private final int index;
+    private Annotation annotation;
+
+    private IndexedEdge(int index) {
+      this.index = index;
+    }
+
+    @Override
+    public DiGraphNode<N, E> getSource() {
+      return nodes.get(edgeSources[index]);
+    }
+
+    @Override
+    public DiGraphNode<N, E> getDestination() {
+      return nodes.get(edgeDestinations[index]);
+    }
+
+    /**
+     * Not supported: the ends of an edge are where the graph lays it out.
+     */
+    @Override
+    public void setSource(DiGraphNode<N, E> node) {
+      throw new UnsupportedOperationException(
+          "Edges of an indexed graph cannot be moved");
+    }
+
+    /**
+     * Not supported: the ends of an edge are where the graph lays it out.
+     */
+    @Override
+    public void setDestination(DiGraphNode<N, E> node) {
+      throw new UnsupportedOperationException(
+          "Edges of an indexed graph cannot be moved");
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E getValue() {
+      return (E) edgeValues[index];
+    }
+
+    @Override
+    public GraphNode<N, E> getNodeA() {
+      return getSource();
+    }
+
+    @Override
+    public GraphNode<N, E> getNodeB() {
+      return getDestination();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <A extends Annotation> A getAnnotation() {
+      if (!useEdgeAnnotations) {
+        throw new UnsupportedOperationException(
+            "Graph initialized with edge annotations turned off");
+      }
+      return (A) annotation;
+    }
+
+    @Override
+    public void setAnnotation(Annotation data) {
+      if (!useEdgeAnnotations) {
+        throw new UnsupportedOperationException(
+            "Graph initialized with edge annotations turned off");
+      }
+      annotation = data;
+    }
+
+    @Override
+    public String getColor() {
+      return "black";
+    }
+
+    @Override
+    public String getLabel() {
+      Object value = edgeValues[index];
+      return value != null ? value.toString() : "null";
+    }
+
+    @Override
+    public String getNode1Id() {
+      return ((IndexedNode) getSource()).getId();
+    }
+
+    @Override
+    public String getNode2Id() {
+      return ((IndexedNode) getDestination()).getId();
+    }
+
+    @Override
+    public String toString() {
+      return getSource().toString() + " -> " + getDestination().toString();
+    }
+  }
+}
@@ -0,0 +1,243 @@
+/*
+ * Copyright 2011 The Closure Compiler Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.javascript.jscomp.graph;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An undirected graph without edge values whose nodes are numbered by small
+ * integers, such as the indices of the variables of a scope. Each node keeps
+ * its neighbors as a bit set of their numbers, so that adding and testing an
+ * edge take constant time and connecting the nodes of a clique takes a few
+ * word operations per node.
+ *
+ * <p>Meant for interference graphs to color with {@link GraphColoring}: its
+ * subgraphs keep the neighbors of their nodes as a bit set as well, so that
+ * testing whether a node is independent of a subgraph takes constant time.
+ *
+ * @param <N> Value type that the graph node stores.
+ */
+public final class InterferenceGraph<N> implements AdjacencyGraph<N, Void> {
+  private final List<IndexedNode<N>> nodes = Lists.newArrayList();
+  private final Map<N, IndexedNode<N>> nodesByValue = Maps.newHashMap();
+
+  // The numbers of the nodes in the graph.
+  private final BitSet nodeIndices = new BitSet();
+
+  // Maps the number of a node to the numbers of its neighbors.
+  private final BitSet[] neighbors;
+
+  /**
+   * @param size The number of numbers available to the nodes: they are
+   *     numbered from 0 to {@code size - 1}.
+   */
+  public InterferenceGraph(int size) {
+    neighbors = new BitSet[size];
+  }
+
+  /**
+   * Creates a node with the given number.
+   *
+   * @param value The node's value, which no other node may have.
+   * @param index The node's number, which no other node may have.
+   */
+  public GraphNode<N, Void> createNode(N value, int index) {
+    Preconditions.checkArgument(!nodesByValue.containsKey(value));
+    Preconditions.checkArgument(!nodeIndices.get(index));
+    IndexedNode<N> node = new IndexedNode<N>(value, index);
+    nodes.add(node);
+    nodesByValue.put(value, node);
+    nodeIndices.set(index);
+    neighbors[index] = new BitSet(neighbors.length);
+    return node;
+  }
+
+  public boolean hasNode(N value) {
+    return nodesByValue.containsKey(value);
+  }
+
+  /** Connects two nodes, unless they are connected already. */
+  public void connect(N value1, N value2) {
+    connect(getIndexOrFail(value1), getIndexOrFail(value2));
+  }
+
+  /**
+   * Connects the nodes with two numbers, unless they are connected already.
+   */
+  public void connect(int index1, int index2) {
+    Preconditions.checkArgument(index1 != index2);
+    Preconditions.checkArgument(
+        nodeIndices.get(index1) && nodeIndices.get(index2));
+    neighbors[index1].set(index2);
+    neighbors[index2].set(index1);
+  }
+
+  /**
+   * Connects each pair of nodes whose numbers are in the given set, such as
+   * variables that are live at the same time. Numbers without a node are
+   * ignored.
+   */
+  public void connectAll(BitSet indices) {
+    BitSet clique = (BitSet) indices.clone();
+    clique.and(nodeIndices);
+    for (int i = clique.nextSetBit(0); i >= 0; i = clique.nextSetBit(i + 1)) {
+      BitSet nodeNeighbors = neighbors[i];
+      nodeNeighbors.or(clique);
+      nodeNeighbors.clear(i);
+    }
+  }
+
+  /**
+   * Connects the node with a number to each node whose number is in the given
+   * set, other than itself. Numbers without a node are ignored.
+   */
+  public void connectToAll(int index, BitSet indices) {
+    Preconditions.checkArgument(nodeIndices.get(index));
+    BitSet connected = (BitSet) indices.clone();
+    connected.and(nodeIndices);
+    connected.clear(index);
+    neighbors[index].or(connected);
+    for (int i = connected.nextSetBit(0); i >= 0;
+         i = connected.nextSetBit(i + 1)) {
+      neighbors[i].set(index);
+    }
+  }
+
+  /**
+   * Connects each node whose number is in the first set to each node whose
+   * number is in the second set, other than itself. Numbers without a node
+   * are ignored.
+   */
+  public void connectAcross(BitSet indices1, BitSet indices2) {
+    if (indices1.isEmpty() || indices2.isEmpty()) {
+      return;
+    }
+    BitSet connected = (BitSet) indices2.clone();
+    connected.and(nodeIndices);
+    for (int i = indices1.nextSetBit(0); i >= 0;
+         i = indices1.nextSetBit(i + 1)) {
+      if (!nodeIndices.get(i)) {
+        continue;
+      }
+      BitSet nodeNeighbors = neighbors[i];
+      nodeNeighbors.or(connected);
+      nodeNeighbors.clear(i);
+      for (int j = connected.nextSetBit(0); j >= 0;
+           j = connected.nextSetBit(j + 1)) {
+        if (j != i) {
+          neighbors[j].set(i);
+        }
+      }
+    }
+  }
+
+  public boolean isConnected(N value1, N value2) {
+    return neighbors[getIndexOrFail(value1)].get(getIndexOrFail(value2));
+  }
+
+  @Override
+  public Collection<GraphNode<N, Void>> getNodes() {
+    return Collections.<GraphNode<N, Void>>unmodifiableList(nodes);
+  }
+
+  @Override
+  public GraphNode<N, Void> getNode(N value) {
+    return nodesByValue.get(value);
+  }
+
+  @Override
+  public SubGraph<N, Void> newSubGraph() {
+    return new InterferenceSubGraph();
+  }
+
+  @Override
+  public void clearNodeAnnotations() {
+    for (IndexedNode<N> node : nodes) {
+      node.setAnnotation(null);
+    }
+  }
+
+  /** Returns the number of neighbors of the node. */
+  @Override
+  public int getWeight(N value) {
+    return neighbors[getIndexOrFail(value)].cardinality();
+  }
+
+  private int getIndexOrFail(N value) {
+    IndexedNode<N> node = nodesByValue.get(value);
+    Preconditions.checkArgument(node != null, "%s does not exist in graph",
+        value);
+    return node.index;
+  }
+
+  /**
+   * A subgraph that keeps the neighbors of its nodes, rather than its nodes.
+   */
+  private class InterferenceSubGraph implements SubGraph<N, Void> {
+    private final BitSet subGraphNeighbors = new BitSet(neighbors.length);
+
+    @Override
+    public boolean isIndependentOf(N value) {
+      return !subGraphNeighbors.get(getIndexOrFail(value));
+    }
+
+    @Override
+    public void addNode(N value) {
+      subGraphNeighbors.or(neighbors[getIndexOrFail(value)]);
+    }
+  }
+
+  private static final class IndexedNode<N> implements GraphNode<N, Void> {
+    private final N value;
+    private final int index;
+    private Annotation annotation;
+
+    private IndexedNode(N value, int index) {
+      this.value = value;
+      this.index = index;
+    }
+
+    @Override
+    public N getValue() {
+      return value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <A extends Annotation> A getAnnotation() {
+      return (A) annotation;
+    }
+
+    @Override
+    public void setAnnotation(Annotation data) {
+      annotation = data;
+    }
+
+    @Override
+    public String toString() {
+      return String.valueOf(value);
+    }
+  }
+}
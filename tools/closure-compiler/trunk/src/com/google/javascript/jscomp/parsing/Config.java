@@ -16,7 +16,9 @@
 
 package com.google.javascript.jscomp.parsing;
 
+import com.google.common.base.Objects;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Sets;
 
 import java.util.Map;
 import java.util.Set;
@@ -99,4 +101,46 @@ public class Config {
     }
     return annotationBuilder.build();
   }
+
+  /**
+   * Two configs are equal if they produce identical parse trees for the same
+   * source code.
+   */
+  @Override
+  public boolean equals(Object o) {
+    if (!(o instanceof Config)) {
+      return false;
+    }
+    Config that = (Config) o;
+    return isIdeMode == that.isIdeMode
+        && parseJsDocDocumentation == that.parseJsDocDocumentation
+        && acceptConstKeyword == that.acceptConstKeyword
+        && languageMode == that.languageMode
+        && annotationNames.keySet().equals(that.annotationNames.keySet())
+        && suppressionNames.equals(that.suppressionNames);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hashCode(isIdeMode, parseJsDocDocumentation,
+        acceptConstKeyword, languageMode, annotationNames.keySet(),
+        suppressionNames);
+  }
+
+  /**
+   * Returns a description of the config that is the same for two configs if
+   * and only if they are equal. Unlike the hash code, it does not change
+   * from one run to the next, so it can be part of the key of a persistent
+   * cache.
+   */
+  public String getFingerprint() {
+    return Objects.toStringHelper(this)
+        .add("isIdeMode", isIdeMode)
+        .add("parseJsDocDocumentation", parseJsDocDocumentation)
+        .add("acceptConstKeyword", acceptConstKeyword)
+        .add("languageMode", languageMode)
+        .add("annotationNames", Sets.newTreeSet(annotationNames.keySet()))
+        .add("suppressionNames", Sets.newTreeSet(suppressionNames))
+        .toString();
+  }
 }
@@ -18,6 +18,7 @@ package com.google.javascript.jscomp.parsing;
 
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import com.google.javascript.jscomp.mozilla.rhino.ErrorReporter;
 import com.google.javascript.jscomp.mozilla.rhino.Token.CommentType;
@@ -70,6 +71,10 @@ import com.google.javascript.rhino.Node;
 import com.google.javascript.rhino.Token;
 import com.google.javascript.rhino.jstype.StaticSourceFile;
 
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -89,6 +94,16 @@ class IRFactory {
   private final ErrorReporter errorReporter;
   private final TransformDispatcher transformDispatcher;
 
+  // The positions of the line breaks of the source, computed when first
+  // needed.
+  private int[] lineBreaks;
+
+  // The positions of the expressions down the left operands of the infix
+  // chains being transformed. AstNode#getAbsolutePosition walks up to the
+  // root, which takes as long as the chain is deep.
+  private final Map<AstNode, Integer> chainPositions =
+      Maps.newIdentityHashMap();
+
   // non-static for thread safety
   private final Set<String> ALLOWED_DIRECTIVES = Sets.newHashSet("use strict");
 
@@ -261,7 +276,14 @@ class IRFactory {
   }
 
   private Node transform(AstNode node) {
-    Node irNode = justTransform(node);
+    return finishTransform(node, justTransform(node));
+  }
+
+  /**
+   * Attaches the JSDoc and the source position of a node to the node it was
+   * transformed into.
+   */
+  private Node finishTransform(AstNode node, Node irNode) {
     JSDocInfo jsDocInfo = handleJsDoc(node, irNode);
     if (jsDocInfo != null) {
       irNode.setJSDocInfo(jsDocInfo);
@@ -308,7 +330,7 @@ class IRFactory {
       // node, but don't want the new node to get its parent's line number.
       int lineno = node.getLineno();
       irNode.setLineno(lineno);
-      int charno = position2charno(node.getAbsolutePosition());
+      int charno = position2charno(getAbsolutePosition(node));
       irNode.setCharno(charno);
       maybeSetLengthFrom(irNode, node);
     }
@@ -354,8 +376,54 @@ class IRFactory {
     }
   }
 
+  /**
+   * Returns the position of a node from the start of the source, as
+   * {@link AstNode#getAbsolutePosition} does, without walking up the infix
+   * chains being transformed.
+   */
+  private int getAbsolutePosition(AstNode node) {
+    int position = 0;
+    for (AstNode n = node; n != null; n = n.getParent()) {
+      if (!chainPositions.isEmpty()) {
+        Integer known = chainPositions.get(n);
+        if (known != null) {
+          return position + known;
+        }
+      }
+      position += n.getPosition();
+    }
+    return position;
+  }
+
+  /**
+   * Returns the index of the last line break of the source at or before a
+   * position, or -1 if there is none, as
+   * {@code sourceString.lastIndexOf('\n', position)} does without scanning
+   * the line, which can be as long as the source.
+   */
+  private int lastLineBreakBefore(int position) {
+    if (lineBreaks == null) {
+      int count = 0;
+      for (int i = sourceString.indexOf('\n'); i != -1;
+           i = sourceString.indexOf('\n', i + 1)) {
+        count++;
+      }
+      lineBreaks = new int[count];
+      count = 0;
+      for (int i = sourceString.indexOf('\n'); i != -1;
+           i = sourceString.indexOf('\n', i + 1)) {
+        lineBreaks[count++] = i;
+      }
+    }
+    int index = Arrays.binarySearch(lineBreaks, position);
+    if (index < 0) {
+      index = -index - 2;
+    }
+    return index < 0 ? -1 : lineBreaks[index];
+  }
+
   private int position2charno(int position) {
-    int lineIndex = sourceString.lastIndexOf('\n', position);
+    int lineIndex = lastLineBreakBefore(position);
     if (lineIndex == -1) {
       return position;
     } else {
@@ -663,17 +731,44 @@ class IRFactory {
 
     @Override
     Node processInfixExpression(InfixExpression exprNode) {
-      Node n =  newNode(
-          transformTokenType(exprNode.getType()),
-          transform(exprNode.getLeft()),
-          transform(exprNode.getRight()));
+      // Chains like a + b + c nest to the left as deep as they are long, so
+      // the expressions down the left operands are kept on a stack rather
+      // than transformed by recursion.
+      Deque<InfixExpression> chain = new ArrayDeque<InfixExpression>();
+      chain.push(exprNode);
+      int position = getAbsolutePosition(exprNode);
+      chainPositions.put(exprNode, position);
+      while (isInfixExpression(chain.peek().getLeft())) {
+        InfixExpression left = (InfixExpression) chain.peek().getLeft();
+        position += left.getPosition();
+        chainPositions.put(left, position);
+        chain.push(left);
+      }
+
+      Node n = transform(chain.peek().getLeft());
+      while (true) {
+        InfixExpression expr = chain.pop();
+        n = newInfixNode(expr, n, transform(expr.getRight()));
+        if (!chain.isEmpty()) {
+          finishTransform(expr, n);
+        }
+        chainPositions.remove(expr);
+        if (chain.isEmpty()) {
+          return n;
+        }
+      }
+    }
+
+    private Node newInfixNode(
+        InfixExpression exprNode, Node left, Node right) {
+      Node n = newNode(transformTokenType(exprNode.getType()), left, right);
       // Set the line number here so we can fine-tune it in ways transform
       // doesn't do.
       n.setLineno(exprNode.getLineno());
       // Position in new ASTNode is to start of expression, but old-fashioned
       // line numbers from Node reference the operator token.  Add the offset
       // to the operator to get the correct character number.
-      n.setCharno(position2charno(exprNode.getAbsolutePosition() +
+      n.setCharno(position2charno(getAbsolutePosition(exprNode) +
           exprNode.getOperatorPosition()));
       maybeSetLengthFrom(n, exprNode);
       return n;
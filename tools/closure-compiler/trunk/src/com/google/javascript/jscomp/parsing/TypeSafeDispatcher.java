@@ -115,7 +115,12 @@ abstract class TypeSafeDispatcher<T> {
 
   abstract T processIllegalToken(AstNode node);
 
-  public T process(AstNode node) {
+  /**
+   * Whether {@link #process} hands the node to
+   * {@link #processInfixExpression}, that is, whether it is a binary
+   * operator other than an assignment or a property access.
+   */
+  static boolean isInfixExpression(AstNode node) {
     switch (node.getType()) {
       case Token.ADD:
       case Token.AND:
@@ -141,7 +146,17 @@ abstract class TypeSafeDispatcher<T> {
       case Token.SHNE:
       case Token.SUB:
       case Token.URSH:
-        return processInfixExpression((InfixExpression) node);
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  public T process(AstNode node) {
+    if (isInfixExpression(node)) {
+      return processInfixExpression((InfixExpression) node);
+    }
+    switch (node.getType()) {
       case Token.ARRAYLIT:
         return processArrayLiteral((ArrayLiteral) node);
       case Token.ASSIGN:
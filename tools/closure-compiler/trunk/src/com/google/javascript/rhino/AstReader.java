@@ -0,0 +1,508 @@
+/*
+ *
+ * ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is Rhino code, released
+ * May 6, 1999.
+ *
+ * The Initial Developer of the Original Code is
+ * Netscape Communications Corporation.
+ * Portions created by the Initial Developer are Copyright (C) 1997-1999
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ *   Google Inc.
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * the GNU General Public License Version 2 or later (the "GPL"), in which
+ * case the provisions of the GPL are applicable instead of those above. If
+ * you wish to allow use of your version of this file only under the terms of
+ * the GPL and not to allow others to use your version of this file under the
+ * MPL, indicate your decision by deleting the provisions above and replacing
+ * them with the notice and other provisions required by the GPL. If you do
+ * not delete the provisions above, a recipient may use your version of this
+ * file under either the MPL or the GPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package com.google.javascript.rhino;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.javascript.rhino.jstype.JSType;
+import com.google.javascript.rhino.jstype.StaticSourceFile;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StreamCorruptedException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Reads parse trees written by an {@link AstWriter}.
+ *
+ * When the trees refer to values that the writer handed to
+ * {@link AstWriter#getObjectIndex}, the properties and types of the nodes
+ * are only set once the caller has read the values and passed them to
+ * {@link #resolveObjects}.
+ *
+ */
+public class AstReader {
+
+  private final DataInputStream in;
+  private final StaticSourceFile sourceFile;
+
+  // Everything that has been read so far, in the order it was written.
+  private final List<String> strings = Lists.newArrayList();
+  private final List<Object[]> propLists = Lists.newArrayList();
+  private final List<JSDocInfo> jsDocs = Lists.newArrayList();
+  private final List<JSTypeExpression> typeExpressions = Lists.newArrayList();
+  private final List<Node> treeNodes = Lists.newArrayList();
+
+  // The JSDoc of the tree being read that is associated with a node of
+  // the trees, and the indices of the nodes.
+  private final List<JSDocInfo> associatedJsDocs = Lists.newArrayList();
+  private final List<Integer> associatedNodes = Lists.newArrayList();
+
+  // The property values, nodes waiting for a type and nodes waiting for a
+  // source file from the caller, and the indices of the objects.
+  private final List<Object[]> objectProps = Lists.newArrayList();
+  private final List<Integer> objectPropSlots = Lists.newArrayList();
+  private final List<Integer> objectPropIndices = Lists.newArrayList();
+  private final List<Node> typedNodes = Lists.newArrayList();
+  private final List<Integer> typeIndices = Lists.newArrayList();
+  private final List<Node> fileNodes = Lists.newArrayList();
+  private final List<Integer> fileIndices = Lists.newArrayList();
+
+  // Whether the trees read so far refer to objects of the caller.
+  private boolean hasObjects = false;
+
+  /**
+   * @param sourceFile The source file that the nodes are attached to, or
+   *     null if the writer had none.
+   */
+  public AstReader(InputStream in, StaticSourceFile sourceFile) {
+    this.in = new DataInputStream(in);
+    this.sourceFile = sourceFile;
+  }
+
+  /**
+   * Reads the next tree. If the trees read so far refer to objects of the
+   * caller, the tree is not complete until {@link #resolveObjects} is
+   * called.
+   */
+  public Node readTree() throws IOException {
+    Node root = readNode(true);
+
+    // JSDoc may be associated with nodes that come after it.
+    for (int i = 0; i < associatedJsDocs.size(); i++) {
+      associatedJsDocs.get(i).setAssociatedNode(
+          get(treeNodes, associatedNodes.get(i)));
+    }
+    associatedJsDocs.clear();
+    associatedNodes.clear();
+    if (!hasObjects) {
+      resolveObjects(Collections.emptyList());
+    }
+    return root;
+  }
+
+  /**
+   * Completes the trees read so far.
+   *
+   * @param objects The values that the writer handed to
+   *     {@link AstWriter#getObjectIndex}, by index.
+   */
+  public void resolveObjects(List<?> objects) throws IOException {
+    for (int i = 0; i < objectProps.size(); i++) {
+      objectProps.get(i)[objectPropSlots.get(i)] =
+          get(objects, objectPropIndices.get(i));
+    }
+    objectProps.clear();
+    objectPropSlots.clear();
+    objectPropIndices.clear();
+
+    for (int i = 0; i < typedNodes.size(); i++) {
+      Object type = get(objects, typeIndices.get(i));
+      if (!(type instanceof JSType)) {
+        throw new StreamCorruptedException("Not a type: " + type);
+      }
+      typedNodes.get(i).setJSType((JSType) type);
+    }
+    typedNodes.clear();
+    typeIndices.clear();
+
+    for (int i = 0; i < fileNodes.size(); i++) {
+      Object file = get(objects, fileIndices.get(i));
+      if (!(file instanceof StaticSourceFile)) {
+        throw new StreamCorruptedException("Not a source file: " + file);
+      }
+      fileNodes.get(i).setStaticSourceFile((StaticSourceFile) file);
+    }
+    fileNodes.clear();
+    fileIndices.clear();
+  }
+
+  /**
+   * Returns a node of the trees read so far, by the index that
+   * {@link AstWriter#getNodeIndex} gave it.
+   */
+  protected Node getNode(int index) throws StreamCorruptedException {
+    return get(treeNodes, index);
+  }
+
+  /**
+   * Returns a JSDoc read so far, by the index that
+   * {@link AstWriter#getJSDocIndex} gave it.
+   */
+  protected JSDocInfo getJSDocInfo(int index) throws StreamCorruptedException {
+    return get(jsDocs, index);
+  }
+
+  private Node readNode(boolean inTree) throws IOException {
+    int header = readVarInt();
+    int type = unZigZag(header >>> AstWriter.HEADER_BITS);
+    Node n;
+    switch (header & AstWriter.KIND_MASK) {
+      case AstWriter.KIND_NODE:
+        n = new Node(type);
+        break;
+      case AstWriter.KIND_STRING:
+        n = Node.newString(type, readString());
+        break;
+      case AstWriter.KIND_NUMBER:
+        n = Node.newNumber(in.readDouble());
+        break;
+      default:
+        n = Node.newNumber(readSignedVarInt());
+        break;
+    }
+    if (n.getType() != type) {
+      throw new StreamCorruptedException("Bad number type: " + type);
+    }
+    if ((header & AstWriter.TYPED) != 0) {
+      typedNodes.add(n);
+      typeIndices.add(readObjectIndex());
+    }
+    if (inTree) {
+      treeNodes.add(n);
+    }
+
+    n.setSourceEncodedPosition(readSignedVarInt());
+    readProps(n);
+
+    int childCount = readVarInt();
+    for (int i = 0; i < childCount; i++) {
+      n.addChildToBack(readNode(inTree));
+    }
+    return n;
+  }
+
+  private void readProps(Node n) throws IOException {
+    int flags = readVarInt();
+    Object[] values;
+    int ref = readVarInt();
+    if (ref == 0) {
+      values = null;
+    } else if (ref > 1) {
+      values = get(propLists, ref - 2);
+    } else {
+      int count = readVarInt();
+      values = new Object[count * 2];
+      for (int i = 0; i < values.length; i += 2) {
+        values[i] = readSignedVarInt();
+        int valueKind = in.readByte();
+        if (valueKind == AstWriter.VALUE_INT) {
+          values[i + 1] = readSignedVarInt();
+        } else if (valueKind == AstWriter.VALUE_OBJECT) {
+          // Filled in by resolveObjects.
+          objectProps.add(values);
+          objectPropSlots.add(i + 1);
+          objectPropIndices.add(readObjectIndex());
+        } else {
+          values[i + 1] = readPropValue(valueKind);
+        }
+      }
+      propLists.add(values);
+    }
+    try {
+      n.setProps(flags, values);
+    } catch (IllegalArgumentException e) {
+      throw new StreamCorruptedException(e.getMessage());
+    }
+  }
+
+  private Object readPropValue(int valueKind) throws IOException {
+    switch (valueKind) {
+      case AstWriter.VALUE_TRUE:
+        return Boolean.TRUE;
+      case AstWriter.VALUE_FALSE:
+        return Boolean.FALSE;
+      case AstWriter.VALUE_STRING:
+        return readString();
+      case AstWriter.VALUE_STRING_SET:
+        return readStrings();
+      case AstWriter.VALUE_SOURCE_FILE:
+        if (sourceFile == null) {
+          throw new StreamCorruptedException("No source file");
+        }
+        return sourceFile;
+      case AstWriter.VALUE_JSDOC:
+        return readJSDocInfo();
+      case AstWriter.VALUE_INPUT_ID:
+        return new InputId(readString());
+      default:
+        throw new StreamCorruptedException("Bad property value: " + valueKind);
+    }
+  }
+
+  private JSDocInfo readJSDocInfo() throws IOException {
+    int ref = readVarInt();
+    if (ref > 0) {
+      return get(jsDocs, ref - 1);
+    }
+
+    JSDocInfo info = new JSDocInfo(false);
+    setJSDocFlags(info, readVarInt());
+    int visibility = readVarInt();
+    if (visibility > 0) {
+      JSDocInfo.Visibility[] values = JSDocInfo.Visibility.values();
+      if (visibility > values.length) {
+        throw new StreamCorruptedException("Bad visibility: " + visibility);
+      }
+      info.setVisibility(values[visibility - 1]);
+    }
+
+    int typeKind = readVarInt();
+    switch (typeKind) {
+      case AstWriter.JSDOC_NO_TYPE:
+        break;
+      case AstWriter.JSDOC_TYPE:
+        info.setType(readTypeExpression());
+        break;
+      case AstWriter.JSDOC_RETURN_TYPE:
+        info.setReturnType(readTypeExpression());
+        break;
+      case AstWriter.JSDOC_ENUM_PARAMETER_TYPE:
+        info.setEnumParameterType(readTypeExpression());
+        break;
+      case AstWriter.JSDOC_TYPEDEF_TYPE:
+        info.setTypedefType(readTypeExpression());
+        break;
+      default:
+        throw new StreamCorruptedException("Bad JSDoc type: " + typeKind);
+    }
+    JSTypeExpression thisType = readTypeExpression();
+    if (thisType != null) {
+      info.setThisType(thisType);
+    }
+    JSTypeExpression baseType = readTypeExpression();
+    if (baseType != null) {
+      info.setBaseType(baseType);
+    }
+    for (JSTypeExpression type : readTypeExpressions()) {
+      info.addExtendedInterface(type);
+    }
+    for (JSTypeExpression type : readTypeExpressions()) {
+      info.addImplementedInterface(type);
+    }
+
+    int parameterCount = readVarInt();
+    for (int i = 0; i < parameterCount; i++) {
+      String parameter = readString();
+      info.declareParam(readTypeExpression(), parameter);
+    }
+    for (JSTypeExpression type : readTypeExpressions()) {
+      info.declareThrows(type);
+    }
+
+    String templateTypeName = readString();
+    if (templateTypeName != null) {
+      info.declareTemplateTypeName(templateTypeName);
+    }
+    String description = readString();
+    if (description != null) {
+      info.setDescription(description);
+    }
+    String meaning = readString();
+    if (meaning != null) {
+      info.setMeaning(meaning);
+    }
+    String deprecationReason = readString();
+    if (deprecationReason != null) {
+      info.setDeprecationReason(deprecationReason);
+    }
+    String license = readString();
+    if (license != null) {
+      info.setLicense(license);
+    }
+    String lendsName = readString();
+    if (lendsName != null) {
+      info.setLendsName(lendsName);
+    }
+    Set<String> suppressions = readStrings();
+    if (!suppressions.isEmpty()) {
+      info.setSuppressions(suppressions);
+    }
+    if (in.readBoolean()) {
+      info.setModifies(readStrings());
+    }
+
+    readAssociatedNode(info);
+
+    jsDocs.add(info);
+    return info;
+  }
+
+  /** The inverse of {@code AstWriter#getJSDocFlags}. */
+  private static void setJSDocFlags(JSDocInfo info, int bits) {
+    int i = 0;
+    info.setConsistentIdGenerator(isSet(bits, i++));
+    info.setConstant(isSet(bits, i++));
+    info.setConstructor(isSet(bits, i++));
+    info.setDefine(isSet(bits, i++));
+    info.setHidden(isSet(bits, i++));
+    info.setNoCheck(isSet(bits, i++));
+    info.setShouldPreserveTry(isSet(bits, i++));
+    info.setOverride(isSet(bits, i++));
+    info.setNoAlias(isSet(bits, i++));
+    info.setDeprecated(isSet(bits, i++));
+    info.setInterface(isSet(bits, i++));
+    info.setExport(isSet(bits, i++));
+    info.setNoShadow(isSet(bits, i++));
+    info.setIdGenerator(isSet(bits, i++));
+    info.setImplicitCast(isSet(bits, i++));
+    info.setNoSideEffects(isSet(bits, i++));
+    info.setExterns(isSet(bits, i++));
+    info.setJavaDispatch(isSet(bits, i++));
+    info.setNoCompile(isSet(bits, i++));
+    if (isSet(bits, i++)) {
+      info.documentFileOverview(null);
+    }
+  }
+
+  private static boolean isSet(int bits, int i) {
+    return (bits & (1 << i)) != 0;
+  }
+
+  private void readAssociatedNode(JSDocInfo info) throws IOException {
+    int ref = readVarInt();
+    if (ref == 0) {
+      return;
+    } else if (ref > 1) {
+      associatedJsDocs.add(info);
+      associatedNodes.add(ref - 2);
+      return;
+    }
+
+    Node n = new Node(readSignedVarInt());
+    n.setSourceEncodedPosition(readSignedVarInt());
+    int file = readVarInt();
+    if (file == 1) {
+      n.setStaticSourceFile(sourceFile);
+    } else if (file > 1) {
+      fileNodes.add(n);
+      fileIndices.add(file - 2);
+      hasObjects = true;
+    }
+    info.setAssociatedNode(n);
+  }
+
+  private List<JSTypeExpression> readTypeExpressions() throws IOException {
+    int count = readVarInt();
+    List<JSTypeExpression> types = Lists.newArrayListWithCapacity(count);
+    for (int i = 0; i < count; i++) {
+      types.add(readTypeExpression());
+    }
+    return types;
+  }
+
+  private JSTypeExpression readTypeExpression() throws IOException {
+    int ref = readVarInt();
+    if (ref == 0) {
+      return null;
+    } else if (ref > 1) {
+      return get(typeExpressions, ref - 2);
+    }
+    String sourceName = readString();
+    JSTypeExpression type = new JSTypeExpression(readNode(false), sourceName);
+    typeExpressions.add(type);
+    return type;
+  }
+
+  private Set<String> readStrings() throws IOException {
+    int count = readVarInt();
+    Set<String> values = Sets.newHashSet();
+    for (int i = 0; i < count; i++) {
+      values.add(readString());
+    }
+    return values;
+  }
+
+  /** Reads a string written by {@link AstWriter#writeString}. */
+  public String readString() throws IOException {
+    int ref = readVarInt();
+    if (ref == 0) {
+      return null;
+    } else if (ref > 1) {
+      return get(strings, ref - 2);
+    }
+    int length = readVarInt();
+    char[] chars = new char[length];
+    for (int i = 0; i < length; i++) {
+      int b = in.readUnsignedByte();
+      chars[i] = b < 0x80 ? (char) b : in.readChar();
+    }
+    String s = new String(chars);
+    strings.add(s);
+    return s;
+  }
+
+  private int readObjectIndex() throws IOException {
+    hasObjects = true;
+    return readVarInt();
+  }
+
+  /** Reads an int written by {@link AstWriter#writeVarInt}. */
+  public int readVarInt() throws IOException {
+    int value = 0;
+    for (int shift = 0; shift < 35; shift += 7) {
+      int b = in.readUnsignedByte();
+      value |= (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+    throw new StreamCorruptedException("Bad varint");
+  }
+
+  /** Reads an int written by {@link AstWriter#writeSignedVarInt}. */
+  public int readSignedVarInt() throws IOException {
+    return unZigZag(readVarInt());
+  }
+
+  private static int unZigZag(int value) {
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+  private static <T> T get(List<T> values, int index)
+      throws StreamCorruptedException {
+    if (index >= values.size()) {
+      throw new StreamCorruptedException("Bad reference: " + index);
+    }
+    return values.get(index);
+  }
+}
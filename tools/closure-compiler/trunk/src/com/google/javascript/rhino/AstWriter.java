@@ -0,0 +1,507 @@
+/*
+ *
+ * ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is Rhino code, released
+ * May 6, 1999.
+ *
+ * The Initial Developer of the Original Code is
+ * Netscape Communications Corporation.
+ * Portions created by the Initial Developer are Copyright (C) 1997-1999
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ *   Google Inc.
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * the GNU General Public License Version 2 or later (the "GPL"), in which
+ * case the provisions of the GPL are applicable instead of those above. If
+ * you wish to allow use of your version of this file only under the terms of
+ * the GPL and not to allow others to use your version of this file under the
+ * MPL, indicate your decision by deleting the provisions above and replacing
+ * them with the notice and other provisions required by the GPL. If you do
+ * not delete the provisions above, a recipient may use your version of this
+ * file under either the MPL or the GPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package com.google.javascript.rhino;
+
+import com.google.common.collect.Maps;
+import com.google.javascript.rhino.jstype.JSType;
+import com.google.javascript.rhino.jstype.StaticSourceFile;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Writes parse trees in a compact binary format, to be read back with an
+ * {@link AstReader}.
+ *
+ * Unlike Java serialization, the format does not describe classes and
+ * fields. Node types, positions and counts are written as variable-length
+ * integers, every distinct string is written once, and the property lists
+ * that the parser shares between nodes are written once and stay shared
+ * when they are read back.
+ *
+ * The source file of the trees is not written: the reader attaches the
+ * nodes to a source file of its own. Everything else that the format does
+ * not cover, like the types of nodes, nodes from other source files or
+ * JSDoc that keeps its documentation, is handed to {@link #getObjectIndex},
+ * which rejects it with a {@link NotSerializableException} unless a
+ * subclass writes such values separately.
+ *
+ */
+public class AstWriter {
+
+  /** The version of the format, bumped whenever the format changes. */
+  public static final int VERSION = 3;
+
+  // Node kinds.
+  static final int KIND_NODE = 0;
+  static final int KIND_STRING = 1;
+  static final int KIND_NUMBER = 2;
+  static final int KIND_INT_NUMBER = 3;
+  static final int KIND_MASK = 3;
+
+  // Set in the header of a node that has a type.
+  static final int TYPED = 4;
+  static final int HEADER_BITS = 3;
+
+  // Property values.
+  static final int VALUE_INT = 0;
+  static final int VALUE_TRUE = 1;
+  static final int VALUE_FALSE = 2;
+  static final int VALUE_STRING = 3;
+  static final int VALUE_STRING_SET = 4;
+  static final int VALUE_SOURCE_FILE = 5;
+  static final int VALUE_JSDOC = 6;
+  static final int VALUE_INPUT_ID = 7;
+  static final int VALUE_OBJECT = 8;
+
+  // Types in JSDoc, see JSDocInfo#getType(int).
+  static final int JSDOC_NO_TYPE = 0;
+  static final int JSDOC_TYPE = 1;
+  static final int JSDOC_RETURN_TYPE = 2;
+  static final int JSDOC_ENUM_PARAMETER_TYPE = 3;
+  static final int JSDOC_TYPEDEF_TYPE = 4;
+
+  private final DataOutputStream out;
+  private final StaticSourceFile sourceFile;
+
+  // Everything that is written once and referred to afterwards, by the
+  // order in which it was written.
+  private final Map<String, Integer> strings = Maps.newHashMap();
+  private final Map<Object[], Integer> propLists =
+      new IdentityHashMap<Object[], Integer>();
+  private final Map<JSDocInfo, Integer> jsDocs =
+      new IdentityHashMap<JSDocInfo, Integer>();
+  private final Map<JSTypeExpression, Integer> typeExpressions =
+      new IdentityHashMap<JSTypeExpression, Integer>();
+
+  // The nodes of the trees written so far, in the order they are written.
+  private final Map<Node, Integer> treeNodes =
+      new IdentityHashMap<Node, Integer>();
+
+  /**
+   * @param sourceFile The source file that the nodes belong to, or null if
+   *     every source file is to be handed to {@link #getObjectIndex}.
+   */
+  public AstWriter(OutputStream out, StaticSourceFile sourceFile) {
+    this.out = new DataOutputStream(out);
+    this.sourceFile = sourceFile;
+  }
+
+  /**
+   * Writes a tree. The strings, property lists and JSDoc written so far are
+   * shared with the trees that follow, and JSDoc may be associated with the
+   * nodes of the trees written before.
+   */
+  public void writeTree(Node root) throws IOException {
+    numberNodes(root);
+    writeNode(root);
+  }
+
+  /** Flushes the underlying stream. */
+  public void flush() throws IOException {
+    out.flush();
+  }
+
+  private void numberNodes(Node n) {
+    treeNodes.put(n, treeNodes.size());
+    for (Node c = n.getFirstChild(); c != null; c = c.getNext()) {
+      numberNodes(c);
+    }
+  }
+
+  /**
+   * Returns the index under which a value that the format does not cover
+   * is written, for the {@link AstReader} to map back to the value. A
+   * subclass that supports such values writes them separately, after the
+   * trees, and must hand out the same index for the same value.
+   *
+   * @throws NotSerializableException if the value is not supported, which
+   *     is the case of every value by default.
+   */
+  protected int getObjectIndex(Object value) throws NotSerializableException {
+    throw new NotSerializableException(
+        "Not covered by the format: " + value.getClass().getName());
+  }
+
+  /**
+   * Returns the index of a node of the trees written so far, in the order
+   * the {@link AstReader} reads them, or -1 if it has not been written.
+   */
+  protected int getNodeIndex(Node n) {
+    Integer index = treeNodes.get(n);
+    return index == null ? -1 : index;
+  }
+
+  /**
+   * Returns the index of a JSDoc written so far, in the order the
+   * {@link AstReader} reads them, or -1 if it has not been written.
+   */
+  protected int getJSDocIndex(JSDocInfo info) {
+    Integer index = jsDocs.get(info);
+    return index == null ? -1 : index;
+  }
+
+  private void writeNode(Node n) throws IOException {
+    int kind;
+    if (n.isNumberNode()) {
+      double d = n.getDouble();
+      kind = isIntValue(d) ? KIND_INT_NUMBER : KIND_NUMBER;
+    } else if (n.isStringNode()) {
+      kind = KIND_STRING;
+    } else if (n.getClass() == Node.class) {
+      kind = KIND_NODE;
+    } else {
+      throw new NotSerializableException(n.getClass().getName());
+    }
+    JSType type = n.getJSType();
+    writeVarInt(zigZag(n.getType()) << HEADER_BITS
+        | (type != null ? TYPED : 0) | kind);
+    switch (kind) {
+      case KIND_STRING:
+        writeString(n.getString());
+        break;
+      case KIND_NUMBER:
+        out.writeDouble(n.getDouble());
+        break;
+      case KIND_INT_NUMBER:
+        writeSignedVarInt((int) n.getDouble());
+        break;
+    }
+    if (type != null) {
+      writeVarInt(getObjectIndex(type));
+    }
+
+    writeSignedVarInt(n.getSourcePosition());
+    writeProps(n);
+
+    writeVarInt(n.getChildCount());
+    for (Node c = n.getFirstChild(); c != null; c = c.getNext()) {
+      writeNode(c);
+    }
+  }
+
+  private static boolean isIntValue(double d) {
+    return d == (int) d && (d != 0 || 1 / d > 0);
+  }
+
+  /**
+   * Writes the properties of a node: the bits of the boolean properties,
+   * then the other properties as 0 if there are none, as the index of the
+   * property values plus 2 if a node that shares them has been written
+   * before, and as 1 followed by the count, types and values otherwise.
+   */
+  private void writeProps(Node n) throws IOException {
+    writeVarInt(n.getPropFlags());
+    Object[] values = n.getPropValues();
+    if (values == null) {
+      writeVarInt(0);
+      return;
+    }
+    Integer index = propLists.get(values);
+    if (index != null) {
+      writeVarInt(index + 2);
+      return;
+    }
+
+    writeVarInt(1);
+    writeVarInt(values.length / 2);
+    for (int i = 0; i < values.length; i += 2) {
+      int type = (Integer) values[i];
+      Object value = values[i + 1];
+      writeSignedVarInt(type);
+      if (value instanceof Integer) {
+        out.writeByte(VALUE_INT);
+        writeSignedVarInt((Integer) value);
+      } else {
+        writePropValue(type, value);
+      }
+    }
+    propLists.put(values, propLists.size());
+  }
+
+  @SuppressWarnings("unchecked")
+  private void writePropValue(int type, Object value) throws IOException {
+    if (value instanceof Boolean) {
+      out.writeByte(((Boolean) value) ? VALUE_TRUE : VALUE_FALSE);
+    } else if (value instanceof String) {
+      out.writeByte(VALUE_STRING);
+      writeString((String) value);
+    } else if (value instanceof Set && isStringCollection((Set<?>) value)) {
+      out.writeByte(VALUE_STRING_SET);
+      writeStrings((Set<String>) value);
+    } else if (value instanceof StaticSourceFile && value == sourceFile) {
+      out.writeByte(VALUE_SOURCE_FILE);
+    } else if (value instanceof JSDocInfo
+        && !((JSDocInfo) value).includesDocumentation()) {
+      out.writeByte(VALUE_JSDOC);
+      writeJSDocInfo((JSDocInfo) value);
+    } else if (value instanceof InputId) {
+      out.writeByte(VALUE_INPUT_ID);
+      writeString(((InputId) value).getIdName());
+    } else {
+      int index = getObjectIndex(value);
+      out.writeByte(VALUE_OBJECT);
+      writeVarInt(index);
+    }
+  }
+
+  private static boolean isStringCollection(Collection<?> values) {
+    for (Object value : values) {
+      if (!(value instanceof String)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void writeJSDocInfo(JSDocInfo info) throws IOException {
+    Integer index = jsDocs.get(info);
+    if (index != null) {
+      writeVarInt(index + 1);
+      return;
+    }
+    writeVarInt(0);
+
+    writeVarInt(getJSDocFlags(info));
+    JSDocInfo.Visibility visibility = info.getVisibility();
+    writeVarInt(visibility == null ? 0 : visibility.ordinal() + 1);
+
+    if (info.hasType()) {
+      writeVarInt(JSDOC_TYPE);
+      writeTypeExpression(info.getType());
+    } else if (info.hasReturnType()) {
+      writeVarInt(JSDOC_RETURN_TYPE);
+      writeTypeExpression(info.getReturnType());
+    } else if (info.hasEnumParameterType()) {
+      writeVarInt(JSDOC_ENUM_PARAMETER_TYPE);
+      writeTypeExpression(info.getEnumParameterType());
+    } else if (info.hasTypedefType()) {
+      writeVarInt(JSDOC_TYPEDEF_TYPE);
+      writeTypeExpression(info.getTypedefType());
+    } else {
+      writeVarInt(JSDOC_NO_TYPE);
+    }
+    writeTypeExpression(info.getThisType());
+    writeTypeExpression(info.getBaseType());
+    writeTypeExpressions(info.getExtendedInterfaces());
+    writeTypeExpressions(info.getImplementedInterfaces());
+
+    Set<String> parameters = info.getParameterNames();
+    writeVarInt(parameters.size());
+    for (String parameter : parameters) {
+      writeString(parameter);
+      writeTypeExpression(info.getParameterType(parameter));
+    }
+    writeTypeExpressions(info.getThrownTypes());
+
+    writeString(info.getTemplateTypeName());
+    writeString(info.getDescription());
+    writeString(info.getMeaning());
+    writeString(info.getDeprecationReason());
+    writeString(info.getLicense());
+    writeString(info.getLendsName());
+    writeStrings(info.getSuppressions());
+    if (info.hasModifies()) {
+      out.writeBoolean(true);
+      writeStrings(info.getModifies());
+    } else {
+      out.writeBoolean(false);
+    }
+
+    writeAssociatedNode(info.getAssociatedNode());
+
+    // Numbered last, for the same reason as the property lists.
+    jsDocs.put(info, jsDocs.size());
+  }
+
+  /**
+   * Flags of {@link JSDocInfo}, in the order of the bits that the
+   * {@link AstReader} sets them from.
+   */
+  private static int getJSDocFlags(JSDocInfo info) {
+    boolean[] flags = {
+        info.isConsistentIdGenerator(),
+        info.isConstant(),
+        info.isConstructor(),
+        info.isDefine(),
+        info.isHidden(),
+        info.isNoTypeCheck(),
+        info.shouldPreserveTry(),
+        info.isOverride(),
+        info.isNoAlias(),
+        info.isDeprecated(),
+        info.isInterface(),
+        info.isExport(),
+        info.isNoShadow(),
+        info.isIdGenerator(),
+        info.isImplicitCast(),
+        info.isNoSideEffects(),
+        info.isExterns(),
+        info.isJavaDispatch(),
+        info.isNoCompile(),
+        info.hasFileOverview()
+    };
+    int bits = 0;
+    for (int i = 0; i < flags.length; i++) {
+      if (flags[i]) {
+        bits |= 1 << i;
+      }
+    }
+    return bits;
+  }
+
+  /**
+   * Writes the node a JSDoc is associated with as 0 if there is none, as
+   * its index plus 2 if it is in the trees written so far, and as 1
+   * followed by its type, position and source file otherwise. Only what the
+   * JSDoc needs of a node outside the trees, its source file, is kept.
+   */
+  private void writeAssociatedNode(Node n) throws IOException {
+    if (n == null) {
+      writeVarInt(0);
+      return;
+    }
+    Integer index = treeNodes.get(n);
+    if (index != null) {
+      writeVarInt(index + 2);
+      return;
+    }
+    StaticSourceFile file = n.getStaticSourceFile();
+    int fileIndex = file == null || file == sourceFile
+        ? -1 : getObjectIndex(file);
+    writeVarInt(1);
+    writeSignedVarInt(n.getType());
+    writeSignedVarInt(n.getSourcePosition());
+    // 0 for no file, 1 for the file of the trees, and the object index
+    // plus 2 for any other file.
+    writeVarInt(file == null ? 0 : fileIndex + 2);
+  }
+
+  private void writeTypeExpressions(List<JSTypeExpression> types)
+      throws IOException {
+    writeVarInt(types.size());
+    for (JSTypeExpression type : types) {
+      writeTypeExpression(type);
+    }
+  }
+
+  /**
+   * Writes a type expression as 0 if it is null, as its index plus 2 if it
+   * has been written before, and as 1 followed by its source name and tree
+   * otherwise.
+   */
+  private void writeTypeExpression(JSTypeExpression type) throws IOException {
+    if (type == null) {
+      writeVarInt(0);
+      return;
+    }
+    Integer index = typeExpressions.get(type);
+    if (index != null) {
+      writeVarInt(index + 2);
+      return;
+    }
+    writeVarInt(1);
+    writeString(type.getSourceName());
+    writeNode(type.getRoot());
+    typeExpressions.put(type, typeExpressions.size());
+  }
+
+  private void writeStrings(Collection<String> values) throws IOException {
+    writeVarInt(values.size());
+    for (String value : values) {
+      writeString(value);
+    }
+  }
+
+  /**
+   * Writes a string as 0 if it is null, as its index plus 2 if it has been
+   * written before, and as 1 followed by its length and UTF-16 code units
+   * otherwise.
+   */
+  public void writeString(String s) throws IOException {
+    if (s == null) {
+      writeVarInt(0);
+      return;
+    }
+    Integer index = strings.get(s);
+    if (index != null) {
+      writeVarInt(index + 2);
+      return;
+    }
+    strings.put(s, strings.size());
+    writeVarInt(1);
+    int length = s.length();
+    writeVarInt(length);
+    for (int i = 0; i < length; i++) {
+      char c = s.charAt(i);
+      if (c < 0x80) {
+        out.writeByte(c);
+      } else {
+        // Escape the rest, as a marker byte and the full code unit.
+        out.writeByte(0x80);
+        out.writeChar(c);
+      }
+    }
+  }
+
+  /** Writes a non-negative int in 1 to 5 bytes, 7 bits at a time. */
+  public void writeVarInt(int value) throws IOException {
+    while ((value & ~0x7F) != 0) {
+      out.writeByte((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    out.writeByte(value);
+  }
+
+  /** Writes an int, keeping small negative values short. */
+  public void writeSignedVarInt(int value) throws IOException {
+    writeVarInt(zigZag(value));
+  }
+
+  private static int zigZag(int value) {
+    return (value << 1) ^ (value >> 31);
+  }
+}
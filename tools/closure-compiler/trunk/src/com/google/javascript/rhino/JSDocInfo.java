@@ -579,6 +579,13 @@ public class JSDocInfo implements Serializable {
     this.visibility = visibility;
   }
 
+  /**
+   * Returns whether this JSDoc keeps the documentation of the comment.
+   */
+  boolean includesDocumentation() {
+    return includeDocumentation;
+  }
+
   private void lazyInitInfo() {
     if (info == null) {
       info = new LazilyInitializedInfo();
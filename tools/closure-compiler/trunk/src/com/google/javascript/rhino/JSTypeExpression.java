@@ -114,4 +114,8 @@ public final class JSTypeExpression implements Serializable {
   Node getRoot() {
     return root;
   }
+
+  String getSourceName() {
+    return sourceName;
+  }
 }
@@ -48,6 +48,9 @@ import com.google.javascript.rhino.jstype.SimpleSourceFile;
 import com.google.javascript.rhino.jstype.StaticSourceFile;
 
 import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
 import java.util.Arrays;
 import java.util.Collections;
@@ -159,6 +162,15 @@ public class Node implements Cloneable, Serializable {
                                   // node.
       LAST_PROP          = 53;
 
+  // The property types that are stored as a bit of propFlags when their
+  // value is 1, which is how boolean properties are stored.
+  private static final int FIRST_FLAG_PROP = PARENTHESIZED_PROP;
+  private static final int LAST_FLAG_PROP = FREE_CALL;
+
+  private static final Integer TRUE_VALUE = Integer.valueOf(1);
+
+  private static final Object[] EMPTY_VALUES = new Object[0];
+
   // values of ISNUMBER_PROP to specify
   // which of the children are Number types
   public static final int
@@ -353,108 +365,8 @@ public class Node implements Cloneable, Serializable {
     private String str;
   }
 
-  // PropListItems must be immutable so that they can be shared.
-  private interface PropListItem {
-    int getType();
-    PropListItem getNext();
-    PropListItem chain(PropListItem next);
-    Object getObjectValue();
-    int getIntValue();
-  }
-
-  private static abstract class AbstractPropListItem
-      implements PropListItem, Serializable {
-    private static final long serialVersionUID = 1L;
-
-    private final PropListItem next;
-    private final int propType;
-
-    AbstractPropListItem(int propType, PropListItem next) {
-      this.propType = propType;
-      this.next = next;
-    }
-
-    @Override
-    public int getType() {
-      return propType;
-    }
-
-    @Override
-    public PropListItem getNext() {
-      return next;
-    }
-
-    @Override
-    public abstract PropListItem chain(PropListItem next);
-  }
-
-  // A base class for Object storing props
-  private static class ObjectPropListItem
-      extends AbstractPropListItem {
-    private static final long serialVersionUID = 1L;
-
-    private final Object objectValue;
-
-    ObjectPropListItem(int propType, Object objectValue, PropListItem next) {
-      super(propType, next);
-      this.objectValue = objectValue;
-    }
-
-    @Override
-    public int getIntValue() {
-      throw new UnsupportedOperationException();
-    }
-
-    @Override
-    public Object getObjectValue() {
-      return objectValue;
-    }
-
-    @Override
-    public String toString() {
-      return objectValue == null ? "null" : objectValue.toString();
-    }
-
-    @Override
-    public PropListItem chain(PropListItem next) {
-      return new ObjectPropListItem(getType(), objectValue, next);
-    }
-  }
-
-  // A base class for int storing props
-  private static class IntPropListItem extends AbstractPropListItem {
-    private static final long serialVersionUID = 1L;
-
-    final int intValue;
-
-    IntPropListItem(int propType, int intValue, PropListItem next) {
-      super(propType, next);
-      this.intValue = intValue;
-    }
-
-    @Override
-    public int getIntValue() {
-      return intValue;
-    }
-
-    @Override
-    public Object getObjectValue() {
-      throw new UnsupportedOperationException();
-    }
-
-    @Override
-    public String toString() {
-      return String.valueOf(intValue);
-    }
-
-    @Override
-    public PropListItem chain(PropListItem next) {
-      return new IntPropListItem(getType(), intValue, next);
-    }
-  }
-
   public Node(int nodeType) {
-    type = nodeType;
+    type = (short) nodeType;
     parent = null;
     sourcePosition = -1;
   }
@@ -465,7 +377,7 @@ public class Node implements Cloneable, Serializable {
     Preconditions.checkArgument(child.next == null,
         "new child has existing sibling");
 
-    type = nodeType;
+    type = (short) nodeType;
     parent = null;
     first = last = child;
     child.next = null;
@@ -482,7 +394,7 @@ public class Node implements Cloneable, Serializable {
         "second new child has existing parent");
     Preconditions.checkArgument(right.next == null,
         "second new child has existing sibling");
-    type = nodeType;
+    type = (short) nodeType;
     parent = null;
     first = left;
     last = right;
@@ -500,7 +412,7 @@ public class Node implements Cloneable, Serializable {
     Preconditions.checkArgument(mid.next == null);
     Preconditions.checkArgument(right.parent == null);
     Preconditions.checkArgument(right.next == null);
-    type = nodeType;
+    type = (short) nodeType;
     parent = null;
     first = left;
     last = right;
@@ -522,7 +434,7 @@ public class Node implements Cloneable, Serializable {
     Preconditions.checkArgument(mid2.next == null);
     Preconditions.checkArgument(right.parent == null);
     Preconditions.checkArgument(right.next == null);
-    type = nodeType;
+    type = (short) nodeType;
     parent = null;
     first = left;
     last = right;
@@ -538,7 +450,7 @@ public class Node implements Cloneable, Serializable {
   }
 
   public Node(int nodeType, int lineno, int charno) {
-    type = nodeType;
+    type = (short) nodeType;
     parent = null;
     sourcePosition = mergeLineCharNo(lineno, charno);
   }
@@ -571,7 +483,7 @@ public class Node implements Cloneable, Serializable {
   }
 
   public Node(int nodeType, Node[] children) {
-    this.type = nodeType;
+    this.type = (short) nodeType;
     parent = null;
     if (children.length != 0) {
       this.first = children[0];
@@ -625,7 +537,7 @@ public class Node implements Cloneable, Serializable {
   }
 
   public void setType(int type) {
-    this.type = type;
+    this.type = (short) type;
   }
 
   public boolean hasChildren() {
@@ -838,13 +750,33 @@ public class Node implements Cloneable, Serializable {
     child.parent = null;
   }
 
+  /**
+   * Returns the value of a property, with int values boxed, or null if the
+   * node does not have the property.
+   */
   @VisibleForTesting
-  PropListItem lookupProperty(int propType) {
-    PropListItem x = propListHead;
-    while (x != null && propType != x.getType()) {
-      x = x.getNext();
+  Object lookupProperty(int propType) {
+    if ((propFlags & flagBit(propType)) != 0) {
+      return TRUE_VALUE;
+    }
+    Object[] values = propValues;
+    if (values != null) {
+      for (int i = 0; i < values.length; i += 2) {
+        if (((Integer) values[i]).intValue() == propType) {
+          return values[i + 1];
+        }
+      }
     }
-    return x;
+    return null;
+  }
+
+  /**
+   * Returns the bit of propFlags for a property type, or 0 if the type is
+   * always stored in propValues.
+   */
+  private static int flagBit(int propType) {
+    int shift = propType - FIRST_FLAG_PROP;
+    return shift >= 0 && propType <= LAST_FLAG_PROP ? 1 << shift : 0;
   }
 
   /**
@@ -855,38 +787,55 @@ public class Node implements Cloneable, Serializable {
    * @return this node.
    */
   public Node clonePropsFrom(Node other) {
-    Preconditions.checkState(this.propListHead == null,
+    Preconditions.checkState(this.propValues == null && this.propFlags == 0,
         "Node has existing properties.");
-    this.propListHead = other.propListHead;
+    this.propFlags = other.propFlags;
+    this.propValues = other.propValues;
     return this;
   }
 
   public void removeProp(int propType) {
-    PropListItem result = removeProp(propListHead, propType);
-    if (result != propListHead) {
-      propListHead = result;
-    }
+    setProp(propType, null);
   }
 
   /**
-   * @param item The item to inspect
-   * @param propType The property to look for
-   * @return The replacement list if the property was removed, or
-   *   'item' otherwise.
+   * Sets a property, or removes it if the value is null. The values array
+   * may be shared with other nodes, so it is replaced rather than updated.
    */
-  private PropListItem removeProp(PropListItem item, int propType) {
-    if (item == null) {
-      return null;
-    } else if (item.getType() == propType) {
-      return item.getNext();
+  private void setProp(int propType, Object value) {
+    Preconditions.checkArgument(propType >= 0 && propType <= LAST_PROP,
+        "Bad property type: %s", propType);
+    int bit = flagBit(propType);
+    if (bit != 0 && TRUE_VALUE.equals(value)) {
+      propFlags |= bit;
+      value = null;
     } else {
-      PropListItem result = removeProp(item.getNext(), propType);
-      if (result != item.getNext()) {
-        return item.chain(result);
+      propFlags &= ~bit;
+    }
+
+    Object[] values = propValues == null ? EMPTY_VALUES : propValues;
+    int index = 0;
+    while (index < values.length
+        && ((Integer) values[index]).intValue() != propType) {
+      index += 2;
+    }
+    if (index < values.length) {
+      if (value != null) {
+        values = values.clone();
+        values[index + 1] = value;
       } else {
-        return item;
+        Object[] result = new Object[values.length - 2];
+        System.arraycopy(values, 0, result, 0, index);
+        System.arraycopy(values, index + 2, result, index,
+            result.length - index);
+        values = result;
       }
+    } else if (value != null) {
+      values = Arrays.copyOf(values, values.length + 2);
+      values[index] = Integer.valueOf(propType);
+      values[index + 1] = value;
     }
+    propValues = values.length == 0 ? null : values;
   }
 
   public Object getProp(int propType) {
@@ -894,11 +843,7 @@ public class Node implements Cloneable, Serializable {
       return getSourceFileName();
     }
 
-    PropListItem item = lookupProperty(propType);
-    if (item == null) {
-      return null;
-    }
-    return item.getObjectValue();
+    return lookupProperty(propType);
   }
 
   public boolean getBooleanProp(int propType) {
@@ -910,19 +855,26 @@ public class Node implements Cloneable, Serializable {
    * is not defined.
    */
   public int getIntProp(int propType) {
-    PropListItem item = lookupProperty(propType);
-    if (item == null) {
+    Object value = lookupProperty(propType);
+    if (value == null) {
       return 0;
     }
-    return item.getIntValue();
+    return toInt(value);
   }
 
   public int getExistingIntProp(int propType) {
-    PropListItem item = lookupProperty(propType);
-    if (item == null) {
+    Object value = lookupProperty(propType);
+    if (value == null) {
       Kit.codeBug();
     }
-    return item.getIntValue();
+    return toInt(value);
+  }
+
+  private static int toInt(Object value) {
+    if (!(value instanceof Integer)) {
+      throw new UnsupportedOperationException();
+    }
+    return ((Integer) value).intValue();
   }
 
   public void putProp(int propType, Object value) {
@@ -932,10 +884,7 @@ public class Node implements Cloneable, Serializable {
       return;
     }
 
-    removeProp(propType);
-    if (value != null) {
-      propListHead = createProp(propType, value, propListHead);
-    }
+    setProp(propType, value);
   }
 
   public void putBooleanProp(int propType, boolean value) {
@@ -943,33 +892,22 @@ public class Node implements Cloneable, Serializable {
   }
 
   public void putIntProp(int propType, int value) {
-    removeProp(propType);
-    if (value != 0) {
-      propListHead = createProp(propType, value, propListHead);
-    }
-  }
-
-  PropListItem createProp(int propType, Object value, PropListItem next) {
-    return new ObjectPropListItem(propType, value, next);
-  }
-
-  PropListItem createProp(int propType, int value, PropListItem next) {
-    return new IntPropListItem(propType, value, next);
+    setProp(propType, value == 0 ? null : Integer.valueOf(value));
   }
 
   // Gets all the property types, in sorted order.
-  private int[] getSortedPropTypes() {
-    int count = 0;
-    for (PropListItem x = propListHead; x != null; x = x.getNext()) {
-      count++;
-    }
-
-    int[] keys = new int[count];
-    for (PropListItem x = propListHead; x != null; x = x.getNext()) {
-      count--;
-      keys[count] = x.getType();
+  int[] getSortedPropTypes() {
+    int flags = getPropFlags();
+    int count = Integer.bitCount(flags);
+    int valueCount = propValues == null ? 0 : propValues.length / 2;
+    int[] keys = new int[count + valueCount];
+    for (int i = 0; i < count; i++) {
+      keys[i] = Integer.numberOfTrailingZeros(flags) + FIRST_FLAG_PROP;
+      flags &= flags - 1;
+    }
+    for (int i = 0; i < valueCount; i++) {
+      keys[count + i] = (Integer) propValues[i * 2];
     }
-
     Arrays.sort(keys);
     return keys;
   }
@@ -1085,7 +1023,7 @@ public class Node implements Cloneable, Serializable {
         int[] keys = getSortedPropTypes();
         for (int i = 0; i < keys.length; i++) {
           int type = keys[i];
-          PropListItem x = lookupProperty(type);
+          Object x = lookupProperty(type);
           sb.append(" [");
           sb.append(propToString(type));
           sb.append(": ");
@@ -1098,7 +1036,7 @@ public class Node implements Cloneable, Serializable {
               value = "last local block";
               break;
             case ISNUMBER_PROP:
-              switch (x.getIntValue()) {
+              switch (toInt(x)) {
                 case BOTH:
                   value = "both";
                   break;
@@ -1113,7 +1051,7 @@ public class Node implements Cloneable, Serializable {
               }
               break;
             case SPECIALCALL_PROP:
-              switch (x.getIntValue()) {
+              switch (toInt(x)) {
                 case SPECIALCALL_EVAL:
                   value = "eval";
                   break;
@@ -1181,18 +1119,26 @@ public class Node implements Cloneable, Serializable {
     }
   }
 
-  int type;              // type of the node; Token.NAME for example
+  short type;            // type of the node; Token.NAME for example
   Node next;             // next sibling
   private Node first;    // first element of a linked list of children
   private Node last;     // last element of a linked list of children
 
   /**
-   * Linked list of properties. Since vast majority of nodes would have
-   * no more then 2 properties, linked list saves memory and provides
-   * fast lookup. If this does not holds, propListHead can be replaced
-   * by UintMap.
+   * The properties. The boolean properties from FIRST_FLAG_PROP to
+   * LAST_FLAG_PROP, which are most of the properties that the compiler
+   * sets on single nodes, are bits of propFlags, which shares a word with
+   * the type of the node. The other properties are (type, value) pairs of
+   * propValues, with int values boxed. An Integer put with putProp is
+   * stored the same way, so it reads back with getProp and getIntProp
+   * alike. Most nodes only have their source file there, in an array that
+   * they share with the other nodes of the file.
+   *
+   * The array is never changed once set, so that nodes can share it: see
+   * {@link #clonePropsFrom} and {@link #cloneNode}.
    */
-  private PropListItem propListHead;
+  private short propFlags;
+  private Object[] propValues;
 
   /**
    * COLUMN_BITS represents how many of the lower-order bits of
@@ -1230,6 +1176,144 @@ public class Node implements Cloneable, Serializable {
 
   private Node parent;
 
+  //==========================================================================
+  // Serialization
+
+  /**
+   * The serialized form of a node, which keeps the properties in the linked
+   * list of PropListItems that nodes used to store them in, so that nodes
+   * serialized before propFlags and propValues can still be read, and the
+   * other way around.
+   */
+  private static final ObjectStreamField[] serialPersistentFields = {
+      new ObjectStreamField("type", int.class),
+      new ObjectStreamField("next", Node.class),
+      new ObjectStreamField("first", Node.class),
+      new ObjectStreamField("last", Node.class),
+      new ObjectStreamField("propListHead", PropListItem.class),
+      new ObjectStreamField("sourcePosition", int.class),
+      new ObjectStreamField("jsType", JSType.class),
+      new ObjectStreamField("parent", Node.class)};
+
+  // The items of the serialized property list, with the first item of a
+  // type taking precedence over the later ones. PropListItems must be
+  // immutable so that they can be shared.
+  private interface PropListItem {
+    int getType();
+    PropListItem getNext();
+
+    /** Returns the value, with int values boxed. */
+    Object getValue();
+  }
+
+  private static abstract class AbstractPropListItem
+      implements PropListItem, Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final PropListItem next;
+    private final int propType;
+
+    AbstractPropListItem(int propType, PropListItem next) {
+      this.propType = propType;
+      this.next = next;
+    }
+
+    @Override
+    public int getType() {
+      return propType;
+    }
+
+    @Override
+    public PropListItem getNext() {
+      return next;
+    }
+  }
+
+  // A base class for Object storing props
+  private static class ObjectPropListItem
+      extends AbstractPropListItem {
+    private static final long serialVersionUID = 1L;
+
+    private final Object objectValue;
+
+    ObjectPropListItem(int propType, Object objectValue, PropListItem next) {
+      super(propType, next);
+      this.objectValue = objectValue;
+    }
+
+    @Override
+    public Object getValue() {
+      return objectValue;
+    }
+  }
+
+  // A base class for int storing props
+  private static class IntPropListItem extends AbstractPropListItem {
+    private static final long serialVersionUID = 1L;
+
+    final int intValue;
+
+    IntPropListItem(int propType, int intValue, PropListItem next) {
+      super(propType, next);
+      this.intValue = intValue;
+    }
+
+    @Override
+    public Object getValue() {
+      return intValue == 1 ? TRUE_VALUE : Integer.valueOf(intValue);
+    }
+  }
+
+  private void writeObject(ObjectOutputStream out) throws IOException {
+    PropListItem propListHead = null;
+    for (int propType = LAST_FLAG_PROP; propType >= FIRST_FLAG_PROP;
+         propType--) {
+      if ((propFlags & flagBit(propType)) != 0) {
+        propListHead = new IntPropListItem(propType, 1, propListHead);
+      }
+    }
+    Object[] values = propValues;
+    if (values != null) {
+      for (int i = values.length - 2; i >= 0; i -= 2) {
+        int propType = ((Integer) values[i]).intValue();
+        Object value = values[i + 1];
+        propListHead = value instanceof Integer
+            ? new IntPropListItem(propType, (Integer) value, propListHead)
+            : new ObjectPropListItem(propType, value, propListHead);
+      }
+    }
+
+    ObjectOutputStream.PutField fields = out.putFields();
+    fields.put("type", (int) type);
+    fields.put("next", next);
+    fields.put("first", first);
+    fields.put("last", last);
+    fields.put("propListHead", propListHead);
+    fields.put("sourcePosition", sourcePosition);
+    fields.put("jsType", jsType);
+    fields.put("parent", parent);
+    out.writeFields();
+  }
+
+  private void readObject(ObjectInputStream in)
+      throws IOException, ClassNotFoundException {
+    ObjectInputStream.GetField fields = in.readFields();
+    type = (short) fields.get("type", 0);
+    next = (Node) fields.get("next", null);
+    first = (Node) fields.get("first", null);
+    last = (Node) fields.get("last", null);
+    sourcePosition = fields.get("sourcePosition", -1);
+    jsType = (JSType) fields.get("jsType", null);
+    parent = (Node) fields.get("parent", null);
+
+    PropListItem item = (PropListItem) fields.get("propListHead", null);
+    for (; item != null; item = item.getNext()) {
+      if (lookupProperty(item.getType()) == null) {
+        setProp(item.getType(), item.getValue());
+      }
+    }
+  }
+
   //==========================================================================
   // Source position management
 
@@ -1453,8 +1537,81 @@ public class Node implements Cloneable, Serializable {
   // ==========================================================================
   // Accessors
 
-  PropListItem getPropListHeadForTesting() {
-    return propListHead;
+  Object[] getPropValuesForTesting() {
+    return propValues;
+  }
+
+  /**
+   * Returns a hash of the properties of the node, so that changes to them
+   * can be told apart without comparing them one by one. Values other than
+   * numbers and strings, like JSDoc, are hashed by identity.
+   */
+  public int getPropsHashCode() {
+    int hash = propFlags;
+    Object[] values = propValues;
+    if (values != null) {
+      for (int i = 0; i < values.length; i += 2) {
+        Object value = values[i + 1];
+        int valueHash = value instanceof Integer || value instanceof String
+            ? value.hashCode() : System.identityHashCode(value);
+        // The order of the pairs does not matter.
+        hash += (((Integer) values[i]).intValue() * 1000003) ^ valueHash;
+      }
+    }
+    return hash;
+  }
+
+  // Back-door access to the internals of the node, for the
+  // AstWriter and AstReader.
+
+  /**
+   * Returns the bits of the boolean properties, the types from
+   * FIRST_FLAG_PROP up.
+   */
+  int getPropFlags() {
+    return propFlags & 0xFFFF;
+  }
+
+  /**
+   * Returns the array of (type, value) pairs that holds the other
+   * properties, which nodes share when they share their properties, or
+   * null if there are none. The array must not be changed.
+   */
+  Object[] getPropValues() {
+    return propValues;
+  }
+
+  /**
+   * Sets all the properties at once, replacing the existing ones.
+   *
+   * @param flags The properties that are stored as bits.
+   * @param values The (type, value) pairs of the other properties, or null.
+   *     The array is not copied, so it can be shared, and its values may be
+   *     filled in later.
+   */
+  void setProps(int flags, Object[] values) {
+    Preconditions.checkArgument((flags & ~0xFFFF) == 0, "Bad flags");
+    if (values != null) {
+      Preconditions.checkArgument(values.length % 2 == 0, "Bad values");
+      for (int i = 0; i < values.length; i += 2) {
+        Preconditions.checkArgument(values[i] instanceof Integer,
+            "Bad property type");
+        int propType = (Integer) values[i];
+        Preconditions.checkArgument(
+            propType >= 0 && propType <= LAST_PROP,
+            "Bad property type: %s", propType);
+      }
+    }
+    propFlags = (short) flags;
+    propValues = values == null || values.length == 0 ? null : values;
+  }
+
+  boolean isStringNode() {
+    return this instanceof StringNode;
+  }
+
+  boolean isNumberNode() {
+    return this instanceof NumberNode;
   }
 
   public Node getParent() {
@@ -2059,7 +2216,7 @@ public class Node implements Cloneable, Serializable {
     Node result;
     try {
       result = (Node) super.clone();
-      // PropListItem lists are immutable and can be shared so there is no
+      // Property values arrays are immutable and can be shared so there is no
       // need to clone them here.
       result.next = null;
       result.first = null;
@@ -59,7 +59,7 @@ public final class AllType extends JSType {
    * @return {@code this.isEquivalentTo(that)}
    */
   @Override
-  public boolean isSubtype(JSType that) {
+  boolean isSubtypeInternal(JSType that) {
     return JSType.isSubtype(this, that);
   }
 
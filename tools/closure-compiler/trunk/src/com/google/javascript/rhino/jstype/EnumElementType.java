@@ -175,7 +175,7 @@ public class EnumElementType extends ObjectType {
   }
 
   @Override
-  public boolean isSubtype(JSType that) {
+  boolean isSubtypeInternal(JSType that) {
     if (JSType.isSubtype(this, that)) {
       return true;
     } else {
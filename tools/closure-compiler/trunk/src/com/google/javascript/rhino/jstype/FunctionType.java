@@ -373,6 +373,7 @@ public class FunctionType extends PrototypeObjectType {
     this.prototypeSlot = new Property("prototype", prototype, true,
         propertyNode == null ? source : propertyNode);
     prototype.setOwnerFunction(this);
+    registry.invalidateTypeRelations();
 
     if (oldPrototype != null) {
       // Disassociating the old prototype makes this easier to debug--
@@ -451,6 +452,7 @@ public class FunctionType extends PrototypeObjectType {
       registry.registerTypeImplementingInterface(this, type);
     }
     this.implementedInterfaces = ImmutableList.copyOf(implementedInterfaces);
+    registry.invalidateTypeRelations();
   }
 
   /**
@@ -495,6 +497,7 @@ public class FunctionType extends PrototypeObjectType {
     throws UnsupportedOperationException {
     if (isInterface()) {
       this.extendedInterfaces = ImmutableList.copyOf(extendedInterfaces);
+      registry.invalidateTypeRelations();
     } else {
       throw new UnsupportedOperationException();
     }
@@ -574,12 +577,12 @@ public class FunctionType extends PrototypeObjectType {
   }
 
   @Override
-  public JSType getLeastSupertype(JSType that) {
+  JSType getLeastSupertypeInternal(JSType that) {
     return supAndInfHelper(that, true);
   }
 
   @Override
-  public JSType getGreatestSubtype(JSType that) {
+  JSType getGreatestSubtypeInternal(JSType that) {
     return supAndInfHelper(that, false);
   }
 
@@ -662,8 +665,8 @@ public class FunctionType extends PrototypeObjectType {
     }
 
     return leastSuper ?
-        super.getLeastSupertype(that) :
-        super.getGreatestSubtype(that);
+        super.getLeastSupertypeInternal(that) :
+        super.getGreatestSubtypeInternal(that);
   }
 
   /**
@@ -872,7 +875,7 @@ public class FunctionType extends PrototypeObjectType {
    * the prototype chain.
    */
   @Override
-  public boolean isSubtype(JSType that) {
+  boolean isSubtypeInternal(JSType that) {
     if (JSType.isSubtype(this, that)) {
       return true;
     }
@@ -936,6 +939,7 @@ public class FunctionType extends PrototypeObjectType {
    */
   void setInstanceType(ObjectType instanceType) {
     typeOfThis = instanceType;
+    registry.invalidateTypeRelations();
   }
 
   /**
@@ -967,6 +971,7 @@ public class FunctionType extends PrototypeObjectType {
   public void setSource(Node source) {
     if (null == source) {
       prototypeSlot = null;
+      registry.invalidateTypeRelations();
     }
     this.source = source;
   }
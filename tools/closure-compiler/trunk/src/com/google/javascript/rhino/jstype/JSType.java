@@ -45,6 +45,7 @@ import com.google.common.base.Predicate;
 import com.google.javascript.rhino.ErrorReporter;
 import com.google.javascript.rhino.JSDocInfo;
 import com.google.javascript.rhino.jstype.JSTypeRegistry.ResolveMode;
+import com.google.javascript.rhino.jstype.TypeRelationCache.Relation;
 
 import java.io.Serializable;
 import java.util.Comparator;
@@ -568,7 +569,18 @@ public abstract class JSType implements Serializable {
    * Algorithm (11.9.3, page 55&ndash;56) of the ECMA-262 specification.<p>
    */
   public final boolean canTestForEqualityWith(JSType that) {
-    return this.testForEquality(that).equals(UNKNOWN);
+    if (!TypeRelationCache.isMemoized(this, that)) {
+      return this.testForEquality(that).equals(UNKNOWN);
+    }
+    TypeRelationCache cache = registry.getTypeRelationCache();
+    Object cached = cache.get(Relation.EQUALITY_TEST, this, that);
+    if (cached != null) {
+      return (Boolean) cached;
+    }
+    int generation = cache.getGeneration();
+    boolean result = this.testForEquality(that).equals(UNKNOWN);
+    cache.put(generation, Relation.EQUALITY_TEST, this, that, result);
+    return result;
   }
 
   /**
@@ -658,7 +670,25 @@ public abstract class JSType implements Serializable {
    * </ul>
    * @return {@code this &#8744; that}
    */
-  public JSType getLeastSupertype(JSType that) {
+  public final JSType getLeastSupertype(JSType that) {
+    if (!TypeRelationCache.isMemoized(this, that)) {
+      return getLeastSupertypeInternal(that);
+    }
+    TypeRelationCache cache = registry.getTypeRelationCache();
+    Object cached = cache.get(Relation.LEAST_SUPERTYPE, this, that);
+    if (cached != null) {
+      return (JSType) cached;
+    }
+    int generation = cache.getGeneration();
+    JSType result = getLeastSupertypeInternal(that);
+    cache.put(generation, Relation.LEAST_SUPERTYPE, this, that, result);
+    return result;
+  }
+
+  /**
+   * @see #getLeastSupertype
+   */
+  JSType getLeastSupertypeInternal(JSType that) {
     if (that.isUnionType()) {
       // Union types have their own implementation of getLeastSupertype.
       return that.toMaybeUnionType().getLeastSupertype(this);
@@ -689,7 +719,25 @@ public abstract class JSType implements Serializable {
    * </ul>
    * @return {@code this &#8744; that}
    */
-  public JSType getGreatestSubtype(JSType that) {
+  public final JSType getGreatestSubtype(JSType that) {
+    if (!TypeRelationCache.isMemoized(this, that)) {
+      return getGreatestSubtypeInternal(that);
+    }
+    TypeRelationCache cache = registry.getTypeRelationCache();
+    Object cached = cache.get(Relation.GREATEST_SUBTYPE, this, that);
+    if (cached != null) {
+      return (JSType) cached;
+    }
+    int generation = cache.getGeneration();
+    JSType result = getGreatestSubtypeInternal(that);
+    cache.put(generation, Relation.GREATEST_SUBTYPE, this, that, result);
+    return result;
+  }
+
+  /**
+   * @see #getGreatestSubtype
+   */
+  JSType getGreatestSubtypeInternal(JSType that) {
     if (that.isRecordType()) {
       // Record types have their own implementation of getGreatestSubtype.
       return that.getGreatestSubtype(this);
@@ -956,7 +1004,25 @@ public abstract class JSType implements Serializable {
    *
    * @return {@code this &lt;: that}
    */
-  public abstract boolean isSubtype(JSType that);
+  public final boolean isSubtype(JSType that) {
+    if (!TypeRelationCache.isMemoized(this, that)) {
+      return isSubtypeInternal(that);
+    }
+    TypeRelationCache cache = registry.getTypeRelationCache();
+    Object cached = cache.get(Relation.SUBTYPE, this, that);
+    if (cached != null) {
+      return (Boolean) cached;
+    }
+    int generation = cache.getGeneration();
+    boolean result = isSubtypeInternal(that);
+    cache.put(generation, Relation.SUBTYPE, this, that, result);
+    return result;
+  }
+
+  /**
+   * @see #isSubtype
+   */
+  abstract boolean isSubtypeInternal(JSType that);
 
   /**
    * Whether this type is meaningfully different from {@code that} type.
@@ -1054,6 +1120,8 @@ public abstract class JSType implements Serializable {
     resolved = true;
     resolveResult = resolveInternal(t, scope);
     resolveResult.setResolvedTypeInternal(resolveResult);
+    // Resolving may replace the types that a type is made of.
+    registry.invalidateTypeRelations();
     return resolveResult;
   }
 
@@ -1076,6 +1144,7 @@ public abstract class JSType implements Serializable {
   public final void clearResolved() {
     resolved = false;
     resolveResult = null;
+    registry.invalidateTypeRelations();
   }
 
   /**
@@ -62,6 +62,7 @@ import java.io.Serializable;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -138,6 +139,15 @@ public class JSTypeRegistry implements Serializable {
   private final Map<String, JSType> greatestSubtypeByProperty =
       Maps.newHashMap();
 
+  // The memoized relations between types, like the subtype relation. They
+  // are discarded whenever a type changes in a way that may alter them.
+  private final TypeRelationCache typeRelations = new TypeRelationCache();
+
+  // The unions built last, indexed by the identities of their alternates,
+  // so that building the same union again returns the same object.
+  private static final int UNION_TABLE_SIZE = 1 << 10;
+  private transient UnionType[] unionTable;
+
   // A map from interface name to types that implement it.
   private final Multimap<String, FunctionType> interfaceToImplementors =
       LinkedHashMultimap.create();
@@ -240,6 +250,8 @@ public class JSTypeRegistry implements Serializable {
     namesToTypes.clear();
     namespaces.clear();
     initializeRegistry();
+    invalidateTypeRelations();
+    unionTable = null;
   }
 
   private void initializeBuiltInTypes() {
@@ -625,6 +637,7 @@ public class JSTypeRegistry implements Serializable {
 
     // Clear cached values that depend on typesIndexedByProperty.
     greatestSubtypeByProperty.remove(propertyName);
+    invalidateTypeRelations();
   }
 
   private void addReferenceTypeIndexedByProperty(
@@ -732,6 +745,19 @@ public class JSTypeRegistry implements Serializable {
     }
   }
 
+  TypeRelationCache getTypeRelationCache() {
+    return typeRelations;
+  }
+
+  /**
+   * Discards the memoized relations between types. Must be called whenever
+   * a type changes in a way that may alter its relations to other types,
+   * such as gaining a property or a new implicit prototype.
+   */
+  void invalidateTypeRelations() {
+    typeRelations.invalidate();
+  }
+
   /**
    * Increments the current generation. Clients must call this in order to
    * move to the next generation of type resolution, allowing types to attempt
@@ -978,6 +1004,42 @@ public class JSTypeRegistry implements Serializable {
     return builder.build();
   }
 
+  /**
+   * Creates a union type with the given alternates, or returns one created
+   * recently with the very same alternates in the same order. Sharing the
+   * union lets the relations memoized for it serve all of its uses.
+   */
+  UnionType createUnionTypeInternal(List<JSType> alternates) {
+    if (unionTable == null) {
+      unionTable = new UnionType[UNION_TABLE_SIZE];
+    }
+    int hash = 0;
+    for (JSType alternate : alternates) {
+      hash = 31 * hash + System.identityHashCode(alternate);
+    }
+    int slot = (hash ^ (hash >>> 16)) & (UNION_TABLE_SIZE - 1);
+    UnionType union = unionTable[slot];
+    if (union == null || !hasSameAlternates(union, alternates)) {
+      union = new UnionType(this, ImmutableList.copyOf(alternates));
+      unionTable[slot] = union;
+    }
+    return union;
+  }
+
+  private static boolean hasSameAlternates(
+      UnionType union, List<JSType> alternates) {
+    if (union.alternates.size() != alternates.size()) {
+      return false;
+    }
+    Iterator<JSType> it = alternates.iterator();
+    for (JSType alternate : union.alternates) {
+      if (alternate != it.next()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   /**
    * Creates an enum type.
    */
@@ -528,6 +528,7 @@ public abstract class ObjectType extends JSType implements StaticScope<JSType> {
    */
   public void clearCachedValues() {
     unknown = true;
+    registry.invalidateTypeRelations();
   }
 
   /** Whether this is a built-in object. */
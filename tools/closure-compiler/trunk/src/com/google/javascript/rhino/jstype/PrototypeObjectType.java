@@ -247,12 +247,17 @@ class PrototypeObjectType extends ObjectType {
       newProp.setJSDocInfo(oldProp.getJSDocInfo());
     }
     properties.put(name, newProp);
+    registry.invalidateTypeRelations();
     return true;
   }
 
   @Override
   public boolean removeProperty(String name) {
-    return properties.remove(name) != null;
+    if (properties.remove(name) == null) {
+      return false;
+    }
+    registry.invalidateTypeRelations();
+    return true;
   }
 
   @Override
@@ -420,6 +425,7 @@ class PrototypeObjectType extends ObjectType {
   final void setImplicitPrototype(ObjectType implicitPrototype) {
     checkState(!hasCachedValues());
     this.implicitPrototypeFallback = implicitPrototype;
+    registry.invalidateTypeRelations();
   }
 
   @Override
@@ -439,7 +445,7 @@ class PrototypeObjectType extends ObjectType {
   }
 
   @Override
-  public boolean isSubtype(JSType that) {
+  boolean isSubtypeInternal(JSType that) {
     if (JSType.isSubtype(this, that)) {
       return true;
     }
@@ -88,6 +88,7 @@ class ProxyObjectType extends ObjectType {
     } else {
       this.referencedObjType = null;
     }
+    registry.invalidateTypeRelations();
   }
 
   @Override
@@ -209,7 +210,7 @@ class ProxyObjectType extends ObjectType {
   }
 
   @Override
-  public boolean isSubtype(JSType that) {
+  boolean isSubtypeInternal(JSType that) {
     return referencedType.isSubtype(that);
   }
 
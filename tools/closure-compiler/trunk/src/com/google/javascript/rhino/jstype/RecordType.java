@@ -133,9 +133,9 @@ public class RecordType extends PrototypeObjectType {
   }
 
   @Override
-  public JSType getLeastSupertype(JSType that) {
+  JSType getLeastSupertypeInternal(JSType that) {
     if (!that.isRecordType()) {
-      return super.getLeastSupertype(that);
+      return super.getLeastSupertypeInternal(that);
     }
 
     RecordType thatRecord = (RecordType) that;
@@ -157,7 +157,7 @@ public class RecordType extends PrototypeObjectType {
   }
 
   @Override
-  public JSType getGreatestSubtype(JSType that) {
+  JSType getGreatestSubtypeInternal(JSType that) {
     if (that.isRecordType()) {
       RecordType thatRecord = (RecordType) that;
       RecordTypeBuilder builder = new RecordTypeBuilder(registry);
@@ -186,7 +186,7 @@ public class RecordType extends PrototypeObjectType {
       return builder.build();
     }
 
-    JSType greatestSubtype = super.getGreatestSubtype(that);
+    JSType greatestSubtype = super.getGreatestSubtypeInternal(that);
     if (greatestSubtype.isNoObjectType() && !that.isNoObjectType()) {
       // In this branch, the other type is some object type. We find
       // the greatest subtype with the following algorithm:
@@ -220,7 +220,7 @@ public class RecordType extends PrototypeObjectType {
   }
 
   @Override
-  public boolean isSubtype(JSType that) {
+  boolean isSubtypeInternal(JSType that) {
     if (JSType.isSubtype(this, that)) {
       return true;
     }
@@ -0,0 +1,160 @@
+/*
+ *
+ * ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is Rhino code, released
+ * May 6, 1999.
+ *
+ * The Initial Developer of the Original Code is
+ * Netscape Communications Corporation.
+ * Portions created by the Initial Developer are Copyright (C) 1997-1999
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ *   Bob Jervis
+ *   Google Inc.
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * the GNU General Public License Version 2 or later (the "GPL"), in which
+ * case the provisions of the GPL are applicable instead of those above. If
+ * you wish to allow use of your version of this file only under the terms of
+ * the GPL and not to allow others to use your version of this file under the
+ * MPL, indicate your decision by deleting the provisions above and replacing
+ * them with the notice and other provisions required by the GPL. If you do
+ * not delete the provisions above, a recipient may use your version of this
+ * file under either the MPL or the GPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package com.google.javascript.rhino.jstype;
+
+import java.io.Serializable;
+
+/**
+ * A bounded memo table for the relations between types that are expensive
+ * to compute structurally: whether a type is a subtype of another, their
+ * least supertype and greatest subtype, and whether they can be tested for
+ * equality. Only pairs that involve a union, record or function type are
+ * memoized. The other relations take a few comparisons, which is cheaper
+ * than a lookup.
+ *
+ * The table is keyed by the identity of both types and is direct-mapped:
+ * a new entry replaces whatever entry had its slot, so the table never
+ * grows. The relations depend on state that changes while the types are
+ * built and inferred (the properties of object types, prototype chains,
+ * interfaces, the resolution of named types, the types indexed by
+ * property), so every such change calls {@link #invalidate}, which
+ * discards all the entries at once by starting a new generation.
+ *
+ * Entries are immutable, so that threads sharing a registry can at worst
+ * miss each other's entries.
+ */
+final class TypeRelationCache implements Serializable {
+  private static final long serialVersionUID = 1L;
+
+  enum Relation {
+    SUBTYPE,
+    LEAST_SUPERTYPE,
+    GREATEST_SUBTYPE,
+    EQUALITY_TEST
+  }
+
+  // A power of two, so that a slot is a mask away from a hash.
+  private static final int SIZE = 1 << 12;
+
+  private transient Entry[] entries = null;
+
+  private int generation = 0;
+
+  /** Whether the relations between two types are worth memoizing. */
+  static boolean isMemoized(JSType a, JSType b) {
+    return isStructural(a) || isStructural(b);
+  }
+
+  private static boolean isStructural(JSType type) {
+    return type.isUnionType() || type.isRecordType()
+        || type.isFunctionType();
+  }
+
+  /**
+   * Returns the generation of the entries. A result must be put with the
+   * generation from before it was computed, so that it is dropped if the
+   * types changed in the meantime.
+   */
+  int getGeneration() {
+    return generation;
+  }
+
+  /**
+   * Returns the memoized result of a relation between two types, or null if
+   * it is not known in the current generation.
+   */
+  Object get(Relation relation, JSType a, JSType b) {
+    if (entries == null) {
+      return null;
+    }
+    Entry entry = entries[slot(relation, a, b)];
+    if (entry != null && entry.generation == generation
+        && entry.relation == relation && entry.a == a && entry.b == b) {
+      return entry.result;
+    }
+    return null;
+  }
+
+  /**
+   * Memoizes the result of a relation between two types, unless the types
+   * changed since the given generation.
+   */
+  void put(int generation, Relation relation, JSType a, JSType b,
+      Object result) {
+    if (generation != this.generation) {
+      return;
+    }
+    if (entries == null) {
+      entries = new Entry[SIZE];
+    }
+    entries[slot(relation, a, b)] =
+        new Entry(generation, relation, a, b, result);
+  }
+
+  /** Discards all the memoized relations. */
+  void invalidate() {
+    generation++;
+  }
+
+  private static int slot(Relation relation, JSType a, JSType b) {
+    int hash = System.identityHashCode(a) * 31 + System.identityHashCode(b);
+    hash = hash * 4 + relation.ordinal();
+    // Spread the high bits, as identity hash codes tend to share low bits.
+    hash ^= (hash >>> 16) ^ (hash >>> 8);
+    return hash & (SIZE - 1);
+  }
+
+  private static final class Entry {
+    private final int generation;
+    private final Relation relation;
+    private final JSType a;
+    private final JSType b;
+    private final Object result;
+
+    Entry(int generation, Relation relation, JSType a, JSType b,
+        Object result) {
+      this.generation = generation;
+      this.relation = relation;
+      this.a = a;
+      this.b = b;
+      this.result = result;
+    }
+  }
+}
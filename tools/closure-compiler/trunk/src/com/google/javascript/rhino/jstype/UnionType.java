@@ -267,7 +267,7 @@ public class UnionType extends JSType {
   }
 
   @Override
-  public JSType getLeastSupertype(JSType that) {
+  JSType getLeastSupertypeInternal(JSType that) {
     if (!that.isUnknownType() && !that.isUnionType()) {
       for (JSType alternate : alternates) {
         if (!alternate.isUnknownType() && that.isSubtype(alternate)) {
@@ -420,7 +420,7 @@ public class UnionType extends JSType {
   }
 
   @Override
-  public boolean isSubtype(JSType that) {
+  boolean isSubtypeInternal(JSType that) {
     // unknown
     if (that.isUnknownType()) {
       return true;
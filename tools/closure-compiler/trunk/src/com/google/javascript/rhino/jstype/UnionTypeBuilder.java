@@ -49,7 +49,6 @@ import com.google.common.collect.Lists;
 import com.google.javascript.rhino.jstype.UnionType;
 
 import java.io.Serializable;
-import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 
@@ -128,6 +127,9 @@ class UnionTypeBuilder implements Serializable {
         Iterator<JSType> it = alternates.iterator();
         while (it.hasNext()) {
           JSType current = it.next();
+          if (areUnrelated(alternate, current)) {
+            continue;
+          }
 
           // Unknown and NoResolved types may just be names that haven't
           // been resolved yet. So keep these in the union, and just use
@@ -159,6 +161,49 @@ class UnionTypeBuilder implements Serializable {
     return this;
   }
 
+  /**
+   * Whether two alternates can be told apart by their kind alone, so that
+   * neither is a subtype of the other and the subtyping checks of
+   * {@link #addAlternate} can be skipped. Those checks dominate the cost of
+   * large unions, like the ones that index the types by their properties,
+   * and these kinds make up most of them.
+   */
+  private static boolean areUnrelated(JSType a, JSType b) {
+    if (a == b) {
+      return false;
+    }
+
+    // Value types are only related to themselves.
+    if (a instanceof ValueType && b instanceof ValueType) {
+      return true;
+    }
+
+    // Anonymous objects, like prototypes and object literals, are only
+    // related to the objects on their implicit prototype chains, unless
+    // they are unknown.
+    if (a.getClass() == PrototypeObjectType.class &&
+        b.getClass() == PrototypeObjectType.class &&
+        !a.isUnknownType() && !b.isUnknownType()) {
+      return !mayInherit((ObjectType) a, b) && !mayInherit((ObjectType) b, a);
+    }
+    return false;
+  }
+
+  /**
+   * Whether an object may be a subtype of the given type by inheritance:
+   * the type is on its implicit prototype chain, or the chain is unknown.
+   */
+  private static boolean mayInherit(ObjectType object, JSType type) {
+    for (ObjectType proto = object.getImplicitPrototype();
+         proto != null;
+         proto = proto.getImplicitPrototype()) {
+      if (proto.isUnknownType() || proto.isEquivalentTo(type)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   /**
    * Reduce the alternates into a non-union type.
    * If the alternates can't be accurately represented with a non-union
@@ -196,13 +241,9 @@ class UnionTypeBuilder implements Serializable {
     if (result == null) {
       result = reduceAlternatesWithoutUnion();
       if (result == null) {
-        result = new UnionType(registry, getAlternateListCopy());
+        result = registry.createUnionTypeInternal(alternates);
       }
     }
     return result;
   }
-
-  private Collection<JSType> getAlternateListCopy() {
-    return ImmutableList.copyOf(alternates);
-  }
 }
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2011 The Closure Compiler Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.debugging.sourcemap;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.debugging.sourcemap.proto.Mapping.OriginalMapping;
+
+import junit.framework.TestCase;
+
+import java.util.List;
+
+/**
+ * Tests for {@link SourceMapConsumerV3}.
+ *
+ */
+public class SourceMapConsumerV3Test extends TestCase {
+
+  public void testGetMappingForLine() throws Exception {
+    // Mappings for: function __BASIC__() { }
+    SourceMapConsumerV3 sourceMap = parse(1, "AACAA,QAASA,UAAS,EAAG;",
+        "\"testcode\"", "\"__BASIC__\"");
+
+    assertMapping("testcode", 1, 0, "__BASIC__",
+        sourceMap.getMappingForLine(1, 1));
+    assertMapping("testcode", 1, 9, "__BASIC__",
+        sourceMap.getMappingForLine(1, 10));
+    assertMapping("testcode", 1, 18, "",
+        sourceMap.getMappingForLine(1, 20));
+    assertMapping("testcode", 1, 21, "",
+        sourceMap.getMappingForLine(1, 100));
+    assertNull(sourceMap.getMappingForLine(2, 1));
+    assertNull(sourceMap.getMappingForLine(0, 1));
+  }
+
+  public void testUnmappedColumnsUseThePreviousMapping() throws Exception {
+    SourceMapConsumerV3 sourceMap = parse(3, "AACAA;;EAAE;",
+        "\"testcode\"", "\"f\"");
+
+    // The second line is empty, the third starts at column 2.
+    assertMapping("testcode", 1, 0, "f", sourceMap.getMappingForLine(2, 1));
+    assertMapping("testcode", 1, 0, "f", sourceMap.getMappingForLine(3, 1));
+    assertMapping("testcode", 1, 2, "", sourceMap.getMappingForLine(3, 3));
+  }
+
+  public void testNoMappingBeforeTheFirstEntry() throws Exception {
+    SourceMapConsumerV3 sourceMap = parse(2, ";EACA;", "\"testcode\"", "");
+    assertNull(sourceMap.getMappingForLine(1, 1));
+    assertNull(sourceMap.getMappingForLine(2, 1));
+    assertMapping("testcode", 1, 0, "", sourceMap.getMappingForLine(2, 3));
+  }
+
+  public void testGetReverseMapping() throws Exception {
+    SourceMapConsumerV3 sourceMap = parse(2, "AACA,EAAE,EACF;AADA;",
+        "\"a.js\"", "");
+
+    assertEquals(ImmutableList.of("0:0", "0:2", "1:0"),
+        getReverseMapping(sourceMap, "a.js", 1));
+    assertEquals(ImmutableList.of("0:4"),
+        getReverseMapping(sourceMap, "a.js", 2));
+    assertTrue(getReverseMapping(sourceMap, "a.js", 0).isEmpty());
+    assertTrue(getReverseMapping(sourceMap, "a.js", 3).isEmpty());
+    assertTrue(getReverseMapping(sourceMap, "b.js", 1).isEmpty());
+  }
+
+  public void testReverseMappingOfRepeatedSource() throws Exception {
+    SourceMapConsumerV3 sourceMap = parse(1, "AACA,ECAE,EDAA;",
+        "\"a.js\",\"a.js\"", "");
+
+    assertEquals(ImmutableList.of("0:0", "0:2", "0:4"),
+        getReverseMapping(sourceMap, "a.js", 1));
+  }
+
+  public void testVisitMappings() throws Exception {
+    SourceMapConsumerV3 sourceMap = parse(2, "AACAA,EAAE,C;AAAA;",
+        "\"a.js\"", "\"f\"");
+
+    final List<String> visited = Lists.newArrayList();
+    sourceMap.visitMappings(new SourceMapConsumerV3.EntryVisitor() {
+      @Override
+      public void visit(String sourceName, String symbolName,
+          FilePosition sourceStartPosition, FilePosition startPosition,
+          FilePosition endPosition) {
+        visited.add(sourceName + ":" + symbolName + " "
+            + sourceStartPosition.getLine() + ":"
+            + sourceStartPosition.getColumn() + " "
+            + startPosition.getLine() + ":" + startPosition.getColumn() + "-"
+            + endPosition.getLine() + ":" + endPosition.getColumn());
+      }
+    });
+    assertEquals(
+        ImmutableList.of("a.js:f 1:0 0:0-0:2", "a.js:null 1:2 0:2-0:3"),
+        visited);
+  }
+
+  private static SourceMapConsumerV3 parse(int lineCount, String mappings,
+      String sources, String names) throws SourceMapParseException {
+    SourceMapConsumerV3 sourceMap = new SourceMapConsumerV3();
+    sourceMap.parse(
+        "{\n" +
+        "\"version\":3,\n" +
+        "\"file\":\"testcode\",\n" +
+        "\"lineCount\":" + lineCount + ",\n" +
+        "\"mappings\":\"" + mappings + "\",\n" +
+        "\"sources\":[" + sources + "],\n" +
+        "\"names\":[" + names + "]\n" +
+        "}\n");
+    return sourceMap;
+  }
+
+  private static void assertMapping(String file, int line, int column,
+      String identifier, OriginalMapping mapping) {
+    assertNotNull(mapping);
+    assertEquals(file, mapping.getOriginalFile());
+    assertEquals(line, mapping.getLineNumber());
+    assertEquals(column, mapping.getColumnPosition());
+    assertEquals(identifier, mapping.getIdentifier());
+  }
+
+  /** Returns the generated positions that map to a line, as line:column. */
+  private static List<String> getReverseMapping(
+      SourceMapConsumerV3 sourceMap, String file, int line) {
+    List<String> positions = Lists.newArrayList();
+    for (OriginalMapping mapping : sourceMap.getReverseMapping(file, line, 0)) {
+      positions.add(
+          mapping.getLineNumber() + ":" + mapping.getColumnPosition());
+    }
+    return positions;
+  }
+}
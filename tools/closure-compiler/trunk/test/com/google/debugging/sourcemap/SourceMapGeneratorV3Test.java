@@ -463,6 +463,52 @@ public class SourceMapGeneratorV3Test extends SourceMapTestCase {
     check(inputs, output.toString(), mapContents.toString());
   }
 
+  public void testAppendToCanBeRepeated() throws Exception {
+    RunResult result1 = compile("var __FOO__ = 1;", "file1");
+    RunResult result2 = compile("var __BAR__ = 2;", "file2");
+    FilePosition offset = count(result1.generatedSource);
+
+    SourceMapGeneratorV3 generator = new SourceMapGeneratorV3();
+    generator.mergeMapSection(0, 0, result1.sourceMapFileContent);
+    String map = getMap(generator);
+    assertEquals(map, getMap(generator));
+
+    generator.mergeMapSection(offset.getLine(), offset.getColumn(),
+        result2.sourceMapFileContent);
+    SourceMapGeneratorV3 expected = new SourceMapGeneratorV3();
+    expected.mergeMapSection(0, 0, result1.sourceMapFileContent);
+    expected.mergeMapSection(offset.getLine(), offset.getColumn(),
+        result2.sourceMapFileContent);
+    assertEquals(getMap(expected), getMap(generator));
+  }
+
+  public void testWrapperPrefixSetAfterTheMappings() throws Exception {
+    SourceMapGeneratorV3 generator = new SourceMapGeneratorV3();
+    generator.addMapping("a.js", "f", new FilePosition(1, 0),
+        new FilePosition(0, 0), new FilePosition(0, 5));
+    generator.addMapping("a.js", null, new FilePosition(2, 0),
+        new FilePosition(1, 2), new FilePosition(1, 4));
+    generator.setWrapperPrefix("/* x */\n(function(){");
+
+    assertEquals(
+        "{\n" +
+        "\"version\":3,\n" +
+        "\"file\":\"out.js\",\n" +
+        "\"lineCount\":3,\n" +
+        "\"mappings\":\"A;YACAA,K;EACA;\",\n" +
+        "\"sources\":[\"a.js\"],\n" +
+        "\"names\":[\"f\"]\n" +
+        "}\n",
+        getMap(generator));
+  }
+
+  private static String getMap(SourceMapGeneratorV3 generator)
+      throws IOException {
+    StringBuilder sb = new StringBuilder();
+    generator.appendTo(sb, "out.js");
+    return sb.toString();
+  }
+
   FilePosition count(String js) {
     int line = 0, column = 0;
     for (int i = 0; i < js.length(); i++) {
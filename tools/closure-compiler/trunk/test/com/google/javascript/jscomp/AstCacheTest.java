@@ -0,0 +1,83 @@
+/*
+ * Copyright 2011 The Closure Compiler Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.javascript.jscomp;
+
+import com.google.javascript.rhino.Node;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for {@link AstCache}.
+ *
+ */
+public class AstCacheTest extends TestCase {
+
+  private AstCache cache;
+
+  @Override
+  public void setUp() {
+    cache = new AstCache(false);
+  }
+
+  public void testCacheHitReturnsCopy() {
+    Node first = parse(JSSourceFile.fromCode("a.js", "var a = 1;"));
+    assertEquals(1, cache.size());
+
+    JSSourceFile copy = JSSourceFile.fromCode("a.js", "var a = 1;");
+    Node second = parse(copy);
+    assertEquals(1, cache.size());
+    assertNotSame(first, second);
+    assertNull(first.checkTreeEquals(second));
+
+    // All the nodes of the copy belong to the new source file.
+    assertSame(copy, second.getStaticSourceFile());
+    assertSame(copy, second.getFirstChild().getFirstChild()
+        .getStaticSourceFile());
+  }
+
+  public void testChangedCodeIsReparsed() {
+    parse(JSSourceFile.fromCode("a.js", "var a = 1;"));
+    Node changed = parse(JSSourceFile.fromCode("a.js", "var b = 1;"));
+    assertEquals(2, cache.size());
+    assertEquals("b", changed.getFirstChild().getFirstChild().getString());
+  }
+
+  public void testTreesWithWarningsAreNotCached() {
+    parse(JSSourceFile.fromCode("a.js", "/* @type {number} */ var a = 1;"));
+    assertEquals(0, cache.size());
+  }
+
+  public void testExternsOnly() {
+    cache = new AstCache(true);
+    parse(JSSourceFile.fromCode("a.js", "var a = 1;"));
+    assertEquals(0, cache.size());
+
+    JSSourceFile externs = JSSourceFile.fromCode("externs.js", "var b;");
+    externs.setIsExtern(true);
+    parse(externs);
+    assertEquals(1, cache.size());
+  }
+
+  private Node parse(JSSourceFile file) {
+    Compiler compiler = new Compiler();
+    compiler.initOptions(new CompilerOptions());
+    compiler.setAstCache(cache);
+    Node root = new JsAst(file).getAstRoot(compiler);
+    assertNotNull(root);
+    return root;
+  }
+}
@@ -150,7 +150,7 @@ public class ClosureReverseAbstractInterpreterTest extends
     Node name = call.getLastChild();
 
     Scope scope = new SyntacticScopeCreator(compiler).createScope(n, null);
-    FlowScope flowScope = LinkedFlowScope.createEntryLattice(scope);
+    FlowScope flowScope = PersistentFlowScope.createEntryLattice(scope);
 
     assertEquals(Token.CALL, call.getType());
     assertEquals(Token.NAME, name.getType());
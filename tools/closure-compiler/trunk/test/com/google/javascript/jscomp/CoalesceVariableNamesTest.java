@@ -407,13 +407,16 @@ public class CoalesceVariableNamesTest extends CompilerTestCase {
                "var closure_var; function bar() { print(closure_var); }");
   }
 
-  public void testMaxVars() {
-    String code = "";
-    for (int i = 0;
-         i < LiveVariablesAnalysis.MAX_VARIABLES_TO_ANALYZE + 1; i++) {
-      code += String.format("var x%d = 0; print(x%d);", i, i);
+  public void testManyVars() {
+    StringBuilder code = new StringBuilder();
+    StringBuilder expected = new StringBuilder("var x0 = 0; print(x0);");
+    for (int i = 0; i < 1000; i++) {
+      code.append(String.format("var x%d = 0; print(x%d);", i, i));
+      if (i > 0) {
+        expected.append("x0 = 0; print(x0);");
+      }
     }
-    inFunction(code);
+    inFunction(code.toString(), expected.toString());
   }
 
   private void inFunction(String src) {
@@ -16,6 +16,8 @@
 
 package com.google.javascript.jscomp;
 
+import com.google.common.base.Joiner;
+import com.google.common.collect.Lists;
 import com.google.javascript.jscomp.CompilerOptions.LanguageMode;
 import com.google.javascript.rhino.InputId;
 import com.google.javascript.rhino.Node;
@@ -23,6 +25,9 @@ import com.google.javascript.rhino.Token;
 
 import junit.framework.TestCase;
 
+import java.io.StringWriter;
+import java.util.List;
+
 public class CodePrinterTest extends TestCase {
   static Node parse(String js) {
     return parse(js, false);
@@ -883,6 +888,32 @@ public class CodePrinterTest extends TestCase {
             CodePrinter.DEFAULT_LINE_LENGTH_THRESHOLD, true));
   }
 
+  public void testStreamedOutput() {
+    String js = "var a = 1; function f() { return a + 2; } " +
+        "if (a) { f(); } else { a = 'a long string'; } f(); f(); f();";
+    for (boolean prettyPrint : new boolean[] {false, true}) {
+      CodePrinter.Builder builder = new CodePrinter.Builder(parse(js))
+          .setPrettyPrint(prettyPrint).setLineBreak(true)
+          .setLineLengthThreshold(10);
+      final List<String> lines = Lists.newArrayList();
+      builder.build(new StringWriter() {
+        @Override
+        public StringWriter append(CharSequence csq, int start, int end) {
+          lines.add(csq.subSequence(start, end).toString());
+          return this;
+        }
+      });
+
+      // The code is written a complete line at a time.
+      for (String line : lines.subList(0, lines.size() - 1)) {
+        assertTrue(line, line.endsWith("\n"));
+        assertEquals(line, 1, line.split("\n").length);
+      }
+      assertEquals(builder.build(), Joiner.on("").join(lines));
+      assertTrue(lines.size() > 2);
+    }
+  }
+
   public void testSubtraction() {
     Compiler compiler = new Compiler();
     Node n = compiler.parseTestCode("x - -4");
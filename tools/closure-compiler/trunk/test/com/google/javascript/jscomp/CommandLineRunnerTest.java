@@ -16,6 +16,7 @@
 
 package com.google.javascript.jscomp;
 
+import com.google.common.base.Charsets;
 import com.google.common.base.Function;
 import com.google.common.base.Joiner;
 import com.google.common.base.Preconditions;
@@ -23,15 +24,19 @@ import com.google.common.base.Supplier;
 import com.google.common.base.Suppliers;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
+import com.google.common.io.Files;
 import com.google.javascript.jscomp.AbstractCommandLineRunner.FlagUsageException;
 import com.google.javascript.jscomp.CompilerOptions.LanguageMode;
 import com.google.javascript.rhino.Node;
 
 import junit.framework.TestCase;
 
+import java.io.BufferedReader;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.io.StringReader;
 import java.util.List;
 
 /**
@@ -441,6 +446,95 @@ public class CommandLineRunnerTest extends TestCase {
             new String[] {"function f() {}"}).shouldRunCompiler());
   }
 
+  public void testFunctionPassThreads() {
+    args.add("--function_pass_threads=3");
+    test("function f(a) { var b = a; if (b) { return 1 + 2; } return 0; }",
+         "function f(a) { return a ? 3 : 0; }");
+  }
+
+  public void testFunctionPassThreadsMustBePositive() {
+    args.add("--function_pass_threads=0");
+    assertFalse(
+        createCommandLineRunner(
+            new String[] {"function f() {}"}).shouldRunCompiler());
+  }
+
+  public void testParseThreads() {
+    args.add("--parse_threads=3");
+    test(new String[] {
+           "var a = 1;",
+           "/** @externs */ function f() {}",
+           "var b = a + 1;",
+           "var c = b;"
+         },
+         new String[] {
+           "var a = 1;",
+           "var b = a + 1;",
+           "var c = b;"
+         });
+    assertEquals(2, lastCompiler.getExternsForTesting().size());
+  }
+
+  public void testParseThreadsMustBePositive() {
+    args.add("--parse_threads=0");
+    assertFalse(
+        createCommandLineRunner(
+            new String[] {"function f() {}"}).shouldRunCompiler());
+  }
+
+  public void testCodeGenerationThreads() {
+    args.add("--code_generation_threads=3");
+    test(new String[] {
+           "var a = 1;",
+           "var b = a + 1;",
+           "var c = b;"
+         },
+         new String[] {
+           "var a = 1;",
+           "var b = a + 1;",
+           "var c = b;"
+         });
+    assertEquals("var a=1;var b=a+1;var c=b;", lastCompiler.toSource());
+  }
+
+  public void testCodeGenerationThreadsMustBePositive() {
+    args.add("--code_generation_threads=0");
+    assertFalse(
+        createCommandLineRunner(
+            new String[] {"function f() {}"}).shouldRunCompiler());
+  }
+
+  public void testAstCacheMaxMbMustBePositive() {
+    args.add("--ast_cache_max_mb=0");
+    assertFalse(
+        createCommandLineRunner(
+            new String[] {"function f() {}"}).shouldRunCompiler());
+  }
+
+  public void testWatchCannotBeUsedWithServer() {
+    args.add("--watch");
+    args.add("--server");
+    assertFalse(
+        createCommandLineRunner(
+            new String[] {"function f() {}"}).shouldRunServer());
+  }
+
+  public void testJobThreadsMustBePositive() {
+    args.add("--job_manifest=jobs.txt");
+    args.add("--job_threads=0");
+    assertFalse(
+        createCommandLineRunner(
+            new String[] {"function f() {}"}).shouldRunJobManifest());
+  }
+
+  public void testJobManifestCannotBeUsedWithServer() {
+    args.add("--job_manifest=jobs.txt");
+    args.add("--server");
+    assertFalse(
+        createCommandLineRunner(
+            new String[] {"function f() {}"}).shouldRunCompiler());
+  }
+
   public void testExternsLifting1() throws Exception{
     String code = "/** @externs */ function f() {}";
     test(new String[] {code},
@@ -862,6 +956,73 @@ public class CommandLineRunnerTest extends TestCase {
       "Manifest files cannot be generated when the input is from stdin.");
   }
 
+  public void testServer() throws Exception {
+    File dir = Files.createTempDir();
+    File externsFile = new File(dir, "externs.js");
+    Files.write("var console;", externsFile, Charsets.UTF_8);
+    File input = new File(dir, "input.js");
+    Files.write("var x = 1 + 2; console.log(x);", input, Charsets.UTF_8);
+    File output = new File(dir, "output.js");
+    String job = "--use_only_custom_externs --externs " + externsFile
+        + " --js " + input + " --js_output_file " + output;
+
+    CommandLineRunner server = new CommandLineRunner(
+        new String[] {"--server"},
+        new PrintStream(outReader), new PrintStream(errReader));
+    assertTrue(server.shouldRunServer());
+    server.serve(new BufferedReader(new StringReader(
+        job + "\n\n" + job + "\n--js " + input + "\n")),
+        new PrintStream(outReader));
+
+    assertEquals("0\n0\n-1\n", new String(outReader.toByteArray()));
+    assertEquals("var x=3;console.log(x);\n",
+        Files.toString(output, Charsets.UTF_8));
+    assertEquals(1, server.getServerAstCacheForTesting().size());
+  }
+
+  public void testRunJobs() throws Exception {
+    File dir = Files.createTempDir();
+    File externsFile = new File(dir, "externs.js");
+    Files.write("var console;", externsFile, Charsets.UTF_8);
+    List<String[]> jobs = Lists.newArrayList();
+    for (int i = 0; i < 4; i++) {
+      File input = new File(dir, "input" + i + ".js");
+      Files.write("var x = 1 + " + i + "; console.log(x);", input,
+          Charsets.UTF_8);
+      jobs.add(new String[] {
+          "--use_only_custom_externs", "--externs", externsFile.toString(),
+          "--js", input.toString(),
+          "--js_output_file", new File(dir, "output" + i + ".js").toString()});
+    }
+    jobs.add(new String[] {"--js", new File(dir, "input0.js").toString()});
+    jobs.add(new String[] {"--jscomp_error=checkVars",
+        "--use_only_custom_externs", "--externs", externsFile.toString(),
+        "--js", new File(dir, "input0.js").toString(),
+        "--js", new File(dir, "input1.js").toString(),
+        "--js_output_file", new File(dir, "output.js").toString()});
+
+    CommandLineRunner runner = new CommandLineRunner(
+        new String[] {"--job_manifest=jobs.txt"},
+        new PrintStream(outReader), new PrintStream(errReader));
+    assertTrue(runner.shouldRunJobManifest());
+    assertEquals(ImmutableList.of(0, 0, 0, 0, -1, 1),
+        runner.runJobs(jobs, 3));
+
+    for (int i = 0; i < 4; i++) {
+      assertEquals("var x=" + (i + 1) + ";console.log(x);\n",
+          Files.toString(new File(dir, "output" + i + ".js"), Charsets.UTF_8));
+    }
+    assertEquals(1, runner.getServerAstCacheForTesting().size());
+
+    // Only the jobs that failed report anything, in the order of the jobs.
+    String errors = new String(errReader.toByteArray());
+    assertTrue(errors, errors.startsWith("Job 5:\nERROR - "));
+    int job6 = errors.indexOf("Job 6:\n");
+    assertTrue(errors, job6 > 0);
+    assertTrue(errors,
+        errors.indexOf("ERROR - Variable x first declared in", job6) > 0);
+  }
+
   /* Helper functions */
 
   private void testSame(String original) {
@@ -16,10 +16,13 @@
 
 package com.google.javascript.jscomp;
 
+import com.google.javascript.rhino.InputId;
 import com.google.javascript.rhino.Node;
 
 import junit.framework.TestCase;
 
+import java.util.Arrays;
+
 /**
  * @author johnlenz@google.com (John Lenz)
  */
@@ -102,4 +105,190 @@ public class CompilerTest extends TestCase {
         "(function (undefined) { alert(undefined); })();");
     compiler.compile(externs, input, options);
   }
+
+  public void testReplaceScript() {
+    CompilerOptions options = new CompilerOptions();
+    WarningLevel.VERBOSE.setOptionsForWarningLevel(options);
+    options.ideMode = true;
+    Compiler compiler = new Compiler();
+    compiler.setErrorManager(new SilentErrorManager());
+    compiler.compile(
+        new JSSourceFile[] {JSSourceFile.fromCode("externs.js", "")},
+        new JSSourceFile[] {
+            JSSourceFile.fromCode("a.js", "/** @type {number} */ var x = 1;"),
+            JSSourceFile.fromCode("b.js", "x = 2;")},
+        options);
+    assertEquals(0, compiler.getErrorCount());
+
+    compiler.setErrorManager(new SilentErrorManager());
+    Result result = compiler.replaceScript(
+        new JsAst(JSSourceFile.fromCode("b.js", "y = 2;")));
+    assertEquals(1, result.errors.length);
+    assertEquals(VarCheck.UNDEFINED_VAR_ERROR, result.errors[0].getType());
+    assertEquals("y=2", compiler.toSource(
+        compiler.getInput(new InputId("b.js")).getAstRoot(compiler)));
+
+    compiler.setErrorManager(new SilentErrorManager());
+    result = compiler.replaceScript(
+        new JsAst(JSSourceFile.fromCode("b.js", "x = 3;")));
+    assertEquals(0, result.errors.length);
+  }
+
+  public void testReplaceScriptKeepsTheTypesOfOtherScripts() {
+    CompilerOptions options = new CompilerOptions();
+    WarningLevel.VERBOSE.setOptionsForWarningLevel(options);
+    options.ideMode = true;
+    Compiler compiler = new Compiler();
+    compiler.setErrorManager(new SilentErrorManager());
+    compiler.compile(
+        new JSSourceFile[] {JSSourceFile.fromCode("externs.js", "")},
+        new JSSourceFile[] {
+            JSSourceFile.fromCode("a.js",
+                "/** @constructor */ function Foo() {}\n"
+                + "/** @return {number} */\n"
+                + "Foo.prototype.size = function() { return 1; };"),
+            JSSourceFile.fromCode("b.js",
+                "function f() { /** @type {number} */ var n = "
+                + "new Foo().size(); return n; }")},
+        options);
+    assertEquals(0, compiler.getErrorCount());
+    assertEquals(0, compiler.getWarningCount());
+    Node oldRoot = compiler.getInput(new InputId("b.js")).getAstRoot(compiler);
+
+    compiler.setErrorManager(new SilentErrorManager());
+    Result result = compiler.replaceScript(new JsAst(JSSourceFile.fromCode(
+        "b.js",
+        "function f() { /** @type {string} */ var s = "
+        + "new Foo().size(); return s; }")));
+    assertEquals(0, result.errors.length);
+    assertEquals(1, result.warnings.length);
+    assertEquals(
+        TypeValidator.TYPE_MISMATCH_WARNING, result.warnings[0].getType());
+
+    // The scopes of the replaced script are not kept around.
+    for (Scope scope :
+         compiler.getTypedScopeCreator().getAllMemoizedScopes()) {
+      Node root = scope.getRootNode();
+      while (root.getParent() != null) {
+        root = root.getParent();
+      }
+      assertNotSame(oldRoot, root);
+    }
+  }
+
+  public void testToSourceWritesTheSameCode() throws Exception {
+    CompilerOptions options = new CompilerOptions();
+    options.printInputDelimiter = true;
+    options.sourceMapOutputPath = "out.map";
+    Compiler compiler = new Compiler();
+    compiler.compile(
+        new JSSourceFile[] {JSSourceFile.fromCode("externs.js", "")},
+        new JSSourceFile[] {
+            JSSourceFile.fromCode("a.js", "var a = 1;\nfunction f() {}"),
+            JSSourceFile.fromCode("b.js", "f(a)")},
+        options);
+
+    String code = compiler.toSource();
+    StringBuilder map = new StringBuilder();
+    compiler.getSourceMap().appendTo(map, "out.js");
+
+    compiler.getSourceMap().reset();
+    StringBuilder out = new StringBuilder();
+    compiler.toSource(out);
+    StringBuilder streamedMap = new StringBuilder();
+    compiler.getSourceMap().appendTo(streamedMap, "out.js");
+
+    assertEquals("// Input 0\nvar a=1;function f(){};\n// Input 1\nf(a);",
+        code);
+    assertEquals(code, out.toString());
+    assertEquals(map.toString(), streamedMap.toString());
+  }
+
+  public void testCodeGenerationThreadsPrintTheSameCode() throws Exception {
+    Compiler serial = compileForCodeGeneration(1);
+    Compiler parallel = compileForCodeGeneration(3);
+
+    assertEquals(serial.toSource(), parallel.toSource());
+    StringBuilder map = new StringBuilder();
+    serial.getSourceMap().appendTo(map, "out.js");
+    StringBuilder parallelMap = new StringBuilder();
+    parallel.getSourceMap().appendTo(parallelMap, "out.js");
+    assertEquals(map.toString(), parallelMap.toString());
+
+    serial.getSourceMap().reset();
+    parallel.getSourceMap().reset();
+    assertEquals(Arrays.asList(serial.toSourceArray()),
+        Arrays.asList(parallel.toSourceArray()));
+  }
+
+  private static Compiler compileForCodeGeneration(int threads) {
+    CompilerOptions options = new CompilerOptions();
+    options.printInputDelimiter = true;
+    options.prettyPrint = true;
+    options.sourceMapOutputPath = "out.map";
+    options.setCodeGenerationThreads(threads);
+    JSSourceFile[] inputs = new JSSourceFile[10];
+    for (int i = 0; i < inputs.length; i++) {
+      inputs[i] = JSSourceFile.fromCode("in" + i + ".js",
+          "/** @license l" + i + " */\n" +
+          "var a" + i + " = 1;\nfunction f" + i + "(x) {\n  return x + a" +
+          i + ";\n}\nf" + i + "(" + i + ")");
+    }
+    Compiler compiler = new Compiler();
+    Result result = compiler.compile(
+        new JSSourceFile[] {JSSourceFile.fromCode("externs.js", "")},
+        inputs, options);
+    assertTrue(result.success);
+    return compiler;
+  }
+
+  public void testDeepBinaryOperatorChain() throws Exception {
+    StringBuilder chain = new StringBuilder("a");
+    for (int i = 1; i < 20000; i++) {
+      chain.append("+a");
+    }
+    final String code = "var a=window.a;window.x=" + chain + ";";
+    final String[] output = new String[1];
+    final Throwable[] error = new Throwable[1];
+
+    // Parse and print on a thread with a small stack, rather than on the
+    // large-stack compiler thread.
+    Thread thread = new Thread(null, new Runnable() {
+      @Override
+      public void run() {
+        try {
+          CompilerOptions options = new CompilerOptions();
+          CompilationLevel.WHITESPACE_ONLY.setOptionsForCompilationLevel(
+              options);
+          Compiler compiler = new Compiler();
+          compiler.disableThreads();
+          Result result = compiler.compile(
+              JSSourceFile.fromCode("externs.js", "var window;"),
+              JSSourceFile.fromCode("in.js", code),
+              options);
+          assertTrue(result.success);
+          output[0] = compiler.toSource();
+        } catch (Throwable e) {
+          error[0] = e;
+        }
+      }
+    }, "deep", 256 * 1024);
+    thread.start();
+    thread.join();
+
+    if (error[0] != null) {
+      throw new AssertionError(error[0]);
+    }
+    // The printer breaks the long line after the first statement.
+    assertEquals(code, output[0].replace("\n", ""));
+  }
+
+  /** Keeps the errors, without printing them. */
+  private static class SilentErrorManager extends BasicErrorManager {
+    @Override
+    public void println(CheckLevel level, JSError error) {}
+
+    @Override
+    protected void printSummary() {}
+  }
 }
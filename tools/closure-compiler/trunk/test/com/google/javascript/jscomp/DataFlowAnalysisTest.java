@@ -770,6 +770,34 @@ public class DataFlowAnalysisTest extends TestCase {
     }
   }
 
+  public void testReversePostorderWithoutComparator() {
+    // a0 = 1; a1 = a0; a2 = a1; ...
+    final int LENGTH = 10;
+    Variable[] vars = new Variable[LENGTH];
+    Instruction[] insts = new Instruction[LENGTH];
+    vars[0] = new Variable("a0");
+    insts[0] = newAssignNumberToVariableInstruction(vars[0], 1);
+    for (int i = 1; i < LENGTH; i++) {
+      vars[i] = new Variable("a" + i);
+      insts[i] = newAssignVariableToVariableInstruction(vars[i], vars[i - 1]);
+    }
+    ControlFlowGraph<Instruction> cfg =
+      new ControlFlowGraph<Instruction>(insts[0], true, true);
+    // The nodes are created against the flow, which the graph's order of
+    // nodes follows.
+    for (int i = LENGTH - 1; i >= 0; i--) {
+      cfg.createNode(insts[i]);
+    }
+    for (int i = 1; i < LENGTH; i++) {
+      cfg.connect(insts[i - 1], ControlFlowGraph.Branch.UNCOND, insts[i]);
+    }
+
+    // In reverse postorder, every node flows once.
+    DummyConstPropagation constProp = new DummyConstPropagation(cfg);
+    constProp.analyze(LENGTH - 1);
+    verifyOutHas(cfg.getNode(insts[LENGTH - 1]), vars[LENGTH - 1], 1);
+  }
+
   static void verifyInHas(GraphNode<Instruction, Branch> node, Variable var,
       Integer constant) {
     FlowState<ConstPropLatticeElement> fState = node.getAnnotation();
@@ -59,6 +59,16 @@ public class DeadAssignmentsEliminationTest extends CompilerTestCase {
     inFunction("var a; a=function f(){}");
   }
 
+  public void testManyVars() {
+    StringBuilder code = new StringBuilder();
+    StringBuilder expected = new StringBuilder();
+    for (int i = 0; i < 1000; i++) {
+      code.append(String.format("var a%d; a%d=1;", i, i));
+      expected.append(String.format("var a%d; 1;", i));
+    }
+    inFunction(code.toString(), expected.toString());
+  }
+
   public void testLoops() {
     inFunction("for(var a=0; a<10; a++) {}");
     inFunction("var x; for(var a=0; a<10; a++) {x=a}; a(x)");
@@ -0,0 +1,216 @@
+/*
+ * Copyright 2011 The Closure Compiler Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.javascript.jscomp;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Sets;
+import com.google.common.io.Files;
+import com.google.javascript.rhino.JSDocInfo;
+import com.google.javascript.rhino.Node;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Set;
+
+/**
+ * Tests for {@link DiskAstCache}.
+ *
+ */
+public class DiskAstCacheTest extends TestCase {
+
+  private static final String EXTERNS =
+      "/** @constructor */ function Element() {}" +
+      "/** @type {string} */ Element.prototype.id;" +
+      "/** @param {string} id\n @return {Element} */" +
+      "function getElementById(id) {}" +
+      "var window;";
+
+  private static final String JS =
+      "/** @fileoverview Tests.\n @suppress {visibility} */" +
+      "/** @constructor\n @extends {Element}\n @private */" +
+      "function Foo() {}" +
+      "/** @param {number} a\n @param {string=} opt_b\n @return {number} */" +
+      "Foo.prototype.bar = function(a, opt_b) { 'use strict'; return a; };" +
+      "/** @enum {string} */ var E = {A: 'a', 'B': 'b\\u00e9'};" +
+      "/** @typedef {Array.<?number>} */ var T;" +
+      "var x = 0.5 + -3 + 1e300 + 0x10 + 12;" +
+      "var f = function(/** number */ n) { return (n) / 2; };" +
+      "window.f = new Foo().bar(1, getElementById('a').id);";
+
+  private File dir;
+
+  @Override
+  public void setUp() {
+    dir = Files.createTempDir();
+  }
+
+  @Override
+  public void tearDown() throws IOException {
+    Files.deleteRecursively(dir);
+  }
+
+  public void testCacheHitGivesTheSameTree() throws IOException {
+    JSSourceFile file = JSSourceFile.fromCode("a.js", JS);
+    Node parsed = parse(newCache(), file);
+    assertEquals(1, countFiles());
+
+    JSSourceFile copy = JSSourceFile.fromCode("a.js", JS);
+    Node cached = parse(newCache(), copy);
+    assertNotSame(parsed, cached);
+    assertNull(parsed.checkTreeEquals(cached));
+    assertEquals(parsed.toStringTree(), cached.toStringTree());
+
+    // All the nodes of the cached tree belong to the new source file.
+    assertSame(copy, cached.getStaticSourceFile());
+    Node fn = cached.getFirstChild();
+    assertSame(copy, fn.getLastChild().getStaticSourceFile());
+
+    JSDocInfo info = fn.getJSDocInfo();
+    assertTrue(info.isConstructor());
+    assertEquals(JSDocInfo.Visibility.PRIVATE, info.getVisibility());
+    assertTrue(info.hasBaseType());
+    assertSame(fn, info.getAssociatedNode());
+  }
+
+  public void testCacheHitGivesTheSameOutput() throws IOException {
+    String expected = compile(null);
+    assertEquals(expected, compile(dir));
+    assertEquals(2, countFiles());
+
+    // This time, every tree comes from the disk.
+    assertEquals(expected, compile(dir));
+    assertEquals(2, countFiles());
+  }
+
+  public void testChangedCodeIsReparsed() throws IOException {
+    DiskAstCache cache = newCache();
+    parse(cache, JSSourceFile.fromCode("a.js", "var a = 1;"));
+    Node changed = parse(cache, JSSourceFile.fromCode("a.js", "var b = 1;"));
+    assertEquals(2, countFiles());
+    assertEquals("b", changed.getFirstChild().getFirstChild().getString());
+  }
+
+  public void testUnreadableFilesAreIgnored() throws IOException {
+    parse(newCache(), JSSourceFile.fromCode("a.js", "var a = 1;"));
+    File[] files = dir.listFiles();
+    assertEquals(1, files.length);
+    Files.write("garbage", files[0], Charsets.UTF_8);
+
+    Node root = parse(newCache(), JSSourceFile.fromCode("a.js", "var a = 1;"));
+    assertEquals("a", root.getFirstChild().getFirstChild().getString());
+
+    // The tree has been parsed and stored again.
+    assertEquals(1, countFiles());
+    assertFalse(Files.toString(files[0], Charsets.UTF_8).equals("garbage"));
+  }
+
+  public void testLeastRecentlyUsedFilesAreEvicted() throws IOException {
+    DiskAstCache cache = new DiskAstCache(dir, 1024, false);
+    // Files are used one second apart, in the order they are written.
+    long time = System.currentTimeMillis() - 100000;
+    Set<String> seen = Sets.newHashSet();
+    for (int i = 0; i < 20; i++) {
+      parse(cache, createFile(i));
+      for (File f : dir.listFiles()) {
+        if (seen.add(f.getName())) {
+          f.setLastModified(time + i * 1000);
+        }
+      }
+    }
+    int count = countFiles();
+    assertTrue(count > 1);
+    assertTrue(count < 20);
+
+    long bytes = 0;
+    for (File f : dir.listFiles()) {
+      bytes += f.length();
+    }
+    assertTrue(bytes <= 1024);
+
+    assertTrue(isCached(cache, createFile(19)));
+    assertFalse(isCached(cache, createFile(0)));
+  }
+
+  public void testTreesWithDocumentationAreNotCached() throws IOException {
+    Compiler compiler = new Compiler();
+    CompilerOptions options = new CompilerOptions();
+    options.ideMode = true;
+    compiler.initOptions(options);
+    compiler.setAstCache(newCache());
+    new JsAst(JSSourceFile.fromCode("a.js", "/** Docs. */ var a = 1;"))
+        .getAstRoot(compiler);
+    assertEquals(0, countFiles());
+  }
+
+  private DiskAstCache newCache() throws IOException {
+    return new DiskAstCache(dir, 1024 * 1024, false);
+  }
+
+  private int countFiles() {
+    return dir.listFiles().length;
+  }
+
+  private static JSSourceFile createFile(int i) {
+    return JSSourceFile.fromCode(i + ".js",
+        "var a" + i + " = 1; var b" + i + " = 2; var c" + i + " = 3;");
+  }
+
+  private static boolean isCached(DiskAstCache cache, JSSourceFile file)
+      throws IOException {
+    Compiler compiler = new Compiler();
+    compiler.initOptions(new CompilerOptions());
+    return cache.get(file, file.getCode(), compiler.getParserConfig()) != null;
+  }
+
+  private Node parse(AstCache cache, JSSourceFile file) {
+    Compiler compiler = new Compiler();
+    compiler.initOptions(new CompilerOptions());
+    compiler.setAstCache(cache);
+    Node root = new JsAst(file).getAstRoot(compiler);
+    assertNotNull(root);
+    assertEquals(0, compiler.getErrorCount());
+    return root;
+  }
+
+  /**
+   * @return The compiled code, followed by the warnings.
+   */
+  private String compile(File cacheDir) throws IOException {
+    CompilerOptions options = new CompilerOptions();
+    CompilationLevel.ADVANCED_OPTIMIZATIONS.setOptionsForCompilationLevel(
+        options);
+    WarningLevel.VERBOSE.setOptionsForWarningLevel(options);
+
+    Compiler compiler = new Compiler();
+    if (cacheDir != null) {
+      compiler.setAstCache(new DiskAstCache(cacheDir, 1024 * 1024, false));
+    }
+    compiler.compile(JSSourceFile.fromCode("externs.js", EXTERNS),
+        JSSourceFile.fromCode("input.js", JS), options);
+
+    StringBuilder sb = new StringBuilder(compiler.toSource());
+    for (JSError error : compiler.getErrors()) {
+      sb.append('\n').append(error);
+    }
+    for (JSError warning : compiler.getWarnings()) {
+      sb.append('\n').append(warning);
+    }
+    return sb.toString();
+  }
+}
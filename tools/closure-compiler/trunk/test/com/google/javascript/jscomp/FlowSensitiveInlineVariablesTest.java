@@ -60,6 +60,16 @@ public class FlowSensitiveInlineVariablesTest extends CompilerTestCase  {
     inline("var x = 1; x = x + 1", "var x; x = 1 + 1");
   }
 
+  public void testManyVars() {
+    StringBuilder input = new StringBuilder();
+    StringBuilder expected = new StringBuilder();
+    for (int i = 0; i < 1000; i++) {
+      input.append(String.format("var x%d = %d; print(x%d);", i, i, i));
+      expected.append(String.format("var x%d; print(%d);", i, i));
+    }
+    inline(input.toString(), expected.toString());
+  }
+
   public void testExported() {
     noInline("var _x = 1; print(_x)");
   }
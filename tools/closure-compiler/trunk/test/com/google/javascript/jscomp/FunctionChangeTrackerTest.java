@@ -0,0 +1,207 @@
+/*
+ * Copyright 2011 The Closure Compiler Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.javascript.jscomp;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.javascript.jscomp.ParallelFunctionPass.FunctionPass;
+import com.google.javascript.rhino.JSDocInfoBuilder;
+import com.google.javascript.rhino.Node;
+import com.google.javascript.rhino.Token;
+
+import junit.framework.TestCase;
+
+import java.util.List;
+
+/**
+ * Tests for {@link FunctionChangeTracker}.
+ *
+ */
+public class FunctionChangeTrackerTest extends TestCase {
+
+  private Compiler compiler;
+  private Node root;
+  private FunctionChangeTracker tracker;
+
+  // The code that the passes processed.
+  private final List<String> processed = Lists.newArrayList();
+
+  @Override
+  public void setUp() {
+    compiler = new Compiler();
+    compiler.initOptions(new CompilerOptions());
+    root = compiler.parseTestCode(
+        "function f() { a(); }" +
+        "var g = function() { b(function() { c(); }); };" +
+        "var x = 1;");
+    tracker = new FunctionChangeTracker(compiler, root);
+    compiler.addChangeHandler(tracker);
+  }
+
+  public void testFirstRunProcessesEverything() {
+    assertProcessed("p", "all");
+    assertProcessed("q", "all");
+  }
+
+  public void testNothingChanged() {
+    assertProcessed("p", "all");
+    assertProcessed("p");
+
+    // A change is reported, but nothing changed.
+    compiler.reportCodeChange();
+    assertProcessed("p");
+  }
+
+  public void testFunctionChanged() {
+    assertProcessed("p", "all");
+    getCall("a").setString("d");
+    compiler.reportCodeChange();
+    assertProcessed("p", "f");
+    assertProcessed("p");
+  }
+
+  public void testPropertyChanged() {
+    assertProcessed("p", "all");
+    getCall("a").getParent().putBooleanProp(Node.FREE_CALL, false);
+    compiler.reportCodeChange();
+    assertProcessed("p", "f");
+  }
+
+  public void testJSDocChanged() {
+    assertProcessed("p", "all");
+    JSDocInfoBuilder builder = new JSDocInfoBuilder(false);
+    builder.recordConstancy();
+    getCall("b").getParent().setJSDocInfo(builder.build(null));
+    compiler.reportCodeChange();
+    assertProcessed("p", "g");
+  }
+
+  public void testFunctionReferencesThis() {
+    assertProcessed("p", "all");
+    // The global code may fold a function that does not reference "this".
+    Node g = root.getFirstChild().getNext().getFirstChild().getFirstChild();
+    g.getLastChild().addChildToBack(
+        new Node(Token.EXPR_RESULT, new Node(Token.THIS)));
+    compiler.reportCodeChange();
+    assertProcessed("p", "g", "global");
+  }
+
+  public void testNestedFunctionChanged() {
+    assertProcessed("p", "all");
+    getCall("c").setString("d");
+    compiler.reportCodeChange();
+    assertProcessed("p", "g", "anonymous");
+  }
+
+  public void testGlobalCodeChanged() {
+    assertProcessed("p", "all");
+    Node one = root.getLastChild().getFirstChild().getFirstChild();
+    one.getParent().replaceChild(one, Node.newNumber(2));
+    compiler.reportCodeChange();
+    assertProcessed("p", "global");
+  }
+
+  public void testGlobalNamesChanged() {
+    assertProcessed("p", "all");
+    root.addChildToBack(
+        new Node(Token.VAR, Node.newString(Token.NAME, "y")));
+    compiler.reportCodeChange();
+    assertProcessed("p", "all");
+  }
+
+  public void testChangesSinceThePassLastRan() {
+    assertProcessed("p", "all");
+    assertProcessed("q", "all");
+    getCall("a").setString("d");
+    compiler.reportCodeChange();
+    assertProcessed("q", "f");
+    getCall("b").setString("e");
+    compiler.reportCodeChange();
+    assertProcessed("q", "g");
+    assertProcessed("p", "f", "g");
+  }
+
+  public void testOtherPassesAlwaysRun() {
+    final List<Node> roots = Lists.newArrayList();
+    CompilerPass pass = new CompilerPass() {
+      @Override
+      public void process(Node externs, Node root) {
+        roots.add(root);
+      }
+    };
+    tracker.process("p", pass, null);
+    tracker.process("p", pass, null);
+    assertEquals(ImmutableList.of(root, root), roots);
+  }
+
+  private void assertProcessed(String passName, String... expected) {
+    processed.clear();
+    tracker.process(passName, new RecordingPass(), null);
+    assertEquals(ImmutableList.copyOf(expected), processed);
+  }
+
+  /** Returns the callee of the call to the given name. */
+  private Node getCall(String name) {
+    return getCall(root, name);
+  }
+
+  private static Node getCall(Node n, String name) {
+    if (n.getType() == Token.CALL
+        && n.getFirstChild().getType() == Token.NAME
+        && n.getFirstChild().getString().equals(name)) {
+      return n.getFirstChild();
+    }
+    for (Node c = n.getFirstChild(); c != null; c = c.getNext()) {
+      Node call = getCall(c, name);
+      if (call != null) {
+        return call;
+      }
+    }
+    return null;
+  }
+
+  /** Records the code it processes. */
+  private class RecordingPass implements FunctionPass {
+    @Override
+    public void process(Node externs, Node root) {
+      processed.add("all");
+    }
+
+    @Override
+    public void processFunction(Node fn, Scope globalScope) {
+      processed.add("outer " + getName(fn));
+    }
+
+    @Override
+    public void processSingleFunction(Node fn, Scope globalScope) {
+      processed.add(getName(fn));
+    }
+
+    @Override
+    public void processGlobalCode(Node root, Scope globalScope) {
+      processed.add("global");
+    }
+
+    private String getName(Node fn) {
+      String name = fn.getFirstChild().getString();
+      if (name.isEmpty() && fn.getParent().getType() == Token.NAME) {
+        name = fn.getParent().getString();
+      }
+      return name.isEmpty() ? "anonymous" : name;
+    }
+  }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2011 The Closure Compiler Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.javascript.jscomp;
+
+import com.google.common.io.Files;
+import com.google.javascript.jscomp.Compiler.IntermediateState;
+import com.google.javascript.rhino.Node;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.StreamCorruptedException;
+
+/**
+ * Tests for {@link IntermediateStateSerializer}.
+ *
+ */
+public class IntermediateStateSerializerTest extends TestCase {
+
+  private static final String EXTERNS =
+      "/** @constructor */ function Element() {}" +
+      "/** @type {string} */ Element.prototype.id;" +
+      "/** @param {string} id\n @return {Element} */" +
+      "function getElementById(id) {}" +
+      "var window;";
+
+  private static final String[] JS = {
+      "/** @constructor */ function Foo() { this.x = 1; }" +
+      "/** @param {number} a\n @return {number} */" +
+      "Foo.prototype.bar = function(a) { return a + this.x; };" +
+      "/** @constructor */ function Bar() {}" +
+      "/** @return {string} */ Bar.prototype.bar = function() {" +
+      "  return getElementById('b').id; };",
+
+      "/** @enum {string} */ var E = {A: 'a', B: 'b'};" +
+      "function unused() { return E.A; }" +
+      "window.f = function() {" +
+      "  return new Foo().bar(2) + new Bar().bar() + E.B; };"
+  };
+
+  public void testSimpleOptimizations() throws IOException {
+    testSameOutput(CompilationLevel.SIMPLE_OPTIMIZATIONS);
+  }
+
+  public void testAdvancedOptimizations() throws IOException {
+    testSameOutput(CompilationLevel.ADVANCED_OPTIMIZATIONS);
+  }
+
+  public void testTypesAreShared() throws IOException {
+    Compiler compiler = check(CompilationLevel.ADVANCED_OPTIMIZATIONS);
+    IntermediateState state = read(write(compiler.getState()));
+
+    Node fn = state.jsRoot.getFirstChild().getFirstChild();
+    assertEquals("Foo", fn.getFirstChild().getString());
+    assertNotNull(fn.getJSType());
+    assertSame(state.typeRegistry.getType("Foo"),
+        fn.getJSType().toObjectType().getTypeOfThis());
+    assertSame(state.externsRoot.getParent(), state.jsRoot.getParent());
+
+    // The source file of every script is the one of its input.
+    CompilerInput input = state.inputs.get(0);
+    assertSame(input.getAstRoot(compiler), state.jsRoot.getFirstChild());
+    assertSame(input.getSourceFile(), fn.getStaticSourceFile());
+  }
+
+  public void testSmallerThanJavaSerialization() throws IOException {
+    IntermediateState state =
+        check(CompilationLevel.ADVANCED_OPTIMIZATIONS).getState();
+    ByteArrayOutputStream java = new ByteArrayOutputStream();
+    ObjectOutputStream out = new ObjectOutputStream(java);
+    out.writeObject(state);
+    out.close();
+    assertTrue(write(state).length < java.size());
+  }
+
+  public void testReadFromFile() throws IOException {
+    File dir = Files.createTempDir();
+    try {
+      File file = new File(dir, "state");
+      Files.write(write(check(CompilationLevel.SIMPLE_OPTIMIZATIONS)
+          .getState()), file);
+      assertEquals(optimize(CompilationLevel.SIMPLE_OPTIMIZATIONS, null),
+          optimize(CompilationLevel.SIMPLE_OPTIMIZATIONS,
+              IntermediateState.readFrom(file)));
+    } finally {
+      Files.deleteRecursively(dir);
+    }
+  }
+
+  public void testBadStream() throws IOException {
+    try {
+      read(new byte[] {1, 2, 3, 4, 5, 6, 7, 8});
+      fail();
+    } catch (StreamCorruptedException e) {
+      // expected
+    }
+  }
+
+  private void testSameOutput(CompilationLevel level) throws IOException {
+    byte[] bytes = write(check(level).getState());
+    String expected = optimize(level, null);
+    assertEquals(expected, optimize(level, read(bytes)));
+
+    // The same snapshot can be read more than once.
+    assertEquals(expected, optimize(level, read(bytes)));
+  }
+
+  private static byte[] write(IntermediateState state) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    state.writeTo(out);
+    return out.toByteArray();
+  }
+
+  private static IntermediateState read(byte[] bytes) throws IOException {
+    return IntermediateState.readFrom(new ByteArrayInputStream(bytes));
+  }
+
+  private static Compiler check(CompilationLevel level) {
+    Compiler compiler = init(level);
+    compiler.parse();
+    compiler.check();
+    assertEquals(0, compiler.getErrorCount());
+    return compiler;
+  }
+
+  /**
+   * Optimizes the inputs, from the given state or from scratch.
+   * @return The compiled code, followed by the errors and warnings.
+   */
+  private static String optimize(CompilationLevel level,
+      IntermediateState state) {
+    Compiler compiler;
+    if (state == null) {
+      compiler = check(level);
+    } else {
+      compiler = init(level);
+      compiler.setState(state);
+    }
+    compiler.optimize();
+
+    StringBuilder sb = new StringBuilder(compiler.toSource());
+    for (JSError error : compiler.getErrors()) {
+      sb.append('\n').append(error);
+    }
+    for (JSError warning : compiler.getWarnings()) {
+      sb.append('\n').append(warning);
+    }
+    return sb.toString();
+  }
+
+  private static Compiler init(CompilationLevel level) {
+    CompilerOptions options = new CompilerOptions();
+    level.setOptionsForCompilationLevel(options);
+    WarningLevel.VERBOSE.setOptionsForWarningLevel(options);
+
+    JSSourceFile[] inputs = new JSSourceFile[JS.length];
+    for (int i = 0; i < JS.length; i++) {
+      inputs[i] = JSSourceFile.fromCode("input" + i + ".js", JS[i]);
+    }
+    Compiler compiler = new Compiler();
+    compiler.init(
+        new JSSourceFile[] {JSSourceFile.fromCode("externs.js", EXTERNS)},
+        inputs, options);
+    return compiler;
+  }
+}
@@ -16,6 +16,7 @@
 
 package com.google.javascript.jscomp;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.javascript.jscomp.NodeTraversal.AbstractNodeTypePruningCallback;
 import com.google.javascript.rhino.Node;
@@ -192,6 +193,95 @@ public class NodeTraversalTest extends TestCase {
     callback.assertEntered();
   }
 
+  public void testTraversalOrder() {
+    Compiler compiler = new Compiler();
+    RecordingCallback callback = new RecordingCallback();
+    Node tree = parse(compiler,
+        "function f(a) { g(); } var h = function i() {};");
+    NodeTraversal.traverse(compiler, tree, callback);
+
+    // The name of a function declaration is in the enclosing scope, the name
+    // of a function expression in the function's scope.
+    assertEquals(ImmutableList.of(
+        "enter SCRIPT", "pre SCRIPT",
+        "pre FUNCTION f", "pre NAME f", "post NAME f", "enter FUNCTION f",
+        "pre LP", "pre NAME a", "post NAME a", "post LP",
+        "pre BLOCK", "pre EXPR_RESULT", "pre CALL", "pre NAME g",
+        "post NAME g", "post CALL", "post EXPR_RESULT", "post BLOCK",
+        "exit FUNCTION f", "post FUNCTION f",
+        "pre VAR", "pre NAME h", "pre FUNCTION i", "enter FUNCTION i",
+        "pre NAME i", "post NAME i", "pre LP", "post LP",
+        "pre BLOCK", "post BLOCK", "exit FUNCTION i", "post FUNCTION i",
+        "post NAME h", "post VAR",
+        "post SCRIPT", "exit SCRIPT"),
+        callback.events);
+  }
+
+  public void testTraverseDeepTree() throws Exception {
+    final Compiler compiler = new Compiler();
+    final Node root = new Node(Token.SCRIPT);
+    Node expr = Node.newString(Token.NAME, "a");
+    for (int i = 0; i < 100000; i++) {
+      expr = new Node(Token.ADD, expr, Node.newString(Token.NAME, "a"));
+    }
+    root.addChildToBack(new Node(Token.EXPR_RESULT, expr));
+
+    // A small stack, to check that the traversal does not recurse.
+    final int[] visited = new int[1];
+    Thread thread = new Thread(null, new Runnable() {
+      @Override
+      public void run() {
+        NodeTraversal.traverse(compiler, root,
+            new NodeTraversal.AbstractPostOrderCallback() {
+          @Override
+          public void visit(NodeTraversal t, Node n, Node parent) {
+            visited[0]++;
+          }
+        });
+      }
+    }, "small-stack", 64 * 1024);
+    thread.start();
+    thread.join();
+    assertEquals(2 * 100000 + 3, visited[0]);
+  }
+
+  /** Records the events of a traversal. */
+  private static class RecordingCallback implements
+      NodeTraversal.ScopedCallback {
+    private final List<String> events = new ArrayList<String>();
+
+    @Override
+    public void enterScope(NodeTraversal t) {
+      events.add("enter " + describe(t.getScopeRoot()));
+    }
+
+    @Override
+    public void exitScope(NodeTraversal t) {
+      events.add("exit " + describe(t.getScopeRoot()));
+    }
+
+    @Override
+    public boolean shouldTraverse(NodeTraversal t, Node n, Node parent) {
+      events.add("pre " + describe(n));
+      return true;
+    }
+
+    @Override
+    public void visit(NodeTraversal t, Node n, Node parent) {
+      events.add("post " + describe(n));
+    }
+
+    private static String describe(Node n) {
+      String name = Token.name(n.getType());
+      if (n.getType() == Token.NAME) {
+        return name + " " + n.getString();
+      } else if (n.getType() == Token.FUNCTION) {
+        return name + " " + n.getFirstChild().getString();
+      }
+      return name;
+    }
+  }
+
 
   // Helper class used to test getCurrentNode
   private static class ExpectNodeOnEnterScope implements
@@ -0,0 +1,213 @@
+/*
+ * Copyright 2011 The Closure Compiler Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.javascript.jscomp;
+
+import com.google.common.base.Supplier;
+import com.google.common.collect.Lists;
+import com.google.javascript.jscomp.NodeTraversal.AbstractPostOrderCallback;
+import com.google.javascript.jscomp.ParallelFunctionPass.FunctionPass;
+import com.google.javascript.rhino.Node;
+
+import junit.framework.TestCase;
+
+import java.util.List;
+
+/**
+ * Tests for {@link ParallelFunctionPass}.
+ *
+ */
+public class ParallelFunctionPassTest extends TestCase {
+
+  private static final DiagnosticType FUNCTION_SEEN =
+      DiagnosticType.warning("JSC_FUNCTION_SEEN", "function {0}");
+
+  private static final String EXTERNS = "var window; function alert(x) {}";
+
+  private Node root;
+
+  public void testFunctionDeclarations() {
+    testSameAsSerial(
+        "function f(a) { var b = a + 1; var c = b * 2; return c; }" +
+        "function g(a) { var x = 1; x = 2; if (a) { return x; } else {" +
+        "  return 3; } }" +
+        "window.f = f; window.g = g;");
+  }
+
+  public void testFunctionExpressions() {
+    testSameAsSerial(
+        "window.f = function(a) { var b = a; return b + 1; };" +
+        "window.g = function g(a) { g = 1; var c = 2; c = a; return c; };" +
+        "(function() { var x = 1 + 2; alert(x); })();");
+  }
+
+  public void testNestedFunctions() {
+    testSameAsSerial(
+        "function f(a) {" +
+        "  var b = a + 1;" +
+        "  function g(c) { var d = c + b; return d; }" +
+        "  var h = function(e) { var i = e; if (i) { return 1; } return 2; };" +
+        "  return g(b) + h(a);" +
+        "}" +
+        "window.f = f;");
+  }
+
+  public void testGlobalsReadInFunctions() {
+    testSameAsSerial(
+        "var x = 1;" +
+        "function f() { var y = x; x = 2; return y; }" +
+        "function g() { var y = x; window.alert(1); return y; }" +
+        "if (x) { x = 3; } else { x = 4; }" +
+        "window.f = f; window.g = g;");
+  }
+
+  public void testManyFunctions() {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 50; i++) {
+      sb.append("function f" + i + "(a, b) {" +
+          "  var c = a + " + i + "; var d = b;" +
+          "  for (var i = 0; i < c; i++) { d += i; }" +
+          "  if (d) { return d; } else { return c; }" +
+          "}" +
+          "window.f" + i + " = f" + i + ";" +
+          "var v" + i + " = 1 + " + i + ";");
+    }
+    testSameAsSerial(sb.toString());
+  }
+
+  public void testErrorsAreReportedOnTheWholeAst() {
+    final List<String> seen = Lists.newArrayList();
+    final Compiler compiler = new Compiler();
+    CompilerOptions options = new CompilerOptions();
+    options.addWarningsGuard(new WarningsGuard() {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      public CheckLevel level(JSError error) {
+        Node n = error.node;
+        while (n.getParent() != null) {
+          n = n.getParent();
+        }
+        seen.add(error.description + (n == root ? "" : " (detached)"));
+        return null;
+      }
+    });
+    compiler.initOptions(options);
+    root = compiler.parseTestCode(
+        "function f1() {} var f2 = function() {};" +
+        "function f3() { function f4() {} }");
+
+    new ParallelFunctionPass(compiler, new Supplier<FunctionPass>() {
+      @Override
+      public FunctionPass get() {
+        return new ReportFunctions(compiler);
+      }
+    }, 3).process(null, root);
+
+    assertEquals(
+        Lists.newArrayList("function f1", "function ", "function f4",
+            "function f3", "function global"),
+        seen);
+  }
+
+  public void testSingleFunctionSkipsNestedFunctions() {
+    final List<String> seen = Lists.newArrayList();
+    Compiler compiler = new Compiler();
+    CompilerOptions options = new CompilerOptions();
+    options.addWarningsGuard(new WarningsGuard() {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      public CheckLevel level(JSError error) {
+        seen.add(error.description);
+        return null;
+      }
+    });
+    compiler.initOptions(options);
+    root = compiler.parseTestCode(
+        "function f() { function g() { function h() {} } }");
+    Scope globalScope =
+        new SyntacticScopeCreator(compiler).createScope(root, null);
+
+    Node g = root.getFirstChild().getLastChild().getFirstChild();
+    new ReportFunctions(compiler).processSingleFunction(g, globalScope);
+    assertEquals(Lists.newArrayList("function g"), seen);
+  }
+
+  private void testSameAsSerial(String js) {
+    String expected = compile(js, 1);
+    for (int threads = 2; threads <= 4; threads++) {
+      assertEquals(expected, compile(js, threads));
+    }
+  }
+
+  private String compile(String js, int threads) {
+    CompilerOptions options = new CompilerOptions();
+    CompilationLevel.SIMPLE_OPTIMIZATIONS.setOptionsForCompilationLevel(
+        options);
+    options.flowSensitiveInlineVariables = true;
+    options.deadAssignmentElimination = true;
+    options.setFunctionPassThreads(threads);
+
+    Compiler compiler = new Compiler();
+    compiler.compile(JSSourceFile.fromCode("externs.js", EXTERNS),
+        JSSourceFile.fromCode("input.js", js), options);
+    assertEquals(0, compiler.getErrorCount());
+    return compiler.toSource();
+  }
+
+  /**
+   * Reports a warning for each function, and one for the global code.
+   */
+  private static class ReportFunctions extends AbstractPostOrderCallback
+      implements FunctionPass {
+    private final AbstractCompiler compiler;
+
+    ReportFunctions(AbstractCompiler compiler) {
+      this.compiler = compiler;
+    }
+
+    @Override
+    public void process(Node externs, Node root) {
+      NodeTraversal.traverse(compiler, root, this);
+    }
+
+    @Override
+    public void processFunction(Node fn, Scope globalScope) {
+      new NodeTraversal(compiler, this).traverseFunctionWithScope(
+          fn, globalScope);
+    }
+
+    @Override
+    public void processSingleFunction(Node fn, Scope globalScope) {
+      new NodeTraversal(compiler,
+          new ParallelFunctionPass.SingleFunctionCallback(fn, this))
+          .traverseFunctionWithScope(fn, globalScope);
+    }
+
+    @Override
+    public void processGlobalCode(Node root, Scope globalScope) {
+      compiler.report(JSError.make("", root, FUNCTION_SEEN, "global"));
+    }
+
+    @Override
+    public void visit(NodeTraversal t, Node n, Node parent) {
+      if (NodeUtil.isFunction(n)) {
+        t.report(n, FUNCTION_SEEN, n.getFirstChild().getString());
+      }
+    }
+  }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2011 The Closure Compiler Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.javascript.jscomp;
+
+import com.google.common.collect.Lists;
+import com.google.javascript.rhino.Node;
+
+import junit.framework.TestCase;
+
+import java.util.List;
+
+/**
+ * Tests for {@link ParallelParser}.
+ *
+ */
+public class ParallelParserTest extends TestCase {
+
+  private static final String EXTERNS = "var window;";
+
+  public void testManyInputs() {
+    String[] js = new String[40];
+    for (int i = 0; i < js.length; i++) {
+      js[i] = "/** @param {number} a */ function f" + i + "(a) {" +
+          "  var b = a + " + i + "; return b; }" +
+          "window.f" + i + " = f" + i + ";";
+    }
+    testSameAsSerial(js);
+  }
+
+  public void testErrorsAreReportedInInputOrder() {
+    testSameAsSerial(
+        "var a = 1;",
+        "var b = ;",
+        "/** @type {number */ var c;",
+        "var d = 1",
+        "var e = {a: 1, a: 2};",
+        "var f = ;");
+  }
+
+  public void testWarningsAreReportedInInputOrder() {
+    testSameAsSerial(
+        "/** @type {number */ var a;",
+        "/** @type {string */ var b;",
+        "/** @param {number} */ function c(x) {}",
+        "var d = 1;");
+  }
+
+  public void testExternsInInputs() {
+    testSameAsSerial(
+        "var a = 1;",
+        "/** @externs */ var b;",
+        "/** @nocompile */ var c = 1;",
+        "var d = b;");
+  }
+
+  public void testParsedTreesAreReused() {
+    Compiler compiler = new Compiler();
+    compiler.initOptions(new CompilerOptions());
+    List<CompilerInput> inputs = Lists.newArrayList(
+        new CompilerInput(JSSourceFile.fromCode("a.js", "var a;")),
+        new CompilerInput(JSSourceFile.fromCode("b.js", "var b = ;")));
+
+    List<ParallelCompilerPass.Result> results =
+        new ParallelParser(compiler, 2).parse(inputs);
+
+    // Nothing is reported until the results are replayed.
+    assertEquals(0, compiler.getErrorCount());
+    assertEquals(2, results.size());
+    assertTrue(results.get(0).errors.isEmpty());
+    assertEquals(1, results.get(1).errors.size());
+
+    // The broken input has been replaced by an empty script.
+    Node root = inputs.get(1).getAstRoot(compiler);
+    assertFalse(root.hasChildren());
+    assertEquals(0, compiler.getErrorCount());
+  }
+
+  private void testSameAsSerial(String... js) {
+    String expected = compile(js, 1);
+    for (int threads = 2; threads <= 4; threads++) {
+      assertEquals(expected, compile(js, threads));
+    }
+  }
+
+  /**
+   * @return The compiled code, followed by the errors and warnings. When
+   *     there are errors, there is no code: the inputs after the first
+   *     broken one are only fully parsed when parsing in parallel.
+   */
+  private String compile(String[] js, int threads) {
+    CompilerOptions options = new CompilerOptions();
+    CompilationLevel.SIMPLE_OPTIMIZATIONS.setOptionsForCompilationLevel(
+        options);
+    WarningLevel.VERBOSE.setOptionsForWarningLevel(options);
+    options.setParseThreads(threads);
+
+    JSSourceFile[] inputs = new JSSourceFile[js.length];
+    for (int i = 0; i < js.length; i++) {
+      inputs[i] = JSSourceFile.fromCode("input" + i + ".js", js[i]);
+    }
+
+    Compiler compiler = new Compiler();
+    compiler.compile(
+        new JSSourceFile[] {JSSourceFile.fromCode("externs.js", EXTERNS)},
+        inputs, options);
+
+    StringBuilder sb = new StringBuilder();
+    if (compiler.getErrorCount() == 0) {
+      sb.append(compiler.toSource());
+    }
+    for (JSError error : compiler.getErrors()) {
+      sb.append('\n').append(error);
+    }
+    for (JSError warning : compiler.getWarnings()) {
+      sb.append('\n').append(warning);
+    }
+    return sb.toString();
+  }
+}
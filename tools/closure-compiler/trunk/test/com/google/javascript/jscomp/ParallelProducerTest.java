@@ -0,0 +1,85 @@
+/*
+ * Copyright 2011 The Closure Compiler Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.javascript.jscomp;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for {@link ParallelProducer}.
+ *
+ */
+public class ParallelProducerTest extends TestCase {
+
+  public void testValuesAreTakenInOrder() {
+    ParallelProducer<String> producer = new Squares(3);
+    producer.start(100);
+    try {
+      for (int i = 0; i < 100; i++) {
+        assertEquals(String.valueOf(i * i), producer.take());
+      }
+    } finally {
+      producer.stop();
+    }
+  }
+
+  public void testStopBeforeAllValuesAreTaken() {
+    ParallelProducer<String> producer = new Squares(2);
+    producer.start(1000);
+    assertEquals("0", producer.take());
+    assertEquals("1", producer.take());
+    producer.stop();
+
+    // The producer can be started again.
+    producer.start(3);
+    assertEquals("0", producer.take());
+    producer.stop();
+  }
+
+  public void testErrorIsRethrown() {
+    ParallelProducer<String> producer = new Squares(2) {
+      @Override
+      String produce(int index) {
+        if (index == 5) {
+          throw new IllegalStateException("five");
+        }
+        return super.produce(index);
+      }
+    };
+    producer.start(10);
+    try {
+      for (int i = 0; i < 10; i++) {
+        producer.take();
+      }
+      fail("Expected the error of the worker");
+    } catch (IllegalStateException e) {
+      assertEquals("five", e.getMessage());
+    } finally {
+      producer.stop();
+    }
+  }
+
+  private static class Squares extends ParallelProducer<String> {
+    Squares(int numWorkers) {
+      super(numWorkers, 2, "squares");
+    }
+
+    @Override
+    String produce(int index) {
+      return String.valueOf(index * index);
+    }
+  }
+}
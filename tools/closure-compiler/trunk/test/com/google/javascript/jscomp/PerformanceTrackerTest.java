@@ -0,0 +1,146 @@
+/*
+ * Copyright 2011 The Closure Compiler Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.javascript.jscomp;
+
+import com.google.common.collect.ImmutableList;
+import com.google.javascript.jscomp.CompilerOptions.TracerMode;
+import com.google.javascript.rhino.Node;
+import com.google.javascript.rhino.Token;
+
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Tests for {@link PerformanceTracker}.
+ *
+ */
+public class PerformanceTrackerTest extends TestCase {
+
+  private static final String CODE =
+      "function f(a) { var b = 1 + 2; return a + b; }" +
+      "if (false) { f(1); } alert(f(2));";
+
+  public void testNodeCountRecord() {
+    Compiler compiler = compile();
+    PerformanceTracker tracker = compiler.tracker;
+
+    // The deltas add up to the nodes of the output, less the root.
+    int total = 0;
+    for (int delta : tracker.getNodeCountRecord().values()) {
+      total += delta;
+    }
+    assertEquals(countNodes(compiler.jsRoot) - 1, total);
+    assertTrue(tracker.getNodeCountRecord().get("parseInputs") > 0);
+    assertTrue(tracker.getNodeCountRecord().get("peepholeOptimizations") < 0);
+  }
+
+  public void testRecordsTheSamePasses() {
+    PerformanceTracker tracker = compile().tracker;
+    assertEquals(tracker.getRuntimeRecord().keySet(),
+        tracker.getAllocationRecord().keySet());
+    assertEquals(tracker.getRuntimeRecord().keySet(),
+        tracker.getNodeCountRecord().keySet());
+  }
+
+  public void testLoopIterationRecord() {
+    ImmutableList<Integer> iterations =
+        compile().tracker.getLoopIterationRecord();
+    assertFalse(iterations.isEmpty());
+    for (int count : iterations) {
+      assertTrue(count > 0);
+    }
+  }
+
+  public void testJsonReport() throws IOException {
+    PerformanceTracker tracker = compile().tracker;
+    StringBuilder sb = new StringBuilder();
+    tracker.writeJsonReport(sb);
+    String report = sb.toString();
+
+    assertTrue(report.startsWith("{\n  \"totalTimeMs\": "));
+    assertTrue(report.endsWith("\n  ]\n}\n"));
+    for (Map.Entry<String, Integer> entry :
+             tracker.getNodeCountRecord().entrySet()) {
+      String name = "{\"name\": \"" + entry.getKey() + "\", \"runs\": ";
+      assertTrue(name, report.contains(name));
+      assertTrue(report.contains("\"nodeDelta\": " + entry.getValue() + ","));
+    }
+    assertTrue(report.contains(
+        "{\"passes\": [\"peepholeOptimizations\"], \"iterations\": 1}"));
+  }
+
+  public void testJsonReportEscapesNames() throws IOException {
+    PerformanceTracker tracker =
+        new PerformanceTracker(new Node(Token.BLOCK), false);
+    tracker.recordPassStart("a\"b");
+    tracker.recordPassStop("a\"b", 3);
+    StringBuilder sb = new StringBuilder();
+    tracker.writeJsonReport(sb);
+    assertTrue(sb.toString().contains(
+        "{\"name\": \"a\\\"b\", \"runs\": 1, \"changes\": 0, \"timeMs\": 3, "));
+  }
+
+  public void testCodeSizeRecord() {
+    Node script = new Compiler().parse(JSSourceFile.fromCode("input.js",
+        "var a = 1 + 2; function f() { return 'long string'; } f(a);"));
+    PerformanceTracker tracker =
+        new PerformanceTracker(new Node(Token.BLOCK, script), true);
+    tracker.recordPassStart("parse");
+    tracker.getCodeChangeHandler().reportChange();
+    tracker.recordPassStop("parse", 0);
+
+    Node add = script.getFirstChild().getFirstChild().getFirstChild();
+    add.getParent().replaceChild(add, Node.newNumber(3));
+    tracker.recordPassStart("fold");
+    tracker.getCodeChangeHandler().reportChange();
+    tracker.recordPassStop("fold", 0);
+
+    Node string = script.getFirstChild().getNext().getLastChild()
+        .getFirstChild().getFirstChild();
+    string.setString("s");
+    tracker.recordPassStart("shorten");
+    tracker.getCodeChangeHandler().reportChange();
+    tracker.recordPassStop("shorten", 0);
+
+    assertEquals(2, tracker.getCodeSizeRecord().get("fold").intValue());
+    assertEquals(10, tracker.getCodeSizeRecord().get("shorten").intValue());
+    assertTrue(tracker.getZippedCodeSizeRecord().get("shorten") > 0);
+  }
+
+  private static Compiler compile() {
+    CompilerOptions options = new CompilerOptions();
+    CompilationLevel.SIMPLE_OPTIMIZATIONS
+        .setOptionsForCompilationLevel(options);
+    options.tracer = TracerMode.FAST;
+    Compiler compiler = new Compiler();
+    Result result = compiler.compile(
+        JSSourceFile.fromCode("externs.js", "function alert(x) {}"),
+        JSSourceFile.fromCode("input.js", CODE), options);
+    assertTrue(result.success);
+    return compiler;
+  }
+
+  private static int countNodes(Node n) {
+    int count = 1;
+    for (Node c = n.getFirstChild(); c != null; c = c.getNext()) {
+      count += countNodes(c);
+    }
+    return count;
+  }
+}
@@ -41,7 +41,7 @@ public class SemanticReverseAbstractInterpreterTest
   public FlowScope newScope() {
     Scope globalScope = new Scope(new Node(Token.EMPTY), compiler);
     functionScope = new Scope(globalScope, new Node(Token.EMPTY));
-    return LinkedFlowScope.createEntryLattice(functionScope);
+    return PersistentFlowScope.createEntryLattice(functionScope);
   }
 
   /**
@@ -560,7 +560,7 @@ public class SemanticReverseAbstractInterpreterTest
   private Node createVar(FlowScope scope, String name, JSType type) {
     Node n = Node.newString(Token.NAME, name);
     functionScope.declare(name, n, null, null);
-    ((LinkedFlowScope) scope).inferSlotType(name, type);
+    ((PersistentFlowScope) scope).inferSlotType(name, type);
     n.setJSType(type);
     return n;
   }
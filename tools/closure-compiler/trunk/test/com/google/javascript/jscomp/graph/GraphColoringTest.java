@@ -27,6 +27,7 @@ import com.google.javascript.jscomp.graph.GraphColoring.GreedyGraphColoring;
 import junit.framework.TestCase;
 
 import java.util.Comparator;
+import java.util.Random;
 
 /**
  * Tests for {@link GraphColoring}.
@@ -191,6 +192,45 @@ public class GraphColoringTest extends TestCase {
     assertFalse("A".equals(coloring.getPartitionSuperNode("C")));
   }
 
+  public void testInterferenceGraphColorsLikeLinkedGraph() {
+    final int count = 60;
+    Graph<Integer, Void> linked = LinkedUndirectedGraph.create();
+    InterferenceGraph<Integer> dense = new InterferenceGraph<Integer>(count);
+    for (int i = 0; i < count; i++) {
+      linked.createNode(i);
+      dense.createNode(i, i);
+    }
+    Random random = new Random(42);
+    for (int i = 0; i < count * 4; i++) {
+      int a = random.nextInt(count);
+      int b = random.nextInt(count);
+      if (a != b) {
+        linked.connectIfNotFound(a, null, b);
+        dense.connect(a, b);
+      }
+    }
+
+    Comparator<Integer> byValue = new Comparator<Integer>() {
+      @Override
+      public int compare(Integer o1, Integer o2) {
+        return o1 - o2;
+      }
+    };
+    GraphColoring<Integer, Void> linkedColoring =
+        new GreedyGraphColoring<Integer, Void>(linked, byValue);
+    GraphColoring<Integer, Void> denseColoring =
+        new GreedyGraphColoring<Integer, Void>(dense, byValue);
+    assertEquals(linkedColoring.color(), denseColoring.color());
+    validateColoring(linked);
+    for (int i = 0; i < count; i++) {
+      Color linkedColor = linked.getNode(i).getAnnotation();
+      Color denseColor = dense.getNode(i).getAnnotation();
+      assertEquals(linkedColor, denseColor);
+      assertEquals(linkedColoring.getPartitionSuperNode(i),
+          denseColoring.getPartitionSuperNode(i));
+    }
+  }
+
   /**
    * Validate that each node has been colored and connected nodes have different
    * coloring.
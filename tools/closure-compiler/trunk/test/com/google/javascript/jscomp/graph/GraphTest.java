@@ -16,6 +16,7 @@
 
 package com.google.javascript.jscomp.graph;
 
+import com.google.common.collect.Lists;
 import com.google.javascript.jscomp.graph.Graph;
 import com.google.javascript.jscomp.graph.LinkedDirectedGraph;
 import com.google.javascript.jscomp.graph.LinkedUndirectedGraph;
@@ -24,6 +25,7 @@ import com.google.javascript.jscomp.graph.Annotation;
 import com.google.javascript.jscomp.graph.GraphNode;
 import com.google.javascript.jscomp.graph.SubGraph;
 import com.google.javascript.jscomp.graph.DiGraph;
+import com.google.javascript.jscomp.graph.DiGraph.DiGraphNode;
 import com.google.javascript.jscomp.graph.Graph.GraphEdge;
 import com.google.javascript.jscomp.graph.UndiGraph;
 
@@ -40,8 +42,11 @@ import java.util.Set;
 public class GraphTest extends TestCase {
 
   public void testDirectedSimple() {
-    DiGraph<String, String> graph =
-        LinkedDirectedGraph.create();
+    testDirectedSimple(LinkedDirectedGraph.<String, String>create());
+    testDirectedSimple(IndexedDirectedGraph.<String, String>create());
+  }
+
+  private void testDirectedSimple(DiGraph<String, String> graph) {
     graph.createNode("a");
     graph.createNode("b");
     graph.createNode("c");
@@ -116,8 +121,11 @@ public class GraphTest extends TestCase {
   }
 
   public void testDirectedSelfLoop() {
-    DiGraph<String, String> graph =
-        LinkedDirectedGraph.create();
+    testDirectedSelfLoop(LinkedDirectedGraph.<String, String>create());
+    testDirectedSelfLoop(IndexedDirectedGraph.<String, String>create());
+  }
+
+  private void testDirectedSelfLoop(DiGraph<String, String> graph) {
     graph.createNode("a");
     graph.createNode("b");
     graph.connect("a", "->", "a");
@@ -160,8 +168,11 @@ public class GraphTest extends TestCase {
   }
 
   public void testDirectedInAndOutEdges() {
-    DiGraph<String, String> graph =
-        LinkedDirectedGraph.create();
+    testDirectedInAndOutEdges(LinkedDirectedGraph.<String, String>create());
+    testDirectedInAndOutEdges(IndexedDirectedGraph.<String, String>create());
+  }
+
+  private void testDirectedInAndOutEdges(DiGraph<String, String> graph) {
     graph.createNode("a");
     graph.createNode("b");
     graph.createNode("c");
@@ -204,8 +215,11 @@ public class GraphTest extends TestCase {
   }
 
   public void testDirectedGetFirstEdge() {
-    DiGraph<String, String> graph =
-      LinkedDirectedGraph.create();
+    testDirectedGetFirstEdge(LinkedDirectedGraph.<String, String>create());
+    testDirectedGetFirstEdge(IndexedDirectedGraph.<String, String>create());
+  }
+
+  private void testDirectedGetFirstEdge(DiGraph<String, String> graph) {
     graph.createNode("a");
     graph.createNode("b");
     graph.createNode("c");
@@ -294,8 +308,106 @@ public class GraphTest extends TestCase {
     assertSame(B, b.getAnnotation());
   }
 
+  public void testIndexedNodeAnnotations() {
+    Graph<String, String> graph = IndexedDirectedGraph.create();
+    GraphNode<String, String> a = graph.createNode("a");
+    GraphNode<String, String> b = graph.createNode("b");
+    checkAnnotations(graph, a, b);
+  }
+
+  public void testIndexedEdgeAnnotations() {
+    Graph<String, String> graph = IndexedDirectedGraph.create();
+    graph.createNode("1");
+    graph.createNode("2");
+    graph.createNode("3");
+    graph.connect("1", "a", "2");
+    graph.connect("2", "b", "3");
+    GraphEdge<String, String> a = graph.getEdges("1", "2").get(0);
+    GraphEdge<String, String> b = graph.getEdges("2", "3").get(0);
+    checkAnnotations(graph, a, b);
+  }
+
+  public void testIndexedNodeNumbers() {
+    IndexedDirectedGraph<String, String> graph =
+        IndexedDirectedGraph.create();
+    graph.createDirectedGraphNode("a");
+    graph.createDirectedGraphNode("b");
+    graph.createDirectedGraphNode("a");
+    graph.createDirectedGraphNode("c");
+    assertEquals(3, graph.getNodeCount());
+    assertEquals(0, graph.getNodeIndex(graph.getDirectedGraphNode("a")));
+    assertEquals(1, graph.getNodeIndex(graph.getDirectedGraphNode("b")));
+    assertEquals(2, graph.getNodeIndex(graph.getDirectedGraphNode("c")));
+    assertEquals("b", graph.getNodeByIndex(1).getValue());
+
+    try {
+      graph.getNodeIndex(IndexedDirectedGraph.<String, String>create()
+          .createDirectedGraphNode("a"));
+      fail("Expected IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  public void testIndexedEdgeOrder() {
+    IndexedDirectedGraph<String, String> graph =
+        IndexedDirectedGraph.create();
+    graph.createNode("a");
+    graph.createNode("b");
+    graph.createNode("c");
+    graph.connect("a", "1", "c");
+    graph.connect("b", "2", "c");
+    graph.connect("a", "3", "b");
+    assertNodes(graph.getDirectedSuccNodes("a"), "c", "b");
+    assertNodes(graph.getDirectedPredNodes("c"), "a", "b");
+    assertEquals("3", graph.getOutEdges("a").get(1).getValue());
+
+    // The lists show the graph as it was when they were returned.
+    List<DiGraphNode<String, String>> succNodes =
+        graph.getDirectedSuccNodes("a");
+    graph.connect("a", "4", "a");
+    graph.disconnect("a", "c");
+    assertNodes(succNodes, "c", "b");
+    assertNodes(graph.getDirectedSuccNodes("a"), "b", "a");
+    assertNodes(graph.getDirectedPredNodes("c"), "b");
+    assertEquals(3, graph.getNodeDegree("a"));
+    assertEquals(3, graph.getEdges().size());
+  }
+
+  public void testIndexedReversePostorder() {
+    IndexedDirectedGraph<String, String> graph =
+        IndexedDirectedGraph.create();
+    for (String name : new String[] {"a", "b", "c", "d", "e"}) {
+      graph.createNode(name);
+    }
+    graph.connect("d", "-", "a");
+    graph.connect("a", "-", "b");
+    graph.connect("a", "-", "c");
+    graph.connect("c", "-", "a");
+    graph.connect("b", "-", "c");
+    DiGraphNode<String, String> a = graph.getDirectedGraphNode("a");
+    DiGraphNode<String, String> c = graph.getDirectedGraphNode("c");
+
+    // Nodes that are not reached from the root come last.
+    assertNodes(graph.getReversePostorder(a, true), "e", "d", "a", "b", "c");
+    assertNodes(graph.getReversePostorder(c, false), "e", "c", "b", "a", "d");
+    graph.connect("e", "-", "d");
+    assertNodes(graph.getReversePostorder(a, true), "e", "d", "a", "b", "c");
+    assertNodes(graph.getReversePostorder(c, false), "c", "b", "a", "d", "e");
+  }
+
+  private static void assertNodes(
+      List<DiGraphNode<String, String>> nodes, String... values) {
+    List<String> nodeValues = Lists.newArrayList();
+    for (DiGraphNode<String, String> node : nodes) {
+      nodeValues.add(node.getValue());
+    }
+    assertEquals(Lists.newArrayList(values), nodeValues);
+  }
+
   public void testDegree() {
     testDirectedDegree(LinkedDirectedGraph.<String, String>create());
+    testDirectedDegree(IndexedDirectedGraph.<String, String>create());
     testDirectedDegree(LinkedUndirectedGraph.<String, String>create());
   }
 
@@ -318,6 +430,8 @@ public class GraphTest extends TestCase {
   public void testDirectedConnectIfNotFound() {
     testDirectedConnectIfNotFound(
         LinkedDirectedGraph.<String, String>create());
+    testDirectedConnectIfNotFound(
+        IndexedDirectedGraph.<String, String>create());
     testDirectedConnectIfNotFound(
         LinkedUndirectedGraph.<String, String>create());
   }
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2011 The Closure Compiler Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.javascript.jscomp.graph;
+
+import junit.framework.TestCase;
+
+import java.util.BitSet;
+
+/**
+ * Tests for {@link InterferenceGraph}.
+ *
+ */
+public class InterferenceGraphTest extends TestCase {
+
+  private InterferenceGraph<String> graph;
+
+  @Override
+  public void setUp() {
+    // The nodes are numbered 0, 1, 3 and 4; 2 has no node.
+    graph = new InterferenceGraph<String>(5);
+    graph.createNode("a", 0);
+    graph.createNode("b", 1);
+    graph.createNode("d", 3);
+    graph.createNode("e", 4);
+  }
+
+  public void testConnect() {
+    graph.connect("a", "b");
+    graph.connect("b", "a");
+    assertTrue(graph.isConnected("a", "b"));
+    assertTrue(graph.isConnected("b", "a"));
+    assertFalse(graph.isConnected("a", "d"));
+    assertEquals(1, graph.getWeight("a"));
+    assertEquals(1, graph.getWeight("b"));
+    assertEquals(0, graph.getWeight("d"));
+  }
+
+  public void testConnectAll() {
+    graph.connectAll(indices(0, 2, 3, 4));
+    assertTrue(graph.isConnected("a", "d"));
+    assertTrue(graph.isConnected("a", "e"));
+    assertTrue(graph.isConnected("d", "e"));
+    assertFalse(graph.isConnected("a", "a"));
+    assertFalse(graph.isConnected("a", "b"));
+    assertEquals(2, graph.getWeight("a"));
+    assertEquals(0, graph.getWeight("b"));
+  }
+
+  public void testConnectToAll() {
+    graph.connectToAll(0, indices(0, 1, 2, 3));
+    assertTrue(graph.isConnected("a", "b"));
+    assertTrue(graph.isConnected("d", "a"));
+    assertFalse(graph.isConnected("b", "d"));
+    assertFalse(graph.isConnected("a", "a"));
+    assertEquals(2, graph.getWeight("a"));
+    assertEquals(1, graph.getWeight("d"));
+  }
+
+  public void testConnectAcross() {
+    graph.connectAcross(indices(0, 1, 2), indices(0, 2, 3));
+    assertTrue(graph.isConnected("a", "d"));
+    assertTrue(graph.isConnected("b", "a"));
+    assertTrue(graph.isConnected("d", "b"));
+    assertFalse(graph.isConnected("a", "a"));
+    assertFalse(graph.isConnected("a", "e"));
+    assertEquals(2, graph.getWeight("a"));
+    assertEquals(2, graph.getWeight("d"));
+    assertEquals(0, graph.getWeight("e"));
+
+    graph.connectAcross(indices(4), new BitSet());
+    assertEquals(0, graph.getWeight("e"));
+  }
+
+  public void testSubGraph() {
+    graph.connect("a", "b");
+    graph.connect("d", "e");
+    SubGraph<String, Void> subGraph = graph.newSubGraph();
+    assertTrue(subGraph.isIndependentOf("a"));
+    subGraph.addNode("a");
+    assertFalse(subGraph.isIndependentOf("b"));
+    assertTrue(subGraph.isIndependentOf("d"));
+    subGraph.addNode("d");
+    assertFalse(subGraph.isIndependentOf("e"));
+  }
+
+  public void testGetNode() {
+    assertEquals("a", graph.getNode("a").getValue());
+    assertNull(graph.getNode("c"));
+    assertTrue(graph.hasNode("e"));
+    assertFalse(graph.hasNode("c"));
+    assertEquals(4, graph.getNodes().size());
+  }
+
+  private static BitSet indices(int... indices) {
+    BitSet set = new BitSet();
+    for (int index : indices) {
+      set.set(index);
+    }
+    return set;
+  }
+}
@@ -45,6 +45,13 @@ import com.google.javascript.rhino.testing.TestErrorReporter;
 
 import junit.framework.TestCase;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.util.Arrays;
+
 public class NodeTest extends TestCase {
   public void testMergeExtractNormal() throws Exception {
     testMergeExtract(5, 6);
@@ -227,7 +234,7 @@ public class NodeTest extends TestCase {
     n.putIntProp(Node.SIDE_EFFECT_FLAGS, 5);
     Node m = new Node(Token.TRUE);
     m.clonePropsFrom(n);
-    assertEquals(m.getPropListHeadForTesting(), n.getPropListHeadForTesting());
+    assertSame(m.getPropValuesForTesting(), n.getPropValuesForTesting());
     assertEquals(5, n.getIntProp(Node.SIDE_EFFECT_FLAGS));
     assertEquals(5, m.getIntProp(Node.SIDE_EFFECT_FLAGS));
   }
@@ -242,7 +249,7 @@ public class NodeTest extends TestCase {
     assertEquals(6, n.getIntProp(Node.SIDE_EFFECT_FLAGS));
     assertEquals(5, m.getIntProp(Node.SIDE_EFFECT_FLAGS));
     assertFalse(
-        m.getPropListHeadForTesting() == n.getPropListHeadForTesting());
+        m.getPropValuesForTesting() == n.getPropValuesForTesting());
 
     m.putIntProp(Node.SIDE_EFFECT_FLAGS, 7);
     assertEquals(6, n.getIntProp(Node.SIDE_EFFECT_FLAGS));
@@ -280,6 +287,112 @@ public class NodeTest extends TestCase {
     assertFalse(n.getBooleanProp(Node.IS_CONSTANT_NAME));
   }
 
+  public void testBooleanPropsAreNotInTheValues() {
+    Node n = new Node(Token.CALL);
+    n.putBooleanProp(Node.QUOTED_PROP, true);
+    n.putBooleanProp(Node.FREE_CALL, true);
+    assertNull(n.getPropValuesForTesting());
+    assertTrue(n.getBooleanProp(Node.QUOTED_PROP));
+    assertTrue(n.getBooleanProp(Node.FREE_CALL));
+    assertFalse(n.getBooleanProp(Node.IS_CONSTANT_NAME));
+
+    n.putIntProp(Node.FREE_CALL, 2);
+    assertEquals(2, n.getIntProp(Node.FREE_CALL));
+    n.putIntProp(Node.SIDE_EFFECT_FLAGS, 3);
+    assertTrue(Arrays.equals(
+        new int[] {Node.QUOTED_PROP, Node.SIDE_EFFECT_FLAGS, Node.FREE_CALL},
+        n.getSortedPropTypes()));
+
+    n.removeProp(Node.FREE_CALL);
+    n.removeProp(Node.SIDE_EFFECT_FLAGS);
+    assertNull(n.getPropValuesForTesting());
+    assertTrue(n.getBooleanProp(Node.QUOTED_PROP));
+  }
+
+  public void testIntegerProps() {
+    Node n = new Node(Token.CALL);
+    n.putProp(Node.SIDE_EFFECT_FLAGS, Integer.valueOf(5));
+    assertEquals(Integer.valueOf(5), n.getProp(Node.SIDE_EFFECT_FLAGS));
+    assertEquals(5, n.getIntProp(Node.SIDE_EFFECT_FLAGS));
+
+    n.putProp(Node.FREE_CALL, Integer.valueOf(1));
+    assertEquals(Integer.valueOf(1), n.getProp(Node.FREE_CALL));
+    assertTrue(n.getBooleanProp(Node.FREE_CALL));
+
+    n.putIntProp(Node.INCRDECR_PROP, 3);
+    assertEquals(Integer.valueOf(3), n.getProp(Node.INCRDECR_PROP));
+
+    n.putProp(Node.SIDE_EFFECT_FLAGS, null);
+    assertNull(n.getProp(Node.SIDE_EFFECT_FLAGS));
+  }
+
+  public void testSharedBooleanProps() {
+    Node n = getNode("A");
+    n.putIntProp(Node.SIDE_EFFECT_FLAGS, 5);
+    n.putBooleanProp(Node.IS_CONSTANT_NAME, true);
+    Node m = new Node(Token.TRUE);
+    m.clonePropsFrom(n);
+    assertTrue(m.getBooleanProp(Node.IS_CONSTANT_NAME));
+
+    m.putBooleanProp(Node.IS_CONSTANT_NAME, false);
+    assertSame(m.getPropValuesForTesting(), n.getPropValuesForTesting());
+    assertTrue(n.getBooleanProp(Node.IS_CONSTANT_NAME));
+    assertFalse(m.getBooleanProp(Node.IS_CONSTANT_NAME));
+  }
+
+  public void testPropsHashCode() {
+    Node n = getNode("A");
+    int hash = n.getPropsHashCode();
+    n.putBooleanProp(Node.FREE_CALL, true);
+    assertFalse(hash == n.getPropsHashCode());
+    n.putBooleanProp(Node.FREE_CALL, false);
+    assertEquals(hash, n.getPropsHashCode());
+
+    n.putIntProp(Node.SIDE_EFFECT_FLAGS, 5);
+    int withFlags = n.getPropsHashCode();
+    n.putIntProp(Node.SIDE_EFFECT_FLAGS, 6);
+    assertFalse(withFlags == n.getPropsHashCode());
+
+    Node m = new Node(Token.TRUE);
+    m.clonePropsFrom(n);
+    assertEquals(n.getPropsHashCode(), m.getPropsHashCode());
+  }
+
+  public void testSerializedForm() {
+    // Nodes serialized before the properties were kept in propFlags and
+    // propValues must still be readable.
+    ObjectStreamClass serialForm = ObjectStreamClass.lookup(Node.class);
+    assertEquals(1L, serialForm.getSerialVersionUID());
+    assertEquals(int.class, serialForm.getField("type").getType());
+    assertNotNull(serialForm.getField("propListHead"));
+    assertNull(serialForm.getField("propFlags"));
+    assertNull(serialForm.getField("propValues"));
+  }
+
+  public void testSerialization() throws Exception {
+    Node call = getNode("f(3)");
+    call.putBooleanProp(Node.FREE_CALL, true);
+    call.putIntProp(Node.SIDE_EFFECT_FLAGS, 5);
+    call.putProp(Node.ORIGINALNAME_PROP, "g");
+    call.getFirstChild().putBooleanProp(Node.IS_CONSTANT_NAME, true);
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ObjectOutputStream out = new ObjectOutputStream(bytes);
+    out.writeObject(call);
+    out.close();
+    Node copy = (Node) new ObjectInputStream(
+        new ByteArrayInputStream(bytes.toByteArray())).readObject();
+
+    assertNull(call.checkTreeEquals(copy));
+    assertTrue(copy.getBooleanProp(Node.FREE_CALL));
+    assertEquals(5, copy.getIntProp(Node.SIDE_EFFECT_FLAGS));
+    assertEquals("g", copy.getProp(Node.ORIGINALNAME_PROP));
+    assertTrue(copy.getFirstChild().getBooleanProp(Node.IS_CONSTANT_NAME));
+    assertFalse(copy.getLastChild().getBooleanProp(Node.IS_CONSTANT_NAME));
+    assertSame(copy, copy.getLastChild().getParent());
+    assertEquals(call.getSourcePosition(), copy.getSourcePosition());
+  }
+
   // Verify that annotations on cloned nodes are properly handled.
   public void testCloneAnnontations2() {
     Node n = getNode("a");
@@ -267,6 +267,40 @@ public class JSTypeRegistryTest extends TestCase {
     assertTrue(type instanceof AllType);
   }
 
+  public void testTypeRelationsSeePropertyChanges() {
+    JSTypeRegistry registry = new JSTypeRegistry(null);
+    RecordTypeBuilder builder = new RecordTypeBuilder(registry);
+    builder.addProperty(
+        "a", registry.getNativeType(JSTypeNative.NUMBER_TYPE), null);
+    JSType record = builder.build();
+    ObjectType object = registry.createAnonymousObjectType();
+
+    assertFalse(object.isSubtype(record));
+    object.defineDeclaredProperty(
+        "a", registry.getNativeType(JSTypeNative.NUMBER_TYPE), null);
+    assertTrue(object.isSubtype(record));
+  }
+
+  public void testTypeRelationsSeeProxyResolution() {
+    JSTypeRegistry registry = new JSTypeRegistry(null);
+    ProxyObjectType proxy = new ProxyObjectType(
+        registry, registry.getNativeType(JSTypeNative.NUMBER_OBJECT_TYPE));
+    JSType union = registry.createUnionType(
+        proxy, registry.getNativeType(JSTypeNative.NULL_TYPE));
+    JSType expected = registry.createUnionType(
+        JSTypeNative.NUMBER_OBJECT_TYPE, JSTypeNative.NULL_TYPE);
+
+    assertTrue(union.isSubtype(expected));
+    assertTypeEquals(expected, union.getLeastSupertype(expected));
+    proxy.setReferencedType(
+        registry.getNativeType(JSTypeNative.STRING_OBJECT_TYPE));
+    assertFalse(union.isSubtype(expected));
+    assertTypeEquals(
+        registry.createUnionType(JSTypeNative.NUMBER_OBJECT_TYPE,
+            JSTypeNative.STRING_OBJECT_TYPE, JSTypeNative.NULL_TYPE),
+        union.getLeastSupertype(expected));
+  }
+
   private void assertTypeEquals(JSType a, JSType b) {
     Asserts.assertTypeEquals(a, b);
   }
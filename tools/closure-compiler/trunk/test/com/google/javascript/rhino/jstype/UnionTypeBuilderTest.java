@@ -100,11 +100,43 @@ public class UnionTypeBuilderTest extends BaseJSTypeTestCase {
     assertUnion("(Object|string)", STRING_OBJECT_TYPE, stringAndObject);
   }
 
-  public void assertUnion(String expected, JSType ... types) {
+  public void testAnonymousObjects() {
+    ObjectType parent = registry.createAnonymousObjectType();
+    ObjectType child = registry.createObjectType(parent);
+    ObjectType other = registry.createAnonymousObjectType();
+
+    assertSame(parent, build(child, parent));
+    assertSame(parent, build(parent, child));
+    assertSame(parent, build(parent, parent));
+
+    UnionType union = (UnionType) build(child, other, parent);
+    assertEquals(2, union.alternates.size());
+    assertTrue(union.alternates.contains(other));
+    assertTrue(union.alternates.contains(parent));
+  }
+
+  public void testValueTypes() {
+    assertUnion("(number|string)", NUMBER_TYPE, STRING_TYPE, NUMBER_TYPE);
+    assertUnion("(boolean|null|undefined)",
+        NULL_TYPE, VOID_TYPE, BOOLEAN_TYPE, VOID_TYPE);
+  }
+
+  public void testSameAlternatesBuildSameUnion() {
+    JSType union = build(NUMBER_TYPE, STRING_TYPE);
+    assertSame(union, build(NUMBER_TYPE, STRING_TYPE));
+    assertNotSame(union, build(STRING_TYPE, NUMBER_TYPE));
+    assertTrue(union.isEquivalentTo(build(STRING_TYPE, NUMBER_TYPE)));
+  }
+
+  private JSType build(JSType... types) {
     UnionTypeBuilder builder = new UnionTypeBuilder(registry);
     for (JSType type : types) {
       builder.addAlternate(type);
     }
-    assertEquals(expected, builder.build().toString());
+    return builder.build();
+  }
+
+  public void assertUnion(String expected, JSType ... types) {
+    assertEquals(expected, build(types).toString());
   }
 }